@@ -0,0 +1,155 @@
+package com.bulletjournal.authz;
+
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.repository.SharedProjectItemRepository;
+import com.bulletjournal.repository.UserGroupRepository;
+import com.bulletjournal.util.LongHashSet;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per user grants used by {@link AuthorizationService}
+ * <p>
+ * - Groups the user accepted to join, a project is accessible iff its group is, so creating, moving or
+ * deleting a project needs no invalidation
+ * - Project items shared with the user, keyed by content type and item id
+ * <p>
+ * Grants of a user are loaded by two id-only queries and dropped whenever a UserGroup or SharedProjectItem
+ * of the user changes, on this instance right away and on all instances via {@link #INVALIDATION_CHANNEL}
+ * once the change is committed.
+ */
+@Component
+public class AuthorizationIndex implements MessageListener {
+    public static final String INVALIDATION_CHANNEL = "authorization-invalidation";
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthorizationIndex.class);
+    private static final int MAX_SIZE = 10000;
+    private static final int CONTENT_TYPE_SHIFT = 56;
+
+    private final Cache<String, Grants> grants = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE).expireAfterWrite(10, TimeUnit.MINUTES).recordStats().build();
+
+    @Autowired
+    @Lazy
+    private UserGroupRepository userGroupRepository;
+
+    @Autowired
+    @Lazy
+    private SharedProjectItemRepository sharedProjectItemRepository;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @PostConstruct
+    public void postConstruct() {
+        if (this.redisMessageListenerContainer != null) {
+            this.redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        }
+    }
+
+    static long getSharedItemKey(ContentType contentType, long itemId) {
+        return ((long) contentType.ordinal() << CONTENT_TYPE_SHIFT) | itemId;
+    }
+
+    public boolean isGroupMember(String username, Long groupId) {
+        return groupId != null && getGrants(username).groupIds.contains(groupId);
+    }
+
+    public boolean isSharedWith(String username, ContentType contentType, Long itemId) {
+        return itemId != null && getGrants(username).sharedItemKeys.contains(getSharedItemKey(contentType, itemId));
+    }
+
+    /**
+     * Drop grants of user now and again after the current transaction commits
+     *
+     * @param username the user whose groups or shared items changed
+     */
+    public void invalidate(String username) {
+        this.grants.invalidate(username);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(username);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // a read racing with the transaction may have cached the old grants
+                grants.invalidate(username);
+                publish(username);
+            }
+        });
+    }
+
+    public CacheStats getStats() {
+        return this.grants.stats();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        this.grants.invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void publish(String username) {
+        try {
+            this.redisTemplate.convertAndSend(INVALIDATION_CHANNEL, username);
+        } catch (Exception ex) {
+            LOGGER.error("Unable to publish authorization invalidation of " + username, ex);
+        }
+    }
+
+    private Grants getGrants(String username) {
+        try {
+            return this.grants.get(username, () -> load(username));
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private Grants load(String username) {
+        List<Long> groupIds = this.userGroupRepository.findAcceptedGroupIdsByUsername(username);
+        List<Object[]> sharedItemIds = this.sharedProjectItemRepository.findSharedItemIdsByUsername(username);
+        Grants grants = new Grants(groupIds.size(), sharedItemIds.size());
+        groupIds.forEach(grants.groupIds::add);
+        for (Object[] ids : sharedItemIds) {
+            if (ids[0] != null) {
+                grants.sharedItemKeys.add(getSharedItemKey(ContentType.TASK, ((Number) ids[0]).longValue()));
+            } else if (ids[1] != null) {
+                grants.sharedItemKeys.add(getSharedItemKey(ContentType.NOTE, ((Number) ids[1]).longValue()));
+            } else if (ids[2] != null) {
+                grants.sharedItemKeys.add(getSharedItemKey(ContentType.TRANSACTION, ((Number) ids[2]).longValue()));
+            }
+        }
+        return grants;
+    }
+
+    private static final class Grants {
+        private final LongHashSet groupIds;
+        private final LongHashSet sharedItemKeys;
+
+        private Grants(int groupCount, int sharedItemCount) {
+            this.groupIds = new LongHashSet(groupCount);
+            this.sharedItemKeys = new LongHashSet(sharedItemCount);
+        }
+    }
+}
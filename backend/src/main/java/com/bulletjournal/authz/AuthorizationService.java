@@ -2,19 +2,19 @@ package com.bulletjournal.authz;
 
 import com.bulletjournal.contents.ContentType;
 import com.bulletjournal.exceptions.UnAuthorizedException;
-import com.bulletjournal.repository.SharedProjectItemDaoJpa;
 import com.bulletjournal.repository.models.Project;
 import com.bulletjournal.repository.models.ProjectItemModel;
 import com.google.common.collect.ImmutableSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Component
 public class AuthorizationService {
@@ -26,25 +26,40 @@ public class AuthorizationService {
     public static Set<String> ADMINS = ImmutableSet.of(SUPER_USER);
 
     @Autowired
-    @Lazy
-    private SharedProjectItemDaoJpa sharedProjectItemDaoJpa;
+    private AuthorizationIndex authorizationIndex;
 
     public <T extends ProjectItemModel> void validateRequesterInProjectGroup(String requester, T projectItem) {
-        if (this.sharedProjectItemDaoJpa.getSharedProjectItems(requester).stream()
-                .anyMatch(item -> Objects.equals(item.getId(), projectItem.getId()) &&
-                        Objects.equals(item.getContentType(), projectItem.getContentType()))) {
+        if (this.authorizationIndex.isSharedWith(requester, projectItem.getContentType(), projectItem.getId())) {
             return;
         }
         validateRequesterInProjectGroup(requester, projectItem.getProject());
     }
 
+    public <T extends ProjectItemModel> boolean isSharedWith(String requester, T projectItem) {
+        return this.authorizationIndex.isSharedWith(requester, projectItem.getContentType(), projectItem.getId());
+    }
+
+    /**
+     * Filter projects requester can access, for checking a batch of project items against
+     *
+     * @param requester the requester
+     * @param projects  the projects to check
+     * @return Set<Long> - ids of the accessible projects
+     */
+    public Set<Long> getAccessibleProjectIds(String requester, Collection<Project> projects) {
+        return projects.stream()
+                .filter(project -> ADMINS.contains(requester)
+                        || this.authorizationIndex.isGroupMember(requester, project.getGroup().getId()))
+                .map(Project::getId)
+                .collect(Collectors.toSet());
+    }
+
     public <T extends ProjectItemModel> void validateRequesterInProjectGroup(String requester, Project project) {
         if (ADMINS.contains(requester)) {
             return;
         }
 
-        if (!project.getGroup().getAcceptedUsers()
-                .stream().anyMatch(u -> Objects.equals(requester, u.getUser().getName()))) {
+        if (!this.authorizationIndex.isGroupMember(requester, project.getGroup().getId())) {
             throw new UnAuthorizedException("User " + requester + " not in Project "
                     + project.getName());
         }
@@ -140,7 +155,8 @@ public class AuthorizationService {
         switch (operation) {
             case DELETE:
             case UPDATE:
-                if (this.sharedProjectItemDaoJpa.getSharedProjectItems(requester).contains(projectItem)) {
+                if (this.authorizationIndex.isSharedWith(
+                        requester, projectItem.getContentType(), projectItem.getId())) {
                     return;
                 }
                 if (!Objects.equals(owner, requester) && !Objects.equals(projectOwner, requester)
@@ -5,7 +5,7 @@ import com.bulletjournal.controller.models.UpdateMyselfParams;
 import com.bulletjournal.controller.models.User;
 import com.bulletjournal.exceptions.ResourceAlreadyExistException;
 import com.bulletjournal.exceptions.ResourceNotFoundException;
-import com.bulletjournal.redis.RedisUserRepository;
+import com.bulletjournal.redis.IdentityNearCache;
 import com.bulletjournal.repository.UserAliasDaoJpa;
 import com.bulletjournal.repository.UserDaoJpa;
 import org.slf4j.Logger;
@@ -22,7 +22,11 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Optional;
 
 @Component
@@ -38,18 +42,18 @@ public class UserClient {
     private final RestTemplate restClient;
     private final URI ssoEndPoint;
     private final String ssoAPIKey;
-    private final RedisUserRepository redisUserRepository;
+    private final IdentityNearCache identityNearCache;
     private final UserDaoJpa userDaoJpa;
     private final UserAliasDaoJpa userAliasDaoJpa;
 
     @Autowired
-    public UserClient(SSOConfig ssoConfig, RedisUserRepository redisUserRepository,
+    public UserClient(SSOConfig ssoConfig, IdentityNearCache identityNearCache,
                       UserDaoJpa userDaoJpa, UserAliasDaoJpa userAliasDaoJpa)
             throws URISyntaxException {
         this.restClient = new RestTemplate();
         this.ssoEndPoint = new URI(ssoConfig.getEndpoint());
         this.ssoAPIKey = ssoConfig.getAPIKey();
-        this.redisUserRepository = redisUserRepository;
+        this.identityNearCache = identityNearCache;
         this.userDaoJpa = userDaoJpa;
         this.userAliasDaoJpa = userAliasDaoJpa;
     }
@@ -72,7 +76,7 @@ public class UserClient {
     @SuppressWarnings("rawtypes")
     public User getUser(String username) {
         User user;
-        Optional<User> userOptional = redisUserRepository.findById(username);
+        Optional<User> userOptional = this.identityNearCache.getUser(username);
         if (userOptional.isPresent()) {
             user = userOptional.get();
             user.setAlias(user.getName()); // disable caching user alias
@@ -97,10 +101,35 @@ public class UserClient {
             LOGGER.info(username + " already exists");
         }
 
-        redisUserRepository.save(user);
+        this.identityNearCache.saveUser(user);
         return this.userAliasDaoJpa.updateUserAlias(user);
     }
 
+    /**
+     * Resolve distinct users in one batch with the requester's aliases read once,
+     * only users missing in cache are fetched from SSO one by one
+     * <p>
+     * DO NOT wrap this function inside @Transactional
+     *
+     * @param usernames usernames collected from a response
+     * @return Map<String, User> - users keyed by the requested usernames
+     */
+    public Map<String, User> getUsers(Collection<String> usernames) {
+        Collection<String> distinct = new LinkedHashSet<>(usernames);
+        distinct.remove(null);
+        Map<String, User> users = this.identityNearCache.getUsers(distinct);
+        users.values().forEach(user -> user.setAlias(user.getName())); // disable caching user alias
+        this.userAliasDaoJpa.updateUserAliases(users.values());
+
+        Map<String, User> result = new HashMap<>(users);
+        for (String username : distinct) {
+            if (!result.containsKey(username)) {
+                result.put(username, getUser(username));
+            }
+        }
+        return result;
+    }
+
     private String getUserTimeZone(LinkedHashMap userInfo) {
         if (this.ssoAPIKey == null) {
             return DEFAULT_USER_TIME_ZONE;
@@ -0,0 +1,41 @@
+package com.bulletjournal.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "content.import")
+public class ContentImportConfig {
+    // rows per JDBC batch insert, each committed in its own transaction
+    private int batchSize = 200;
+
+    // rows imported per ContentBatch event, the rest is put back into the notification outbox
+    private int rowsPerEvent = 2000;
+
+    // insert rate budget of content imports
+    private double rowsPerSecond = 5000;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getRowsPerEvent() {
+        return rowsPerEvent;
+    }
+
+    public void setRowsPerEvent(int rowsPerEvent) {
+        this.rowsPerEvent = rowsPerEvent;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(double rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+}
@@ -8,6 +8,9 @@ import org.springframework.context.annotation.Configuration;
 public class ContentRevisionConfig {
     private Integer maxRevisionNumber;
 
+    // every checkpointInterval-th revision keeps its full text
+    private Integer checkpointInterval = 10;
+
     public Integer getMaxRevisionNumber() {
         return maxRevisionNumber;
     }
@@ -15,4 +18,12 @@ public class ContentRevisionConfig {
     public void setMaxRevisionNumber(Integer maxRevisionNumber) {
         this.maxRevisionNumber = maxRevisionNumber;
     }
+
+    public Integer getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public void setCheckpointInterval(Integer checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
 }
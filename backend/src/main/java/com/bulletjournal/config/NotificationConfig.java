@@ -9,9 +9,20 @@ public class NotificationConfig {
 
     private Cleaner cleaner = new Cleaner();
 
+    // partitions of each event pipeline of NotificationService
+    private int partitions = Runtime.getRuntime().availableProcessors();
+
     public NotificationConfig() {
     }
 
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
     public Cleaner getCleaner() {
         return cleaner;
     }
@@ -12,6 +12,7 @@ public class SpringESConfig {
     private String username;
     private String password;
     private Boolean enable;
+    private String embeddedIndexPath;
 
     public String[] getUris() {
         return uris;
@@ -44,5 +45,12 @@ public class SpringESConfig {
     public void setEnable(Boolean enable) {
         this.enable = enable;
     }
-}
 
+    public String getEmbeddedIndexPath() {
+        return embeddedIndexPath;
+    }
+
+    public void setEmbeddedIndexPath(String embeddedIndexPath) {
+        this.embeddedIndexPath = embeddedIndexPath;
+    }
+}
@@ -1,15 +1,24 @@
 package com.bulletjournal.controller;
 
+import com.bulletjournal.authz.AuthorizationIndex;
 import com.bulletjournal.authz.Role;
 import com.bulletjournal.clients.UserClient;
 import com.bulletjournal.config.VersionConfig;
 import com.bulletjournal.controller.models.*;
+import com.bulletjournal.es.SearchIndexPipeline;
+import com.bulletjournal.es.SharedSearchItemCache;
 import com.bulletjournal.exceptions.UnAuthorizedException;
+import com.bulletjournal.messaging.firebase.FcmClient;
+import com.bulletjournal.redis.IdentityNearCache;
 import com.bulletjournal.redis.RedisLockedIPRepository;
 import com.bulletjournal.redis.RedisLockedUserRepository;
 import com.bulletjournal.redis.models.LockedIP;
 import com.bulletjournal.redis.models.LockedUser;
+import com.bulletjournal.repository.LabelCache;
 import com.bulletjournal.repository.UserDaoJpa;
+import com.bulletjournal.templates.clients.StockCompanyService;
+import com.bulletjournal.templates.repository.SampleTaskCache;
+import com.bulletjournal.templates.workflow.engine.SampleTaskIndexCache;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +27,8 @@ import org.springframework.web.bind.annotation.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @RestController
@@ -31,6 +42,7 @@ public class AdminController {
     public static final String UNLOCK_USER_ROUTE = "/api/admin/unlock";
     public static final String LOCK_USER_ROUTE = "/api/admin/lock";
     public static final String VERSION_ROUTE = "/api/version";
+    public static final String NEAR_CACHE_STATS_ROUTE = "/api/admin/nearCacheStats";
 
     @Autowired
     private VersionConfig versionConfig;
@@ -47,6 +59,33 @@ public class AdminController {
     @Autowired
     private RedisLockedIPRepository redisLockedIPRepository;
 
+    @Autowired
+    private IdentityNearCache identityNearCache;
+
+    @Autowired
+    private LabelCache labelCache;
+
+    @Autowired
+    private AuthorizationIndex authorizationIndex;
+
+    @Autowired
+    private SharedSearchItemCache sharedSearchItemCache;
+
+    @Autowired
+    private SearchIndexPipeline searchIndexPipeline;
+
+    @Autowired
+    private SampleTaskCache sampleTaskCache;
+
+    @Autowired
+    private SampleTaskIndexCache sampleTaskIndexCache;
+
+    @Autowired
+    private StockCompanyService stockCompanyService;
+
+    @Autowired
+    private FcmClient fcmClient;
+
     @PostMapping(SET_ROLE_ROUTE)
     public void setRole(@NotBlank @PathVariable String username, @NotNull @RequestBody SetRoleParams setRoleParams) {
         username = getUsername(username);
@@ -88,6 +127,21 @@ public class AdminController {
         return lockedUserAndIPs;
     }
 
+    @GetMapping(NEAR_CACHE_STATS_ROUTE)
+    public Map<String, String> getNearCacheStats() {
+        validateRequester();
+        Map<String, String> stats = new TreeMap<>(this.identityNearCache.getStats());
+        stats.putAll(this.labelCache.getStats());
+        stats.put("AuthorizationIndex", this.authorizationIndex.getStats().toString());
+        stats.put("SharedSearchItemCache", this.sharedSearchItemCache.getStats().toString());
+        stats.put("SearchIndexPipeline", this.searchIndexPipeline.getStats().toString());
+        stats.put("SampleTaskCache", this.sampleTaskCache.getStats().toString());
+        stats.put("SampleTaskIndexCache", this.sampleTaskIndexCache.getStats().toString());
+        stats.put("StockCompanyService", this.stockCompanyService.getStats());
+        stats.put("FcmDispatcher", this.fcmClient.getStats().toString());
+        return stats;
+    }
+
     @PostMapping(UNLOCK_USER_ROUTE)
     public void unlockUser(@NotNull @RequestBody UnlockUserParams unlockUserParams) {
         validateRequester();
@@ -98,7 +152,7 @@ public class AdminController {
             redisLockedIPRepository.delete(new LockedIP(ip, null));
         }
         if (StringUtils.isNotBlank(name)) {
-            redisLockedUserRepository.delete(new LockedUser(getUsername(name), null));
+            identityNearCache.unlockUser(getUsername(name));
         }
     }
 
@@ -113,7 +167,7 @@ public class AdminController {
             redisLockedIPRepository.save(new LockedIP(ip, reason));
         }
         if (StringUtils.isNotBlank(name)) {
-            redisLockedUserRepository.save(new LockedUser(name, reason));
+            identityNearCache.lockUser(new LockedUser(name, reason));
         }
     }
 
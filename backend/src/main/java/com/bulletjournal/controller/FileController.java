@@ -2,10 +2,9 @@ package com.bulletjournal.controller;
 
 import com.bulletjournal.clients.AWSS3Client;
 import com.bulletjournal.clients.UserClient;
-import com.bulletjournal.controller.models.User;
 import com.bulletjournal.filters.rate.limiting.TokenBucket;
 import com.bulletjournal.filters.rate.limiting.TokenBucketType;
-import com.bulletjournal.redis.RedisUserRepository;
+import com.bulletjournal.redis.IdentityNearCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -16,7 +15,6 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.Optional;
 
 @RestController
 public class FileController {
@@ -31,7 +29,7 @@ public class FileController {
     private UserClient userClient;
 
     @Autowired
-    private RedisUserRepository redisUserRepository;
+    private IdentityNearCache identityNearCache;
 
     @PostMapping("/api/uploadFile")
     public String uploadFile(@RequestPart(value = "file") MultipartFile file) {
@@ -52,9 +50,6 @@ public class FileController {
         this.userClient.uploadAvatar(file, username);
 
         LOGGER.info("Clearing " + username + " cache");
-        Optional<User> userOptional = redisUserRepository.findById(username);
-        if (userOptional.isPresent()) {
-            this.redisUserRepository.delete(userOptional.get());
-        }
+        this.identityNearCache.deleteUser(username);
     }
 }
@@ -16,6 +16,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
@@ -52,6 +54,7 @@ public class GroupController {
     }
 
     @DeleteMapping(GROUP_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public ResponseEntity<?> deleteGroup(@PathVariable Long groupId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         List<Event> events = this.groupDaoJpa.delete(groupId, username);
@@ -154,6 +157,7 @@ public class GroupController {
 
     @Deprecated
     @PostMapping(ADD_USER_GROUPS_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public ResponseEntity<List<GroupsWithOwner>> addUserGroups(
             @Valid @RequestBody AddUserGroupsParams addUserGroupsParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -162,6 +166,7 @@ public class GroupController {
     }
 
     @PostMapping(ADD_USER_GROUP_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Group addUserGroup(@Valid @RequestBody AddUserGroupParams addUserGroupParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         if (Objects.equals(username, addUserGroupParams.getUsername())) {
@@ -176,6 +181,7 @@ public class GroupController {
 
     @Deprecated
     @PostMapping(REMOVE_USER_GROUPS_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public void removeUserGroups(@Valid @RequestBody RemoveUserGroupsParams removeUserGroupsParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         List<Event> events = this.groupDaoJpa.removeUserGroups(username, removeUserGroupsParams.getUserGroups());
@@ -185,6 +191,7 @@ public class GroupController {
     }
 
     @PostMapping(REMOVE_USER_GROUP_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Group removeUserGroup(@Valid @RequestBody RemoveUserGroupParams removeUserGroupParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         List<Event> events = this.groupDaoJpa.removeUserGroups(username, ImmutableList.of(removeUserGroupParams));
@@ -72,7 +72,7 @@ public class LabelController {
                 labelsForProject.forEach(l -> projectLabelValues.add(l.getValue()));
             }
         }
-        List<Label> labels = this.labelDaoJpa.getLabels(username).stream().map(label -> label.toPresentationModel())
+        List<Label> labels = this.labelDaoJpa.getLabels(username).stream()
                 .filter(label -> !projectLabelValues.contains(label.getValue())) // label in project take precedence
                 .collect(Collectors.toList());
         labels.addAll(labelsForProject);
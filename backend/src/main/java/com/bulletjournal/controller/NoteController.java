@@ -20,6 +20,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
@@ -102,6 +104,7 @@ public class NoteController {
 
     @PostMapping(NOTES_ROUTE)
     @ResponseStatus(HttpStatus.CREATED)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Note createNote(@NotNull @PathVariable Long projectId, @Valid @RequestBody CreateNoteParams note) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         com.bulletjournal.repository.models.Note createdNote = noteDaoJpa.create(projectId, username, note);
@@ -120,6 +123,7 @@ public class NoteController {
     }
 
     @PatchMapping(NOTE_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public ResponseEntity<List<Note>> updateNote(@NotNull @PathVariable Long noteId,
             @Valid @RequestBody UpdateNoteParams updateNoteParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -134,6 +138,7 @@ public class NoteController {
     }
 
     @DeleteMapping(NOTE_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public ResponseEntity<List<Note>> deleteNote(@NotNull @PathVariable Long noteId) {
         Note note = deleteSingleNote(noteId);
         return getNotes(note.getProjectId(), null, null, null, null, null);
@@ -158,6 +163,7 @@ public class NoteController {
     }
 
     @DeleteMapping(NOTES_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public ResponseEntity<List<Note>> deleteNotes(@NotNull @PathVariable Long projectId,
             @NotNull @RequestParam List<Long> notes) {
         // curl -X DELETE
@@ -201,6 +207,7 @@ public class NoteController {
     }
 
     @PutMapping(NOTE_SET_LABELS_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Note setLabels(@NotNull @PathVariable Long noteId, @NotNull @RequestBody List<Long> labels) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         this.notificationService.inform(this.noteDaoJpa.setLabels(username, noteId, labels));
@@ -208,6 +215,7 @@ public class NoteController {
     }
 
     @PostMapping(MOVE_NOTE_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public void moveNote(@NotNull @PathVariable Long noteId,
             @NotNull @RequestBody MoveProjectItemParams moveProjectItemParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -221,6 +229,7 @@ public class NoteController {
     }
 
     @PostMapping(SHARE_NOTE_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public SharableLink shareNote(@NotNull @PathVariable Long noteId,
             @NotNull @RequestBody ShareProjectItemParams shareProjectItemParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -257,6 +266,7 @@ public class NoteController {
     }
 
     @PostMapping(ADD_CONTENT_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Content addContent(@NotNull @PathVariable Long noteId,
             @NotNull @RequestBody CreateContentParams createContentParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -264,7 +274,7 @@ public class NoteController {
         Pair<ContentModel, ProjectItemModel> res = this.noteDaoJpa.addContent(noteId, username,
                 new NoteContent(createContentParams.getText()));
 
-        Content createdContent = res.getLeft().toPresentationModel();
+        Content createdContent = this.noteDaoJpa.toPresentationModel((NoteContent) res.getLeft());
         String noteName = res.getRight().getName();
         Long projectId = res.getRight().getProject().getId();
         String projectName = res.getRight().getProject().getName();
@@ -279,11 +289,11 @@ public class NoteController {
     @GetMapping(CONTENTS_ROUTE)
     public List<Content> getContents(@NotNull @PathVariable Long noteId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
-        return Content.addOwnerAvatar(this.noteDaoJpa.getContents(noteId, username).stream()
-                .map(t -> t.toPresentationModel()).collect(Collectors.toList()), this.userClient);
+        return Content.addOwnerAvatar(this.noteDaoJpa.toPresentationModels(this.noteDaoJpa.getContents(noteId, username)), this.userClient);
     }
 
     @DeleteMapping(CONTENT_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public List<Content> deleteContent(@NotNull @PathVariable Long noteId, @NotNull @PathVariable Long contentId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         List<String> deleteESDocumentIds = this.noteDaoJpa.getDeleteESDocumentIdsForContent(username, contentId);
@@ -298,6 +308,7 @@ public class NoteController {
     }
 
     @PatchMapping(CONTENT_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public List<Content> updateContent(@NotNull @PathVariable Long noteId, @NotNull @PathVariable Long contentId,
             @NotNull @RequestBody UpdateContentParams updateContentParams, @RequestHeader(IF_NONE_MATCH) Optional<String> etag) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -327,6 +338,6 @@ public class NoteController {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         NoteContent content = this.noteDaoJpa.patchRevisionContentHistory(
             contentId, noteId, username, revisionContentsParams.getRevisionContents(), etag);
-        return content == null ? new Content() : content.toPresentationModel();
+        return content == null ? new Content() : this.noteDaoJpa.toPresentationModel(content);
     }
 }
\ No newline at end of file
@@ -83,6 +83,7 @@ public class NotificationController {
     }
 
     @PostMapping(ANSWER_NOTIFICATION_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public ResponseEntity<?> answerNotification(
             @NotNull @PathVariable Long notificationId,
             @Valid @RequestBody AnswerNotificationParams answerNotificationParams) {
@@ -158,6 +159,7 @@ public class NotificationController {
     }
 
     @GetMapping(ANSWER_PUBLIC_NOTIFICATION_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public ResponseEntity<?> answerPublicNotification(
             @NotNull @PathVariable String uid, @NotNull @RequestParam String action) {
         // /api/public/notifications/${id}/answer?action=${action}
@@ -15,6 +15,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
@@ -74,6 +76,7 @@ public class ProjectController {
 
     @PostMapping(PROJECTS_ROUTE)
     @ResponseStatus(HttpStatus.CREATED)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Project createProject(@Valid @RequestBody CreateProjectParams project) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         List<Event> events = new ArrayList<>();
@@ -88,6 +91,7 @@ public class ProjectController {
     }
 
     @PatchMapping(PROJECT_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Project updateProject(@NotNull @PathVariable Long projectId,
             @Valid @RequestBody UpdateProjectParams updateProjectParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -110,6 +114,7 @@ public class ProjectController {
      * Delete project deletes its child projects as well
      */
     @DeleteMapping(PROJECT_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public void deleteProject(@NotNull @PathVariable Long projectId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         Pair<List<Event>, com.bulletjournal.repository.models.Project> res = this.projectDaoJpa.deleteProject(username,
@@ -1,26 +1,23 @@
 package com.bulletjournal.controller;
 
 import com.bulletjournal.clients.UserClient;
-import com.bulletjournal.config.SpringESConfig;
 import com.bulletjournal.contents.ContentType;
 import com.bulletjournal.controller.models.SearchResult;
 import com.bulletjournal.controller.models.SearchResultItem;
-import com.bulletjournal.es.ESUtil;
+import com.bulletjournal.es.SearchCursor;
+import com.bulletjournal.es.SharedSearchItemCache;
+import com.bulletjournal.es.SharedSearchItems;
 import com.bulletjournal.es.repository.SearchIndexDaoJpa;
 import com.bulletjournal.es.repository.models.SearchIndex;
-import com.bulletjournal.notifications.NotificationService;
-import com.bulletjournal.notifications.RemoveElasticsearchDocumentEvent;
-import com.bulletjournal.redis.RedisShareItemIdRepository;
-import com.bulletjournal.redis.models.ShareItemIds;
+import com.bulletjournal.exceptions.BadRequestException;
 import com.bulletjournal.repository.*;
-import com.bulletjournal.repository.models.ProjectItemModel;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.elasticsearch.core.SearchHit;
-import org.springframework.data.elasticsearch.core.SearchScrollHits;
+import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.util.Pair;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -49,21 +46,9 @@ public class QueryController {
     private TransactionDaoJpa transactionDaoJpa;
     @Autowired
     private NoteDaoJpa noteDaoJpa;
-    @Autowired
-    private SharedProjectItemDaoJpa sharedProjectItemDaoJpa;
-
-    @Autowired
-    private NoteContentRepository noteContentRepository;
-    @Autowired
-    private TaskContentRepository taskContentRepository;
-
-    @Autowired
-    private NotificationService notificationService;
-    @Autowired
-    private SpringESConfig springESConfig;
 
     @Autowired
-    private RedisShareItemIdRepository redisShareItemIdRepository;
+    private SharedSearchItemCache sharedSearchItemCache;
 
     /**
      * Parse Search Index identifier into type and id
@@ -92,7 +77,7 @@ public class QueryController {
      * <p>
      * SearchResult Model Structure
      * - Long totalHits
-     * - String ScrollId
+     * - String ScrollId, an opaque search-after cursor of the next page
      * - List[SearchResultItem] searchResultItemList
      * <p>
      * SearchResultItem Model Structure
@@ -102,7 +87,7 @@ public class QueryController {
      * - List[String] HighLights of Name
      * - List[String] HighLights of Content
      *
-     * @param scrollId user uses scroll id to get next page
+     * @param scrollId cursor returned with the previous page, to get the next page
      * @param term     user input term to be searched in Elastic Search DB
      * @param pageNo   user gives starting page number
      * @param pageSize user gives size for each search
@@ -115,124 +100,42 @@ public class QueryController {
                                @RequestParam(required = false, defaultValue = "0") Integer pageNo,
                                @RequestParam(required = false, defaultValue = "10") Integer pageSize) {
 
-        if (!this.springESConfig.getEnable()) {
-            return ESUtil.createMockSearchResult();
-        }
-
         String username = MDC.get(UserClient.USER_NAME_KEY);
-        SearchScrollHits<SearchIndex> scroll;
-        ShareItemIds shareItemIds;
-        if (scrollId == null || scrollId.length() == 0) {
-            List<ProjectItemModel> projectItemModels = sharedProjectItemDaoJpa.
-                    getSharedProjectItems(username, null);
-            Map<ContentType, List<Long>> sharedContentIds = this.getContentIdsFromItems(projectItemModels);
-            List<String> sharedProjectItemIds = generateSharedProjectItemIds(
-                    projectItemModels, sharedContentIds);
-
-            Map<ContentType, Set<Long>> projectItemIdMap = getProjectItemIds(sharedProjectItemIds);
-            scroll = searchIndexDaoJpa.search(username, term, sharedProjectItemIds, pageNo, pageSize);
-            scrollId = scroll.getScrollId();
-            shareItemIds = new ShareItemIds(scrollId, projectItemIdMap.getOrDefault(ContentType.NOTE, Collections.emptySet()),
-                    projectItemIdMap.getOrDefault(ContentType.TASK, Collections.emptySet()));
-            redisShareItemIdRepository.save(shareItemIds);
-        } else {
-            scroll = searchIndexDaoJpa.search(scrollId);
-            Optional<ShareItemIds> option = redisShareItemIdRepository.findById(scrollId);
-            if (!option.isPresent()) {
-                throw new IllegalStateException("ScrollId is not stored");
+        SharedSearchItems sharedItems = this.sharedSearchItemCache.get(username);
+        List<Object> searchAfter = null;
+        if (scrollId != null && scrollId.length() != 0) {
+            SearchCursor cursor = SearchCursor.decode(scrollId);
+            if (!Objects.equals(cursor.getShareVersion(), sharedItems.getVersion())) {
+                throw new BadRequestException("Shared items changed, please search again");
             }
-            shareItemIds = option.get();
-            scrollId = scroll.getScrollId();
-            redisShareItemIdRepository.save(new ShareItemIds(
-                    scrollId, shareItemIds.getSharedNoteIds(), shareItemIds.getSharedTaskIds()
-            ));
+            searchAfter = cursor.getSortValues();
         }
 
-        if (scroll == null) {
-            throw new IllegalStateException("SearchScrollHits is null");
-        }
-
-        List<SearchHit<SearchIndex>> searchResultList = new ArrayList<>();
-        if (scroll.hasSearchHits()) {
-            searchResultList.addAll(scroll.getSearchHits());
+        SearchHits<SearchIndex> hits = searchIndexDaoJpa.search(username, term, sharedItems.getSearchIndexIds(),
+                searchAfter, pageNo, pageSize);
+        List<SearchHit<SearchIndex>> searchResultList = hits.getSearchHits();
+        if (!searchResultList.isEmpty()) {
+            // the next page starts after the last hit of this one, past the end the cursor stays put
+            scrollId = new SearchCursor(searchResultList.get(searchResultList.size() - 1).getSortValues(),
+                    sharedItems.getVersion()).encode();
         }
 
         List<SearchIndex> invalidResults = new ArrayList<>();
         List<SearchResultItem> validResults = search(username, invalidResults, searchResultList,
-                shareItemIds.getSharedNoteIds(), shareItemIds.getSharedTaskIds());
+                sharedItems.getSharedNoteIds(), sharedItems.getSharedTaskIds());
 
-        // Batch remove all invalid results from ElasticSearch using notification event queue
-        notificationService.deleteESDocument(new RemoveElasticsearchDocumentEvent(
-                invalidResults.stream().map(SearchIndex::getId).collect(Collectors.toList())));
+        // Batch remove all invalid results from ElasticSearch through the bulk search index pipeline
+        searchIndexDaoJpa.deleteSearchIndices(invalidResults);
 
         SearchResult validSearchResult = new SearchResult();
         validSearchResult.setScrollId(scrollId);
         validSearchResult.setSearchResultItemList(validResults);
-        validSearchResult.setTotalHits(scroll.getTotalHits());
-        validSearchResult.setHasSearchHits(scroll.hasSearchHits());
+        validSearchResult.setTotalHits(hits.getTotalHits());
+        validSearchResult.setHasSearchHits(hits.hasSearchHits());
 
         return validSearchResult;
     }
 
-    // input: task 1, task 2, note 5, note 6
-    // task 1 -> content 1 3
-    // task 2 -> 5, 7
-    // note 5 -> 1, 4
-    // note 6 -> 7, 9, 10
-    // => <ContentType.TASK, [1,2]>, <ContentType.NOTE, [5,6]>
-    // => <ContentType.TASK, [1,3,5,7]>, <ContentType.NOTE, [1,4,7,9,10]>
-    private Map<ContentType, List<Long>> getContentIdsFromItems(List<ProjectItemModel> projectItemModels) {
-        Map<ContentType, List<Long>> m = new HashMap<>();
-        projectItemModels.forEach(item ->
-                m.computeIfAbsent(item.getContentType(), k -> new ArrayList<>()).add(item.getId()));
-        m.forEach((k, v) -> {
-            // item.getId() -> content ids
-            switch (k) {
-                case NOTE:
-                    List<Long> noteContentIds = this.noteContentRepository.findAllByNoteIds(v);
-                    v.clear();
-                    v.addAll(noteContentIds);
-                    break;
-                case TASK:
-                    List<Long> taskContentIds = this.taskContentRepository.findAllByTaskIds(v);
-                    v.clear();
-                    v.addAll(taskContentIds);
-                    break;
-                default:
-            }
-        });
-        return m;
-    }
-
-    private List<String> generateSharedProjectItemIds(List<ProjectItemModel> items,
-                                                      Map<ContentType, List<Long>> contents) {
-        List<String> ret = new ArrayList<>();
-        for (ProjectItemModel item : items) {
-            ret.add(item.getContentType().name().toLowerCase() + SEARCH_INDEX_SPLITTER + item.getId());
-        }
-
-        contents.forEach((k, v) -> {
-            for (Long id : v) {
-                ret.add(k.name().toLowerCase() + "_content" + SEARCH_INDEX_SPLITTER + id);
-            }
-        });
-        return ret;
-    }
-
-    private Map<ContentType, Set<Long>> getProjectItemIds(List<String> sharedProjectItemIds) {
-        Map<ContentType, Set<Long>> m = new HashMap<>();
-        sharedProjectItemIds.forEach(id -> {
-                    int index = id.indexOf(SEARCH_INDEX_SPLITTER);
-                     String contentType = id.substring(0, index).toUpperCase();
-                    if (contentType.equals(ContentType.NOTE.name())
-                            ||  contentType.equals(ContentType.TASK.name()))
-                    m.computeIfAbsent(ContentType.valueOf(contentType), k -> new HashSet<>())
-                            .add(Long.valueOf(id.substring(index + 1)));
-                }
-        );
-        return m;
-    }
-
     /**
      * Search requested term in elastic search and add invalid results to invalid list
      *
@@ -255,6 +158,8 @@ public class QueryController {
         final Set<Long> shareTasks = shareTaskIds;
         // Created a Map to group search result to the same id
         Map<String, SearchResultItem> results = new HashMap<>();
+        Map<String, String> projectItemNames = validateSearchResults(searchResultList.stream()
+                .map(SearchHit::getContent).collect(Collectors.toList()), username);
 
         searchResultList.forEach(searchHit -> {
             SearchIndex index = searchHit.getContent();
@@ -262,7 +167,7 @@ public class QueryController {
             String projectItemId = isContent ? index.getParentId() : index.getId();
 
             // If search result is not present in database, add result to invalid results list
-            String projectItemName = validateSearchResult(index, username);
+            String projectItemName = projectItemNames.get(index.getId());
             if (projectItemName == null) {
                 invalid.add(index);
                 return;
@@ -298,40 +203,49 @@ public class QueryController {
     }
 
     /**
-     * Validate search result still exists.
+     * Validate search results still exist and are accessible, in a batch.
      * <p>
-     * 1. Determine the search index type.
-     * - If type is NAME, search id in project item repo
-     * - If type is CONTENT, search content in project content repo and search its parent in project item repo
-     * 2. Return project item name, if result is valid. Otherwise, return null.
+     * 1. Parse hit ids and group them by project item type, into project item ids, content ids and the
+     * project item ids of contents.
+     * 2. Resolve each group with one ProjectItemDaoJpa call, which loads items and contents by id and checks
+     * access once per project.
      *
-     * @param searchIndex the target search index
-     * @param username    the requester username
-     * @return the project item name of the search index
+     * @param searchIndices the target search indices
+     * @param username      the requester username
+     * @return Map<String, String> - search index id to project item name, of valid search indices only
      */
-    private String validateSearchResult(SearchIndex searchIndex, String username) {
-        Pair<String, Long> searchIndexPair = parseSearchIndexInfo(searchIndex.getId());
-        String searchIndexType = searchIndexPair.getFirst();
-        Long searchIndexId = searchIndexPair.getSecond();
-
-        // If content type contains suffix as CONTENT
-        boolean isContent = searchIndexType.endsWith(CONTENT_TYPE_SUFFIX);
-
-        ProjectItemDaoJpa projectItemDaoJpa = getProjectItemDao(searchIndexType);
-
-        try {
+    private Map<String, String> validateSearchResults(List<SearchIndex> searchIndices, String username) {
+        Map<String, SearchHitIds> idsByType = new HashMap<>();
+        for (SearchIndex searchIndex : searchIndices) {
+            Pair<String, Long> searchIndexPair = parseSearchIndexInfo(searchIndex.getId());
+            String searchIndexType = searchIndexPair.getFirst();
+            // If content type contains suffix as CONTENT
+            boolean isContent = searchIndexType.endsWith(CONTENT_TYPE_SUFFIX);
+            String type = isContent ? searchIndexType.substring(
+                    0, searchIndexType.length() - CONTENT_TYPE_SUFFIX.length() - 1) : searchIndexType;
+            SearchHitIds ids = idsByType.computeIfAbsent(type, k -> new SearchHitIds());
             if (isContent) {
-                if (projectItemDaoJpa.getContent(searchIndexId, username) == null)
-                    return null;
-
-                searchIndexId = parseSearchIndexInfo(searchIndex.getParentId()).getSecond();
+                if (searchIndex.getParentId() == null) {
+                    continue;
+                }
+                ids.contentIds.add(searchIndexPair.getSecond());
+                ids.parentIds.add(parseSearchIndexInfo(searchIndex.getParentId()).getSecond());
+            } else {
+                ids.projectItemIds.add(searchIndexPair.getSecond());
             }
-
-            // If ResourceNotFound or NullPointer exception is thrown, return null
-            return projectItemDaoJpa.getProjectItem(searchIndexId, username).getName();
-        } catch (Exception ex) {
-            return null;
         }
+
+        Map<String, String> names = new HashMap<>();
+        idsByType.forEach((type, ids) -> {
+            try {
+                names.putAll(getProjectItemDao(type).getSearchHitNames(
+                        ids.projectItemIds, ids.contentIds, ids.parentIds, username));
+            } catch (Exception ex) {
+                // results of an unknown type are invalid
+                LOGGER.error("Failed to validate search results of type " + type, ex);
+            }
+        });
+        return names;
     }
 
     /**
@@ -357,4 +271,11 @@ public class QueryController {
                 throw new IllegalArgumentException("Cannot recognize input type");
         }
     }
+
+    private static final class SearchHitIds {
+        private final Set<Long> projectItemIds = new HashSet<>();
+        private final Set<Long> contentIds = new HashSet<>();
+        // project item ids of contents
+        private final Set<Long> parentIds = new HashSet<>();
+    }
 }
@@ -9,12 +9,14 @@ import com.bulletjournal.daemon.Reminder;
 import com.bulletjournal.daemon.models.ReminderRecord;
 import com.bulletjournal.exceptions.BadRequestException;
 import com.bulletjournal.exceptions.UnAuthorizedException;
+import com.bulletjournal.notifications.SystemUpdatesNotifier;
 import com.bulletjournal.redis.RedisEtagDaoJpa;
 import com.bulletjournal.redis.models.Etag;
 import com.bulletjournal.redis.models.EtagType;
 import com.bulletjournal.repository.*;
 import com.bulletjournal.repository.factory.ProjectItemDaos;
 import com.bulletjournal.repository.models.ProjectItemModel;
+import com.bulletjournal.repository.models.TaskOccurrence;
 import com.bulletjournal.util.StringUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -27,6 +29,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -41,11 +44,13 @@ import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
 @RestController
 public class SystemController {
     public static final String UPDATES_ROUTE = "/api/system/updates";
+    public static final String UPDATES_WAIT_ROUTE = "/api/system/updates/wait";
     public static final String PUBLIC_ITEM_ROUTE_PREFIX = "/api/public/items/";
     public static final String PUBLIC_ITEM_ROUTE = PUBLIC_ITEM_ROUTE_PREFIX + "{itemId}";
     private static final String CONTACTS_ROUTE = "/api/contacts";
     private static final String SHARED_ITEM_SET_LABELS_ROUTE = "/api/sharedItems/{itemId}/setLabels";
     private static final Logger LOGGER = LoggerFactory.getLogger(SystemController.class);
+    private static final long UPDATES_WAIT_TIMEOUT_MILLIS = 30000;
 
     @Autowired
     private ProjectDaoJpa projectDaoJpa;
@@ -89,6 +94,9 @@ public class SystemController {
     @Autowired
     private Reminder reminder;
 
+    @Autowired
+    private SystemUpdatesNotifier systemUpdatesNotifier;
+
     @GetMapping(UPDATES_ROUTE)
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public SystemUpdates getUpdates(@RequestParam(name = "targets", required = false) String targets,
@@ -108,38 +116,55 @@ public class SystemController {
         String remindingTaskEtag = null;
         List<Task> remindingTasks = Collections.emptyList();
         List<Etag> cachingEtags = new ArrayList<>();
-
-        if (targetEtags == null || targetEtags.contains("projectsEtag")) {
-            Projects projects = this.projectDaoJpa.getProjects(username);
-            ownedProjectsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                    EtagGenerator.HashType.TO_HASHCODE,
-                    projects.getOwned());
-            sharedProjectsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                    EtagGenerator.HashType.TO_HASHCODE,
-                    projects.getShared());
+        boolean projectsTargeted = targetEtags == null || targetEtags.contains("projectsEtag");
+        boolean notificationsTargeted = targetEtags == null || targetEtags.contains("notificationsEtag");
+        boolean groupsTargeted = targetEtags == null || targetEtags.contains("groupsEtag");
+
+        // Look up all etags from cache at once
+        List<String> indexes = new ArrayList<>();
+        if (projectsTargeted) {
+            indexes.add(Etag.toIndex(username, EtagType.OWNED_PROJECTS));
+            indexes.add(Etag.toIndex(username, EtagType.SHARED_PROJECTS));
         }
-        if (targetEtags == null || targetEtags.contains("notificationsEtag")) {
-
-            // Look up etag from cache
-            Etag cache = this.redisEtagDaoJpa.findEtagsByIndex(username, EtagType.NOTIFICATION);
-
-            if (cache == null) {
+        if (notificationsTargeted) {
+            indexes.add(Etag.toIndex(username, EtagType.NOTIFICATION));
+        }
+        if (groupsTargeted) {
+            indexes.add(Etag.toIndex(username, EtagType.GROUP));
+        }
+        if (projectId != null) {
+            indexes.add(Etag.toIndex(projectId.toString(), EtagType.PROJECT_TASKS));
+            indexes.add(Etag.toIndex(projectId.toString(), EtagType.PROJECT_NOTES));
+        }
+        Map<String, String> cache = this.redisEtagDaoJpa.findEtagsByIndexes(indexes);
+
+        if (projectsTargeted) {
+            ownedProjectsEtag = cache.get(Etag.toIndex(username, EtagType.OWNED_PROJECTS));
+            sharedProjectsEtag = cache.get(Etag.toIndex(username, EtagType.SHARED_PROJECTS));
+            if (ownedProjectsEtag == null || sharedProjectsEtag == null) {
+                Projects projects = this.projectDaoJpa.getProjects(username);
+                ownedProjectsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
+                        EtagGenerator.HashType.TO_HASHCODE,
+                        projects.getOwned());
+                sharedProjectsEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
+                        EtagGenerator.HashType.TO_HASHCODE,
+                        projects.getShared());
+                cachingEtags.add(new Etag(username, EtagType.OWNED_PROJECTS, ownedProjectsEtag));
+                cachingEtags.add(new Etag(username, EtagType.SHARED_PROJECTS, sharedProjectsEtag));
+            }
+        }
+        if (notificationsTargeted) {
+            notificationsEtag = cache.get(Etag.toIndex(username, EtagType.NOTIFICATION));
+            if (notificationsEtag == null) {
                 notificationsEtag = this.notificationDaoJpa.getUserEtag(username);
                 cachingEtags.add(new Etag(username, EtagType.NOTIFICATION, notificationsEtag));
-            } else {
-                notificationsEtag = cache.getEtag();
             }
         }
-        if (targetEtags == null || targetEtags.contains("groupsEtag")) {
-
-            // Look up etag from cache
-            Etag cache = this.redisEtagDaoJpa.findEtagsByIndex(username, EtagType.GROUP);
-
-            if (cache == null) {
+        if (groupsTargeted) {
+            groupsEtag = cache.get(Etag.toIndex(username, EtagType.GROUP));
+            if (groupsEtag == null) {
                 groupsEtag = this.groupDaoJpa.getUserEtag(username);
                 cachingEtags.add(new Etag(username, EtagType.GROUP, groupsEtag));
-            } else {
-                groupsEtag = cache.getEtag();
             }
         }
 
@@ -148,16 +173,32 @@ public class SystemController {
                 Project project = this.projectDaoJpa.getProject(projectId, username).toPresentationModel();
                 switch (project.getProjectType()) {
                     case TODO:
-                        List<Task> taskList = this.taskDaoJpa.getTasks(projectId, username);
-                        tasksEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                                EtagGenerator.HashType.TO_HASHCODE,
-                                taskList);
+                        // items of shared project depend on requester, so it is not cached
+                        tasksEtag = project.isShared() ? null :
+                                cache.get(Etag.toIndex(projectId.toString(), EtagType.PROJECT_TASKS));
+                        if (tasksEtag == null) {
+                            List<Task> taskList = this.taskDaoJpa.getTasks(projectId, username);
+                            tasksEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
+                                    EtagGenerator.HashType.TO_HASHCODE,
+                                    taskList);
+                            if (!project.isShared()) {
+                                cachingEtags.add(new Etag(projectId.toString(), EtagType.PROJECT_TASKS, tasksEtag));
+                            }
+                        }
                         break;
                     case NOTE:
-                        List<Note> noteList = this.noteDaoJpa.getNotes(projectId, username);
-                        notesEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
-                                EtagGenerator.HashType.TO_HASHCODE,
-                                noteList);
+                        // items of shared project depend on requester, so it is not cached
+                        notesEtag = project.isShared() ? null :
+                                cache.get(Etag.toIndex(projectId.toString(), EtagType.PROJECT_NOTES));
+                        if (notesEtag == null) {
+                            List<Note> noteList = this.noteDaoJpa.getNotes(projectId, username);
+                            notesEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
+                                    EtagGenerator.HashType.TO_HASHCODE,
+                                    noteList);
+                            if (!project.isShared()) {
+                                cachingEtags.add(new Etag(projectId.toString(), EtagType.PROJECT_NOTES, notesEtag));
+                            }
+                        }
                         break;
                     default:
                         throw new IllegalArgumentException();
@@ -176,7 +217,7 @@ public class SystemController {
             List<ReminderRecord> reminderRecordsClone = reminderRecords.stream()
                     .map(reminderRecord -> reminderRecord.clone()).collect(Collectors.toList());
             List<Task> tasks = this.reminder.getRemindingTasks(reminderRecordsClone, startTime)
-                    .stream().map(t -> t.toPresentationModel()).collect(Collectors.toList());
+                    .stream().map(TaskOccurrence::toPresentationModel).collect(Collectors.toList());
             remindingTasks = this.labelDaoJpa.getLabelsForProjectItemList(tasks);
             remindingTaskEtag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
                     EtagGenerator.HashType.TO_HASHCODE,
@@ -187,7 +228,7 @@ public class SystemController {
         }
 
         if (cachingEtags.size() > 0) {
-            this.redisEtagDaoJpa.batchCache(cachingEtags);
+            this.redisEtagDaoJpa.batchCacheIfAbsent(cachingEtags);
         }
 
         SystemUpdates systemUpdates = new SystemUpdates();
@@ -202,6 +243,73 @@ public class SystemController {
         return systemUpdates;
     }
 
+    /**
+     * Long-poll for system updates.
+     * <p>
+     * Returns immediately with changed targets if any given etag is stale, otherwise parks the request until
+     * an etag of the requester changes or a task reminder is due. Returns empty list on timeout.
+     * Client then calls {@link #UPDATES_ROUTE} with returned targets.
+     */
+    @GetMapping(UPDATES_WAIT_ROUTE)
+    public DeferredResult<List<String>> waitForUpdates(
+            @RequestParam(name = "projectId", required = false) Long projectId,
+            @RequestParam(name = "ownedProjectsEtag", required = false) String ownedProjectsEtag,
+            @RequestParam(name = "sharedProjectsEtag", required = false) String sharedProjectsEtag,
+            @RequestParam(name = "notificationsEtag", required = false) String notificationsEtag,
+            @RequestParam(name = "groupsEtag", required = false) String groupsEtag,
+            @RequestParam(name = "tasksEtag", required = false) String tasksEtag,
+            @RequestParam(name = "notesEtag", required = false) String notesEtag) {
+        String username = MDC.get(UserClient.USER_NAME_KEY);
+
+        // key -> target, key -> etag known by client
+        Map<String, String> keyTargets = new HashMap<>();
+        Map<String, String> clientEtags = new HashMap<>();
+        addWaitingKey(keyTargets, clientEtags, Etag.toIndex(username, EtagType.OWNED_PROJECTS),
+                "projectsEtag", ownedProjectsEtag);
+        addWaitingKey(keyTargets, clientEtags, Etag.toIndex(username, EtagType.SHARED_PROJECTS),
+                "projectsEtag", sharedProjectsEtag);
+        addWaitingKey(keyTargets, clientEtags, Etag.toIndex(username, EtagType.NOTIFICATION),
+                "notificationsEtag", notificationsEtag);
+        addWaitingKey(keyTargets, clientEtags, Etag.toIndex(username, EtagType.GROUP),
+                "groupsEtag", groupsEtag);
+        addWaitingKey(keyTargets, clientEtags, SystemUpdatesNotifier.getReminderKey(username),
+                "taskReminders", null);
+        if (projectId != null) {
+            try {
+                this.projectDaoJpa.getProject(projectId, username);
+                addWaitingKey(keyTargets, clientEtags, Etag.toIndex(projectId.toString(), EtagType.PROJECT_TASKS),
+                        "tasksEtag", tasksEtag);
+                addWaitingKey(keyTargets, clientEtags, Etag.toIndex(projectId.toString(), EtagType.PROJECT_NOTES),
+                        "notesEtag", notesEtag);
+            } catch (Exception ex) {
+                LOGGER.info("Skipping waiting on project {}", projectId);
+            }
+        }
+
+        // register before checking etags, so a change signaled in between still resolves the request
+        DeferredResult<List<String>> result = this.systemUpdatesNotifier.await(keyTargets,
+                UPDATES_WAIT_TIMEOUT_MILLIS);
+
+        // etags changed before this request arrives
+        Map<String, String> cache = this.redisEtagDaoJpa.findEtagsByIndexes(new ArrayList<>(clientEtags.keySet()));
+        List<String> changedTargets = clientEtags.entrySet().stream()
+                .filter(e -> cache.containsKey(e.getKey()) && !cache.get(e.getKey()).equals(e.getValue()))
+                .map(e -> keyTargets.get(e.getKey())).distinct().collect(Collectors.toList());
+        if (!changedTargets.isEmpty()) {
+            // no-op if a signal has already resolved the request
+            result.setResult(changedTargets);
+        }
+        return result;
+    }
+
+    private static void addWaitingKey(Map<String, String> keyTargets, Map<String, String> clientEtags,
+                                      String key, String target, String clientEtag) {
+        keyTargets.put(key, target);
+        if (StringUtils.isNotBlank(clientEtag)) {
+            clientEtags.put(key, clientEtag);
+        }
+    }
+
     @GetMapping(PUBLIC_ITEM_ROUTE)
     public ResponseEntity<?> getPublicProjectItem(
             @NotNull @PathVariable String itemId) {
@@ -8,6 +8,7 @@ import com.bulletjournal.controller.utils.EtagGenerator;
 import com.bulletjournal.es.ESUtil;
 import com.bulletjournal.exceptions.UnAuthorizedException;
 import com.bulletjournal.notifications.*;
+import com.bulletjournal.repository.LabelDaoJpa;
 import com.bulletjournal.repository.ProjectDaoJpa;
 import com.bulletjournal.repository.TaskDaoJpa;
 import com.bulletjournal.repository.TaskRepository;
@@ -15,6 +16,7 @@ import com.bulletjournal.repository.models.CompletedTask;
 import com.bulletjournal.repository.models.ContentModel;
 import com.bulletjournal.repository.models.ProjectItemModel;
 import com.bulletjournal.repository.models.TaskContent;
+import com.bulletjournal.repository.models.TaskOccurrence;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.MDC;
@@ -22,6 +24,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
@@ -68,6 +72,9 @@ public class TaskController {
     @Autowired
     private TaskRepository taskRepository;
 
+    @Autowired
+    private LabelDaoJpa labelDaoJpa;
+
     @Autowired
     private NotificationService notificationService;
 
@@ -106,7 +113,9 @@ public class TaskController {
     private ResponseEntity<List<Task>> getTasksByOrder(Long projectId, String startDate, String endDate,
             String timezone) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
-        List<Task> tasks = this.taskDaoJpa.getTasksByOrder(projectId, username, startDate, endDate, timezone);
+        List<Task> tasks = this.labelDaoJpa.getLabelsForProjectItemList(
+                this.taskDaoJpa.getTasksByOrder(projectId, username, startDate, endDate, timezone).stream()
+                        .map(TaskOccurrence::toPresentationModel).collect(Collectors.toList()));
         return ResponseEntity.ok().body(ProjectItem.addAvatar(tasks, this.userClient));
     }
 
@@ -125,6 +134,7 @@ public class TaskController {
 
     @PostMapping(TASKS_ROUTE)
     @ResponseStatus(HttpStatus.CREATED)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Task createTask(@NotNull @PathVariable Long projectId, @Valid @RequestBody CreateTaskParams task) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         com.bulletjournal.repository.models.Task createdTask = taskDaoJpa.create(projectId, username, task);
@@ -137,6 +147,7 @@ public class TaskController {
     }
 
     @PatchMapping(TASK_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public ResponseEntity<List<Task>> updateTask(@NotNull @PathVariable Long taskId,
             @Valid @RequestBody UpdateTaskParams updateTaskParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -166,6 +177,7 @@ public class TaskController {
     }
 
     @PostMapping(COMPLETE_TASK_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Task completeTask(@NotNull @PathVariable Long taskId, @RequestBody Optional<String> dateTime) {
         CompletedTask task = completeSingleTask(taskId, dateTime.orElse(null));
 
@@ -187,6 +199,7 @@ public class TaskController {
     }
 
     @PostMapping(COMPLETE_TASKS_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public ResponseEntity<List<Task>> completeTasks(@NotNull @PathVariable Long projectId,
             @RequestParam List<Long> tasks) {
 
@@ -200,6 +213,7 @@ public class TaskController {
     }
 
     @PostMapping(SET_TASK_STATUS_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public ResponseEntity<List<Task>> setTaskStatus(@NotNull @PathVariable Long taskId,
             @RequestBody SetTaskStatusParams setTaskStatusParams) {
 
@@ -225,6 +239,7 @@ public class TaskController {
     }
 
     @PostMapping(UNCOMPLETE_TASK_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Task uncompleteTask(@NotNull @PathVariable Long taskId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         Pair<Long, CompletedTask> res = this.taskDaoJpa.uncomplete(username, taskId);
@@ -263,6 +278,7 @@ public class TaskController {
     }
 
     @DeleteMapping(TASK_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public ResponseEntity<List<Task>> deleteTask(@NotNull @PathVariable Long taskId) {
         Long projectId = deleteSingleTask(taskId);
         return getTasks(projectId, null, null, null, null, null);
@@ -289,6 +305,7 @@ public class TaskController {
     }
 
     @DeleteMapping(TASKS_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public ResponseEntity<List<Task>> deleteTasks(@NotNull @PathVariable Long projectId,
             @NotNull @RequestParam List<Long> tasks) {
         // curl -X DELETE
@@ -324,6 +341,7 @@ public class TaskController {
     }
 
     @DeleteMapping(COMPLETED_TASK_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public List<Task> deleteCompletedTask(@NotNull @PathVariable Long taskId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         Task task = getCompletedTask(taskId);
@@ -335,6 +353,7 @@ public class TaskController {
     }
 
     @PutMapping(TASK_SET_LABELS_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Task setLabels(@NotNull @PathVariable Long taskId, @NotNull @RequestBody List<Long> labels) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         this.notificationService.inform(this.taskDaoJpa.setLabels(username, taskId, labels));
@@ -342,6 +361,7 @@ public class TaskController {
     }
 
     @PostMapping(MOVE_TASK_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public void moveTask(@NotNull @PathVariable Long taskId,
             @NotNull @RequestBody MoveProjectItemParams moveProjectItemParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -355,6 +375,7 @@ public class TaskController {
     }
 
     @PostMapping(SHARE_TASK_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public SharableLink shareTask(@NotNull @PathVariable Long taskId,
             @NotNull @RequestBody ShareProjectItemParams shareProjectItemParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -390,6 +411,7 @@ public class TaskController {
         this.taskDaoJpa.removeShared(taskId, username);
     }
     @PostMapping(ADD_CONTENT_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Content addContent(@NotNull @PathVariable Long taskId,
             @NotNull @RequestBody CreateContentParams createContentParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -397,7 +419,7 @@ public class TaskController {
         Pair<ContentModel, ProjectItemModel> res = this.taskDaoJpa.addContent(taskId, username,
                 new TaskContent(createContentParams.getText()));
 
-        Content createdContent = res.getLeft().toPresentationModel();
+        Content createdContent = this.taskDaoJpa.toPresentationModel((TaskContent) res.getLeft());
         String taskName = res.getRight().getName();
         Long projectId = res.getRight().getProject().getId();
         String projectName = res.getRight().getProject().getName();
@@ -412,8 +434,7 @@ public class TaskController {
     @GetMapping(CONTENTS_ROUTE)
     public List<Content> getContents(@NotNull @PathVariable Long taskId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
-        return Content.addOwnerAvatar(this.taskDaoJpa.getContents(taskId, username).stream()
-                .map(t -> t.toPresentationModel()).collect(Collectors.toList()), this.userClient);
+        return Content.addOwnerAvatar(this.taskDaoJpa.toPresentationModels(this.taskDaoJpa.getContents(taskId, username)), this.userClient);
     }
 
     @GetMapping(COMPLETED_TASK_CONTENTS_ROUTE)
@@ -424,6 +445,7 @@ public class TaskController {
     }
 
     @DeleteMapping(CONTENT_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public List<Content> deleteContent(@NotNull @PathVariable Long taskId, @NotNull @PathVariable Long contentId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         List<String> deleteESDocumentIds = this.taskDaoJpa.getDeleteESDocumentIdsForContent(username, contentId);
@@ -438,6 +460,7 @@ public class TaskController {
     }
 
     @PatchMapping(CONTENT_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public List<Content> updateContent(@NotNull @PathVariable Long taskId, @NotNull @PathVariable Long contentId,
             @NotNull @RequestBody UpdateContentParams updateContentParams, @RequestHeader(IF_NONE_MATCH) Optional<String> etag) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -523,6 +546,6 @@ public class TaskController {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         TaskContent content = this.taskDaoJpa.patchRevisionContentHistory(
                 contentId, taskId, username, revisionContentsParams.getRevisionContents(), etag);
-        return content == null ? new Content() : content.toPresentationModel();
+        return content == null ? new Content() : this.taskDaoJpa.toPresentationModel(content);
     }
 }
\ No newline at end of file
@@ -26,6 +26,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
@@ -142,6 +144,7 @@ public class TransactionController {
 
     @PostMapping(TRANSACTIONS_ROUTE)
     @ResponseStatus(HttpStatus.CREATED)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Transaction createTransaction(@NotNull @PathVariable Long projectId,
                                          @Valid @RequestBody CreateTransactionParams createTransactionParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -165,6 +168,7 @@ public class TransactionController {
     }
 
     @PatchMapping(TRANSACTION_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Transaction updateTransaction(@NotNull @PathVariable Long transactionId,
                                          @Valid @RequestBody UpdateTransactionParams updateTransactionParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -188,6 +192,7 @@ public class TransactionController {
     }
 
     @DeleteMapping(TRANSACTION_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public void deleteTransaction(@NotNull @PathVariable Long transactionId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
 
@@ -208,6 +213,7 @@ public class TransactionController {
     }
 
     @DeleteMapping(TRANSACTIONS_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public void deleteTransactions(@NotNull @PathVariable Long projectId,
                                    @NotNull @RequestParam List<Long> transactions) {
         // curl -X DELETE
@@ -244,6 +250,7 @@ public class TransactionController {
     }
 
     @PutMapping(TRANSACTION_SET_LABELS_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Transaction setLabels(@NotNull @PathVariable Long transactionId,
                                  @NotNull @RequestBody List<Long> labels) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -252,6 +259,7 @@ public class TransactionController {
     }
 
     @PostMapping(MOVE_TRANSACTION_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public void moveTransaction(@NotNull @PathVariable Long transactionId,
                                 @NotNull @RequestBody MoveProjectItemParams moveProjectItemParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -268,6 +276,7 @@ public class TransactionController {
 
     @Deprecated
     @PostMapping(SHARE_TRANSACTION_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public String shareTransaction(@NotNull @PathVariable Long transactionId,
                                    @NotNull @RequestBody ShareProjectItemParams shareProjectItemParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -295,13 +304,14 @@ public class TransactionController {
     }
 
     @PostMapping(ADD_CONTENT_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Content addContent(@NotNull @PathVariable Long transactionId,
                               @NotNull @RequestBody CreateContentParams createContentParams) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         Pair<ContentModel, ProjectItemModel> res = this.transactionDaoJpa.addContent(transactionId, username,
                 new TransactionContent(createContentParams.getText()));
 
-        Content createdContent = res.getLeft().toPresentationModel();
+        Content createdContent = this.transactionDaoJpa.toPresentationModel((TransactionContent) res.getLeft());
         String transactionName = res.getRight().getName();
         Long projectId = res.getRight().getProject().getId();
         String projectName = res.getRight().getProject().getName();
@@ -319,12 +329,12 @@ public class TransactionController {
     public List<Content> getContents(@NotNull @PathVariable Long transactionId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         return Content.addOwnerAvatar(
-                this.transactionDaoJpa.getContents(transactionId, username).stream()
-                        .map(t -> t.toPresentationModel()).collect(Collectors.toList()),
+                this.transactionDaoJpa.toPresentationModels(this.transactionDaoJpa.getContents(transactionId, username)),
                 this.userClient);
     }
 
     @DeleteMapping(CONTENT_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public List<Content> deleteContent(@NotNull @PathVariable Long transactionId,
                                        @NotNull @PathVariable Long contentId) {
         String username = MDC.get(UserClient.USER_NAME_KEY);
@@ -343,6 +353,7 @@ public class TransactionController {
     }
 
     @PatchMapping(CONTENT_ROUTE)
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public List<Content> updateContent(@NotNull @PathVariable Long transactionId,
                                        @NotNull @PathVariable Long contentId,
                                        @NotNull @RequestBody UpdateContentParams updateContentParams, @RequestHeader(IF_NONE_MATCH) Optional<String> etag) {
@@ -376,6 +387,6 @@ public class TransactionController {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         TransactionContent content = this.transactionDaoJpa.patchRevisionContentHistory(
                 contentId, transactionId, username, revisionContentsParams.getRevisionContents(), etag);
-        return content == null ? new Content() : content.toPresentationModel();
+        return content == null ? new Content() : this.transactionDaoJpa.toPresentationModel(content);
     }
 }
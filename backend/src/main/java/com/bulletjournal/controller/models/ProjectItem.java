@@ -8,8 +8,12 @@ import com.google.gson.annotations.Expose;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public abstract class ProjectItem {
@@ -51,25 +55,66 @@ public abstract class ProjectItem {
 
     public static <T extends ProjectItem> List<T> addAvatar(
             List<T> projectItems, final UserClient userClient) {
-        projectItems.forEach(item -> addAvatar(item, userClient));
+        Set<String> usernames = new HashSet<>();
+        projectItems.forEach(item -> collectUsernames(item, usernames));
+        Map<String, User> users = userClient.getUsers(usernames);
+        projectItems.forEach(item -> setUsers(item, users));
         return projectItems;
     }
 
     public static <T extends ProjectItem> T addAvatar(T projectItem, UserClient userClient) {
-        projectItem.setOwner(userClient.getUser(projectItem.getOwner().getName()));
+        Set<String> usernames = new HashSet<>();
+        collectUsernames(projectItem, usernames);
+        setUsers(projectItem, userClient.getUsers(usernames));
+        return projectItem;
+    }
+
+    /**
+     * Collect owner, payer, assignees of item and its sub items, so users are resolved in one batch
+     */
+    public static void collectUsernames(ProjectItem projectItem, Collection<String> usernames) {
+        usernames.add(projectItem.getOwner().getName());
+        switch (projectItem.getContentType()) {
+            case TRANSACTION:
+                usernames.add(((Transaction) projectItem).getPayer().getName());
+                break;
+            case TASK:
+                Task task = ((Task) projectItem);
+                task.getAssignees().forEach(a -> usernames.add(a.getName()));
+                if (task.getSubTasks() != null) {
+                    for (Task subTask : task.getSubTasks()) {
+                        collectUsernames(subTask, usernames);
+                    }
+                }
+                break;
+            case NOTE:
+                Note note = (Note) projectItem;
+                if (note.getSubNotes() != null) {
+                    for (Note subNote : note.getSubNotes()) {
+                        collectUsernames(subNote, usernames);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid ContentType: " + projectItem.getContentType());
+        }
+    }
+
+    public static void setUsers(ProjectItem projectItem, Map<String, User> users) {
+        projectItem.setOwner(users.get(projectItem.getOwner().getName()));
         switch (projectItem.getContentType()) {
             case TRANSACTION:
                 Transaction transaction = ((Transaction) projectItem);
-                transaction.setPayer(userClient.getUser(transaction.getPayer().getName()));
+                transaction.setPayer(users.get(transaction.getPayer().getName()));
                 break;
             case TASK:
                 Task task = ((Task) projectItem);
                 task.setAssignees(
                         task.getAssignees().stream()
-                                .map(a -> userClient.getUser(a.getName())).collect(Collectors.toList()));
+                                .map(a -> users.get(a.getName())).collect(Collectors.toList()));
                 if (task.getSubTasks() != null) {
                     for (Task subTask : task.getSubTasks()) {
-                        addAvatar(subTask, userClient);
+                        setUsers(subTask, users);
                     }
                 }
                 break;
@@ -77,15 +122,13 @@ public abstract class ProjectItem {
                 Note note = (Note) projectItem;
                 if (note.getSubNotes() != null) {
                     for (Note subNote : note.getSubNotes()) {
-                        addAvatar(subNote, userClient);
+                        setUsers(subNote, users);
                     }
                 }
                 break;
             default:
                 throw new IllegalArgumentException("Invalid ContentType: " + projectItem.getContentType());
         }
-
-        return projectItem;
     }
 
     public abstract ContentType getContentType();
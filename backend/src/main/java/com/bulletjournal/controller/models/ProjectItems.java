@@ -7,7 +7,10 @@ import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.time.DayOfWeek;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ProjectItems {
 
@@ -32,10 +35,18 @@ public class ProjectItems {
 
     public static List<ProjectItems> addAvatar(
             List<ProjectItems> projectItems, final UserClient userClient) {
+        // resolve users of all days in one batch
+        Set<String> usernames = new HashSet<>();
         projectItems.forEach(items -> {
-            ProjectItem.addAvatar(items.getNotes(), userClient);
-            ProjectItem.addAvatar(items.getTasks(), userClient);
-            ProjectItem.addAvatar(items.getTransactions(), userClient);
+            items.getNotes().forEach(item -> ProjectItem.collectUsernames(item, usernames));
+            items.getTasks().forEach(item -> ProjectItem.collectUsernames(item, usernames));
+            items.getTransactions().forEach(item -> ProjectItem.collectUsernames(item, usernames));
+        });
+        Map<String, User> users = userClient.getUsers(usernames);
+        projectItems.forEach(items -> {
+            items.getNotes().forEach(item -> ProjectItem.setUsers(item, users));
+            items.getTasks().forEach(item -> ProjectItem.setUsers(item, users));
+            items.getTransactions().forEach(item -> ProjectItem.setUsers(item, users));
         });
         return projectItems;
     }
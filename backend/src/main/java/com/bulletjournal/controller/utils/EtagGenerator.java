@@ -1,22 +1,16 @@
 package com.bulletjournal.controller.utils;
 
-import org.springframework.util.DigestUtils;
-
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
-import java.util.zip.Adler32;
-import java.util.zip.Checksum;
 
 /**
  * Etag Generator Class contains generate Etag
  * <p>
  * - To_Hash Code: Merge Hash Code of args into one String to hashing
  * - To_String: Concatenate String of args to one String for hashing
+ * <p>
+ * Args are streamed into a reused {@link EtagHasher} instead of being concatenated
  */
 public class EtagGenerator {
 
@@ -50,56 +44,30 @@ public class EtagGenerator {
 
     @SafeVarargs
     public static <T> String generateEtag(HashAlgorithm hashAlg, HashType hashType, T... args) {
-        StringBuilder inputBuilder = new StringBuilder();
-        StringBuilder outputBuilder = new StringBuilder();
-
-        inputStreamBuilder(hashType, inputBuilder, args);
-
-        outputBuilder.append("\"0");
-
-        if (HashAlgorithm.MD5 == hashAlg) {
-            // MD5 Hash
-            try {
-                // Convert input string into Byte Array
-                InputStream inputStream = new ByteArrayInputStream(inputBuilder.toString().getBytes());
-                DigestUtils.appendMd5DigestAsHex(inputStream, outputBuilder);
-            } catch (IOException ex) {
-                throw new IllegalStateException(ex);
-            }
-        } else if (HashAlgorithm.SHA256 == hashAlg) {
-            // SHA256 Hash
-            try {
-                outputBuilder.append(
-                        bytesToHex(MessageDigest.getInstance("SHA3_256").digest(inputBuilder.toString().getBytes())));
-            } catch (NoSuchAlgorithmException ex) {
-                throw new IllegalArgumentException(ex);
-            }
-        } else if (HashAlgorithm.ADLER32 == hashAlg) {
-            // ALDER32 Hash
-            try {
-                Checksum checksum = new Adler32();
-                checksum.update(inputBuilder.toString().getBytes(), 0, inputBuilder.toString().getBytes().length);
-                outputBuilder.append(checksum.getValue());
-            } catch (Exception ex) {
-                throw new IllegalArgumentException(ex);
-            }
-        } else {
+        if (hashAlg == null) {
             // No Hash Function selected
-            outputBuilder = inputBuilder;
+            StringBuilder inputBuilder = new StringBuilder();
+            inputStreamBuilder(hashType, inputBuilder, args);
+            return inputBuilder.append('"').toString();
         }
 
-        outputBuilder.append('"' );
-        return outputBuilder.toString();
-    }
-
-    private static String bytesToHex(byte[] hash) {
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : hash) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) hexString.append('0' );
-            hexString.append(hex);
+        // Feed hash of every element into hasher without building the input string
+        EtagHasher hasher = EtagHasher.of(hashAlg);
+        try {
+            for (T arg : args) {
+                if (arg instanceof List<?> || arg instanceof Set<?>) {
+                    for (Object element : (Collection<?>) arg) {
+                        hasher.put(hashType, element);
+                    }
+                } else {
+                    hasher.put(hashType, arg);
+                }
+            }
+        } catch (RuntimeException ex) {
+            hasher.discard();
+            throw ex;
         }
-        return hexString.toString();
+        return hasher.etag();
     }
 
     public enum HashType {
@@ -107,6 +75,6 @@ public class EtagGenerator {
     }
 
     public enum HashAlgorithm {
-        MD5, ADLER32, SHA256
+        MD5, ADLER32, SHA256, XXHASH64
     }
 }
@@ -0,0 +1,335 @@
+package com.bulletjournal.controller.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.Adler32;
+
+/**
+ * Streaming hasher behind {@link EtagGenerator}
+ * <p>
+ * - Input is fed piece by piece and never concatenated into one String or byte array
+ * - ints and longs are fed as their decimal digits and Strings as UTF-8, so the etag equals the hash
+ * of the concatenated String that EtagGenerator used to build
+ * - Hashers are reused per thread, get one via {@link #of(EtagGenerator.HashAlgorithm)} and finish with
+ * {@link #etag()}, which resets it
+ */
+public abstract class EtagHasher {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<Map<EtagGenerator.HashAlgorithm, EtagHasher>> HASHERS =
+            ThreadLocal.withInitial(() -> new EnumMap<>(EtagGenerator.HashAlgorithm.class));
+
+    // input is buffered so that the underlying hash is updated with large chunks
+    private final byte[] buffer = new byte[1024];
+    private int bufferSize;
+    private boolean inUse;
+
+    public static EtagHasher of(EtagGenerator.HashAlgorithm hashAlg) {
+        EtagHasher hasher = HASHERS.get().computeIfAbsent(hashAlg, EtagHasher::create);
+        if (hasher.inUse) {
+            // nested use in the same thread, e.g. from toString() of an element
+            hasher = create(hashAlg);
+        }
+        hasher.inUse = true;
+        return hasher;
+    }
+
+    private static EtagHasher create(EtagGenerator.HashAlgorithm hashAlg) {
+        switch (hashAlg) {
+            case MD5:
+                return new DigestHasher("MD5");
+            case SHA256:
+                return new DigestHasher("SHA3-256");
+            case ADLER32:
+                return new Adler32Hasher();
+            case XXHASH64:
+                return new XxHash64Hasher();
+            default:
+                throw new IllegalArgumentException("Unsupported hash algorithm " + hashAlg);
+        }
+    }
+
+    protected abstract void update(byte[] bytes, int offset, int length);
+
+    protected abstract void appendDigest(StringBuilder output);
+
+    protected abstract void reset();
+
+    public EtagHasher putInt(int value) {
+        return putLong(value);
+    }
+
+    public EtagHasher putLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            return putString(Long.toString(value));
+        }
+        ensureRoom(20);
+        int digits = 1;
+        for (long bound = 10; digits < 19 && Math.abs(value) >= bound; bound *= 10) {
+            digits++;
+        }
+        if (value < 0) {
+            this.buffer[this.bufferSize++] = '-';
+        }
+        long remaining = Math.abs(value);
+        for (int position = this.bufferSize + digits - 1; position >= this.bufferSize; position--) {
+            this.buffer[position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        this.bufferSize += digits;
+        return this;
+    }
+
+    public EtagHasher putString(CharSequence value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            ensureRoom(4);
+            int c = value.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, value.charAt(++i));
+            } else if (Character.isSurrogate((char) c)) {
+                // unpaired surrogate is encoded as '?' like String.getBytes
+                c = '?';
+            }
+            if (c < 0x80) {
+                this.buffer[this.bufferSize++] = (byte) c;
+            } else if (c < 0x800) {
+                this.buffer[this.bufferSize++] = (byte) (0xc0 | (c >> 6));
+                this.buffer[this.bufferSize++] = (byte) (0x80 | (c & 0x3f));
+            } else if (c < 0x10000) {
+                this.buffer[this.bufferSize++] = (byte) (0xe0 | (c >> 12));
+                this.buffer[this.bufferSize++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                this.buffer[this.bufferSize++] = (byte) (0x80 | (c & 0x3f));
+            } else {
+                this.buffer[this.bufferSize++] = (byte) (0xf0 | (c >> 18));
+                this.buffer[this.bufferSize++] = (byte) (0x80 | ((c >> 12) & 0x3f));
+                this.buffer[this.bufferSize++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                this.buffer[this.bufferSize++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return this;
+    }
+
+    private void ensureRoom(int length) {
+        if (this.bufferSize + length > this.buffer.length) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        update(this.buffer, 0, this.bufferSize);
+        this.bufferSize = 0;
+    }
+
+    public <T> EtagHasher put(EtagGenerator.HashType hashType, T arg) {
+        if (hashType == EtagGenerator.HashType.TO_HASHCODE) {
+            return putInt(arg.hashCode());
+        }
+        return putString((arg instanceof String) ? (String) arg : arg.toString());
+    }
+
+    /**
+     * Finish hashing and reset this hasher for the next etag
+     *
+     * @return String - the quoted etag
+     */
+    public String etag() {
+        StringBuilder output = new StringBuilder(70);
+        output.append("\"0");
+        try {
+            flush();
+            appendDigest(output);
+        } finally {
+            discard();
+        }
+        output.append('"');
+        return output.toString();
+    }
+
+    /**
+     * Drop the input fed so far and release this hasher
+     */
+    public void discard() {
+        this.bufferSize = 0;
+        reset();
+        this.inUse = false;
+    }
+
+    private static void appendHex(StringBuilder output, byte[] bytes) {
+        for (byte b : bytes) {
+            output.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+        }
+    }
+
+    private static final class DigestHasher extends EtagHasher {
+        private final MessageDigest digest;
+
+        private DigestHasher(String algorithm) {
+            try {
+                this.digest = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalArgumentException(ex);
+            }
+        }
+
+        @Override
+        protected void update(byte[] bytes, int offset, int length) {
+            this.digest.update(bytes, offset, length);
+        }
+
+        @Override
+        protected void appendDigest(StringBuilder output) {
+            appendHex(output, this.digest.digest());
+        }
+
+        @Override
+        protected void reset() {
+            this.digest.reset();
+        }
+    }
+
+    private static final class Adler32Hasher extends EtagHasher {
+        private final Adler32 checksum = new Adler32();
+
+        @Override
+        protected void update(byte[] bytes, int offset, int length) {
+            this.checksum.update(bytes, offset, length);
+        }
+
+        @Override
+        protected void appendDigest(StringBuilder output) {
+            output.append(this.checksum.getValue());
+        }
+
+        @Override
+        protected void reset() {
+            this.checksum.reset();
+        }
+    }
+
+    /**
+     * XXH64 with seed 0, not cryptographic but several times faster than MD5
+     */
+    static final class XxHash64Hasher extends EtagHasher {
+        private static final long PRIME1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long PRIME3 = 0x165667B19E3779F9L;
+        private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+        private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+        private final byte[] stripe = new byte[32];
+        private int stripeSize;
+        private long totalLength;
+        private long v1;
+        private long v2;
+        private long v3;
+        private long v4;
+
+        XxHash64Hasher() {
+            reset();
+        }
+
+        private static long round(long acc, long input) {
+            return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+        }
+
+        private static long mergeRound(long acc, long value) {
+            return (acc ^ round(0, value)) * PRIME1 + PRIME4;
+        }
+
+        private static long readLong(byte[] bytes, int offset) {
+            return (readInt(bytes, offset) & 0xffffffffL) | ((readInt(bytes, offset + 4) & 0xffffffffL) << 32);
+        }
+
+        private static int readInt(byte[] bytes, int offset) {
+            return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8)
+                    | ((bytes[offset + 2] & 0xff) << 16) | ((bytes[offset + 3] & 0xff) << 24);
+        }
+
+        @Override
+        protected void update(byte[] bytes, int offset, int length) {
+            this.totalLength += length;
+            int end = offset + length;
+            if (this.stripeSize > 0) {
+                int fill = Math.min(length, 32 - this.stripeSize);
+                System.arraycopy(bytes, offset, this.stripe, this.stripeSize, fill);
+                this.stripeSize += fill;
+                offset += fill;
+                if (this.stripeSize < 32) {
+                    return;
+                }
+                consumeStripe(this.stripe, 0);
+                this.stripeSize = 0;
+            }
+            for (; offset + 32 <= end; offset += 32) {
+                consumeStripe(bytes, offset);
+            }
+            System.arraycopy(bytes, offset, this.stripe, 0, end - offset);
+            this.stripeSize = end - offset;
+        }
+
+        private void consumeStripe(byte[] bytes, int offset) {
+            this.v1 = round(this.v1, readLong(bytes, offset));
+            this.v2 = round(this.v2, readLong(bytes, offset + 8));
+            this.v3 = round(this.v3, readLong(bytes, offset + 16));
+            this.v4 = round(this.v4, readLong(bytes, offset + 24));
+        }
+
+        long digest() {
+            long hash;
+            if (this.totalLength >= 32) {
+                hash = Long.rotateLeft(this.v1, 1) + Long.rotateLeft(this.v2, 7)
+                        + Long.rotateLeft(this.v3, 12) + Long.rotateLeft(this.v4, 18);
+                hash = mergeRound(hash, this.v1);
+                hash = mergeRound(hash, this.v2);
+                hash = mergeRound(hash, this.v3);
+                hash = mergeRound(hash, this.v4);
+            } else {
+                hash = PRIME5;
+            }
+            hash += this.totalLength;
+
+            int position = 0;
+            for (; position + 8 <= this.stripeSize; position += 8) {
+                hash ^= round(0, readLong(this.stripe, position));
+                hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            }
+            if (position + 4 <= this.stripeSize) {
+                hash ^= (readInt(this.stripe, position) & 0xffffffffL) * PRIME1;
+                hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+                position += 4;
+            }
+            for (; position < this.stripeSize; position++) {
+                hash ^= (this.stripe[position] & 0xff) * PRIME5;
+                hash = Long.rotateLeft(hash, 11) * PRIME1;
+            }
+
+            hash ^= hash >>> 33;
+            hash *= PRIME2;
+            hash ^= hash >>> 29;
+            hash *= PRIME3;
+            hash ^= hash >>> 32;
+            return hash;
+        }
+
+        @Override
+        protected void appendDigest(StringBuilder output) {
+            long hash = digest();
+            for (int shift = 60; shift >= 0; shift -= 4) {
+                output.append(HEX[(int) (hash >>> shift) & 0xf]);
+            }
+        }
+
+        @Override
+        protected void reset() {
+            this.stripeSize = 0;
+            this.totalLength = 0;
+            this.v1 = PRIME1 + PRIME2;
+            this.v2 = PRIME2;
+            this.v3 = 0;
+            this.v4 = -PRIME1;
+        }
+    }
+}
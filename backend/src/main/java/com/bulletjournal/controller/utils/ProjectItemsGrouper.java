@@ -4,6 +4,7 @@ import com.bulletjournal.controller.models.ProjectItems;
 import com.bulletjournal.repository.models.AuditModel;
 import com.bulletjournal.repository.models.Note;
 import com.bulletjournal.repository.models.Task;
+import com.bulletjournal.repository.models.TaskOccurrence;
 import com.bulletjournal.repository.models.Transaction;
 import org.springframework.lang.Nullable;
 
@@ -37,6 +38,22 @@ public class ProjectItemsGrouper {
         ZonedDateTime z2 = ZonedDateTimeHelper.getEndTime(t2.getDueDate(), t2.getDueTime(), t2.getTimezone());
         return z1.compareTo(z2);
     };
+    public static final Comparator<TaskOccurrence> TASK_OCCURRENCE_COMPARATOR = (o1, o2) -> {
+        if (!o1.hasDueDate() && !o2.hasDueDate()) {
+            return Long.compare(o1.getId(), o2.getId());
+        }
+        if (!o1.hasDueDate()) {
+            return 1;
+        }
+        if (!o2.hasDueDate()) {
+            return -1;
+        }
+
+        // Sort occurrence by due time
+        ZonedDateTime z1 = ZonedDateTimeHelper.getEndTime(o1.getDueDate(), o1.getDueTime(), o1.getTimezone());
+        ZonedDateTime z2 = ZonedDateTimeHelper.getEndTime(o2.getDueDate(), o2.getDueTime(), o2.getTimezone());
+        return z1.compareTo(z2);
+    };
     public static final Comparator<Note> NOTE_COMPARATOR = Comparator.comparing(AuditModel::getUpdatedAt);
 
     /*
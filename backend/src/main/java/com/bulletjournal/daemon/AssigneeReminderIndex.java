@@ -0,0 +1,171 @@
+package com.bulletjournal.daemon;
+
+import com.bulletjournal.daemon.models.ReminderRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pending reminder records indexed by assignee
+ * <p>
+ * - Each assignee keeps a timeline of (timestamp, taskId) pairs sorted by timestamp then task id
+ * - Range lookup is a binary search plus a scan of the k records returned
+ * - Empty timelines are dropped so the index only holds assignees with pending reminders
+ * - Assignees of each record are kept so callers remove a record by (taskId, timestamp) only
+ */
+public class AssigneeReminderIndex {
+    private final Map<String, Timeline> timelines = new ConcurrentHashMap<>();
+    private final Map<ReminderRecord, String[]> recordAssignees = new ConcurrentHashMap<>();
+
+    /**
+     * Add record for assignees, replacing assignees it was added for before
+     */
+    public void add(Collection<String> assignees, ReminderRecord record) {
+        String[] prev = this.recordAssignees.put(record, assignees.toArray(new String[0]));
+        if (prev != null) {
+            removeFromTimelines(Arrays.asList(prev), record);
+        }
+        for (String assignee : assignees) {
+            this.timelines.compute(assignee, (k, timeline) -> {
+                if (timeline == null) {
+                    timeline = new Timeline();
+                }
+                timeline.add(record.getTimestamp(), record.getId());
+                return timeline;
+            });
+        }
+    }
+
+    public void remove(ReminderRecord record) {
+        String[] prev = this.recordAssignees.remove(record);
+        if (prev != null) {
+            removeFromTimelines(Arrays.asList(prev), record);
+        }
+    }
+
+    private void removeFromTimelines(Collection<String> assignees, ReminderRecord record) {
+        for (String assignee : assignees) {
+            this.timelines.computeIfPresent(assignee, (k, timeline) -> {
+                timeline.remove(record.getTimestamp(), record.getId());
+                return timeline.isEmpty() ? null : timeline;
+            });
+        }
+    }
+
+    /**
+     * Drop records of all assignees earlier than timestamp
+     *
+     * @param timestamp the epoch millis
+     */
+    public void removeBefore(long timestamp) {
+        this.recordAssignees.keySet().removeIf(record -> record.getTimestamp() < timestamp);
+        for (String assignee : this.timelines.keySet()) {
+            this.timelines.computeIfPresent(assignee, (k, timeline) -> {
+                timeline.removeBefore(timestamp);
+                return timeline.isEmpty() ? null : timeline;
+            });
+        }
+    }
+
+    /**
+     * Get records of assignee within [startSecond, endSecond]
+     *
+     * @param assignee    the assignee
+     * @param startSecond the epoch second of range start, inclusive
+     * @param endSecond   the epoch second of range end, inclusive
+     * @return List<ReminderRecord> - records sorted by timestamp
+     */
+    public List<ReminderRecord> get(String assignee, long startSecond, long endSecond) {
+        Timeline timeline = this.timelines.get(assignee);
+        if (timeline == null || startSecond > endSecond) {
+            return Collections.emptyList();
+        }
+        return timeline.get(startSecond * 1000, endSecond * 1000 + 999);
+    }
+
+    public int size(String assignee) {
+        Timeline timeline = this.timelines.get(assignee);
+        return timeline == null ? 0 : timeline.size();
+    }
+
+    public void clear() {
+        this.timelines.clear();
+        this.recordAssignees.clear();
+    }
+
+    private static final class Timeline {
+        private long[] timestamps = new long[4];
+        private long[] ids = new long[4];
+        private int size;
+
+        private synchronized void add(long timestamp, long id) {
+            int i = lowerBound(timestamp, id);
+            if (i < this.size && this.timestamps[i] == timestamp && this.ids[i] == id) {
+                return;
+            }
+            if (this.size == this.timestamps.length) {
+                this.timestamps = Arrays.copyOf(this.timestamps, this.size * 2);
+                this.ids = Arrays.copyOf(this.ids, this.size * 2);
+            }
+            System.arraycopy(this.timestamps, i, this.timestamps, i + 1, this.size - i);
+            System.arraycopy(this.ids, i, this.ids, i + 1, this.size - i);
+            this.timestamps[i] = timestamp;
+            this.ids[i] = id;
+            this.size++;
+        }
+
+        private synchronized void remove(long timestamp, long id) {
+            int i = lowerBound(timestamp, id);
+            if (i == this.size || this.timestamps[i] != timestamp || this.ids[i] != id) {
+                return;
+            }
+            System.arraycopy(this.timestamps, i + 1, this.timestamps, i, this.size - i - 1);
+            System.arraycopy(this.ids, i + 1, this.ids, i, this.size - i - 1);
+            this.size--;
+        }
+
+        private synchronized void removeBefore(long timestamp) {
+            int i = lowerBound(timestamp, Long.MIN_VALUE);
+            System.arraycopy(this.timestamps, i, this.timestamps, 0, this.size - i);
+            System.arraycopy(this.ids, i, this.ids, 0, this.size - i);
+            this.size -= i;
+        }
+
+        private synchronized List<ReminderRecord> get(long startTimestamp, long endTimestamp) {
+            List<ReminderRecord> records = new ArrayList<>();
+            for (int i = lowerBound(startTimestamp, Long.MIN_VALUE);
+                 i < this.size && this.timestamps[i] <= endTimestamp; i++) {
+                records.add(new ReminderRecord(this.ids[i], this.timestamps[i]));
+            }
+            return records;
+        }
+
+        private synchronized int size() {
+            return this.size;
+        }
+
+        private synchronized boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        private int lowerBound(long timestamp, long id) {
+            int low = 0;
+            int high = this.size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.timestamps[mid] < timestamp
+                        || (this.timestamps[mid] == timestamp && this.ids[mid] < id)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -4,12 +4,13 @@ import com.bulletjournal.config.ReminderConfig;
 import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
 import com.bulletjournal.daemon.models.ReminderRecord;
 import com.bulletjournal.messaging.MessagingService;
+import com.bulletjournal.notifications.SystemUpdatesNotifier;
 import com.bulletjournal.repository.TaskDaoJpa;
 import com.bulletjournal.repository.TaskRepository;
 import com.bulletjournal.repository.models.Task;
+import com.bulletjournal.repository.models.TaskOccurrence;
 import com.bulletjournal.repository.utils.DaoHelper;
 import com.bulletjournal.util.CustomThreadFactory;
-import com.bulletjournal.util.MathUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,7 +21,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import java.sql.Timestamp;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
@@ -37,9 +37,14 @@ public class Reminder {
     private static long VERIFY_BUFF_SECONDS = 7200;
     private static long SCHEDULE_BUFF_SECONDS = 5;
     private static long AWAIT_TERMINATION_SECONDS = 5;
+    private static long TICK_SECONDS = 1;
 
     private final ScheduledExecutorService executorService;
-    private final ConcurrentHashMap<ReminderRecord, Task> concurrentHashMap;
+    private final TimingWheel timingWheel;
+    private final TimingWheel.Bucket dueRecords;
+    // pending record -> occurrence start epoch millis, task is loaded again when the record fires
+    private final ConcurrentHashMap<ReminderRecord, Long> concurrentHashMap;
+    private final AssigneeReminderIndex assigneeReminderIndex;
     private final TaskDaoJpa taskDaoJpa;
     private final MessagingService messagingService;
 
@@ -49,12 +54,18 @@ public class Reminder {
     @Autowired
     private TaskRepository taskRepository;
 
+    @Autowired
+    private SystemUpdatesNotifier systemUpdatesNotifier;
+
     @Autowired
     Reminder(TaskDaoJpa taskDaoJpa, MessagingService messagingService) {
         this.taskDaoJpa = taskDaoJpa;
         this.messagingService = messagingService;
         this.concurrentHashMap = new ConcurrentHashMap();
+        this.assigneeReminderIndex = new AssigneeReminderIndex();
         this.executorService = Executors.newSingleThreadScheduledExecutor(new CustomThreadFactory("Reminder"));
+        this.timingWheel = new TimingWheel(ZonedDateTime.now().toEpochSecond());
+        this.dueRecords = new TimingWheel.Bucket();
     }
 
     @PostConstruct
@@ -66,17 +77,13 @@ public class Reminder {
                 SECONDS_OF_DAY - ZonedDateTimeHelper.getPassedSecondsOfDay(reminderConfig.getTimeZone()),
                 this.reminderConfig.getCronJobSeconds(),
                 TimeUnit.SECONDS);
+        executorService.scheduleAtFixedRate(this::tick, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
     }
 
     public List<ReminderRecord> getTasksAssignedThatNeedsWebPopupReminder(
             String requester, ZonedDateTime startTime, ZonedDateTime endTime) {
         // task assignees match requester
-        List<ReminderRecord> res = concurrentHashMap.entrySet().stream()
-                .filter(e -> e.getValue().getAssignees().contains(requester)
-                        && e.getKey().getTimestampSecond() <= endTime.toEpochSecond() &&
-                        startTime.toEpochSecond() <= e.getKey().getTimestampSecond())
-                .map(e -> e.getKey()).distinct().collect(Collectors.toList());
-        return res;
+        return assigneeReminderIndex.get(requester, startTime.toEpochSecond(), endTime.toEpochSecond());
     }
 
     private void initLoad() {
@@ -103,43 +110,62 @@ public class Reminder {
 
         tasks.forEach(t -> {
             LOGGER.info("generateTaskReminder {}", t);
-            DaoHelper.getReminderRecordMap(t, interval.getFirst(), interval.getSecond()).forEach((e, clonedTask) -> {
+            DaoHelper.getReminderRecordMap(t, interval.getFirst(), interval.getSecond()).forEach((e, occurrence) -> {
                         LOGGER.info("getReminderRecords {}", e);
                         if (!concurrentHashMap.containsKey(e)) {
                             LOGGER.info("getReminderRecords in map: {}", e);
-                            long delay = getJitterDelay(e);
-                            if (delay > 0) {
-                                LOGGER.info("Schedule New Job:" + e.toString() + "\t delay=" + delay);
-                                executorService.schedule(() -> this.process(e), delay, TimeUnit.MILLISECONDS);
-                            }
+                            schedule(e);
                         }
-                        concurrentHashMap.put(e, clonedTask);
+                        putRecord(e, occurrence);
                     }
             );
         });
     }
 
     private void purge(long expiredSeconds) {
-        concurrentHashMap.entrySet().removeIf(e ->
-                e.getKey().getTimestampSecond() + expiredSeconds < ZonedDateTime.now().toEpochSecond());
+        long expiredSecond = ZonedDateTime.now().toEpochSecond() - expiredSeconds;
+        concurrentHashMap.entrySet().removeIf(e -> e.getKey().getTimestampSecond() < expiredSecond);
+        assigneeReminderIndex.removeBefore(expiredSecond * 1000);
+    }
+
+    private void putRecord(ReminderRecord record, TaskOccurrence occurrence) {
+        concurrentHashMap.put(record, occurrence.getStartTime());
+        assigneeReminderIndex.add(occurrence.getTask().getAssignees(), record);
+    }
+
+    private void removeRecord(ReminderRecord record) {
+        concurrentHashMap.remove(record);
+        assigneeReminderIndex.remove(record);
     }
 
     private void scheduleReminderRecords(Pair<ZonedDateTime, ZonedDateTime> interval) {
         taskDaoJpa.getRemindingTasks(interval.getFirst(), interval.getSecond()).forEach((k, v) -> {
-            long delay = getJitterDelay(k);
-            if (!concurrentHashMap.containsKey(k) && delay > 0) {
-                LOGGER.info("Schedule New Job:" + k.toString() + "\t delay=" + delay);
-                executorService.schedule(() -> this.process(k), delay, TimeUnit.MILLISECONDS);
-                concurrentHashMap.put(k, v);
+            if (!concurrentHashMap.containsKey(k) && schedule(k)) {
+                putRecord(k, v);
             }
         });
     }
 
-    private long getJitterDelay(ReminderRecord reminderRecord) {
-        long delay = reminderRecord.getTimestampSecond() - ZonedDateTime.now().toEpochSecond();
-        delay *= 1000;
-        delay -= MathUtil.getRandomNumber(200L, SCHEDULE_BUFF_SECONDS * 1000);
-        return delay;
+    /**
+     * Put a future record into timing wheel
+     *
+     * @return boolean - false if the record is already past
+     */
+    private boolean schedule(ReminderRecord record) {
+        if (record.getTimestampSecond() <= ZonedDateTime.now().toEpochSecond()) {
+            return false;
+        }
+        LOGGER.info("Schedule New Job: {}", record);
+        synchronized (this.timingWheel) {
+            this.timingWheel.add(record.getId(), record.getTimestamp());
+        }
+        return true;
+    }
+
+    private void cancel(ReminderRecord record) {
+        synchronized (this.timingWheel) {
+            this.timingWheel.cancel(record.getId(), record.getTimestamp());
+        }
     }
 
     private void scheduleReminderRecords(long seconds) {
@@ -147,37 +173,73 @@ public class Reminder {
         this.scheduleReminderRecords(interval);
     }
 
-    private void process(final ReminderRecord record) {
-        LOGGER.info("process record=" + record.toString());
+    /**
+     * Advance timing wheel and process all records due in one batch
+     * Records fire up to SCHEDULE_BUFF_SECONDS ahead of their reminder time
+     */
+    private void tick() {
+        try {
+            synchronized (this.timingWheel) {
+                this.timingWheel.advance(ZonedDateTime.now().toEpochSecond() + SCHEDULE_BUFF_SECONDS,
+                        this.dueRecords);
+            }
+            if (this.dueRecords.size() > 0) {
+                process(this.dueRecords);
+            }
+        } catch (Exception ex) {
+            LOGGER.error("Error on Reminder tick", ex);
+        } finally {
+            this.dueRecords.clear();
+        }
+    }
+
+    private void process(final TimingWheel.Bucket records) {
+        LOGGER.info("process {} records", records.size());
         Pair<ZonedDateTime, ZonedDateTime> interval = ZonedDateTimeHelper.getInterval(VERIFY_BUFF_SECONDS, reminderConfig.getTimeZone());
-        taskRepository.findById(record.getId()).ifPresent(task -> {
-            if (filterInvalidTask(record, interval.getFirst(), interval.getSecond(), task)) {
+        Set<Long> taskIds = new HashSet<>();
+        for (int i = 0; i < records.size(); i++) {
+            taskIds.add(records.getId(i));
+        }
+        Map<Long, Task> taskMap = this.taskRepository.findAllById(taskIds).stream()
+                .collect(Collectors.toMap(Task::getId, t -> t));
+
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            ReminderRecord record = new ReminderRecord(records.getId(i), records.getTimestamp(i));
+            Task task = taskMap.get(record.getId());
+            if (task != null && filterInvalidTask(record, interval.getFirst(), interval.getSecond(), task)) {
                 LOGGER.info("Push notification record {}", record);
-                fillDueDateTimeForRecurringTask(task, record);
-                messagingService.sendTaskDueNotificationAndEmailToUsers(Collections.singletonList(task));
+                tasks.add(fillDueDateTimeForRecurringTask(task, record));
             }
-        });
+        }
+        if (!tasks.isEmpty()) {
+            messagingService.sendTaskDueNotificationAndEmailToUsers(tasks);
+            // push web popup reminders to long-poll requests
+            systemUpdatesNotifier.signal(tasks.stream().flatMap(t -> t.getAssignees().stream())
+                    .map(SystemUpdatesNotifier::getReminderKey).collect(Collectors.toSet()));
+        }
     }
 
-    private void fillDueDateTimeForRecurringTask(Task task, ReminderRecord reminderRecord) {
+    private Task fillDueDateTimeForRecurringTask(Task task, ReminderRecord reminderRecord) {
         if (!task.hasRecurrenceRule()) {
-            return;
+            return task;
         }
-        Task cachedTask = concurrentHashMap.get(reminderRecord);
-        if (cachedTask == null) {
+        Long startTime = concurrentHashMap.get(reminderRecord);
+        if (startTime == null) {
             LOGGER.error("Cached task id {} doesn't exist in ConcurrentHashMap", task.getId());
-            return;
+            return task;
         }
-        task.setDueDate(cachedTask.getDueDate());
-        task.setDueTime(cachedTask.getDueTime());
+        // the same recurring task may be due more than once in a batch
+        return TaskOccurrence.of(task, startTime).toTask();
     }
 
     private boolean filterInvalidTask(ReminderRecord record, ZonedDateTime startTime, ZonedDateTime endTime, Task task) {
-        Map<ReminderRecord, Task> map = DaoHelper.getReminderRecordMap(task, startTime, endTime);
+        Map<ReminderRecord, TaskOccurrence> map = DaoHelper.getReminderRecordMap(task, startTime, endTime);
         if (map.keySet().contains(record)) {
             return true;
         }
-        concurrentHashMap.remove(record);
+        removeRecord(record);
+        cancel(record);
         return false;
     }
 
@@ -192,8 +254,11 @@ public class Reminder {
         }
     }
 
+    /**
+     * Get occurrences of tasks that need web popup reminder, converted to presentation models by caller
+     */
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public List<Task> getRemindingTasks(
+    public List<TaskOccurrence> getRemindingTasks(
             List<ReminderRecord> reminderRecords, ZonedDateTime startTime) {
         if (reminderRecords.isEmpty()) {
             return Collections.emptyList();
@@ -203,29 +268,29 @@ public class Reminder {
         Map<Long, Task> taskMap = this.taskRepository.findAllById(
                 reminderRecords.stream().map(ReminderRecord::getId).distinct().collect(Collectors.toList()))
                 .stream().filter(Objects::nonNull).collect(Collectors.toMap(Task::getId, t -> t));
-        List<Task> res = reminderRecords.stream().filter(record -> {
+        List<TaskOccurrence> res = new ArrayList<>();
+        for (ReminderRecord record : reminderRecords) {
             Task task = taskMap.get(record.getId());
-            if (task == null) {
-                return false;
+            if (task == null || !filterInvalidTask(record, startTime, endTime, task)) {
+                continue;
             }
-            return filterInvalidTask(record, startTime, endTime, task);
-        }).map(record -> {
-            Task task = taskMap.get(record.getId());
-            if (task.getRecurrenceRule() != null) {
-                List<Task> l = DaoHelper.getRecurringTask(task, startTime, endTime);
-                if (!l.isEmpty()) {
-                    task = l.get(0);
-                } else {
-                    LOGGER.error("No recurring task for {} between {} and {}", task, startTime, endTime);
-                }
+            if (task.getRecurrenceRule() == null) {
+                res.add(TaskOccurrence.of(task));
+                continue;
             }
-            return task;
-        }).collect(Collectors.toList());
-        for (Task t : res) {
-            LOGGER.info("t.getReminderDateTime() {} {}", t.getReminderDateTime(), Timestamp.valueOf(ZonedDateTime.now()
-                    .toLocalDateTime()));
+            List<TaskOccurrence> l = DaoHelper.getTaskOccurrences(task, startTime, endTime);
+            if (!l.isEmpty()) {
+                res.add(l.get(0));
+            } else {
+                LOGGER.error("No recurring task for {} between {} and {}", task, startTime, endTime);
+                res.add(TaskOccurrence.of(task));
+            }
+        }
+        long now = System.currentTimeMillis();
+        for (TaskOccurrence o : res) {
+            LOGGER.info("o.getReminderDateTime() {} {}", o.getReminderDateTime(), now);
         }
-        return res.stream().filter(t -> t.getReminderDateTime().before(Timestamp.valueOf(ZonedDateTime.now()
-                .toLocalDateTime()))).collect(Collectors.toList());
+        return res.stream().filter(o -> o.hasReminderDateTime() && o.getReminderDateTime() < now)
+                .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,183 @@
+package com.bulletjournal.daemon;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical timing wheel of (taskId, timestamp) pairs with one second resolution
+ * <p>
+ * - LEVELS wheels of WHEEL_SIZE buckets, level n bucket spans WHEEL_SIZE^n seconds
+ * - A pair is placed in the lowest level whose current window contains its second
+ * - When a higher level bucket comes due, its pairs are cascaded into lower levels
+ * - Pairs beyond the last level wait in an overflow bucket
+ * - Buckets are primitive arrays, insert and cancel are O(1) plus the scan of a single bucket
+ * <p>
+ * Not thread-safe by itself, callers synchronize on the wheel.
+ */
+public class TimingWheel {
+    static final int WHEEL_BITS = 6;
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    static final int LEVELS = 4;
+
+    private final Bucket[][] wheels = new Bucket[LEVELS][WHEEL_SIZE];
+    private final Bucket overflow = new Bucket();
+    private final Bucket expired = new Bucket();
+    private long currentSecond;
+    private int size;
+
+    public TimingWheel(long currentSecond) {
+        this.currentSecond = currentSecond;
+        for (Bucket[] wheel : this.wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+    }
+
+    /**
+     * Add a pair, it fires at the first advance reaching its second
+     *
+     * @param id        the task id
+     * @param timestamp the epoch millis to fire
+     */
+    public void add(long id, long timestamp) {
+        bucketOf(timestamp / 1000).add(id, timestamp);
+        this.size++;
+    }
+
+    /**
+     * Cancel a pair added before
+     *
+     * @return boolean - true if the pair was still pending
+     */
+    public boolean cancel(long id, long timestamp) {
+        if (bucketOf(timestamp / 1000).remove(id, timestamp)) {
+            this.size--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Move the wheel to the given second and drain all pairs due into output
+     *
+     * @param toSecond the epoch second to advance to
+     * @param output   the bucket receiving due pairs
+     */
+    public void advance(long toSecond, Bucket output) {
+        int before = output.size();
+        this.expired.drainTo(output);
+        while (this.currentSecond < toSecond) {
+            this.currentSecond++;
+            cascade();
+            this.wheels[0][(int) (this.currentSecond & WHEEL_MASK)].drainTo(output);
+            // pairs cascaded exactly onto current second
+            this.expired.drainTo(output);
+        }
+        this.size -= output.size() - before;
+    }
+
+    public long getCurrentSecond() {
+        return currentSecond;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void cascade() {
+        if ((this.currentSecond & ((1L << (WHEEL_BITS * LEVELS)) - 1)) == 0) {
+            reinsert(this.overflow);
+        }
+        for (int level = LEVELS - 1; level > 0; level--) {
+            int shift = WHEEL_BITS * level;
+            if ((this.currentSecond & ((1L << shift) - 1)) == 0) {
+                reinsert(this.wheels[level][(int) ((this.currentSecond >>> shift) & WHEEL_MASK)]);
+            }
+        }
+    }
+
+    private void reinsert(Bucket bucket) {
+        if (bucket.size() == 0) {
+            return;
+        }
+        Bucket pending = new Bucket();
+        bucket.drainTo(pending);
+        for (int i = 0; i < pending.size(); i++) {
+            bucketOf(pending.getTimestamp(i) / 1000).add(pending.getId(i), pending.getTimestamp(i));
+        }
+    }
+
+    private Bucket bucketOf(long second) {
+        if (second <= this.currentSecond) {
+            return this.expired;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = WHEEL_BITS * (level + 1);
+            if ((second >>> shift) == (this.currentSecond >>> shift)) {
+                return this.wheels[level][(int) ((second >>> (WHEEL_BITS * level)) & WHEEL_MASK)];
+            }
+        }
+        return this.overflow;
+    }
+
+    /**
+     * Growable array of (id, timestamp) pairs, removal swaps in the last pair
+     */
+    public static final class Bucket {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private long[] ids = new long[INITIAL_CAPACITY];
+        private long[] timestamps = new long[INITIAL_CAPACITY];
+        private int size;
+
+        public void add(long id, long timestamp) {
+            if (this.size == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.size * 2);
+                this.timestamps = Arrays.copyOf(this.timestamps, this.size * 2);
+            }
+            this.ids[this.size] = id;
+            this.timestamps[this.size] = timestamp;
+            this.size++;
+        }
+
+        public boolean remove(long id, long timestamp) {
+            for (int i = 0; i < this.size; i++) {
+                if (this.ids[i] == id && this.timestamps[i] == timestamp) {
+                    this.size--;
+                    this.ids[i] = this.ids[this.size];
+                    this.timestamps[i] = this.timestamps[this.size];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void drainTo(Bucket other) {
+            for (int i = 0; i < this.size; i++) {
+                other.add(this.ids[i], this.timestamps[i]);
+            }
+            clear();
+        }
+
+        public void clear() {
+            this.size = 0;
+            if (this.ids.length > INITIAL_CAPACITY * 16) {
+                this.ids = new long[INITIAL_CAPACITY];
+                this.timestamps = new long[INITIAL_CAPACITY];
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getId(int i) {
+            return this.ids[i];
+        }
+
+        public long getTimestamp(int i) {
+            return this.timestamps[i];
+        }
+    }
+}
@@ -5,7 +5,10 @@ import static com.bulletjournal.es.repository.SearchIndexDaoJpa.SEARCH_INDEX_SPL
 import com.bulletjournal.contents.ContentType;
 import com.bulletjournal.controller.models.SearchResult;
 import com.bulletjournal.controller.models.SearchResultItem;
+import com.bulletjournal.es.repository.models.SearchIndex;
+import com.bulletjournal.repository.models.ContentModel;
 import com.bulletjournal.repository.models.ProjectItemModel;
+import com.bulletjournal.util.DeltaContent;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -15,6 +18,7 @@ import java.util.stream.Collectors;
 
 public class ESUtil {
     private static final String SCROLL_ID = "unit-test-scroll-id";
+    private static final String CONTENT_TYPE_SUFFIX = "_content";
     private static final int TOTAL_HITS_BOUNDARY = 1000;
 
     /**
@@ -27,6 +31,55 @@ public class ESUtil {
         return projectItem.getContentType().toString().toLowerCase() + SEARCH_INDEX_SPLITTER + projectItem.getId();
     }
 
+    /**
+     * Return content's search index id
+     *
+     * @param content target content
+     * @return String- content id in search index format
+     */
+    public static <K extends ContentModel> String getContentSearchIndexId(K content) {
+        return content.getProjectItem().getContentType().toString().toLowerCase() +
+                CONTENT_TYPE_SUFFIX + SEARCH_INDEX_SPLITTER + content.getId();
+    }
+
+    /**
+     * Build the search index document of projectItem, same as the one Logstash builds
+     *
+     * @param projectItem target projectItem
+     * @return SearchIndex - document with projectItem's name as value
+     */
+    public static <T extends ProjectItemModel> SearchIndex toSearchIndex(T projectItem) {
+        SearchIndex searchIndex = new SearchIndex();
+        searchIndex.setId(getProjectItemSearchIndexId(projectItem));
+        searchIndex.setType(projectItem.getContentType().toString().toLowerCase());
+        searchIndex.setProjectId(projectItem.getProject().getId());
+        searchIndex.setValue(projectItem.getName());
+        return searchIndex;
+    }
+
+    /**
+     * Build the search index document of content, same as the one Logstash builds
+     *
+     * @param content target content
+     * @return SearchIndex - document with content's html as value
+     */
+    public static <K extends ContentModel> SearchIndex toSearchIndex(K content) {
+        ProjectItemModel projectItem = content.getProjectItem();
+        SearchIndex searchIndex = new SearchIndex();
+        searchIndex.setId(getContentSearchIndexId(content));
+        searchIndex.setType(projectItem.getContentType().toString().toLowerCase() + CONTENT_TYPE_SUFFIX);
+        searchIndex.setProjectId(projectItem.getProject().getId());
+        searchIndex.setParentId(getProjectItemSearchIndexId(projectItem));
+        String html = null;
+        try {
+            html = new DeltaContent(content.getText()).getHtml();
+        } catch (Exception ex) {
+            // not a delta, index the text as is
+        }
+        searchIndex.setValue(html == null ? content.getText() : html);
+        return searchIndex;
+    }
+
     public static List<String> getProjectItemSearchIndexIds(List<Long> ids, ContentType contentType) {
         String s = contentType.toString().toLowerCase();
         return ids.stream().map(id -> s + SEARCH_INDEX_SPLITTER + id).collect(Collectors.toList());
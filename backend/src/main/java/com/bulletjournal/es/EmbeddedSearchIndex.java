@@ -0,0 +1,341 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.config.SpringESConfig;
+import com.bulletjournal.es.repository.SearchIndexDaoJpa;
+import com.bulletjournal.es.repository.models.SearchIndex;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.charfilter.HTMLStripCharFilter;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.search.highlight.Highlighter;
+import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
+import org.apache.lucene.search.highlight.SimpleSpanFragmenter;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.index.shard.ShardId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsImpl;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * In-process Lucene index of project items, used for search when Elasticsearch is disabled
+ * <p>
+ * - Documents mirror the project_items index, content values are indexed with html stripped
+ * - {@link SearchIndexPipeline} applies its bulk requests here, so the index follows DAO changes incrementally
+ * - Segments are merged in the background by a TieredMergePolicy
+ * - Queries match the value field fuzzily and highlight it the same way SearchIndexDaoJpa does on Elasticsearch
+ * - Hits are sorted by score and id, pages continue after the sort values of the previous page's last hit
+ * - The index lives under spring.elasticsearch.rest.embedded-index-path, in memory if the path is blank
+ * - An empty index is bulk loaded from the database at startup by {@link EmbeddedSearchIndexLoader}
+ */
+@Component
+public class EmbeddedSearchIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedSearchIndex.class);
+
+    private static final String ID = "id";
+    private static final String TYPE = "type";
+    private static final String PROJECT_ID = "projectId";
+    private static final String PARENT_ID = "parentId";
+    private static final String VALUE = "value";
+
+    private static final String PRE_TAG = "<em class='highlight'>";
+    private static final String POST_TAG = "</em>";
+    private static final int FRAGMENT_SIZE = 300;
+    private static final int PREFIX_LENGTH = 3;
+    private static final int MAX_EXPANSIONS = 10;
+    // score, then id to break ties, as sort values of search after
+    private static final Sort SORT = new Sort(SortField.FIELD_SCORE, new SortField(ID, SortField.Type.STRING));
+
+    private static final ShardId SHARD_ID = new ShardId(SearchIndexDaoJpa.SEARCH_INDEX_NAME, "_na_", 0);
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private final IndexWriter writer;
+
+    private final SearcherManager searcherManager;
+
+    @Autowired
+    public EmbeddedSearchIndex(SpringESConfig springESConfig) throws IOException {
+        this(Boolean.TRUE.equals(springESConfig.getEnable()) ? null
+                : StringUtils.isBlank(springESConfig.getEmbeddedIndexPath()) ? new ByteBuffersDirectory()
+                : FSDirectory.open(Paths.get(springESConfig.getEmbeddedIndexPath())));
+    }
+
+    /**
+     * @param directory where the index is stored, null if Elasticsearch is enabled
+     */
+    EmbeddedSearchIndex(Directory directory) throws IOException {
+        if (directory == null) {
+            this.writer = null;
+            this.searcherManager = null;
+            return;
+        }
+        IndexWriterConfig config = new IndexWriterConfig(this.analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                .setMergePolicy(new TieredMergePolicy());
+        this.writer = new IndexWriter(directory, config);
+        this.searcherManager = new SearcherManager(this.writer, null);
+        LOGGER.info("Opened embedded search index with {} documents", this.writer.getDocStats().numDocs);
+    }
+
+    public boolean isEnabled() {
+        return this.writer != null;
+    }
+
+    /**
+     * @return int - the number of documents, 0 if Elasticsearch is enabled
+     */
+    public int numDocs() {
+        return this.writer == null ? 0 : this.writer.getDocStats().numDocs;
+    }
+
+    /**
+     * Apply a bulk request built by {@link SearchIndexPipeline}, commit and make it searchable
+     *
+     * @param request index and delete requests of the project_items index
+     * @return BulkResponse - one successful item per request
+     */
+    public BulkResponse bulk(BulkRequest request) throws IOException {
+        long start = System.currentTimeMillis();
+        BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+        for (int i = 0; i < items.length; i++) {
+            DocWriteRequest<?> action = request.requests().get(i);
+            Term id = new Term(ID, action.id());
+            if (action instanceof IndexRequest) {
+                this.writer.updateDocument(id, toDocument(((IndexRequest) action).sourceAsMap()));
+                items[i] = new BulkItemResponse(i, action.opType(),
+                        new IndexResponse(SHARD_ID, "_doc", action.id(), 1, 1, 1, true));
+            } else {
+                this.writer.deleteDocuments(id);
+                items[i] = new BulkItemResponse(i, action.opType(),
+                        new DeleteResponse(SHARD_ID, "_doc", action.id(), 1, 1, 1, true));
+            }
+        }
+        commit();
+        return new BulkResponse(items, System.currentTimeMillis() - start);
+    }
+
+    private Document toDocument(Map<String, Object> source) throws IOException {
+        Document document = new Document();
+        document.add(new StringField(ID, (String) source.get(ID), Field.Store.YES));
+        document.add(new SortedDocValuesField(ID, new BytesRef((String) source.get(ID))));
+        document.add(new StringField(TYPE, (String) source.get(TYPE), Field.Store.YES));
+        document.add(new StringField(PROJECT_ID, String.valueOf(source.get(PROJECT_ID)), Field.Store.YES));
+        String value = (String) source.get(VALUE);
+        if (source.get(PARENT_ID) != null) {
+            document.add(new StringField(PARENT_ID, (String) source.get(PARENT_ID), Field.Store.YES));
+            value = stripHtml(value);
+        }
+        document.add(new TextField(VALUE, value == null ? "" : value, Field.Store.YES));
+        return document;
+    }
+
+    static String stripHtml(String html) throws IOException {
+        if (html == null) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder(html.length());
+        try (Reader reader = new HTMLStripCharFilter(new StringReader(html))) {
+            char[] buffer = new char[1024];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, read);
+            }
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * Delete all documents of a project
+     *
+     * @param projectId target project
+     */
+    public void deleteProject(Long projectId) {
+        try {
+            this.writer.deleteDocuments(new Term(PROJECT_ID, String.valueOf(projectId)));
+            commit();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void commit() throws IOException {
+        this.writer.commit();
+        this.searcherManager.maybeRefresh();
+    }
+
+    /**
+     * Search term in documents of the given projects or with the given ids, sorted by score and id
+     *
+     * @param projectIds  the projects to search in
+     * @param itemIds     ids of documents shared to the requester
+     * @param term        search term
+     * @param searchAfter sort values of the last hit of the previous page, null for the first page
+     * @param pageNo      the page number of the first page
+     * @param pageSize    the record count in one page
+     * @return SearchHits contains the search results, with their sort values
+     */
+    public SearchHits<SearchIndex> search(Collection<Long> projectIds, Collection<String> itemIds, String term,
+                                          List<Object> searchAfter, int pageNo, int pageSize) {
+        BooleanQuery.Builder filter = new BooleanQuery.Builder();
+        filter.add(new TermInSetQuery(PROJECT_ID, projectIds.stream()
+                .map(id -> new BytesRef(String.valueOf(id))).collect(Collectors.toList())), BooleanClause.Occur.SHOULD);
+        filter.add(new TermInSetQuery(ID, itemIds.stream()
+                .map(BytesRef::new).collect(Collectors.toList())), BooleanClause.Occur.SHOULD);
+        BooleanQuery.Builder match = new BooleanQuery.Builder();
+        for (String token : analyze(term)) {
+            match.add(new FuzzyQuery(new Term(VALUE, token), autoFuzziness(token), PREFIX_LENGTH,
+                    MAX_EXPANSIONS, true), BooleanClause.Occur.SHOULD);
+        }
+        Query query = new BooleanQuery.Builder()
+                .add(filter.build(), BooleanClause.Occur.FILTER)
+                .add(match.build(), BooleanClause.Occur.MUST)
+                .build();
+
+        try {
+            IndexSearcher searcher = this.searcherManager.acquire();
+            try {
+                int from = 0;
+                TopFieldDocs topDocs;
+                if (searchAfter == null) {
+                    from = pageNo * pageSize;
+                    topDocs = searcher.search(query, Math.max(1, from + pageSize), SORT, true);
+                } else {
+                    // ids are unique, a hit with equal sort values is the last hit itself and is skipped
+                    FieldDoc after = new FieldDoc(searcher.getIndexReader().maxDoc() - 1, Float.NaN, new Object[]{
+                            ((Number) searchAfter.get(0)).floatValue(), new BytesRef((String) searchAfter.get(1))});
+                    topDocs = searcher.searchAfter(after, query, Math.max(1, pageSize), SORT, true);
+                }
+                QueryScorer scorer = new QueryScorer(query, VALUE);
+                Highlighter highlighter = new Highlighter(new SimpleHTMLFormatter(PRE_TAG, POST_TAG), scorer);
+                highlighter.setTextFragmenter(new SimpleSpanFragmenter(scorer, FRAGMENT_SIZE));
+
+                List<SearchHit<SearchIndex>> hits = new ArrayList<>();
+                float maxScore = 0;
+                for (int i = from; i < topDocs.scoreDocs.length && hits.size() < pageSize; i++) {
+                    FieldDoc fieldDoc = (FieldDoc) topDocs.scoreDocs[i];
+                    maxScore = Math.max(maxScore, fieldDoc.score);
+                    hits.add(toSearchHit(searcher.doc(fieldDoc.doc), fieldDoc, highlighter));
+                }
+                return new SearchHitsImpl<>(topDocs.totalHits.value,
+                        topDocs.totalHits.relation == TotalHits.Relation.EQUAL_TO
+                                ? TotalHitsRelation.EQUAL_TO : TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO,
+                        maxScore, null, hits, null);
+            } finally {
+                this.searcherManager.release(searcher);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private SearchHit<SearchIndex> toSearchHit(Document document, FieldDoc fieldDoc, Highlighter highlighter) {
+        SearchIndex searchIndex = new SearchIndex();
+        searchIndex.setId(document.get(ID));
+        searchIndex.setType(document.get(TYPE));
+        searchIndex.setProjectId(Long.valueOf(document.get(PROJECT_ID)));
+        searchIndex.setParentId(document.get(PARENT_ID));
+        searchIndex.setValue(document.get(VALUE));
+
+        Map<String, List<String>> highlightFields = Collections.emptyMap();
+        try {
+            String fragment = highlighter.getBestFragment(this.analyzer, VALUE, searchIndex.getValue());
+            if (fragment != null) {
+                highlightFields = Collections.singletonMap(VALUE, Collections.singletonList(fragment));
+            }
+        } catch (Exception ex) {
+            LOGGER.error("Failed to highlight " + searchIndex.getId(), ex);
+        }
+        BytesRef id = (BytesRef) fieldDoc.fields[1];
+        Object[] sortValues = {fieldDoc.fields[0], id == null ? "" : id.utf8ToString()};
+        return new SearchHit<>(searchIndex.getId(), fieldDoc.score, sortValues, highlightFields, searchIndex);
+    }
+
+    private List<String> analyze(String text) {
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream stream = this.analyzer.tokenStream(VALUE, text)) {
+            CharTermAttribute attribute = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(attribute.toString());
+            }
+            stream.end();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return tokens;
+    }
+
+    /**
+     * Same edit distance as Elasticsearch's Fuzziness.AUTO
+     */
+    private static int autoFuzziness(String token) {
+        int length = token.codePointCount(0, token.length());
+        return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (this.writer == null) {
+            return;
+        }
+        try {
+            this.searcherManager.close();
+            this.writer.close();
+        } catch (IOException ex) {
+            LOGGER.error("Failed to close embedded search index", ex);
+        }
+    }
+}
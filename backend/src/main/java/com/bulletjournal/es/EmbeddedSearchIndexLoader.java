@@ -0,0 +1,100 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.es.repository.SearchIndexDaoJpa;
+import com.bulletjournal.es.repository.models.SearchIndex;
+import com.bulletjournal.repository.models.Note;
+import com.bulletjournal.repository.models.NoteContent;
+import com.bulletjournal.repository.models.Task;
+import com.bulletjournal.repository.models.TaskContent;
+import com.bulletjournal.repository.models.Transaction;
+import com.bulletjournal.repository.models.TransactionContent;
+import com.bulletjournal.util.CustomThreadFactory;
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bulk loads an empty {@link EmbeddedSearchIndex} from the database at startup
+ * <p>
+ * - Tasks, notes, transactions and their contents are read a page at a time, each page after the last id read
+ * - Documents go through {@link SearchIndexPipeline}, so changes made meanwhile are kept over loaded documents,
+ * and documents deleted since the load started are not added back
+ * - Loading runs in the background, search returns partial results until it is done
+ */
+@Component
+public class EmbeddedSearchIndexLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedSearchIndexLoader.class);
+
+    private static final int PAGE_SIZE = 500;
+
+    private static final List<Class<?>> ENTITY_CLASSES = ImmutableList.of(
+            Task.class, Note.class, Transaction.class, TaskContent.class, NoteContent.class, TransactionContent.class);
+
+    private final ExecutorService executorService =
+            Executors.newSingleThreadExecutor(new CustomThreadFactory("embedded-search-index-loader"));
+
+    @Autowired
+    private EmbeddedSearchIndex embeddedSearchIndex;
+
+    @Autowired
+    private SearchIndexPipeline searchIndexPipeline;
+
+    @Autowired
+    private SearchIndexDaoJpa searchIndexDaoJpa;
+
+    @PostConstruct
+    public void postConstruct() {
+        if (!this.embeddedSearchIndex.isEnabled() || this.embeddedSearchIndex.numDocs() > 0) {
+            return;
+        }
+        this.executorService.submit(this::load);
+    }
+
+    private void load() {
+        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+        long start = System.currentTimeMillis();
+        long loaded = 0;
+        this.searchIndexPipeline.beginLoad();
+        try {
+            for (Class<?> entityClass : ENTITY_CLASSES) {
+                long lastId = 0;
+                while (true) {
+                    LinkedHashMap<Long, SearchIndex> searchIndexes =
+                            this.searchIndexDaoJpa.getSearchIndexes(entityClass, lastId, PAGE_SIZE);
+                    if (searchIndexes.isEmpty()) {
+                        break;
+                    }
+                    this.searchIndexPipeline.load(searchIndexes.values());
+                    loaded += searchIndexes.size();
+                    for (Long id : searchIndexes.keySet()) {
+                        lastId = id;
+                    }
+                }
+            }
+            LOGGER.info("Loaded {} documents into embedded search index in {} ms",
+                    loaded, System.currentTimeMillis() - start);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Stopped loading embedded search index after {} documents", loaded);
+        } catch (Exception ex) {
+            LOGGER.error("Failed to load embedded search index after " + loaded + " documents", ex);
+        } finally {
+            this.searchIndexPipeline.endLoad();
+        }
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        this.executorService.shutdownNow();
+    }
+}
@@ -0,0 +1,58 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.exceptions.BadRequestException;
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Opaque token of search-after pagination
+ * <p>
+ * It carries the sort values of the last hit of a page and the version of the shared items the search ran
+ * with, so the next page needs no state on the server.
+ */
+public final class SearchCursor {
+    private static final Gson GSON = new Gson();
+    private static final String PREFIX = "c1.";
+
+    private final List<Object> sortValues;
+
+    private final String shareVersion;
+
+    public SearchCursor(List<Object> sortValues, String shareVersion) {
+        this.sortValues = sortValues;
+        this.shareVersion = shareVersion;
+    }
+
+    public List<Object> getSortValues() {
+        return sortValues;
+    }
+
+    public String getShareVersion() {
+        return shareVersion;
+    }
+
+    public String encode() {
+        return PREFIX + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(GSON.toJson(this).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String token) {
+        if (token == null || !token.startsWith(PREFIX)) {
+            throw new BadRequestException("Invalid search cursor, please search again");
+        }
+        SearchCursor cursor;
+        try {
+            cursor = GSON.fromJson(new String(Base64.getUrlDecoder().decode(token.substring(PREFIX.length())),
+                    StandardCharsets.UTF_8), SearchCursor.class);
+        } catch (Exception ex) {
+            throw new BadRequestException("Invalid search cursor, please search again", ex);
+        }
+        if (cursor == null || cursor.sortValues == null || cursor.sortValues.isEmpty()) {
+            throw new BadRequestException("Invalid search cursor, please search again");
+        }
+        return cursor;
+    }
+}
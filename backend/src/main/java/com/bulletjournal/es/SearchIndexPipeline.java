@@ -0,0 +1,368 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.config.SpringESConfig;
+import com.bulletjournal.es.repository.SearchIndexDaoJpa;
+import com.bulletjournal.es.repository.models.SearchIndex;
+import com.bulletjournal.util.CustomThreadFactory;
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.rest.RestStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the project_items index in sync with the database through the bulk API, of Elasticsearch or of the
+ * {@link EmbeddedSearchIndex} when Elasticsearch is disabled
+ * <p>
+ * - Entity listeners upsert and delete documents as tasks, notes, transactions and contents change
+ * - Changes made in a transaction are queued only once it commits, and dropped if it rolls back
+ * - Queued changes of the same document coalesce, the last one wins
+ * - A bulk request is sent once MAX_BATCH_ACTIONS or MAX_BATCH_BYTES is reached, or LINGER_MILLIS after the
+ * first change, so a change is searchable well within a second
+ * - Failed requests and rejected items are retried with backoff
+ * - Bulk loads wait while too many changes are pending, never replace a pending change, and skip documents
+ * deleted since the load began
+ */
+@Component
+public class SearchIndexPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndexPipeline.class);
+
+    static final int MAX_BATCH_ACTIONS = 1000;
+
+    static final long MAX_BATCH_BYTES = 5 * 1024 * 1024;
+
+    static final int MAX_PENDING = 100000;
+
+    private static final long LINGER_MILLIS = 100;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final long BACKOFF_MILLIS = 500;
+
+    private static final long AWAIT_TERMINATION_SECONDS = 5;
+
+    public interface BulkSender {
+        BulkResponse send(BulkRequest request) throws IOException;
+    }
+
+    private final BulkSender sender;
+
+    private final long lingerMillis;
+
+    // guarded by this, a null document deletes
+    private final LinkedHashMap<String, SearchIndex> pending = new LinkedHashMap<>();
+
+    private long firstPendingAt;
+
+    // guarded by this, ids deleted since a bulk load began, null while none runs
+    private Set<String> deletedWhileLoading;
+
+    private boolean running = true;
+
+    private final Thread flusher;
+
+    private final AtomicLong indexed = new AtomicLong();
+
+    private final AtomicLong deleted = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong bulkRequests = new AtomicLong();
+
+    @Autowired
+    public SearchIndexPipeline(SpringESConfig springESConfig, ElasticsearchRestTemplate elasticsearchRestTemplate,
+                               EmbeddedSearchIndex embeddedSearchIndex) {
+        this(Boolean.TRUE.equals(springESConfig.getEnable()) ? request -> elasticsearchRestTemplate.execute(
+                client -> client.bulk(request, RequestOptions.DEFAULT))
+                : embeddedSearchIndex.isEnabled() ? embeddedSearchIndex::bulk : null, LINGER_MILLIS);
+    }
+
+    /**
+     * @param sender       sends bulk requests, null if there is no search backend
+     * @param lingerMillis how long the first change waits for others to join its bulk request
+     */
+    SearchIndexPipeline(BulkSender sender, long lingerMillis) {
+        this.sender = sender;
+        this.lingerMillis = lingerMillis;
+        if (sender == null) {
+            this.flusher = null;
+            return;
+        }
+        this.flusher = new CustomThreadFactory("SearchIndexPipeline").newThread(this::flush);
+        this.flusher.start();
+    }
+
+    public void upsert(SearchIndex searchIndex) {
+        if (this.sender != null) {
+            enqueue(Collections.singletonMap(searchIndex.getId(), searchIndex));
+        }
+    }
+
+    public void delete(Collection<String> documentIds) {
+        if (this.sender == null || documentIds.isEmpty()) {
+            return;
+        }
+        Map<String, SearchIndex> changes = new HashMap<>();
+        documentIds.forEach(id -> changes.put(id, null));
+        enqueue(changes);
+    }
+
+    private void enqueue(Map<String, SearchIndex> changes) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            submit(changes);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, SearchIndex> buffer = (Map<String, SearchIndex>) TransactionSynchronizationManager.getResource(this);
+        if (buffer == null) {
+            Map<String, SearchIndex> transactionChanges = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, transactionChanges);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(SearchIndexPipeline.this);
+                    if (status == STATUS_COMMITTED) {
+                        submit(transactionChanges);
+                    }
+                }
+            });
+            buffer = transactionChanges;
+        }
+        buffer.putAll(changes);
+    }
+
+    /**
+     * Start remembering deletes, a document read by the load may be deleted and sent before it is queued
+     */
+    public synchronized void beginLoad() {
+        this.deletedWhileLoading = new HashSet<>();
+    }
+
+    public synchronized void endLoad() {
+        this.deletedWhileLoading = null;
+    }
+
+    /**
+     * Queue documents loaded from the database, waiting while MAX_PENDING / 2 changes are pending
+     *
+     * @param searchIndexes documents to index, a pending change of the same document is kept, and a document
+     *                      deleted since {@link #beginLoad()} is skipped
+     */
+    public synchronized void load(Collection<SearchIndex> searchIndexes) throws InterruptedException {
+        if (this.sender == null) {
+            return;
+        }
+        while (this.running && !this.pending.isEmpty()
+                && this.pending.size() + searchIndexes.size() > MAX_PENDING / 2) {
+            wait();
+        }
+        if (!this.running) {
+            LOGGER.warn("SearchIndexPipeline closed, dropping {} loaded documents", searchIndexes.size());
+            return;
+        }
+        if (this.pending.isEmpty()) {
+            this.firstPendingAt = System.currentTimeMillis();
+        }
+        for (SearchIndex searchIndex : searchIndexes) {
+            // a pending delete is a null value, which putIfAbsent would replace
+            if (this.pending.containsKey(searchIndex.getId()) || (this.deletedWhileLoading != null
+                    && this.deletedWhileLoading.contains(searchIndex.getId()))) {
+                this.coalesced.incrementAndGet();
+            } else {
+                this.pending.put(searchIndex.getId(), searchIndex);
+            }
+        }
+        notifyAll();
+    }
+
+    synchronized void submit(Map<String, SearchIndex> changes) {
+        if (!this.running) {
+            LOGGER.warn("SearchIndexPipeline closed, dropping {} changes", changes.size());
+            return;
+        }
+        for (Map.Entry<String, SearchIndex> change : changes.entrySet()) {
+            if (change.getValue() == null && this.deletedWhileLoading != null) {
+                this.deletedWhileLoading.add(change.getKey());
+            }
+            if (this.pending.containsKey(change.getKey())) {
+                this.coalesced.incrementAndGet();
+            } else if (this.pending.size() >= MAX_PENDING) {
+                LOGGER.error("Too many pending search index changes, dropping {}", change.getKey());
+                this.failed.incrementAndGet();
+                continue;
+            }
+            if (this.pending.isEmpty()) {
+                this.firstPendingAt = System.currentTimeMillis();
+            }
+            this.pending.put(change.getKey(), change.getValue());
+        }
+        notifyAll();
+    }
+
+    private void flush() {
+        try {
+            BulkRequest request;
+            while ((request = takeBatch()) != null) {
+                send(request);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return BulkRequest - the next batch of pending changes, null if closed and nothing is left
+     */
+    private synchronized BulkRequest takeBatch() throws InterruptedException {
+        while (true) {
+            if (this.pending.isEmpty()) {
+                if (!this.running) {
+                    return null;
+                }
+                wait();
+                continue;
+            }
+            long remaining = this.firstPendingAt + this.lingerMillis - System.currentTimeMillis();
+            if (this.running && remaining > 0 && this.pending.size() < MAX_BATCH_ACTIONS) {
+                wait(remaining);
+                continue;
+            }
+            BulkRequest request = new BulkRequest();
+            Iterator<Map.Entry<String, SearchIndex>> iterator = this.pending.entrySet().iterator();
+            while (iterator.hasNext() && request.numberOfActions() < MAX_BATCH_ACTIONS
+                    && request.estimatedSizeInBytes() < MAX_BATCH_BYTES) {
+                Map.Entry<String, SearchIndex> change = iterator.next();
+                request.add(toRequest(change.getKey(), change.getValue()));
+                iterator.remove();
+            }
+            this.firstPendingAt = System.currentTimeMillis();
+            // wake up bulk loads waiting for pending changes to drain
+            notifyAll();
+            return request;
+        }
+    }
+
+    private static DocWriteRequest<?> toRequest(String id, SearchIndex searchIndex) {
+        if (searchIndex == null) {
+            return new DeleteRequest(SearchIndexDaoJpa.SEARCH_INDEX_NAME, id);
+        }
+        Map<String, Object> source = new HashMap<>();
+        source.put("id", id);
+        source.put("type", searchIndex.getType());
+        source.put("projectId", searchIndex.getProjectId());
+        source.put("value", searchIndex.getValue());
+        if (searchIndex.getParentId() != null) {
+            source.put("parentId", searchIndex.getParentId());
+        }
+        return new IndexRequest(SearchIndexDaoJpa.SEARCH_INDEX_NAME).id(id).source(source);
+    }
+
+    private void send(BulkRequest request) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            BulkResponse response;
+            try {
+                this.bulkRequests.incrementAndGet();
+                response = this.sender.send(request);
+            } catch (Exception ex) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    LOGGER.error("Dropping " + request.numberOfActions() + " search index changes", ex);
+                    this.failed.addAndGet(request.numberOfActions());
+                    return;
+                }
+                LOGGER.warn("Bulk request failed, attempt {}: {}", attempt, ex.toString());
+                TimeUnit.MILLISECONDS.sleep(BACKOFF_MILLIS << (attempt - 1));
+                continue;
+            }
+            request = processResponse(request, response);
+            if (request.numberOfActions() == 0) {
+                return;
+            }
+            if (attempt >= MAX_ATTEMPTS) {
+                LOGGER.error("Dropping {} rejected search index changes", request.numberOfActions());
+                this.failed.addAndGet(request.numberOfActions());
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(BACKOFF_MILLIS << (attempt - 1));
+        }
+    }
+
+    /**
+     * @return BulkRequest - the actions rejected by a full queue, to be retried
+     */
+    private BulkRequest processResponse(BulkRequest request, BulkResponse response) {
+        BulkRequest retry = new BulkRequest();
+        BulkItemResponse[] items = response.getItems();
+        for (int i = 0; i < items.length; i++) {
+            BulkItemResponse item = items[i];
+            if (!item.isFailed()) {
+                if (request.requests().get(i) instanceof DeleteRequest) {
+                    this.deleted.incrementAndGet();
+                } else {
+                    this.indexed.incrementAndGet();
+                }
+            } else if (item.status() == RestStatus.TOO_MANY_REQUESTS) {
+                retry.add(request.requests().get(i));
+            } else {
+                LOGGER.error("Failed to {} search index {}: {}", item.getOpType(), item.getId(), item.getFailureMessage());
+                this.failed.incrementAndGet();
+            }
+        }
+        return retry;
+    }
+
+    public Map<String, Long> getStats() {
+        return ImmutableMap.<String, Long>builder()
+                .put("indexed", this.indexed.get())
+                .put("deleted", this.deleted.get())
+                .put("failed", this.failed.get())
+                .put("coalesced", this.coalesced.get())
+                .put("bulkRequests", this.bulkRequests.get())
+                .build();
+    }
+
+    /**
+     * Send the pending changes, waiting up to AWAIT_TERMINATION_SECONDS
+     */
+    @PreDestroy
+    public void close() {
+        synchronized (this) {
+            this.running = false;
+            notifyAll();
+        }
+        if (this.flusher == null) {
+            return;
+        }
+        try {
+            this.flusher.join(TimeUnit.SECONDS.toMillis(AWAIT_TERMINATION_SECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
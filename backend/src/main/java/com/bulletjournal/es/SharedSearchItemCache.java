@@ -0,0 +1,134 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.repository.NoteContentRepository;
+import com.bulletjournal.repository.SharedProjectItemDaoJpa;
+import com.bulletjournal.repository.TaskContentRepository;
+import com.bulletjournal.repository.models.ProjectItemModel;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.bulletjournal.es.repository.SearchIndexDaoJpa.SEARCH_INDEX_SPLITTER;
+
+/**
+ * Per user cache of the items shared with the user, which search matches on top of the user's projects
+ * <p>
+ * - Entries expire shortly after write instead of being invalidated, a share shows up in search within TTL_SECONDS
+ * - The version of a snapshot is a hash of its search index ids, so reloading unchanged shares keeps it
+ */
+@Component
+public class SharedSearchItemCache {
+    private static final int MAX_SIZE = 10000;
+    private static final long TTL_SECONDS = 30;
+
+    @Autowired
+    private SharedProjectItemDaoJpa sharedProjectItemDaoJpa;
+
+    @Autowired
+    private NoteContentRepository noteContentRepository;
+
+    @Autowired
+    private TaskContentRepository taskContentRepository;
+
+    private final Cache<String, SharedSearchItems> snapshots = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE).expireAfterWrite(TTL_SECONDS, TimeUnit.SECONDS).recordStats().build();
+
+    public SharedSearchItems get(String username) {
+        try {
+            return this.snapshots.get(username, () -> load(username));
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private SharedSearchItems load(String username) {
+        List<ProjectItemModel> projectItemModels = this.sharedProjectItemDaoJpa.getSharedProjectItems(username, null);
+        Map<ContentType, List<Long>> sharedContentIds = this.getContentIdsFromItems(projectItemModels);
+        List<String> searchIndexIds = generateSharedProjectItemIds(projectItemModels, sharedContentIds);
+        Map<ContentType, Set<Long>> projectItemIdMap = getProjectItemIds(searchIndexIds);
+
+        List<String> sorted = new ArrayList<>(searchIndexIds);
+        Collections.sort(sorted);
+        String version = Hashing.murmur3_128().hashString(String.join(",", sorted), StandardCharsets.UTF_8).toString();
+        return new SharedSearchItems(version, Collections.unmodifiableList(searchIndexIds),
+                Collections.unmodifiableSet(projectItemIdMap.getOrDefault(ContentType.NOTE, Collections.emptySet())),
+                Collections.unmodifiableSet(projectItemIdMap.getOrDefault(ContentType.TASK, Collections.emptySet())));
+    }
+
+    // input: task 1, task 2, note 5, note 6
+    // task 1 -> content 1 3
+    // task 2 -> 5, 7
+    // note 5 -> 1, 4
+    // note 6 -> 7, 9, 10
+    // => <ContentType.TASK, [1,2]>, <ContentType.NOTE, [5,6]>
+    // => <ContentType.TASK, [1,3,5,7]>, <ContentType.NOTE, [1,4,7,9,10]>
+    private Map<ContentType, List<Long>> getContentIdsFromItems(List<ProjectItemModel> projectItemModels) {
+        Map<ContentType, List<Long>> m = new HashMap<>();
+        projectItemModels.forEach(item ->
+                m.computeIfAbsent(item.getContentType(), k -> new ArrayList<>()).add(item.getId()));
+        m.forEach((k, v) -> {
+            // item.getId() -> content ids
+            switch (k) {
+                case NOTE:
+                    List<Long> noteContentIds = this.noteContentRepository.findAllByNoteIds(v);
+                    v.clear();
+                    v.addAll(noteContentIds);
+                    break;
+                case TASK:
+                    List<Long> taskContentIds = this.taskContentRepository.findAllByTaskIds(v);
+                    v.clear();
+                    v.addAll(taskContentIds);
+                    break;
+                default:
+            }
+        });
+        return m;
+    }
+
+    private static List<String> generateSharedProjectItemIds(List<ProjectItemModel> items,
+                                                             Map<ContentType, List<Long>> contents) {
+        List<String> ret = new ArrayList<>();
+        for (ProjectItemModel item : items) {
+            ret.add(item.getContentType().name().toLowerCase() + SEARCH_INDEX_SPLITTER + item.getId());
+        }
+
+        contents.forEach((k, v) -> {
+            for (Long id : v) {
+                ret.add(k.name().toLowerCase() + "_content" + SEARCH_INDEX_SPLITTER + id);
+            }
+        });
+        return ret;
+    }
+
+    private static Map<ContentType, Set<Long>> getProjectItemIds(List<String> sharedProjectItemIds) {
+        Map<ContentType, Set<Long>> m = new HashMap<>();
+        sharedProjectItemIds.forEach(id -> {
+            int index = id.indexOf(SEARCH_INDEX_SPLITTER);
+            String contentType = id.substring(0, index).toUpperCase();
+            if (contentType.equals(ContentType.NOTE.name())
+                    || contentType.equals(ContentType.TASK.name()))
+                m.computeIfAbsent(ContentType.valueOf(contentType), k -> new HashSet<>())
+                        .add(Long.valueOf(id.substring(index + 1)));
+        });
+        return m;
+    }
+
+    public CacheStats getStats() {
+        return this.snapshots.stats();
+    }
+}
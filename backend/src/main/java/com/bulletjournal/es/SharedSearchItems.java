@@ -0,0 +1,43 @@
+package com.bulletjournal.es;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Snapshot of the project items shared with a user, as searched for that user
+ */
+public final class SharedSearchItems {
+
+    private final String version;
+
+    // search index ids of the shared items and their contents
+    private final List<String> searchIndexIds;
+
+    private final Set<Long> sharedNoteIds;
+
+    private final Set<Long> sharedTaskIds;
+
+    public SharedSearchItems(String version, List<String> searchIndexIds,
+                             Set<Long> sharedNoteIds, Set<Long> sharedTaskIds) {
+        this.version = version;
+        this.searchIndexIds = searchIndexIds;
+        this.sharedNoteIds = sharedNoteIds;
+        this.sharedTaskIds = sharedTaskIds;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public List<String> getSearchIndexIds() {
+        return searchIndexIds;
+    }
+
+    public Set<Long> getSharedNoteIds() {
+        return sharedNoteIds;
+    }
+
+    public Set<Long> getSharedTaskIds() {
+        return sharedTaskIds;
+    }
+}
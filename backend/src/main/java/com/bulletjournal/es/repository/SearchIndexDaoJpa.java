@@ -1,29 +1,50 @@
 package com.bulletjournal.es.repository;
 
 import com.bulletjournal.config.SpringESConfig;
+import com.bulletjournal.es.ESUtil;
+import com.bulletjournal.es.EmbeddedSearchIndex;
+import com.bulletjournal.es.SearchIndexPipeline;
 import com.bulletjournal.es.repository.models.SearchIndex;
 import com.bulletjournal.notifications.RemoveElasticsearchDocumentEvent;
 import com.bulletjournal.repository.UserDaoJpa;
 import com.bulletjournal.repository.models.*;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.common.text.Text;
 import org.elasticsearch.common.unit.Fuzziness;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.elasticsearch.core.ElasticsearchRestTemplate;
-import org.springframework.data.elasticsearch.core.SearchScrollHits;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsImpl;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
 import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -37,14 +58,15 @@ public class SearchIndexDaoJpa {
     private static final String HIGHLIGHTER_TYPE = "plain";
     private static final String SEARCH_FIELD = "value";
     private static final String FRAGMENTER = "span";
-    private static final String SEARCH_INDEX_NAME = "project_items";
-    private static final String CONTENT_TYPE_SUFFIX = "_content";
+    public static final String SEARCH_INDEX_NAME = "project_items";
     private static final String PROJECT_ID = "projectId";
 
 
     private static final Integer FRAGMENT_SIZE = 300;
     private static final Integer NUM_OF_FRAGMENTS = 1;
-    private static final long SCROLL_TIME_IN_MILLIS = 3600000;
+    // unique per document, breaks ties of equal scores for search after; a keyword field with doc values,
+    // since sorting on _id loads ids into fielddata and is deprecated
+    private static final String TIEBREAKER_FIELD = "id";
 
     @Autowired
     private UserDaoJpa userDaoJpa;
@@ -55,21 +77,34 @@ public class SearchIndexDaoJpa {
     @Autowired
     private SpringESConfig springESConfig;
 
+    @Autowired
+    private SearchIndexPipeline searchIndexPipeline;
+
+    @Autowired
+    private EmbeddedSearchIndex embeddedSearchIndex;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     /**
-     * Search term in ElasticSearch Database. Initialize search pagination with requested page number
-     * and page size.
-     * <p>
-     * Return the search results appeared first page, scrollId and total hits.
+     * Search term in ElasticSearch Database, or in the embedded search index if ElasticSearch is disabled.
+     * Hits are sorted by score and id, and a page continues after the sort values of the previous page's last hit,
+     * so no search context is kept between pages.
      *
-     * @param username requested username
-     * @param term     search term
-     * @param pageNo   the page number
-     * @param pageSize the record count in one page
-     * @return SearchScrollHits contains the search results
+     * @param username      requested username
+     * @param term          search term
+     * @param sharedItemIds search index ids of items shared with the user
+     * @param searchAfter   sort values of the last hit of the previous page, null for the first page
+     * @param pageNo        the page number of the first page
+     * @param pageSize      the record count in one page
+     * @return SearchHits contains the search results, with their sort values
      */
-    public SearchScrollHits<SearchIndex> search(String username, String term, List<String> sharedItemIds,
-                                                int pageNo, int pageSize) {
+    public SearchHits<SearchIndex> search(String username, String term, List<String> sharedItemIds,
+                                          List<Object> searchAfter, int pageNo, int pageSize) {
         List<Long> projectIdList = getUserProjects(username);
+        if (this.embeddedSearchIndex.isEnabled()) {
+            return this.embeddedSearchIndex.search(projectIdList, sharedItemIds, term, searchAfter, pageNo, pageSize);
+        }
 
         BoolQueryBuilder queryBuilder = new BoolQueryBuilder();
         for (long pid : projectIdList) {
@@ -93,29 +128,46 @@ public class SearchIndexDaoJpa {
                 .fragmentSize(FRAGMENT_SIZE)
                 .numOfFragments(NUM_OF_FRAGMENTS).highlighterType(HIGHLIGHTER_TYPE);
 
-        NativeSearchQuery query = new NativeSearchQueryBuilder()
-                .withQuery(queryBuilder)
-                .withHighlightBuilder(highlightBuilder)
-                .withPageable(PageRequest.of(pageNo, pageSize))
-                .build();
+        SearchSourceBuilder source = new SearchSourceBuilder()
+                .query(queryBuilder)
+                .highlighter(highlightBuilder)
+                .size(pageSize)
+                .trackScores(true)
+                .sort(SortBuilders.scoreSort())
+                .sort(SortBuilders.fieldSort(TIEBREAKER_FIELD));
+        if (searchAfter == null) {
+            source.from(pageNo * pageSize);
+        } else {
+            source.searchAfter(searchAfter.toArray());
+        }
 
-        return elasticsearchRestTemplate.searchScrollStart(SCROLL_TIME_IN_MILLIS,
-                query,
-                SearchIndex.class,
-                IndexCoordinates.of(SEARCH_INDEX_NAME));
+        SearchResponse response = this.elasticsearchRestTemplate.execute(client -> client.search(
+                new SearchRequest(SEARCH_INDEX_NAME).source(source), RequestOptions.DEFAULT));
+        List<SearchHit<SearchIndex>> hits = new ArrayList<>();
+        for (org.elasticsearch.search.SearchHit hit : response.getHits().getHits()) {
+            hits.add(toSearchHit(hit));
+        }
+        TotalHits totalHits = response.getHits().getTotalHits();
+        return new SearchHitsImpl<>(totalHits == null ? hits.size() : totalHits.value,
+                totalHits == null || totalHits.relation == TotalHits.Relation.EQUAL_TO
+                        ? TotalHitsRelation.EQUAL_TO : TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO,
+                response.getHits().getMaxScore(), null, hits, null);
     }
 
-    /**
-     * Search results in next page with scrollId
-     *
-     * @param scrollId the scrollId for pagination
-     * @return SearchScrollHits contains the search results
-     */
-    public SearchScrollHits<SearchIndex> search(String scrollId) {
-        return elasticsearchRestTemplate.searchScrollContinue(scrollId,
-                SCROLL_TIME_IN_MILLIS,
-                SearchIndex.class,
-                IndexCoordinates.of(SEARCH_INDEX_NAME));
+    private static SearchHit<SearchIndex> toSearchHit(org.elasticsearch.search.SearchHit hit) {
+        Map<String, Object> source = hit.getSourceAsMap();
+        SearchIndex searchIndex = new SearchIndex();
+        searchIndex.setId(hit.getId());
+        searchIndex.setType((String) source.get("type"));
+        Object projectId = source.get(PROJECT_ID);
+        searchIndex.setProjectId(projectId == null ? null : ((Number) projectId).longValue());
+        searchIndex.setValue((String) source.get(SEARCH_FIELD));
+        searchIndex.setParentId((String) source.get("parentId"));
+
+        Map<String, List<String>> highlightFields = new HashMap<>();
+        hit.getHighlightFields().forEach((field, highlight) -> highlightFields.put(field,
+                Arrays.stream(highlight.getFragments()).map(Text::string).collect(Collectors.toList())));
+        return new SearchHit<>(hit.getId(), hit.getScore(), hit.getSortValues(), highlightFields, searchIndex);
     }
 
     /**
@@ -135,41 +187,30 @@ public class SearchIndexDaoJpa {
     }
 
     /**
-     * Delete target search index from elastic search jpa
-     *
-     * @param searchIndex target search index
-     */
-    private void deleteSearchIndex(SearchIndex searchIndex) {
-        this.elasticsearchRestTemplate.delete(searchIndex);
-    }
-
-    /**
-     * Delete a list of search indices through delete search index api
+     * Delete a list of search indices through the bulk search index pipeline
      *
      * @param searchIndices a list of search indices
      */
     public void deleteSearchIndices(List<SearchIndex> searchIndices) {
-        searchIndices.forEach(this::deleteSearchIndex);
+        deleteSearchIndexDocuments(searchIndices.stream().map(SearchIndex::getId).collect(Collectors.toList()));
     }
 
     /**
-     * Delete target document by id from elastic search jpa
+     * Delete target document by id through the bulk search index pipeline
      *
      * @param documentId target search index
      */
     public void deleteSearchIndexDocument(String documentId) {
-        this.elasticsearchRestTemplate.delete(documentId, IndexCoordinates.of(SEARCH_INDEX_NAME));
+        deleteSearchIndexDocuments(Collections.singletonList(documentId));
     }
 
     /**
-     * Delete target document by id from elastic search jpa
+     * Delete target documents by id through the bulk search index pipeline
      *
      * @param documentIds target search index
      */
     public void deleteSearchIndexDocuments(List<String> documentIds) {
-        for (String s : documentIds) {
-            deleteSearchIndexDocument(s);
-        }
+        this.searchIndexPipeline.delete(documentIds);
     }
 
     /**
@@ -178,6 +219,10 @@ public class SearchIndexDaoJpa {
      * @param projectId target search index
      */
     public void deleteSearchIndexProject(Long projectId) {
+        if (this.embeddedSearchIndex.isEnabled()) {
+            this.embeddedSearchIndex.deleteProject(projectId);
+            return;
+        }
         QueryBuilder matchQuery = QueryBuilders.matchQuery(PROJECT_ID, projectId);
         NativeSearchQuery query = new NativeSearchQueryBuilder().withQuery(matchQuery).build();
         this.elasticsearchRestTemplate.delete(query, SearchIndex.class, IndexCoordinates.of(SEARCH_INDEX_NAME));
@@ -189,11 +234,40 @@ public class SearchIndexDaoJpa {
      * @return String- content id in search index format
      */
     public <K extends ContentModel> String getContentSearchIndexId(K content) {
-        return content.getProjectItem().getContentType().toString().toLowerCase() +
-                CONTENT_TYPE_SUFFIX + SEARCH_INDEX_SPLITTER + content.getId();
+        return ESUtil.getContentSearchIndexId(content);
     }
 
     public void delete(List<RemoveElasticsearchDocumentEvent> events) {
-        events.forEach(event -> this.deleteSearchIndexDocuments(event.getDocumentIds()));
+        this.deleteSearchIndexDocuments(events.stream()
+                .flatMap(event -> event.getDocumentIds().stream()).collect(Collectors.toList()));
+    }
+
+    /**
+     * Build the documents of the project items or contents following an id, for bulk loading the embedded
+     * search index
+     * <p>
+     * Pages by id instead of offset, so neither a count query nor skipping rows is needed
+     *
+     * @param entityClass Task, Note, Transaction or the content class of one of them
+     * @param afterId     only entities with a larger id are read
+     * @param limit       max number of entities read
+     * @return LinkedHashMap<Long, SearchIndex> - documents keyed by entity id in id order, empty once past the last
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public LinkedHashMap<Long, SearchIndex> getSearchIndexes(Class<?> entityClass, long afterId, int limit) {
+        List<?> entities = this.entityManager.createQuery("SELECT e FROM " + entityClass.getSimpleName()
+                + " e WHERE e.id > :afterId ORDER BY e.id", entityClass)
+                .setParameter("afterId", afterId).setMaxResults(limit).getResultList();
+        LinkedHashMap<Long, SearchIndex> searchIndexes = new LinkedHashMap<>();
+        for (Object entity : entities) {
+            if (entity instanceof ProjectItemModel) {
+                ProjectItemModel projectItem = (ProjectItemModel) entity;
+                searchIndexes.put(projectItem.getId(), ESUtil.toSearchIndex(projectItem));
+            } else if (entity instanceof ContentModel) {
+                ContentModel content = (ContentModel) entity;
+                searchIndexes.put(content.getId(), ESUtil.toSearchIndex(content));
+            }
+        }
+        return searchIndexes;
     }
 }
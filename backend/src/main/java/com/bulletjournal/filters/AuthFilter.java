@@ -5,8 +5,8 @@ import com.bulletjournal.config.AuthConfig;
 import com.bulletjournal.config.VersionConfig;
 import com.bulletjournal.controller.GoogleCalendarController;
 import com.bulletjournal.controller.UserController;
+import com.bulletjournal.redis.IdentityNearCache;
 import com.bulletjournal.redis.models.LockedUser;
-import com.bulletjournal.redis.RedisLockedUserRepository;
 import com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,7 +41,7 @@ public class AuthFilter implements Filter {
     private VersionConfig versionConfig;
 
     @Autowired
-    private RedisLockedUserRepository redisLockedUserRepository;
+    private IdentityNearCache identityNearCache;
 
     @Override
     public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
@@ -59,7 +59,7 @@ public class AuthFilter implements Filter {
 
                     username = URLDecoder.decode(val, StandardCharsets.UTF_8.toString());
 
-                    Optional<LockedUser> lockedUserOptional = redisLockedUserRepository.findById(username);
+                    Optional<LockedUser> lockedUserOptional = identityNearCache.getLockedUser(username);
                     if (lockedUserOptional.isPresent()) {
                         LOGGER.info("User {} remains locked for {} hour(s)", username,
                                 String.format("%.2f", lockedUserOptional.get().getExpirationInHour()));
@@ -4,10 +4,10 @@ import com.bulletjournal.clients.UserClient;
 import com.bulletjournal.config.MDCConfig;
 import com.bulletjournal.config.RateConfig;
 import com.bulletjournal.config.RedisConfig;
+import com.bulletjournal.redis.IdentityNearCache;
 import com.bulletjournal.redis.models.LockedIP;
 import com.bulletjournal.redis.models.LockedUser;
 import com.bulletjournal.redis.RedisLockedIPRepository;
-import com.bulletjournal.redis.RedisLockedUserRepository;
 import io.github.bucket4j.*;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,7 +32,7 @@ public class TokenBucket {
     @Autowired
     private RedisConfig redisConfig;
     @Autowired
-    private RedisLockedUserRepository redisLockedUserRepository;
+    private IdentityNearCache identityNearCache;
     @Autowired
     private RedisLockedIPRepository redisLockedIPRepository;
 
@@ -68,7 +68,7 @@ public class TokenBucket {
         boolean consumed = consumeToken(username, bucketsUser, rateConfig.getFileUpload());
 
         if (!consumed) {
-            redisLockedUserRepository.save(new LockedUser(username, "User file upload requests exceeded limit"));
+            identityNearCache.lockUser(new LockedUser(username, "User file upload requests exceeded limit"));
         }
         return !consumed;
     }
@@ -82,7 +82,7 @@ public class TokenBucket {
         boolean consumed = consumeToken(username, bucketsUser, limit);
 
         if (!consumed) {
-            redisLockedUserRepository.save(new LockedUser(username, "User API requests exceeded limit"));
+            identityNearCache.lockUser(new LockedUser(username, "User API requests exceeded limit"));
         }
 
         return !consumed;
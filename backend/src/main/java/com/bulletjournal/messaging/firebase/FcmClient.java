@@ -1,14 +1,10 @@
 package com.bulletjournal.messaging.firebase;
 
 import com.bulletjournal.repository.DeviceTokenDaoJpa;
-import com.bulletjournal.util.CustomThreadFactory;
-import com.google.api.core.ApiFuture;
-import com.google.api.core.ApiFutureCallback;
-import com.google.api.core.ApiFutures;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
-import com.google.firebase.messaging.*;
+import com.google.firebase.messaging.FirebaseMessaging;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,11 +14,9 @@ import org.springframework.stereotype.Component;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Component
 public class FcmClient {
@@ -31,23 +25,13 @@ public class FcmClient {
 
     private static final String FCM_ACCOUNT_KEY = "FCM_ACCOUNT_KEY";
 
-    private static final String TOKEN_REGISTRATION_ERROR = "registration-token-not-registered";
-
-    private static long AWAIT_TERMINATION_SECONDS = 5;
-
-    private static final Notification DEFAULT_NOTIFICATION
-        = Notification.builder().setTitle("Bullet Journal").setBody("You've got a new message.").build();
-
     @Autowired
     private DeviceTokenDaoJpa deviceTokenDaoJpa;
 
-    private ExecutorService executorService;
-
-    private FirebaseMessaging firebase;
+    private FcmDispatcher dispatcher;
 
     @PostConstruct
     public void initialize() {
-        this.executorService = Executors.newSingleThreadExecutor(new CustomThreadFactory("FcmMessaging"));
         if (System.getenv(FCM_ACCOUNT_KEY) != null) {
             try {
                 FirebaseOptions options
@@ -57,7 +41,8 @@ public class FcmClient {
                     .build();
                 if (FirebaseApp.getApps().isEmpty()) {
                     FirebaseApp.initializeApp(options);
-                    this.firebase = FirebaseMessaging.getInstance();
+                    this.dispatcher = new FcmDispatcher(
+                        new FirebaseTransport(FirebaseMessaging.getInstance()), this.deviceTokenDaoJpa::deleteTokens);
                     LOGGER.info("Firebase application has been initialized");
                 }
             } catch (IOException e) {
@@ -69,7 +54,7 @@ public class FcmClient {
     }
 
     public void sendAllMessagesAsync(List<FcmMessageParams> paramsList) {
-        if (this.firebase == null) {
+        if (this.dispatcher == null) {
             LOGGER.error("FirebaseMessaging not initialized, cannot send message.");
             return;
         }
@@ -77,70 +62,20 @@ public class FcmClient {
             return;
         }
         LOGGER.info("Sending mobile notifications: {}", paramsList);
-        List<Message> messages
-            = paramsList.stream().map(this::getMessageFromParams).collect(Collectors.toList());
-        ApiFuture<BatchResponse> future
-            = firebase.sendAllAsync(messages);
-        ApiFutures.addCallback(future, new ApiFutureCallback<BatchResponse>() {
-            @Override
-            public void onFailure(Throwable t) {
-                LOGGER.warn("Failed to send messages: {}\nError: {}",
-                    paramsList, t.getMessage());
-            }
-
-            @Override
-            public void onSuccess(BatchResponse result) {
-                processResponse(result, paramsList);
-            }
-        }, executorService);
-    }
-
-    private void processResponse(BatchResponse batchResponse, List<FcmMessageParams> messages) {
-        LOGGER.info("Got batchResponse, succeeded: {}, failed: {}",
-            batchResponse.getSuccessCount(), batchResponse.getFailureCount());
-        List<SendResponse> responses = batchResponse.getResponses();
-        for (int i = 0; i < responses.size(); ++i) {
-            SendResponse response = responses.get(i);
-            if (!response.isSuccessful()) {
-                LOGGER.warn("Failed to send Message with Error: '{}', message content: '{}'",
-                    response.getException().getErrorCode(), messages.get(i));
-                if (response.getException().getErrorCode().equals(TOKEN_REGISTRATION_ERROR)) {
-                    String invalidToken = messages.get(i).getToken();
-                    if (deviceTokenDaoJpa.deleteToken(invalidToken)) {
-                        LOGGER.info("Removed expired/invalid token {}.", invalidToken);
-                    } else {
-                        LOGGER.error("Expired/invalid token {} doesn't exist in db.", invalidToken);
-                    }
-                }
-            }
-        }
+        this.dispatcher.submit(paramsList);
     }
 
-    private Message getMessageFromParams(FcmMessageParams fcmMessageParams) {
-        Message.Builder msg = Message.builder()
-            .setToken(fcmMessageParams.getToken())
-            .putAllData(fcmMessageParams.getData());
-        if (fcmMessageParams.getNotificationTitle() == null) {
-            msg.setNotification(DEFAULT_NOTIFICATION);
-        } else {
-            msg.setNotification(
-                Notification.builder()
-                    .setTitle(fcmMessageParams.getNotificationTitle())
-                    .setBody(fcmMessageParams.getNotificationBody())
-                    .build()
-            );
-        }
-        return msg.build();
+    /**
+     * @return Map<String, Long> - delivery counts of the dispatcher, empty if FCM is not set up
+     */
+    public Map<String, Long> getStats() {
+        return this.dispatcher == null ? Collections.emptyMap() : this.dispatcher.getStats();
     }
 
     @PreDestroy
     public void preDestroy() {
-        if (executorService != null) {
-            try {
-                executorService.awaitTermination(AWAIT_TERMINATION_SECONDS, TimeUnit.SECONDS);
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
-            }
+        if (this.dispatcher != null) {
+            this.dispatcher.close();
         }
     }
 }
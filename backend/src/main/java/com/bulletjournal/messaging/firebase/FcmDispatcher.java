@@ -0,0 +1,326 @@
+package com.bulletjournal.messaging.firebase;
+
+import com.bulletjournal.util.CustomThreadFactory;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Queues push messages and sends them through a {@link FcmTransport}
+ * <p>
+ * - Pending messages are bounded, messages beyond MAX_PENDING are dropped
+ * - A message identical to a pending one, e.g. a repeated etag update to the same token, is coalesced into it
+ * - Messages are sent in batches of the transport's max batch size, at most MAX_IN_FLIGHT batches at a time
+ * - A failed batch, or messages failed with a retryable error, are retried with exponential backoff
+ * - Unregistered tokens are collected and removed in one call per INVALID_TOKEN_FLUSH_MILLIS
+ */
+public class FcmDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FcmDispatcher.class);
+
+    static final String TOKEN_REGISTRATION_ERROR = "registration-token-not-registered";
+
+    private static final Set<String> RETRYABLE_ERRORS =
+        ImmutableSet.of("internal-error", "server-unavailable", "message-rate-exceeded");
+
+    static final int MAX_PENDING = 10000;
+
+    static final int MAX_IN_FLIGHT = 4;
+
+    static final int MAX_ATTEMPTS = 3;
+
+    private static final long COALESCE_WINDOW_MILLIS = 200;
+
+    private static final long BACKOFF_MILLIS = 1000;
+
+    private static final long INVALID_TOKEN_FLUSH_MILLIS = 1000;
+
+    private static final long AWAIT_TERMINATION_SECONDS = 5;
+
+    private final FcmTransport transport;
+
+    private final Consumer<Collection<String>> invalidTokenRemover;
+
+    private final long coalesceWindowMillis;
+
+    private final long backoffMillis;
+
+    // guarded by this
+    private final LinkedHashMap<List<Object>, FcmMessageParams> pending = new LinkedHashMap<>();
+
+    private final Queue<Batch> retries = new ArrayDeque<>();
+
+    private Set<String> invalidTokens = new HashSet<>();
+
+    private long firstPendingAt;
+
+    private boolean running = true;
+
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
+    private final Thread dispatcher;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final AtomicLong sent = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong retried = new AtomicLong();
+
+    private final AtomicLong removedTokens = new AtomicLong();
+
+    /**
+     * @param transport           the transport sending batches
+     * @param invalidTokenRemover removes unregistered tokens, called from the dispatcher's scheduler thread
+     */
+    public FcmDispatcher(FcmTransport transport, Consumer<Collection<String>> invalidTokenRemover) {
+        this(transport, invalidTokenRemover, COALESCE_WINDOW_MILLIS, BACKOFF_MILLIS);
+    }
+
+    FcmDispatcher(FcmTransport transport, Consumer<Collection<String>> invalidTokenRemover,
+                  long coalesceWindowMillis, long backoffMillis) {
+        this.transport = transport;
+        this.invalidTokenRemover = invalidTokenRemover;
+        this.coalesceWindowMillis = coalesceWindowMillis;
+        this.backoffMillis = backoffMillis;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new CustomThreadFactory("FcmScheduler"));
+        // retries not due yet are dropped on close
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduler.scheduleWithFixedDelay(this::removeInvalidTokens,
+            INVALID_TOKEN_FLUSH_MILLIS, INVALID_TOKEN_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        this.dispatcher = new CustomThreadFactory("FcmDispatcher").newThread(this::dispatch);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queue messages without blocking
+     *
+     * @param paramsList the messages
+     */
+    public synchronized void submit(Collection<FcmMessageParams> paramsList) {
+        if (!this.running) {
+            LOGGER.warn("FcmDispatcher closed, dropping messages: {}", paramsList);
+            this.dropped.addAndGet(paramsList.size());
+            return;
+        }
+        for (FcmMessageParams params : paramsList) {
+            List<Object> key = Arrays.asList(params.getToken(), params.getNotificationTitle(),
+                params.getNotificationBody(), params.getData());
+            if (this.pending.containsKey(key)) {
+                this.coalesced.incrementAndGet();
+                continue;
+            }
+            if (this.pending.size() >= MAX_PENDING) {
+                LOGGER.warn("Too many pending messages, dropping message: {}", params);
+                this.dropped.incrementAndGet();
+                continue;
+            }
+            if (this.pending.isEmpty()) {
+                this.firstPendingAt = System.currentTimeMillis();
+            }
+            this.pending.put(key, params);
+        }
+        notifyAll();
+    }
+
+    private void dispatch() {
+        try {
+            Batch batch;
+            while ((batch = takeBatch()) != null) {
+                this.inFlight.acquire();
+                send(batch);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Batch - the next retry or batch of pending messages, null if closed and nothing is left
+     */
+    private synchronized Batch takeBatch() throws InterruptedException {
+        int maxBatchSize = this.transport.getMaxBatchSize();
+        while (true) {
+            if (!this.retries.isEmpty()) {
+                return this.retries.poll();
+            }
+            if (this.pending.isEmpty()) {
+                if (!this.running) {
+                    return null;
+                }
+                wait();
+                continue;
+            }
+            long remaining = this.firstPendingAt + this.coalesceWindowMillis - System.currentTimeMillis();
+            if (this.running && remaining > 0 && this.pending.size() < maxBatchSize) {
+                // let duplicates coalesce and the batch fill up
+                wait(remaining);
+                continue;
+            }
+            List<FcmMessageParams> messages = new ArrayList<>(Math.min(this.pending.size(), maxBatchSize));
+            Iterator<FcmMessageParams> iterator = this.pending.values().iterator();
+            while (iterator.hasNext() && messages.size() < maxBatchSize) {
+                messages.add(iterator.next());
+                iterator.remove();
+            }
+            this.firstPendingAt = System.currentTimeMillis();
+            return new Batch(messages, 1);
+        }
+    }
+
+    private void send(Batch batch) {
+        CompletableFuture<List<String>> future;
+        try {
+            future = this.transport.sendAll(batch.messages);
+        } catch (Exception ex) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+        }
+        future.whenComplete((errorCodes, t) -> {
+            this.inFlight.release();
+            if (t != null) {
+                LOGGER.warn("Failed to send messages: {}\nError: {}", batch.messages, t.getMessage());
+                retry(batch.messages, batch.attempt);
+            } else {
+                processResponse(batch, errorCodes);
+            }
+        });
+    }
+
+    private void processResponse(Batch batch, List<String> errorCodes) {
+        List<FcmMessageParams> retryable = new ArrayList<>();
+        List<String> unregistered = new ArrayList<>();
+        for (int i = 0; i < errorCodes.size(); ++i) {
+            String errorCode = errorCodes.get(i);
+            if (errorCode == null) {
+                this.sent.incrementAndGet();
+                continue;
+            }
+            FcmMessageParams message = batch.messages.get(i);
+            if (RETRYABLE_ERRORS.contains(errorCode)) {
+                retryable.add(message);
+                continue;
+            }
+            LOGGER.warn("Failed to send Message with Error: '{}', message content: '{}'", errorCode, message);
+            this.failed.incrementAndGet();
+            if (TOKEN_REGISTRATION_ERROR.equals(errorCode)) {
+                unregistered.add(message.getToken());
+            }
+        }
+        LOGGER.info("Got batchResponse, messages: {}, unregistered: {}, retryable: {}",
+            errorCodes.size(), unregistered.size(), retryable.size());
+        if (!unregistered.isEmpty()) {
+            synchronized (this) {
+                this.invalidTokens.addAll(unregistered);
+            }
+        }
+        if (!retryable.isEmpty()) {
+            retry(retryable, batch.attempt);
+        }
+    }
+
+    private void retry(List<FcmMessageParams> messages, int attempt) {
+        if (attempt >= MAX_ATTEMPTS) {
+            LOGGER.error("Dropping messages after {} attempts: {}", attempt, messages);
+            this.failed.addAndGet(messages.size());
+            return;
+        }
+        this.retried.addAndGet(messages.size());
+        long delay = this.backoffMillis << (attempt - 1);
+        try {
+            this.scheduler.schedule(() -> {
+                synchronized (this) {
+                    this.retries.add(new Batch(messages, attempt + 1));
+                    notifyAll();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (Exception ex) {
+            // scheduler is shut down
+            LOGGER.error("Dropping messages on shutdown: {}", messages);
+            this.failed.addAndGet(messages.size());
+        }
+    }
+
+    private void removeInvalidTokens() {
+        Set<String> tokens;
+        synchronized (this) {
+            if (this.invalidTokens.isEmpty()) {
+                return;
+            }
+            tokens = this.invalidTokens;
+            this.invalidTokens = new HashSet<>();
+        }
+        try {
+            this.invalidTokenRemover.accept(tokens);
+            this.removedTokens.addAndGet(tokens.size());
+            LOGGER.info("Removed expired/invalid tokens {}.", tokens);
+        } catch (Exception ex) {
+            LOGGER.error("Unable to remove expired/invalid tokens " + tokens, ex);
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        return ImmutableMap.<String, Long>builder()
+            .put("sent", this.sent.get())
+            .put("failed", this.failed.get())
+            .put("coalesced", this.coalesced.get())
+            .put("dropped", this.dropped.get())
+            .put("retried", this.retried.get())
+            .put("removedTokens", this.removedTokens.get())
+            .build();
+    }
+
+    /**
+     * Send the pending messages, wait for them up to AWAIT_TERMINATION_SECONDS and stop
+     */
+    public void close() {
+        synchronized (this) {
+            this.running = false;
+            notifyAll();
+        }
+        try {
+            this.dispatcher.join(TimeUnit.SECONDS.toMillis(AWAIT_TERMINATION_SECONDS));
+            if (this.inFlight.tryAcquire(MAX_IN_FLIGHT, AWAIT_TERMINATION_SECONDS, TimeUnit.SECONDS)) {
+                this.inFlight.release(MAX_IN_FLIGHT);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        this.scheduler.shutdown();
+        removeInvalidTokens();
+    }
+
+    private static final class Batch {
+        private final List<FcmMessageParams> messages;
+        private final int attempt;
+
+        private Batch(List<FcmMessageParams> messages, int attempt) {
+            this.messages = messages;
+            this.attempt = attempt;
+        }
+    }
+}
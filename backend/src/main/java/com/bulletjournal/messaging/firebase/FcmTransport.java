@@ -0,0 +1,22 @@
+package com.bulletjournal.messaging.firebase;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends one batch of push messages for {@link FcmDispatcher}
+ */
+public interface FcmTransport {
+
+    /**
+     * @return int - the max number of messages the provider accepts in one batch
+     */
+    int getMaxBatchSize();
+
+    /**
+     * @param batch messages, no more than getMaxBatchSize()
+     * @return CompletableFuture<List<String>> - error code of each message in batch order, null if it is sent,
+     * or completed exceptionally if the whole batch failed
+     */
+    CompletableFuture<List<String>> sendAll(List<FcmMessageParams> batch);
+}
@@ -0,0 +1,77 @@
+package com.bulletjournal.messaging.firebase;
+
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.Notification;
+import com.google.firebase.messaging.SendResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * {@link FcmTransport} backed by FirebaseMessaging.sendAllAsync
+ */
+public class FirebaseTransport implements FcmTransport {
+
+    // limit of FirebaseMessaging.sendAll
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private static final Notification DEFAULT_NOTIFICATION
+        = Notification.builder().setTitle("Bullet Journal").setBody("You've got a new message.").build();
+
+    private final FirebaseMessaging firebase;
+
+    public FirebaseTransport(FirebaseMessaging firebase) {
+        this.firebase = firebase;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return MAX_BATCH_SIZE;
+    }
+
+    @Override
+    public CompletableFuture<List<String>> sendAll(List<FcmMessageParams> batch) {
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        List<Message> messages = batch.stream().map(this::getMessageFromParams).collect(Collectors.toList());
+        ApiFutures.addCallback(this.firebase.sendAllAsync(messages), new ApiFutureCallback<BatchResponse>() {
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onSuccess(BatchResponse batchResponse) {
+                List<String> errorCodes = new ArrayList<>(batch.size());
+                for (SendResponse response : batchResponse.getResponses()) {
+                    errorCodes.add(response.isSuccessful() ? null : response.getException().getErrorCode());
+                }
+                result.complete(errorCodes);
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    private Message getMessageFromParams(FcmMessageParams fcmMessageParams) {
+        Message.Builder msg = Message.builder()
+            .setToken(fcmMessageParams.getToken())
+            .putAllData(fcmMessageParams.getData());
+        if (fcmMessageParams.getNotificationTitle() == null) {
+            msg.setNotification(DEFAULT_NOTIFICATION);
+        } else {
+            msg.setNotification(
+                Notification.builder()
+                    .setTitle(fcmMessageParams.getNotificationTitle())
+                    .setBody(fcmMessageParams.getNotificationBody())
+                    .build()
+            );
+        }
+        return msg.build();
+    }
+}
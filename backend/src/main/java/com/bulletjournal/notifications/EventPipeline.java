@@ -0,0 +1,156 @@
+package com.bulletjournal.notifications;
+
+import com.bulletjournal.util.CustomThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Bounded, partitioned queue of one event kind
+ * <p>
+ * - Events are partitioned by key, each partition is drained by its own worker thread,
+ * so events of the same key are handled in order and different keys run in parallel
+ * - A worker drains up to maxBatchSize events and hands them to the handler as one batch
+ * - When a partition is full, the producer blocks until there is room and it is counted as blocked
+ * <p>
+ * A handler must not offer to its own pipeline, otherwise it may block on a full partition forever.
+ */
+public class EventPipeline<E> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventPipeline.class);
+    private static final long POLL_TIMEOUT_MILLIS = 1000;
+
+    private final String name;
+    private final List<BlockingQueue<E>> partitions;
+    private final Function<E, Object> partitioner;
+    private final Consumer<List<E>> handler;
+    private final int maxBatchSize;
+    private final ExecutorService executorService;
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong handled = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean stop = false;
+
+    public EventPipeline(String name, int partitionCount, int capacity, int maxBatchSize,
+                         Function<E, Object> partitioner, Consumer<List<E>> handler) {
+        this.name = name;
+        this.partitioner = partitioner;
+        this.handler = handler;
+        this.maxBatchSize = maxBatchSize;
+        this.partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            this.partitions.add(new ArrayBlockingQueue<>(capacity));
+        }
+        this.executorService = Executors.newFixedThreadPool(partitionCount, new CustomThreadFactory(name));
+    }
+
+    public void start() {
+        for (BlockingQueue<E> partition : this.partitions) {
+            this.executorService.submit(() -> this.drain(partition));
+        }
+    }
+
+    public void offer(E event) {
+        Object key = this.partitioner.apply(event);
+        int index = key == null ? 0 : Math.floorMod(key.hashCode(), this.partitions.size());
+        BlockingQueue<E> partition = this.partitions.get(index);
+        this.offered.incrementAndGet();
+        if (partition.offer(event)) {
+            return;
+        }
+        long count = this.blocked.incrementAndGet();
+        LOGGER.warn("{} partition {} is full, blocked {} times", this.name, index, count);
+        try {
+            partition.put(event);
+        } catch (InterruptedException ex) {
+            this.failed.incrementAndGet();
+            LOGGER.error("Interrupted on offering to " + this.name, ex);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain(BlockingQueue<E> partition) {
+        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+        List<E> events = new ArrayList<>();
+        while (!this.stop) {
+            try {
+                // waiting until an element becomes available
+                E event = partition.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    continue;
+                }
+                events.add(event);
+                partition.drainTo(events, this.maxBatchSize - 1);
+                this.handler.accept(events);
+                this.handled.addAndGet(events.size());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                this.failed.addAndGet(events.size());
+                LOGGER.error("Error on handling " + this.name, ex);
+            } finally {
+                events.clear();
+            }
+        }
+    }
+
+    public void shutdown() {
+        this.stop = true;
+        this.executorService.shutdown();
+    }
+
+    public void awaitTermination(long timeoutMillis) {
+        try {
+            this.executorService.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueSize() {
+        return this.partitions.stream().mapToInt(BlockingQueue::size).sum();
+    }
+
+    public long getOffered() {
+        return offered.get();
+    }
+
+    public long getHandled() {
+        return handled.get();
+    }
+
+    public long getBlocked() {
+        return blocked.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "EventPipeline{" +
+                "name='" + name + '\'' +
+                ", queueSize=" + getQueueSize() +
+                ", offered=" + offered +
+                ", handled=" + handled +
+                ", blocked=" + blocked +
+                ", failed=" + failed +
+                '}';
+    }
+}
@@ -1,42 +1,70 @@
 package com.bulletjournal.notifications;
 
+import com.bulletjournal.config.ContentImportConfig;
+import com.bulletjournal.config.NotificationConfig;
 import com.bulletjournal.config.SpringESConfig;
 import com.bulletjournal.daemon.Reminder;
 import com.bulletjournal.es.repository.SearchIndexDaoJpa;
 import com.bulletjournal.redis.RedisEtagDaoJpa;
 import com.bulletjournal.repository.AuditableDaoJpa;
 import com.bulletjournal.repository.NotificationDaoJpa;
+import com.bulletjournal.repository.NotificationOutboxDaoJpa;
 import com.bulletjournal.repository.ProjectDaoJpa;
 import com.bulletjournal.repository.TaskDaoJpa;
 import com.bulletjournal.templates.repository.SampleTaskDaoJpa;
 import com.bulletjournal.util.CustomThreadFactory;
+import com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class NotificationService {
     private static final Logger LOGGER = LoggerFactory.getLogger(NotificationService.class);
-    private final ExecutorService executorService;
-    private final BlockingQueue<Object> eventQueue;
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+    private static final long OUTBOX_POLL_TIMEOUT_MILLIS = 5000;
+
     private final NotificationDaoJpa notificationDaoJpa;
     private final AuditableDaoJpa auditableDaoJpa;
     private final SearchIndexDaoJpa searchIndexDaoJpa;
     private final RedisEtagDaoJpa redisEtagDaoJpa;
+    private final NotificationOutboxDaoJpa notificationOutboxDaoJpa;
+
+    // informed, auditable, ES deletes and content batches go through the durable outbox
+    private final List<Semaphore> outboxSignals = new ArrayList<>();
+    private final ExecutorService outboxExecutorService;
     private volatile boolean stop = false;
 
+    private final EventPipeline<EtagEvent> etagPipeline;
+    private final EventPipeline<Remindable> remindablePipeline;
+    private final EventPipeline<SampleProjectsCreation> sampleProjectsCreationPipeline;
+    private final EventPipeline<SampleTaskChange> sampleTaskChangePipeline;
+    private final List<EventPipeline<?>> pipelines;
+
     @Autowired
     private SpringESConfig springESConfig;
 
+    @Autowired
+    private ContentImportConfig contentImportConfig;
+
     @Autowired
     @Lazy
     private Reminder reminder;
@@ -54,18 +82,47 @@ public class NotificationService {
 
     @Autowired
     public NotificationService(NotificationDaoJpa notificationDaoJpa, AuditableDaoJpa auditableDaoJpa,
-                               SearchIndexDaoJpa searchIndexDaoJpa, RedisEtagDaoJpa redisEtagDaoJpa) {
+                               SearchIndexDaoJpa searchIndexDaoJpa, RedisEtagDaoJpa redisEtagDaoJpa,
+                               NotificationOutboxDaoJpa notificationOutboxDaoJpa,
+                               NotificationConfig notificationConfig) {
         this.notificationDaoJpa = notificationDaoJpa;
         this.auditableDaoJpa = auditableDaoJpa;
         this.searchIndexDaoJpa = searchIndexDaoJpa;
         this.redisEtagDaoJpa = redisEtagDaoJpa;
-        this.executorService = Executors.newSingleThreadExecutor(new CustomThreadFactory("notification-service"));
-        this.eventQueue = new LinkedBlockingQueue<>();
+        this.notificationOutboxDaoJpa = notificationOutboxDaoJpa;
+
+        for (int i = 0; i < NotificationOutboxDaoJpa.PARTITIONS; i++) {
+            this.outboxSignals.add(new Semaphore(0));
+        }
+        this.outboxExecutorService = Executors.newFixedThreadPool(
+                NotificationOutboxDaoJpa.PARTITIONS, new CustomThreadFactory("notification-outbox"));
+
+        // events of the same content or user stay in order
+        int partitions = Math.max(1, notificationConfig.getPartitions());
+        this.etagPipeline = newPipeline("notification-etag", partitions,
+                EtagEvent::getContentId, this::handleEtagEvents);
+        this.remindablePipeline = newPipeline("notification-remindable", partitions,
+                e -> e.getTask().getId(), this::handleRemindables);
+        this.sampleProjectsCreationPipeline = newPipeline("notification-sample-projects", 1,
+                SampleProjectsCreation::getUsername, this::handleSampleProjectsCreations);
+        this.sampleTaskChangePipeline = newPipeline("notification-sample-task", partitions,
+                SampleTaskChange::getId, this::handleSampleTaskChanges);
+        this.pipelines = ImmutableList.of(this.etagPipeline, this.remindablePipeline,
+                this.sampleProjectsCreationPipeline, this.sampleTaskChangePipeline);
+    }
+
+    private static <E> EventPipeline<E> newPipeline(String name, int partitions, Function<E, Object> partitioner,
+                                                    Consumer<List<E>> handler) {
+        return new EventPipeline<>(name, partitions, QUEUE_CAPACITY, MAX_BATCH_SIZE, partitioner, handler);
     }
 
     @PostConstruct
     public void postConstruct() {
-        this.executorService.submit(() -> this.handleNotifications());
+        this.pipelines.forEach(EventPipeline::start);
+        for (int i = 0; i < NotificationOutboxDaoJpa.PARTITIONS; i++) {
+            final int partition = i;
+            this.outboxExecutorService.submit(() -> this.consumeOutbox(partition));
+        }
     }
 
     public void inform(Informed informed) {
@@ -73,7 +130,7 @@ public class NotificationService {
         if (informed.getEvents().isEmpty()) {
             return;
         }
-        this.eventQueue.offer(informed);
+        appendToOutbox(informed, informed.getOriginator());
     }
 
     public void trackActivity(Auditable auditable) {
@@ -81,7 +138,7 @@ public class NotificationService {
         if (auditable == null) {
             return;
         }
-        this.eventQueue.offer(auditable);
+        appendToOutbox(auditable, auditable.getProjectId());
     }
 
     public void remind(Remindable remindable) {
@@ -89,7 +146,7 @@ public class NotificationService {
         if (remindable == null) {
             return;
         }
-        this.eventQueue.offer(remindable);
+        this.remindablePipeline.offer(remindable);
     }
 
     public void deleteESDocument(RemoveElasticsearchDocumentEvent removeElasticsearchDocumentEvent) {
@@ -97,7 +154,7 @@ public class NotificationService {
         if (removeElasticsearchDocumentEvent == null) {
             return;
         }
-        this.eventQueue.offer(removeElasticsearchDocumentEvent);
+        appendToOutbox(removeElasticsearchDocumentEvent, null);
     }
 
     public void cacheEtag(EtagEvent etagEvent) {
@@ -105,7 +162,7 @@ public class NotificationService {
         if (etagEvent == null) {
             return;
         }
-        this.eventQueue.offer(etagEvent);
+        this.etagPipeline.offer(etagEvent);
     }
 
     public void addContentBatch(ContentBatch contentBatch) {
@@ -113,7 +170,7 @@ public class NotificationService {
             return;
         }
         LOGGER.info("Received contentBatch: {}", contentBatch.getContents().size());
-        this.eventQueue.offer(contentBatch);
+        appendToOutbox(contentBatch, null);
     }
 
     public void createSampleProjects(SampleProjectsCreation sampleProjectsCreation) {
@@ -121,7 +178,7 @@ public class NotificationService {
         if (sampleProjectsCreation == null) {
             return;
         }
-        this.eventQueue.offer(sampleProjectsCreation);
+        this.sampleProjectsCreationPipeline.offer(sampleProjectsCreation);
     }
 
     public void addSampleTaskChange(SampleTaskChange sampleTaskChange) {
@@ -129,127 +186,176 @@ public class NotificationService {
         if (sampleTaskChange == null) {
             return;
         }
-        this.eventQueue.offer(sampleTaskChange);
+        this.sampleTaskChangePipeline.offer(sampleTaskChange);
     }
 
-    public void handleNotifications() {
-        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
-        List<Object> events = new ArrayList<>();
-
-        while (!stop) {
-            try {
-                // waiting until an element becomes available
-                events.add(this.eventQueue.take());
-            } catch (Exception ex) {
-                LOGGER.error("Error on taking from eventQueue", ex);
-            }
-            try {
-                this.eventQueue.drainTo(events);
-            } catch (Exception ex) {
-                LOGGER.error("Error on draining from eventQueue", ex);
-            }
-            List<Informed> informeds = new ArrayList<>();
-            List<Auditable> auditables = new ArrayList<>();
-            List<RemoveElasticsearchDocumentEvent> removeElasticsearchDocumentEvents = new ArrayList<>();
-            List<EtagEvent> etagEvents = new ArrayList<>();
-            List<Remindable> remindables = new ArrayList<>();
-            List<ContentBatch> contentBatches = new ArrayList<>();
-            List<SampleProjectsCreation> sampleProjectsCreations = new ArrayList<>();
-            List<SampleTaskChange> sampleTaskChanges = new ArrayList<>();
-            events.forEach((e) -> {
-                if (e instanceof Informed) {
-                    informeds.add((Informed) e);
-                } else if (e instanceof Auditable) {
-                    auditables.add((Auditable) e);
-                } else if (e instanceof RemoveElasticsearchDocumentEvent) {
-                    removeElasticsearchDocumentEvents.add((RemoveElasticsearchDocumentEvent) e);
-                } else if (e instanceof EtagEvent) {
-                    etagEvents.add((EtagEvent) e);
-                } else if (e instanceof Remindable) {
-                    remindables.add((Remindable) e);
-                } else if (e instanceof ContentBatch) {
-                    contentBatches.add((ContentBatch) e);
-                } else if (e instanceof SampleProjectsCreation) {
-                    sampleProjectsCreations.add((SampleProjectsCreation) e);
-                } else if (e instanceof SampleTaskChange) {
-                    sampleTaskChanges.add((SampleTaskChange) e);
-                }
-            });
-            try {
-                if (!informeds.isEmpty()) {
-                    this.notificationDaoJpa.create(informeds);
-                }
-            } catch (Exception ex) {
-                LOGGER.error("Error on creating records in notificationDaoJpa", ex);
+    /**
+     * Write event into outbox within the transaction of caller, and wake its consumer once committed
+     */
+    private void appendToOutbox(Object event, Object partitionKey) {
+        this.notificationOutboxDaoJpa.create(event, partitionKey);
+        Semaphore signal = this.outboxSignals.get(NotificationOutboxDaoJpa.getPartition(partitionKey));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            signal.release();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                signal.release();
             }
+        });
+    }
+
+    private void consumeOutbox(int partition) {
+        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+        Semaphore signal = this.outboxSignals.get(partition);
+        while (!this.stop) {
+            NotificationOutboxDaoJpa.OutboxClaim claim = null;
             try {
-                if (!auditables.isEmpty()) {
-                    this.auditableDaoJpa.create(auditables);
+                claim = this.notificationOutboxDaoJpa.claim(partition, MAX_BATCH_SIZE);
+                if (claim != null) {
+                    handleOutboxEvents(claim);
+                    continue;
                 }
+                // polling still picks up events committed by other instances
+                signal.tryAcquire(OUTBOX_POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                signal.drainPermits();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
             } catch (Exception ex) {
-                LOGGER.error("Error on creating records in AuditableDaoJpa", ex);
-            }
-            try {
-                if (!removeElasticsearchDocumentEvents.isEmpty() && this.springESConfig.getEnable()) {
-                    this.searchIndexDaoJpa.delete(removeElasticsearchDocumentEvents);
+                LOGGER.error("Error on consuming notification outbox partition " + partition, ex);
+                if (claim == null) {
+                    continue;
                 }
-            } catch (Exception ex) {
-                LOGGER.error("Error on deleting records in SearchIndexDaoJpa", ex);
-            }
-            try {
-                if (!etagEvents.isEmpty()) {
-                    this.redisEtagDaoJpa.create(etagEvents);
+                try {
+                    this.notificationOutboxDaoJpa.release(claim);
+                } catch (Exception e) {
+                    LOGGER.error("Error on releasing notification outbox partition " + partition, e);
                 }
-            } catch (Exception ex) {
-                LOGGER.error("Error on deleting records in RedisEtagDaoJpa", ex);
             }
+        }
+    }
 
-            try {
-                if (!remindables.isEmpty()) {
-                    this.reminder.generateTaskReminder(remindables.stream().map(e -> e.getTask()).collect(Collectors.toList()));
-                }
-            } catch (Exception ex) {
-                LOGGER.error("Error on Reminder", ex);
+    /**
+     * Handle one claimed outbox batch, events not acknowledged once an exception is thrown are retried
+     * <p>
+     * - ES deletes are idempotent and run before anything is acknowledged
+     * - Each chunk of a content batch commits along with the progress of its outbox row, so a retry never
+     * imports it twice
+     * - Notifications and activities commit along with the rest of the rows
+     */
+    private void handleOutboxEvents(NotificationOutboxDaoJpa.OutboxClaim claim) {
+        List<RemoveElasticsearchDocumentEvent> removeESDocuments =
+                claim.getEvents(RemoveElasticsearchDocumentEvent.class);
+        if (!removeESDocuments.isEmpty() && this.springESConfig.getEnable()) {
+            this.searchIndexDaoJpa.delete(removeESDocuments);
+        }
+        for (Long contentBatchId : claim.getContentBatchIds()) {
+            handleContentBatch(claim, contentBatchId);
+        }
+        this.notificationOutboxDaoJpa.acknowledge(claim, claim.getIds(), this::handleOutboxEvents);
+    }
+
+    private void handleOutboxEvents(List<Object> events) {
+        List<Informed> informeds = new ArrayList<>();
+        List<Auditable> auditables = new ArrayList<>();
+        for (Object event : events) {
+            if (event instanceof Informed) {
+                informeds.add((Informed) event);
+            } else if (event instanceof Auditable) {
+                auditables.add((Auditable) event);
             }
+        }
+        if (!informeds.isEmpty()) {
+            this.notificationDaoJpa.create(informeds);
+        }
+        if (!auditables.isEmpty()) {
+            this.auditableDaoJpa.create(auditables);
+        }
+    }
 
-            try {
-                // batch contents is only for tasks
-                for (ContentBatch batch : contentBatches) {
-                    this.taskDaoJpa.addContent(batch.getProjectItems(), batch.getOwners(), batch.getContents());
-                }
-            } catch (Exception ex) {
-                LOGGER.error("Error on Reminder", ex);
+    /**
+     * @return List<EventPipeline<?>> - pipelines of all event kinds, for queue size and backpressure metrics
+     */
+    public List<EventPipeline<?>> getPipelines() {
+        return pipelines;
+    }
+
+    private void handleEtagEvents(List<EtagEvent> etagEvents) {
+        try {
+            this.redisEtagDaoJpa.create(etagEvents);
+        } catch (Exception ex) {
+            LOGGER.error("Error on deleting records in RedisEtagDaoJpa", ex);
+        }
+    }
+
+    private void handleRemindables(List<Remindable> remindables) {
+        try {
+            this.reminder.generateTaskReminder(remindables.stream().map(e -> e.getTask()).collect(Collectors.toList()));
+        } catch (Exception ex) {
+            LOGGER.error("Error on Reminder", ex);
+        }
+    }
+
+    /**
+     * Import up to rowsPerEvent contents of a claimed content batch, a chunk of batchSize contents per transaction,
+     * waiting for the rate budget of a chunk before its transaction starts
+     */
+    private void handleContentBatch(NotificationOutboxDaoJpa.OutboxClaim claim, Long id) {
+        int batchSize = Math.max(1, this.contentImportConfig.getBatchSize());
+        int from = claim.getContentBatchProgress(id);
+        int end = Math.min(claim.getContentBatchSize(id), from + this.contentImportConfig.getRowsPerEvent());
+        LOGGER.info("Importing contents [{}, {}) of ContentBatch {}", from, end, id);
+        for (; from < end; from += batchSize) {
+            int to = Math.min(end, from + batchSize);
+            // batch contents is only for tasks
+            this.taskDaoJpa.acquireContentImportPermits(to - from);
+            this.notificationOutboxDaoJpa.importContentBatch(claim, id, from, to, contentBatch ->
+                    this.taskDaoJpa.addContent(contentBatch.getProjectItems(), contentBatch.getOwners(),
+                            contentBatch.getContents()));
+        }
+        this.notificationOutboxDaoJpa.acknowledgeContentBatch(claim, id, end);
+    }
+
+    private void handleSampleProjectsCreations(List<SampleProjectsCreation> sampleProjectsCreations) {
+        try {
+            for (SampleProjectsCreation sampleProjectsCreation : sampleProjectsCreations) {
+                this.projectDaoJpa.createSampleProjects(sampleProjectsCreation);
             }
+        } catch (Exception ex) {
+            LOGGER.error("Error on SampleProjectsCreation", ex);
+        }
+    }
 
+    private void handleSampleTaskChanges(List<SampleTaskChange> sampleTaskChanges) {
+        for (SampleTaskChange sampleTaskChange : sampleTaskChanges) {
             try {
-                for (SampleProjectsCreation sampleProjectsCreation : sampleProjectsCreations) {
-                    this.projectDaoJpa.createSampleProjects(sampleProjectsCreation);
-                }
+                this.sampleTaskDaoJpa.handleSampleTaskChange(sampleTaskChange);
             } catch (Exception ex) {
-                LOGGER.error("Error on Reminder", ex);
-            }
-
-            for (SampleTaskChange sampleTaskChange : sampleTaskChanges) {
-                try {
-                    this.sampleTaskDaoJpa.handleSampleTaskChange(sampleTaskChange.getId());
-                } catch (Exception ex) {
-                    LOGGER.error("Error on SampleTaskChange", ex);
-                }
+                LOGGER.error("Error on SampleTaskChange", ex);
             }
-            events = new ArrayList<>();
         }
     }
 
     @PreDestroy
     public void preDestroy() {
         this.stop = true;
-        if (executorService != null) {
-            try {
-                // wait 5 seconds for closing all threads
-                executorService.awaitTermination(5, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+        this.outboxExecutorService.shutdown();
+        this.outboxSignals.forEach(Semaphore::release);
+        this.pipelines.forEach(EventPipeline::shutdown);
+        // wait 5 seconds for closing all threads
+        long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MILLIS;
+        for (EventPipeline<?> pipeline : this.pipelines) {
+            pipeline.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()));
+            LOGGER.info("Stopped {}", pipeline);
+        }
+        try {
+            this.outboxExecutorService.awaitTermination(
+                    Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
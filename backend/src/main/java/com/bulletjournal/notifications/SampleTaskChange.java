@@ -1,8 +1,14 @@
 package com.bulletjournal.notifications;
 
+import java.util.LinkedHashMap;
+
 public class SampleTaskChange {
     // Use "pending" to determine it is created or modified
     private long id;
+    // set once the company of an investment sample task has been looked up
+    private boolean companyResolved;
+    // null if the symbol is unknown, a failed lookup is never resolved
+    private LinkedHashMap company;
 
     public SampleTaskChange() {
     }
@@ -11,6 +17,12 @@ public class SampleTaskChange {
         this.id = id;
     }
 
+    public SampleTaskChange(long id, LinkedHashMap company) {
+        this.id = id;
+        this.companyResolved = true;
+        this.company = company;
+    }
+
     public long getId() {
         return id;
     }
@@ -19,11 +31,20 @@ public class SampleTaskChange {
         this.id = id;
     }
 
+    public boolean isCompanyResolved() {
+        return companyResolved;
+    }
+
+    public LinkedHashMap getCompany() {
+        return company;
+    }
+
 
     @Override
     public String toString() {
         return "SampleTaskChange{" +
                 "id=" + id +
+                ", companyResolved=" + companyResolved +
                 '}';
     }
 }
@@ -0,0 +1,98 @@
+package com.bulletjournal.notifications;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parks long-poll requests of system updates until one of their keys is signaled.
+ * <p>
+ * Keys are etag indexes such as "username@Notification" or "projectId@ProjectTasks",
+ * plus {@link #getReminderKey(String)} for due task reminders.
+ * A parked request is a {@link DeferredResult} and holds no servlet thread.
+ */
+@Component
+public class SystemUpdatesNotifier {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SystemUpdatesNotifier.class);
+    private static final String REMINDER_KEY_SUFFIX = "@TaskReminders";
+
+    private final Map<String, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    public static String getReminderKey(String username) {
+        return username + REMINDER_KEY_SUFFIX;
+    }
+
+    /**
+     * Park a request until any key is signaled or timeout
+     *
+     * @param keyTargets    a map from subscribed key to the update target it belongs to
+     * @param timeoutMillis the timeout in millis
+     * @return DeferredResult - resolved with changed targets, or empty list on timeout
+     */
+    public DeferredResult<List<String>> await(Map<String, String> keyTargets, long timeoutMillis) {
+        DeferredResult<List<String>> result = new DeferredResult<>(timeoutMillis, Collections.emptyList());
+        Waiter waiter = new Waiter(keyTargets, result);
+        for (String key : keyTargets.keySet()) {
+            this.waiters.compute(key, (k, set) -> {
+                if (set == null) {
+                    set = ConcurrentHashMap.newKeySet();
+                }
+                set.add(waiter);
+                return set;
+            });
+        }
+        result.onCompletion(() -> unregister(waiter));
+        return result;
+    }
+
+    /**
+     * Resolve all requests parked on any of the keys
+     *
+     * @param keys a collection of changed keys
+     */
+    public void signal(Collection<String> keys) {
+        Map<Waiter, Set<String>> changed = new HashMap<>();
+        for (String key : keys) {
+            Set<Waiter> set = this.waiters.get(key);
+            if (set == null) {
+                continue;
+            }
+            for (Waiter waiter : set) {
+                changed.computeIfAbsent(waiter, w -> new LinkedHashSet<>()).add(waiter.keyTargets.get(key));
+            }
+        }
+        changed.forEach((waiter, targets) -> {
+            unregister(waiter);
+            if (!waiter.result.setResult(new ArrayList<>(targets))) {
+                LOGGER.debug("Waiter already completed");
+            }
+        });
+    }
+
+    public int size() {
+        return (int) this.waiters.values().stream().flatMap(Set::stream).distinct().count();
+    }
+
+    private void unregister(Waiter waiter) {
+        for (String key : waiter.keyTargets.keySet()) {
+            this.waiters.computeIfPresent(key, (k, set) -> {
+                set.remove(waiter);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    private static final class Waiter {
+        private final Map<String, String> keyTargets;
+        private final DeferredResult<List<String>> result;
+
+        private Waiter(Map<String, String> keyTargets, DeferredResult<List<String>> result) {
+            this.keyTargets = keyTargets;
+            this.result = result;
+        }
+    }
+}
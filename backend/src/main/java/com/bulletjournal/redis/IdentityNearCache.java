@@ -0,0 +1,273 @@
+package com.bulletjournal.redis;
+
+import com.bulletjournal.controller.models.User;
+import com.bulletjournal.redis.models.LockedUser;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisKeyExpiredEvent;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.convert.Bucket;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of users, user aliases and lock states in front of Redis
+ * <p>
+ * - Entries are bounded by size and expire after write, so a missed invalidation heals by itself
+ * - Writers go through this class, which invalidates the entry locally and publishes
+ * "kind:username" to {@link #INVALIDATION_CHANNEL} so every instance drops it too
+ * - Locks expiring in Redis are dropped on the keyspace expired event
+ */
+@Component
+public class IdentityNearCache implements MessageListener {
+    public static final String INVALIDATION_CHANNEL = "identity-invalidation";
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdentityNearCache.class);
+    private static final String USER = "User";
+    private static final String LOCKED_USER = "LockedUser";
+    private static final String USER_ALIASES = "UserAliases";
+    private static final int MAX_SIZE = 10000;
+
+    private final RedisUserRepository redisUserRepository;
+    private final RedisLockedUserRepository redisLockedUserRepository;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisConverter redisConverter;
+
+    private final Cache<String, User> users = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE).expireAfterWrite(10, TimeUnit.MINUTES).recordStats().build();
+    private final Cache<String, Optional<LockedUser>> lockedUsers = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE).expireAfterWrite(1, TimeUnit.MINUTES).recordStats().build();
+    private final Cache<String, Map<String, String>> aliases = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE).expireAfterWrite(10, TimeUnit.MINUTES).recordStats().build();
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    public IdentityNearCache(RedisUserRepository redisUserRepository,
+                             RedisLockedUserRepository redisLockedUserRepository,
+                             RedisTemplate<String, Object> redisTemplate,
+                             RedisConverter redisConverter) {
+        this.redisUserRepository = redisUserRepository;
+        this.redisLockedUserRepository = redisLockedUserRepository;
+        this.redisTemplate = redisTemplate;
+        this.redisConverter = redisConverter;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        if (this.redisMessageListenerContainer != null) {
+            this.redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        }
+    }
+
+    /**
+     * @param username the username
+     * @return Optional<User> - a copy of the cached user, which the caller may modify
+     */
+    public Optional<User> getUser(String username) {
+        User user = this.users.getIfPresent(username);
+        if (user == null) {
+            Optional<User> userOptional = this.redisUserRepository.findById(username);
+            if (!userOptional.isPresent()) {
+                return Optional.empty();
+            }
+            user = userOptional.get();
+            this.users.put(username, user);
+        }
+        return Optional.of(copy(user));
+    }
+
+    /**
+     * Get users in one batch, only names missing locally are read from Redis, in one pipelined round trip
+     *
+     * @param usernames the usernames
+     * @return Map<String, User> - copies of the users found, keyed by username
+     */
+    public Map<String, User> getUsers(Collection<String> usernames) {
+        Map<String, User> result = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String username : usernames) {
+            User user = this.users.getIfPresent(username);
+            if (user == null) {
+                misses.add(username);
+            } else {
+                result.put(username, copy(user));
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+        for (User user : readUsers(misses)) {
+            this.users.put(user.getName(), user);
+            result.put(user.getName(), copy(user));
+        }
+        return result;
+    }
+
+    /**
+     * Users are Redis hashes, so instead of an MGET one HGETALL per user is sent in a single pipeline
+     * and the hashes are read back the way {@link RedisUserRepository} would
+     */
+    private List<User> readUsers(List<String> usernames) {
+        List<Object> hashes = this.redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            connection.openPipeline();
+            for (String username : usernames) {
+                connection.hGetAll((USER + ":" + username).getBytes(StandardCharsets.UTF_8));
+            }
+            return connection.closePipeline();
+        });
+        List<User> result = new ArrayList<>();
+        if (hashes == null) {
+            return result;
+        }
+        for (int i = 0; i < hashes.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Map<byte[], byte[]> hash = (Map<byte[], byte[]>) hashes.get(i);
+            if (hash == null || hash.isEmpty()) {
+                continue;
+            }
+            RedisData redisData = new RedisData(Bucket.newBucketFromRawMap(hash));
+            redisData.setId(usernames.get(i));
+            redisData.setKeyspace(USER);
+            User user = this.redisConverter.read(User.class, redisData);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    public void saveUser(User user) {
+        this.redisUserRepository.save(user);
+        this.users.put(user.getName(), copy(user));
+    }
+
+    public void deleteUser(String username) {
+        this.redisUserRepository.deleteById(username);
+        invalidate(USER, username);
+    }
+
+    public Optional<LockedUser> getLockedUser(String username) {
+        try {
+            return this.lockedUsers.get(username, () -> this.redisLockedUserRepository.findById(username));
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    public void lockUser(LockedUser lockedUser) {
+        this.redisLockedUserRepository.save(lockedUser);
+        invalidate(LOCKED_USER, lockedUser.getName());
+    }
+
+    public void unlockUser(String username) {
+        this.redisLockedUserRepository.delete(new LockedUser(username, null));
+        invalidate(LOCKED_USER, username);
+    }
+
+    /**
+     * @param requester the user owning the aliases
+     * @param loader    loads aliases from Redis or database on miss
+     * @return Map<String, String> - unmodifiable map from username to alias
+     */
+    public Map<String, String> getAliases(String requester, Supplier<Map<String, String>> loader) {
+        try {
+            return this.aliases.get(requester, () -> {
+                Map<String, String> loaded = loader.get();
+                return loaded == null || loaded.isEmpty()
+                        ? Collections.emptyMap() : Collections.unmodifiableMap(new LinkedHashMap<>(loaded));
+            });
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    public void invalidateAliases(String requester) {
+        invalidate(USER_ALIASES, requester);
+    }
+
+    /**
+     * @return Map<String, String> - hit, miss and eviction counts of each cache
+     */
+    public Map<String, String> getStats() {
+        return ImmutableMap.of(
+                USER, this.users.size() + " " + this.users.stats(),
+                LOCKED_USER, this.lockedUsers.size() + " " + this.lockedUsers.stats(),
+                USER_ALIASES, this.aliases.size() + " " + this.aliases.stats());
+    }
+
+    private void invalidate(String kind, String username) {
+        evict(kind, username);
+        try {
+            this.redisTemplate.convertAndSend(INVALIDATION_CHANNEL, kind + ":" + username);
+        } catch (Exception ex) {
+            LOGGER.error("Unable to publish invalidation of " + kind + " " + username, ex);
+        }
+    }
+
+    private void evict(String kind, String username) {
+        switch (kind) {
+            case USER:
+                this.users.invalidate(username);
+                break;
+            case LOCKED_USER:
+                this.lockedUsers.invalidate(username);
+                break;
+            case USER_ALIASES:
+                this.aliases.invalidate(username);
+                break;
+            default:
+                LOGGER.warn("Unknown invalidation kind {}", kind);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(':');
+        if (separator < 0) {
+            LOGGER.warn("Invalid invalidation message {}", body);
+            return;
+        }
+        evict(body.substring(0, separator), body.substring(separator + 1));
+    }
+
+    @EventListener
+    public void onKeyExpired(RedisKeyExpiredEvent<?> event) {
+        String keyspace = event.getKeyspace();
+        if (LOCKED_USER.equals(keyspace) || USER.equals(keyspace) || USER_ALIASES.equals(keyspace)) {
+            evict(keyspace, new String(event.getId(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static User copy(User user) {
+        User copy = new User(user.getId(), user.getName(), user.getThumbnail(), user.getAvatar());
+        copy.setEmail(user.getEmail());
+        return copy;
+    }
+}
@@ -2,24 +2,34 @@ package com.bulletjournal.redis;
 
 import com.bulletjournal.messaging.MessagingService;
 import com.bulletjournal.notifications.EtagEvent;
+import com.bulletjournal.notifications.SystemUpdatesNotifier;
 import com.bulletjournal.redis.models.Etag;
 import com.bulletjournal.redis.models.EtagType;
+import com.bulletjournal.repository.ProjectDaoJpa;
 import com.bulletjournal.repository.factory.Etaggable;
 import com.bulletjournal.repository.factory.EtaggableDaos;
 import com.google.common.base.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisHash;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Repository
 public class RedisEtagDaoJpa {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RedisEtagDaoJpa.class);
+    private static final RedisHash ETAG_HASH = Etag.class.getAnnotation(RedisHash.class);
+    private static final byte[] INDEX_FIELD = "index".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ETAG_FIELD = "etag".getBytes(StandardCharsets.UTF_8);
 
     @Autowired
     private RedisEtagRepository redisEtagRepository;
@@ -30,6 +40,15 @@ public class RedisEtagDaoJpa {
     @Autowired
     private MessagingService messagingService;
 
+    @Autowired
+    private ProjectDaoJpa projectDaoJpa;
+
+    @Autowired
+    private SystemUpdatesNotifier systemUpdatesNotifier;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
     /**
      * Batch cache a list of etags instance into Redis.
      *
@@ -46,9 +65,54 @@ public class RedisEtagDaoJpa {
 
         mergeEventToOtherEvent(EtagType.USER_GROUP, EtagType.GROUP, aggregateMap);
 
+        List<Etag> etags = new ArrayList<>();
+        Set<String> projectUsernames = bumpProjectItemVersions(aggregateMap, etags);
+
         // Now EtagType only have GROUP, GROUP_DELETE, NOTIFICATION and NOTIFICATION_DELETE
-        List<Etag> etags = computeEtags(aggregateMap);
+        etags.addAll(computeEtags(aggregateMap));
+
+        // group members changed, so do their shared projects
+        projectUsernames.addAll(aggregateMap.getOrDefault(EtagType.GROUP, Collections.emptySet()));
+        projectUsernames.forEach(username -> {
+            etags.add(new Etag(username, EtagType.OWNED_PROJECTS, newVersion()));
+            etags.add(new Etag(username, EtagType.SHARED_PROJECTS, newVersion()));
+        });
         this.batchCache(etags);
+
+        // wake up long-poll requests waiting on these etags
+        this.systemUpdatesNotifier.signal(etags.stream().map(Etag::getIndex).collect(Collectors.toList()));
+    }
+
+    /**
+     * Take project related events out of aggregateMap and bump their versions.
+     * <p>
+     * Etags of tasks, notes and projects are versions instead of hashes of contents,
+     * so a new version is assigned for each affected project or user without loading any content.
+     *
+     * @param aggregateMap a map of etag type and content ids
+     * @param etags        a list to collect versioned etags of PROJECT_TASKS and PROJECT_NOTES
+     * @return Set<String> - usernames whose owned and shared projects need a new version
+     */
+    private Set<String> bumpProjectItemVersions(Map<EtagType, Set<String>> aggregateMap, List<Etag> etags) {
+        for (EtagType type : Arrays.asList(EtagType.PROJECT_TASKS, EtagType.PROJECT_NOTES)) {
+            Set<String> projectIds = aggregateMap.remove(type);
+            if (projectIds != null) {
+                projectIds.forEach(projectId -> etags.add(new Etag(projectId, type, newVersion())));
+            }
+        }
+
+        Set<String> usernames = new HashSet<>();
+        Set<String> projectIds = aggregateMap.remove(EtagType.PROJECT);
+        if (projectIds != null && !projectIds.isEmpty()) {
+            usernames.addAll(this.projectDaoJpa.findAffectedUsernames(projectIds));
+        }
+        usernames.addAll(aggregateMap.getOrDefault(EtagType.USER_PROJECTS, Collections.emptySet()));
+        aggregateMap.remove(EtagType.USER_PROJECTS);
+        return usernames;
+    }
+
+    private static String newVersion() {
+        return UUID.randomUUID().toString();
     }
 
     public void singleCache(String username, EtagType type, String etag) {
@@ -64,6 +128,26 @@ public class RedisEtagDaoJpa {
         this.redisEtagRepository.saveAll(etags);
     }
 
+    /**
+     * Store etags computed on cache miss, keeping any value written meanwhile
+     * <p>
+     * A version bumped between the miss and this write must win, so each etag is written with HSETNX
+     * into the hash {@link #batchCache} writes through the repository.
+     *
+     * @param etags a list of etag instances
+     */
+    public void batchCacheIfAbsent(List<Etag> etags) {
+        this.redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Etag etag : etags) {
+                byte[] key = (ETAG_HASH.value() + ":" + etag.getIndex()).getBytes(StandardCharsets.UTF_8);
+                connection.hSetNX(key, ETAG_FIELD, etag.getEtag().getBytes(StandardCharsets.UTF_8));
+                connection.hSetNX(key, INDEX_FIELD, etag.getIndex().getBytes(StandardCharsets.UTF_8));
+                connection.expire(key, ETAG_HASH.timeToLive());
+            }
+            return null;
+        });
+    }
+
     /**
      * Get etag by the key constructed by username and etag type
      *
@@ -75,7 +159,23 @@ public class RedisEtagDaoJpa {
     public Etag findEtagsByIndex(String username, EtagType etagType) {
         Preconditions.checkNotNull(username, "findEtagsByIndex: username cannot be null");
         Preconditions.checkNotNull(etagType, "findEtagsByIndex: etagType cannot be null");
-        return this.redisEtagRepository.findByIndex(username + "@" + etagType.toString());
+        return this.redisEtagRepository.findByIndex(Etag.toIndex(username, etagType));
+    }
+
+    /**
+     * Batch get etags by keys constructed by username or content id and etag type
+     *
+     * @param indexes a list of etag indexes
+     * @return Map<String, String> - etag values of the indexes found in cache
+     */
+    public Map<String, String> findEtagsByIndexes(List<String> indexes) {
+        if (indexes.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Etag> etags = new ArrayList<>();
+        this.redisEtagRepository.findAllById(indexes).forEach(etags::add);
+        return etags.stream().filter(Objects::nonNull)
+                .collect(Collectors.toMap(Etag::getIndex, Etag::getEtag, (a, b) -> a));
     }
 
     /**
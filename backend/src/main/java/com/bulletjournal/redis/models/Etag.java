@@ -34,6 +34,10 @@ public class Etag implements Serializable {
         this.etag = etag;
     }
 
+    public static String toIndex(String key, EtagType type) {
+        return key + "@" + type.toString();
+    }
+
     public String getIndex() {
         return index;
     }
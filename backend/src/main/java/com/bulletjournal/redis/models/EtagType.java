@@ -7,7 +7,13 @@ public enum EtagType {
     GROUP(1, "Group"),
     USER_GROUP(2, "UserGroups"),
     NOTIFICATION_DELETE(3, "NotificationDelete"),
-    GROUP_DELETE(4, "GroupDelete"),;
+    GROUP_DELETE(4, "GroupDelete"),
+    PROJECT_TASKS(5, "ProjectTasks"),
+    PROJECT_NOTES(6, "ProjectNotes"),
+    PROJECT(7, "Project"),
+    USER_PROJECTS(8, "UserProjects"),
+    OWNED_PROJECTS(9, "OwnedProjects"),
+    SHARED_PROJECTS(10, "SharedProjects"),;
 
     public final int value;
 
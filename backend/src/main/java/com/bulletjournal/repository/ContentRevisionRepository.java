@@ -0,0 +1,37 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.repository.models.ContentRevisionModel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@NoRepositoryBean
+public interface ContentRevisionRepository<R extends ContentRevisionModel> extends JpaRepository<R, Long> {
+
+    Optional<R> findFirstByContentIdOrderByRevisionIdDesc(Long contentId);
+
+    Optional<R> findFirstByContentIdOrderByRevisionIdAsc(Long contentId);
+
+    Optional<R> findByContentIdAndRevisionId(Long contentId, Long revisionId);
+
+    // closest checkpoint at or before the revision
+    Optional<R> findFirstByContentIdAndRevisionIdLessThanEqualAndCheckpointIsNotNullOrderByRevisionIdDesc(
+            Long contentId, Long revisionId);
+
+    List<R> findByContentIdAndRevisionIdBetweenOrderByRevisionId(Long contentId, Long from, Long to);
+
+    // revision metadata without diffs and checkpoints: content id, revision id, created at, username
+    @Query("SELECT r.contentId, r.revisionId, r.createdAt, r.username FROM #{#entityName} r "
+            + "WHERE r.contentId IN :contentIds ORDER BY r.contentId, r.revisionId")
+    List<Object[]> findRevisionMetadata(@Param("contentIds") Collection<Long> contentIds);
+
+    @Modifying
+    @Query("DELETE FROM #{#entityName} r WHERE r.contentId = :contentId AND r.revisionId < :revisionId")
+    void deleteRevisionsBefore(@Param("contentId") Long contentId, @Param("revisionId") Long revisionId);
+}
@@ -43,6 +43,14 @@ public class DeviceTokenDaoJpa {
         return false;
     }
 
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public int deleteTokens(Collection<String> tokens) {
+        if (tokens.isEmpty()) {
+            return 0;
+        }
+        return deviceTokenRepository.deleteDeviceTokensByTokens(new HashSet<>(tokens));
+    }
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public List<DeviceToken> getTokensByUser(String userName) {
         return deviceTokenRepository.findDeviceTokensByUser(userName);
@@ -0,0 +1,164 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.controller.models.Label;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Cache of labels used by {@link LabelDaoJpa}
+ * <p>
+ * - Labels by id, so attaching labels to project items only queries the ones not cached
+ * - Labels of each owner, sorted by last update
+ * <p>
+ * Entries of a label and its owner are dropped whenever the label is created, updated or deleted, on this
+ * instance right away and on all instances via {@link #INVALIDATION_CHANNEL} once the change is committed.
+ */
+@Component
+public class LabelCache implements MessageListener {
+    public static final String INVALIDATION_CHANNEL = "label-invalidation";
+    private static final Logger LOGGER = LoggerFactory.getLogger(LabelCache.class);
+    private static final int MAX_SIZE = 10000;
+
+    private final Cache<Long, Label> labels = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE * 10).expireAfterWrite(10, TimeUnit.MINUTES).recordStats().build();
+    private final Cache<String, List<Label>> ownerLabels = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE).expireAfterWrite(10, TimeUnit.MINUTES).recordStats().build();
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @PostConstruct
+    public void postConstruct() {
+        if (this.redisMessageListenerContainer != null) {
+            this.redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        }
+    }
+
+    /**
+     * @param labelIds the label ids
+     * @param loader   loads the labels not cached, in one query
+     * @return Map<Long, Label> - copies of the labels found, keyed by id
+     */
+    public Map<Long, Label> getLabels(Collection<Long> labelIds, Function<List<Long>, List<Label>> loader) {
+        Map<Long, Label> result = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long labelId : labelIds) {
+            Label label = this.labels.getIfPresent(labelId);
+            if (label == null) {
+                misses.add(labelId);
+            } else {
+                result.put(labelId, copy(label));
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+        for (Label label : loader.apply(misses)) {
+            this.labels.put(label.getId(), label);
+            result.put(label.getId(), copy(label));
+        }
+        return result;
+    }
+
+    /**
+     * @param owner  the owner of labels
+     * @param loader loads labels of owner on miss
+     * @return List<Label> - copies of the labels of owner
+     */
+    public List<Label> getOwnerLabels(String owner, Supplier<List<Label>> loader) {
+        try {
+            return this.ownerLabels.get(owner, () -> Collections.unmodifiableList(new ArrayList<>(loader.get())))
+                    .stream().map(LabelCache::copy).collect(Collectors.toList());
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Drop label and labels of its owner now and again after the current transaction commits
+     *
+     * @param owner   the owner of label
+     * @param labelId the label created, updated or deleted, null if only labels of owner changed
+     */
+    public void invalidate(String owner, Long labelId) {
+        String key = owner + ":" + (labelId == null ? "" : labelId);
+        evict(key);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // a read racing with the transaction may have cached the old label
+                evict(key);
+                publish(key);
+            }
+        });
+    }
+
+    public Map<String, String> getStats() {
+        Map<String, String> stats = new HashMap<>();
+        stats.put("Label", this.labels.size() + " " + this.labels.stats());
+        stats.put("OwnerLabels", this.ownerLabels.size() + " " + this.ownerLabels.stats());
+        return stats;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        evict(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void evict(String key) {
+        int separator = key.lastIndexOf(':');
+        if (separator < 0) {
+            LOGGER.warn("Invalid label invalidation {}", key);
+            return;
+        }
+        this.ownerLabels.invalidate(key.substring(0, separator));
+        String labelId = key.substring(separator + 1);
+        if (!labelId.isEmpty()) {
+            this.labels.invalidate(Long.valueOf(labelId));
+        }
+    }
+
+    private void publish(String key) {
+        try {
+            this.redisTemplate.convertAndSend(INVALIDATION_CHANNEL, key);
+        } catch (Exception ex) {
+            LOGGER.error("Unable to publish label invalidation of " + key, ex);
+        }
+    }
+
+    private static Label copy(Label label) {
+        return new Label(label.getId(), label.getValue(), label.getIcon());
+    }
+}
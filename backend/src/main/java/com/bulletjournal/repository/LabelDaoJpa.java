@@ -9,6 +9,9 @@ import com.bulletjournal.controller.models.UpdateLabelParams;
 import com.bulletjournal.controller.utils.ProjectItemsGrouper;
 import com.bulletjournal.exceptions.ResourceAlreadyExistException;
 import com.bulletjournal.exceptions.ResourceNotFoundException;
+import com.bulletjournal.notifications.EtagEvent;
+import com.bulletjournal.notifications.NotificationService;
+import com.bulletjournal.redis.models.EtagType;
 import com.bulletjournal.repository.models.*;
 import com.bulletjournal.repository.utils.DaoHelper;
 import com.google.common.collect.ImmutableList;
@@ -16,6 +19,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.ZonedDateTime;
 import java.util.*;
@@ -54,6 +59,12 @@ public class LabelDaoJpa {
     @Autowired
     private AuthorizationService authorizationService;
 
+    @Autowired
+    private LabelCache labelCache;
+
+    @Autowired
+    private NotificationService notificationService;
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public void createDefaultLabels(String owner) {
         List<Label> defaultLabels = DEFAULT_LABELS.entrySet().stream().map(l -> {
@@ -64,6 +75,7 @@ public class LabelDaoJpa {
             return label;
         }).collect(Collectors.toList());
         this.labelRepository.saveAll(defaultLabels);
+        this.labelCache.invalidate(owner, null);
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -78,6 +90,7 @@ public class LabelDaoJpa {
         }
 
         label = this.labelRepository.save(label);
+        this.labelCache.invalidate(owner, label.getId());
         return label;
     }
 
@@ -102,6 +115,8 @@ public class LabelDaoJpa {
 
         DaoHelper.updateIfPresent(updateLabelParams.hasIcon(), updateLabelParams.getIcon(), label::setIcon);
 
+        this.labelCache.invalidate(label.getOwner(), labelId);
+        bumpProjectItemEtags(labelId);
         return this.labelRepository.save(label);
     }
 
@@ -113,10 +128,10 @@ public class LabelDaoJpa {
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public List<Label> getLabels(String owner) {
-        List<Label> labels = this.labelRepository.findByOwner(owner).stream()
-                .sorted((a, b) -> b.getUpdatedAt().compareTo(a.getUpdatedAt())).collect(Collectors.toList());
-        return labels;
+    public List<com.bulletjournal.controller.models.Label> getLabels(String owner) {
+        return this.labelCache.getOwnerLabels(owner, () -> this.labelRepository.findByOwner(owner).stream()
+                .sorted((a, b) -> b.getUpdatedAt().compareTo(a.getUpdatedAt()))
+                .map(Label::toPresentationModel).collect(Collectors.toList()));
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -128,6 +143,8 @@ public class LabelDaoJpa {
                 Operation.DELETE, labelId);
 
         this.labelRepository.delete(label);
+        this.labelCache.invalidate(label.getOwner(), labelId);
+        bumpProjectItemEtags(labelId);
 
         List<Task> tasks = this.taskRepository.findTasksByLabelId(labelId);
         tasks.stream().forEach(task -> task
@@ -154,6 +171,32 @@ public class LabelDaoJpa {
         this.sharedProjectItemRepository.saveAll(sharedProjectItems);
     }
 
+    /**
+     * Bump versions of tasks and notes etags of projects whose items carry the label, once committed
+     *
+     * @param labelId the label renamed or deleted
+     */
+    private void bumpProjectItemEtags(Long labelId) {
+        List<EtagEvent> etagEvents = new ArrayList<>();
+        this.taskRepository.findProjectIdsByLabelId(labelId).forEach(projectId ->
+                etagEvents.add(new EtagEvent(String.valueOf(projectId), EtagType.PROJECT_TASKS)));
+        this.noteRepository.findProjectIdsByLabelId(labelId).forEach(projectId ->
+                etagEvents.add(new EtagEvent(String.valueOf(projectId), EtagType.PROJECT_NOTES)));
+        if (etagEvents.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            etagEvents.forEach(this.notificationService::cacheEtag);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                etagEvents.forEach(notificationService::cacheEtag);
+            }
+        });
+    }
+
     /**
      * Retrieves project items by a list of labels
      * <p>
@@ -226,6 +269,14 @@ public class LabelDaoJpa {
         return projectItems;
     }
 
+    /**
+     * Replace label stubs of project items, including sub tasks and sub notes, with labels
+     * <p>
+     * Label ids of the whole tree are gathered first and looked up in one batch.
+     *
+     * @param projectItems the project items with label stubs
+     * @return List<T> - the project items with labels
+     */
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public <T extends ProjectItem> List<T> getLabelsForProjectItemList(List<T> projectItems) {
         if (projectItems == null || projectItems.isEmpty()) {
@@ -233,30 +284,66 @@ public class LabelDaoJpa {
         }
 
         Set<Long> labelIds = new HashSet<>();
-        projectItems.forEach(
-                item -> labelIds.addAll(item.getLabels().stream().map(l -> l.getId()).collect(Collectors.toList())));
+        projectItems.forEach(item -> collectLabelIds(item, labelIds));
+        Map<Long, com.bulletjournal.controller.models.Label> m = getLabelMap(labelIds);
+        projectItems.forEach(item -> setLabels(item, m));
+        return projectItems;
+    }
 
-        Map<Long, com.bulletjournal.controller.models.Label> m = getLabels(new ArrayList<>(labelIds)).stream()
-                .collect(Collectors.toMap(com.bulletjournal.controller.models.Label::getId, l -> l));
+    private static void collectLabelIds(ProjectItem projectItem, Set<Long> labelIds) {
+        projectItem.getLabels().forEach(l -> labelIds.add(l.getId()));
+        for (ProjectItem subItem : getSubItems(projectItem)) {
+            collectLabelIds(subItem, labelIds);
+        }
+    }
 
-        projectItems.forEach(item -> item
-                .setLabels(item.getLabels().stream()
-                        .filter(l -> m.get(l.getId()) != null)
-                        .map(l -> m.get(l.getId()))
-                        .collect(Collectors.toList())));
-        return projectItems;
+    private static void setLabels(ProjectItem projectItem, Map<Long, com.bulletjournal.controller.models.Label> m) {
+        projectItem.setLabels(projectItem.getLabels().stream()
+                .map(l -> m.get(l.getId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+        for (ProjectItem subItem : getSubItems(projectItem)) {
+            setLabels(subItem, m);
+        }
     }
 
+    private static List<? extends ProjectItem> getSubItems(ProjectItem projectItem) {
+        List<? extends ProjectItem> subItems = null;
+        if (projectItem instanceof com.bulletjournal.controller.models.Task) {
+            subItems = ((com.bulletjournal.controller.models.Task) projectItem).getSubTasks();
+        } else if (projectItem instanceof com.bulletjournal.controller.models.Note) {
+            subItems = ((com.bulletjournal.controller.models.Note) projectItem).getSubNotes();
+        }
+        return subItems == null ? Collections.emptyList() : subItems;
+    }
+
+    /**
+     * Get labels in the order of ids, missing ones are skipped
+     *
+     * @param labels the label ids
+     * @return List<com.bulletjournal.controller.models.Label> - labels in the order of ids
+     */
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public List<com.bulletjournal.controller.models.Label> getLabels(final List<Long> labels) {
         if (labels == null || labels.isEmpty()) {
             return Collections.emptyList();
         }
-        List<com.bulletjournal.controller.models.Label> labelsForPresentation =
-                this.labelRepository.findAllById(labels).stream()
-                        .filter(Objects::nonNull)
-                        .sorted(Comparator.comparingInt(label -> labels.indexOf(label.getId())))
-                        .map(Label::toPresentationModel).collect(Collectors.toList());
-        return labelsForPresentation;
+        Map<Long, com.bulletjournal.controller.models.Label> m = getLabelMap(labels);
+        return new LinkedHashSet<>(labels).stream()
+                .map(m::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private Map<Long, com.bulletjournal.controller.models.Label> getLabelMap(Collection<Long> labelIds) {
+        if (labelIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (labelIds.contains(null)) {
+            labelIds = labelIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        }
+        return this.labelCache.getLabels(labelIds, misses -> this.labelRepository.findAllById(misses).stream()
+                .filter(Objects::nonNull)
+                .map(Label::toPresentationModel).collect(Collectors.toList()));
     }
 }
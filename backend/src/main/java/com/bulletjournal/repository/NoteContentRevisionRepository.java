@@ -0,0 +1,8 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.repository.models.NoteContentRevision;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface NoteContentRevisionRepository extends ContentRevisionRepository<NoteContentRevision> {
+}
@@ -50,6 +50,8 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
     @Autowired
     private NoteContentRepository noteContentRepository;
     @Autowired
+    private NoteContentRevisionRepository noteContentRevisionRepository;
+    @Autowired
     private SharedProjectItemDaoJpa sharedProjectItemDaoJpa;
     @Autowired
     private SearchIndexDaoJpa searchIndexDaoJpa;
@@ -88,27 +90,16 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
             final Map<Long, Note> noteMap = notes.stream().filter(n -> processedIds.contains(n.getId()))
                     .collect(Collectors.toMap(n -> n.getId(), n -> n));
 
-            ret.addAll(NoteRelationsProcessor.processRelations(noteMap, keptHierarchy).stream()
-                    .map(note -> addLabels(note, noteMap)).collect(Collectors.toList()));
+            ret.addAll(NoteRelationsProcessor.processRelations(noteMap, keptHierarchy));
 
             // add orphaned ones(not processed means orphaned)
             notes = notes.stream().filter(t -> !processedIds.contains(t.getId())).collect(Collectors.toList());
         }
 
-        ret.addAll(this.labelDaoJpa.getLabelsForProjectItemList(
-                notes.stream().sorted(Comparator.comparingLong(Note::getId))
-                        .map(Note::toPresentationModel).collect(Collectors.toList())));
-        return ret;
-    }
-
-    private com.bulletjournal.controller.models.Note addLabels(com.bulletjournal.controller.models.Note note,
-                                                               Map<Long, Note> notesMap) {
-        List<com.bulletjournal.controller.models.Label> labels = getLabelsToProjectItem(notesMap.get(note.getId()));
-        note.setLabels(labels);
-        for (com.bulletjournal.controller.models.Note subNote : note.getSubNotes()) {
-            addLabels(subNote, notesMap);
-        }
-        return note;
+        ret.addAll(notes.stream().sorted(Comparator.comparingLong(Note::getId))
+                .map(Note::toPresentationModel).collect(Collectors.toList()));
+        // labels of the whole tree in one batch
+        return this.labelDaoJpa.getLabelsForProjectItemList(ret);
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -188,10 +179,8 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
 
         List<Note> notes = this.noteRepository.findNotesByOwnerAndProject(owner, project);
         notes.sort(ProjectItemsGrouper.NOTE_COMPARATOR);
-        return notes.stream().map(t -> {
-            List<com.bulletjournal.controller.models.Label> labels = getLabelsToProjectItem(t);
-            return t.toPresentationModel(labels);
-        }).collect(Collectors.toList());
+        return this.labelDaoJpa.getLabelsForProjectItemList(notes.stream()
+                .map(Note::toPresentationModel).collect(Collectors.toList()));
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -259,6 +248,16 @@ public class NoteDaoJpa extends ProjectItemDaoJpa<NoteContent> {
         return new NoteContent(text);
     }
 
+    @Override
+    public ContentRevisionRepository getContentRevisionRepository() {
+        return this.noteContentRevisionRepository;
+    }
+
+    @Override
+    NoteContentRevision newContentRevision() {
+        return new NoteContentRevision();
+    }
+
     @Override
     List<Long> findItemLabelsByProject(Project project) {
         return noteRepository.findUniqueLabelsByProject(project.getId());
@@ -8,4 +8,6 @@ public interface NoteRepositoryCustom {
     List<Note> findNotesByLabelIds(List<Long> labelIds);
 
     List<Note> findNotesByLabelId(Long labelId);
+
+    List<Long> findProjectIdsByLabelId(Long labelId);
 }
@@ -9,6 +9,7 @@ import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 import javax.transaction.Transactional;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Repository
 @Transactional
@@ -34,4 +35,13 @@ public class NoteRepositoryImpl implements NoteRepositoryCustom {
     public List<Note> findNotesByLabelId(Long labelId) {
         return findNotesByLabelIds(ImmutableList.of(labelId));
     }
+
+    @Override
+    public List<Long> findProjectIdsByLabelId(Long labelId) {
+        Query query = entityManager.createNativeQuery(
+                "SELECT DISTINCT notes.project_id FROM notes WHERE ? = ANY(notes.labels)");
+        query.setParameter(1, labelId);
+        List<?> projectIds = query.getResultList();
+        return projectIds.stream().map(id -> ((Number) id).longValue()).collect(Collectors.toList());
+    }
 }
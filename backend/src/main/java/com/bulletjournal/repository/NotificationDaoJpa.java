@@ -31,6 +31,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Repository
 public class NotificationDaoJpa implements Etaggable {
@@ -62,9 +64,11 @@ public class NotificationDaoJpa implements Etaggable {
             count -= deleteAllExpiredNotifications(new Timestamp(expirationTime));
         }
         List<Notification> notifications = this.notificationRepository.findByTargetUser(username);
+        Map<String, com.bulletjournal.controller.models.User> originators = this.userClient.getUsers(
+                notifications.stream().map(Notification::getOriginator).collect(Collectors.toSet()));
         List<com.bulletjournal.controller.models.Notification> returnNotifications = notifications.stream().map(n -> {
             com.bulletjournal.controller.models.Notification notification = n.toPresentationModel();
-            notification.setOriginator(this.userClient.getUser(n.getOriginator()));
+            notification.setOriginator(originators.get(n.getOriginator()));
             if (n.getActions() != null) {
                 Action[] actions = GSON.fromJson(n.getActions(), Action[].class);
                 notification.setActions(
@@ -117,7 +121,7 @@ public class NotificationDaoJpa implements Etaggable {
             });
             this.redisNotificationRepository.saveAll(joinGroupNotifications);
 
-            messagingService.sendJoinGroupNotificationEmailsToUser(joinGroupNotificationsWithUIDs);
+            sendJoinGroupNotificationEmails(joinGroupNotificationsWithUIDs);
         }
 
         Map<Long, List<Long>> m = new HashMap<>();
@@ -138,6 +142,22 @@ public class NotificationDaoJpa implements Etaggable {
         });
     }
 
+    /**
+     * Emails cannot be rolled back, send them once notifications are committed
+     */
+    private void sendJoinGroupNotificationEmails(List<Pair<String, Notification>> notificationsWithUIDs) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            messagingService.sendJoinGroupNotificationEmailsToUser(notificationsWithUIDs);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                messagingService.sendJoinGroupNotificationEmailsToUser(notificationsWithUIDs);
+            }
+        });
+    }
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public long deleteAllExpiredNotifications(Timestamp expirationTime) {
         if (this.notificationRepository.countNotificationsByUpdatedAtBefore(expirationTime) > 0) {
@@ -0,0 +1,374 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.notifications.Auditable;
+import com.bulletjournal.notifications.ContentBatch;
+import com.bulletjournal.notifications.Informed;
+import com.bulletjournal.notifications.RemoveElasticsearchDocumentEvent;
+import com.bulletjournal.repository.models.ContentModel;
+import com.bulletjournal.repository.models.NotificationOutboxEvent;
+import com.bulletjournal.repository.models.ProjectItemModel;
+import com.bulletjournal.repository.models.Task;
+import com.bulletjournal.repository.models.TaskContent;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox of NotificationService events
+ * <p>
+ * - An event is written in the transaction of its producer, so it is durable iff the producer commits
+ * - Consumers of a partition claim its oldest rows for CLAIM_LEASE_MILLIS in a short transaction, so no row lock
+ * is held while events are handled and concurrent consumers never share rows
+ * - Claimed rows are deleted in the transaction of their database effects, a row is acknowledged at most once
+ * - A ContentBatch is imported in chunks, each committing along with the progress of its row, so a retry
+ * continues after the last committed chunk
+ * - A failed claim is released and retried one row at a time, a row failing MAX_ATTEMPTS times is dropped
+ */
+@Repository
+public class NotificationOutboxDaoJpa {
+    public static final int PARTITIONS = 4;
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationOutboxDaoJpa.class);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long CLAIM_LEASE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final String CONTENT_BATCH_TYPE = "ContentBatch";
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Timestamp.class,
+                    (JsonSerializer<Timestamp>) (src, type, context) -> new JsonPrimitive(src.getTime()))
+            .registerTypeAdapter(Timestamp.class,
+                    (JsonDeserializer<Timestamp>) (json, type, context) -> new Timestamp(json.getAsLong()))
+            .create();
+
+    @Autowired
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    public static int getPartition(Object partitionKey) {
+        return partitionKey == null ? 0 : Math.floorMod(partitionKey.hashCode(), PARTITIONS);
+    }
+
+    /**
+     * Append an event, joining the transaction of caller if there is one
+     *
+     * @param event        Informed, Auditable, RemoveElasticsearchDocumentEvent or ContentBatch of tasks
+     * @param partitionKey events of the same key are consumed in order
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void create(Object event, Object partitionKey) {
+        String eventType = event instanceof ContentBatch ? CONTENT_BATCH_TYPE : event.getClass().getName();
+        this.notificationOutboxRepository.save(
+                new NotificationOutboxEvent(getPartition(partitionKey), eventType, serialize(event)));
+    }
+
+    /**
+     * Claim the oldest events of a partition, the claim is committed before any of them is handled
+     *
+     * @param partition the partition
+     * @param batchSize the max number of events to claim
+     * @return OutboxClaim - the claimed events, null if the partition is empty or claimed by another consumer
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public OutboxClaim claim(int partition, int batchSize) {
+        List<NotificationOutboxEvent> rows = this.notificationOutboxRepository.lockOldestEvents(partition, batchSize);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        NotificationOutboxEvent head = rows.get(0);
+        if (isClaimed(head, now)) {
+            // events of a partition are handled in order
+            return null;
+        }
+        if (head.getAttempts() >= MAX_ATTEMPTS) {
+            LOGGER.error("Dropping outbox event {} {} after {} attempts: {}",
+                    head.getId(), head.getEventType(), head.getAttempts(), head.getPayload());
+            this.notificationOutboxRepository.delete(head);
+            this.notificationOutboxRepository.flush();
+            return claim(partition, batchSize);
+        }
+        if (head.getAttempts() > 0) {
+            // last claim failed, isolate the poisoned row
+            rows = Collections.singletonList(head);
+        }
+        Timestamp claimedUntil = new Timestamp(now + CLAIM_LEASE_MILLIS);
+        OutboxClaim claim = new OutboxClaim(partition, head.getId(), claimedUntil, new LinkedHashMap<>());
+        for (NotificationOutboxEvent row : rows) {
+            if (isClaimed(row, now)) {
+                break;
+            }
+            try {
+                claim.events.put(row.getId(), deserialize(row.getEventType(), row.getPayload()));
+                claim.progress.put(row.getId(), row.getProgress());
+            } catch (Exception ex) {
+                // acknowledged along with the claim
+                LOGGER.error("Dropping unreadable outbox event " + row.getId() + " " + row.getEventType(), ex);
+                claim.events.put(row.getId(), null);
+            }
+        }
+        this.notificationOutboxRepository.claimEvents(claim.events.keySet(), claimedUntil);
+        return claim;
+    }
+
+    /**
+     * Import contents [from, to) of a claimed ContentBatch and record the progress in one transaction
+     *
+     * @param claim    the claim
+     * @param id       id of the claimed ContentBatch
+     * @param from     index of the first content, the progress of the ContentBatch
+     * @param to       index after the last content
+     * @param importer imports the contents of the existing tasks, rolling back if it throws
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void importContentBatch(OutboxClaim claim, Long id, int from, int to,
+                                   Consumer<ContentBatch<TaskContent, Task>> importer) {
+        SerializedContentBatch contentBatch = (SerializedContentBatch) claim.getEvent(id);
+        importer.accept(contentBatch.subBatch(from, to).toContentBatch(this.taskRepository));
+        if (this.notificationOutboxRepository.updateClaimedEventProgress(id, to, claim.claimedUntil) != 1) {
+            throw new IllegalStateException("Lost claim of outbox event " + id);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                claim.progress.put(id, to);
+            }
+        });
+    }
+
+    /**
+     * Delete a claimed ContentBatch imported up to end, putting contents after end back as a new ContentBatch
+     * at the tail of the partition, so a large import does not hold up the events behind it
+     *
+     * @param claim the claim
+     * @param id    id of the claimed ContentBatch
+     * @param end   index after the last imported content
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void acknowledgeContentBatch(OutboxClaim claim, Long id, int end) {
+        SerializedContentBatch contentBatch = (SerializedContentBatch) claim.getEvent(id);
+        if (end < contentBatch.size()) {
+            SerializedContentBatch left = contentBatch.subBatch(end, contentBatch.size());
+            LOGGER.info("Next ContentBatch: {} contents", left.size());
+            this.notificationOutboxRepository.save(
+                    new NotificationOutboxEvent(claim.partition, CONTENT_BATCH_TYPE, GSON.toJson(left)));
+        }
+        acknowledge(claim, Collections.singletonList(id), events -> {
+        });
+    }
+
+    /**
+     * Handle claimed events and delete them in one transaction, so their database effects apply exactly once
+     *
+     * @param claim   the claim
+     * @param ids     ids of the claimed events to acknowledge
+     * @param handler the handler of the events, rolling back if it throws
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void acknowledge(OutboxClaim claim, Collection<Long> ids, Consumer<List<Object>> handler) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Object> events = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Object event = claim.getEvent(id);
+            // content batches are handled by importContentBatch
+            if (event != null && !(event instanceof SerializedContentBatch)) {
+                events.add(event);
+            }
+        }
+        if (!events.isEmpty()) {
+            handler.accept(events);
+        }
+        int deleted = this.notificationOutboxRepository.deleteClaimedEvents(ids, claim.claimedUntil);
+        if (deleted != ids.size()) {
+            throw new IllegalStateException("Lost claim of outbox events " + ids);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                claim.acknowledged(ids);
+            }
+        });
+    }
+
+    /**
+     * Release the unacknowledged events of a failed claim, counting a failed attempt on its oldest event
+     *
+     * @param claim the claim
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRES_NEW)
+    public void release(OutboxClaim claim) {
+        if (claim.events.isEmpty()) {
+            return;
+        }
+        this.notificationOutboxRepository.releaseClaimedEvents(
+                claim.events.keySet(), claim.headId, claim.claimedUntil);
+    }
+
+    private static boolean isClaimed(NotificationOutboxEvent row, long now) {
+        return row.getClaimedUntil() != null && row.getClaimedUntil().getTime() > now;
+    }
+
+    static String serialize(Object event) {
+        if (event instanceof ContentBatch) {
+            return GSON.toJson(new SerializedContentBatch((ContentBatch<?, ?>) event));
+        }
+        if (event instanceof Informed || event instanceof Auditable
+                || event instanceof RemoveElasticsearchDocumentEvent) {
+            return GSON.toJson(event);
+        }
+        throw new IllegalArgumentException("Unsupported outbox event " + event.getClass().getName());
+    }
+
+    /**
+     * @return Object - the event, or SerializedContentBatch whose tasks are loaded once imported
+     */
+    static Object deserialize(String eventType, String payload) throws ClassNotFoundException {
+        if (CONTENT_BATCH_TYPE.equals(eventType)) {
+            return GSON.fromJson(payload, SerializedContentBatch.class);
+        }
+        Class<?> clazz = Class.forName(eventType);
+        if (!Informed.class.isAssignableFrom(clazz) && !Auditable.class.equals(clazz)
+                && !RemoveElasticsearchDocumentEvent.class.equals(clazz)) {
+            throw new IllegalArgumentException("Unsupported outbox event " + eventType);
+        }
+        return GSON.fromJson(payload, clazz);
+    }
+
+    /**
+     * Events of a partition claimed by one consumer until claimedUntil
+     */
+    public static final class OutboxClaim {
+        private final int partition;
+        private final Long headId;
+        private final Timestamp claimedUntil;
+        // id -> event, null for unreadable rows
+        private final Map<Long, Object> events;
+        // id -> contents of a ContentBatch imported so far
+        private final Map<Long, Integer> progress = new HashMap<>();
+
+        public OutboxClaim(int partition, Long headId, Timestamp claimedUntil, Map<Long, Object> events) {
+            this.partition = partition;
+            this.headId = headId;
+            this.claimedUntil = claimedUntil;
+            this.events = events;
+        }
+
+        /**
+         * @return List<Long> - ids of the claimed content batches, each to be imported on its own
+         */
+        public List<Long> getContentBatchIds() {
+            return this.events.entrySet().stream()
+                    .filter(e -> e.getValue() instanceof SerializedContentBatch)
+                    .map(Map.Entry::getKey).collect(Collectors.toList());
+        }
+
+        /**
+         * @return int - the number of contents of a claimed ContentBatch
+         */
+        public int getContentBatchSize(Long id) {
+            return ((SerializedContentBatch) this.events.get(id)).size();
+        }
+
+        /**
+         * @return int - index of the first content of a claimed ContentBatch not imported yet
+         */
+        public int getContentBatchProgress(Long id) {
+            return this.progress.getOrDefault(id, 0);
+        }
+
+        /**
+         * @return List<Long> - ids of the claimed events not acknowledged yet
+         */
+        public List<Long> getIds() {
+            return new ArrayList<>(this.events.keySet());
+        }
+
+        public Object getEvent(Long id) {
+            return this.events.get(id);
+        }
+
+        public void acknowledged(Collection<Long> ids) {
+            this.events.keySet().removeAll(ids);
+        }
+
+        public <E> List<E> getEvents(Class<E> clazz) {
+            return this.events.values().stream().filter(clazz::isInstance).map(clazz::cast)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * ContentBatch of tasks keeps task ids instead of entities
+     */
+    private static final class SerializedContentBatch {
+        private List<Long> taskIds;
+        private List<String> owners;
+        private List<String> texts;
+
+        private SerializedContentBatch(List<Long> taskIds, List<String> owners, List<String> texts) {
+            this.taskIds = taskIds;
+            this.owners = owners;
+            this.texts = texts;
+        }
+
+        private SerializedContentBatch(ContentBatch<?, ?> contentBatch) {
+            this.taskIds = contentBatch.getProjectItems().stream()
+                    .map(ProjectItemModel::getId).collect(Collectors.toList());
+            this.owners = new ArrayList<>(contentBatch.getOwners());
+            this.texts = contentBatch.getContents().stream()
+                    .map(ContentModel::getText).collect(Collectors.toList());
+        }
+
+        private int size() {
+            return this.taskIds.size();
+        }
+
+        private SerializedContentBatch subBatch(int from, int to) {
+            return new SerializedContentBatch(new ArrayList<>(this.taskIds.subList(from, to)),
+                    new ArrayList<>(this.owners.subList(from, to)), new ArrayList<>(this.texts.subList(from, to)));
+        }
+
+        private ContentBatch<TaskContent, Task> toContentBatch(TaskRepository taskRepository) {
+            Map<Long, Task> tasks = taskRepository.findAllById(this.taskIds).stream()
+                    .collect(Collectors.toMap(Task::getId, Function.identity()));
+            List<TaskContent> contents = new ArrayList<>();
+            List<Task> projectItems = new ArrayList<>();
+            List<String> contentOwners = new ArrayList<>();
+            for (int i = 0; i < this.taskIds.size(); i++) {
+                // task may be deleted already
+                Task task = tasks.get(this.taskIds.get(i));
+                if (task == null) {
+                    continue;
+                }
+                contents.add(new TaskContent(this.texts.get(i)));
+                projectItems.add(task);
+                contentOwners.add(this.owners.get(i));
+            }
+            return new ContentBatch<>(contents, projectItems, contentOwners);
+        }
+    }
+}
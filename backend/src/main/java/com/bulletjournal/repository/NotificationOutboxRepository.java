@@ -0,0 +1,46 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.repository.models.NotificationOutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutboxEvent, Long> {
+
+    // oldest events of a partition, locked until the claiming transaction ends
+    @Query(nativeQuery = true, value = "SELECT * FROM notification_outbox WHERE partition_id = :partitionId "
+            + "ORDER BY id LIMIT :limit FOR UPDATE")
+    List<NotificationOutboxEvent> lockOldestEvents(@Param("partitionId") Integer partitionId,
+                                                   @Param("limit") Integer limit);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "UPDATE notification_outbox SET claimed_until = :claimedUntil "
+            + "WHERE id IN (:ids)")
+    int claimEvents(@Param("ids") Collection<Long> ids, @Param("claimedUntil") Timestamp claimedUntil);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "UPDATE notification_outbox SET progress = :progress "
+            + "WHERE id = :id AND claimed_until = :claimedUntil")
+    int updateClaimedEventProgress(@Param("id") Long id, @Param("progress") Integer progress,
+                                   @Param("claimedUntil") Timestamp claimedUntil);
+
+    // rows whose claim expired and got claimed again are left to the new claimer
+    @Modifying
+    @Query(nativeQuery = true, value = "DELETE FROM notification_outbox "
+            + "WHERE id IN (:ids) AND claimed_until = :claimedUntil")
+    int deleteClaimedEvents(@Param("ids") Collection<Long> ids, @Param("claimedUntil") Timestamp claimedUntil);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "UPDATE notification_outbox SET claimed_until = NULL, "
+            + "attempts = attempts + CASE WHEN id = :headId THEN 1 ELSE 0 END "
+            + "WHERE id IN (:ids) AND claimed_until = :claimedUntil")
+    int releaseClaimedEvents(@Param("ids") Collection<Long> ids, @Param("headId") Long headId,
+                             @Param("claimedUntil") Timestamp claimedUntil);
+}
@@ -347,6 +347,21 @@ public class ProjectDaoJpa {
         return events;
     }
 
+    /**
+     * Get usernames of all members in the groups of given projects
+     *
+     * @param projectIds a set of project id strings
+     * @return Set<String> - usernames whose project list may be affected
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public Set<String> findAffectedUsernames(Set<String> projectIds) {
+        Set<String> users = new HashSet<>();
+        List<Long> ids = projectIds.stream().map(Long::parseLong).collect(Collectors.toList());
+        this.projectRepository.findAllById(ids).forEach(project ->
+                project.getGroup().getUsers().forEach(userGroup -> users.add(userGroup.getUser().getName())));
+        return users;
+    }
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Project getSharedProject(ContentType contentType, String owner) {
         ProjectType projectType = ProjectType.fromContentType(contentType);
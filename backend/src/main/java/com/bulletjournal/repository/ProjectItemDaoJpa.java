@@ -2,11 +2,13 @@ package com.bulletjournal.repository;
 
 import com.bulletjournal.authz.AuthorizationService;
 import com.bulletjournal.authz.Operation;
+import com.bulletjournal.config.ContentImportConfig;
 import com.bulletjournal.config.ContentRevisionConfig;
 import com.bulletjournal.contents.ContentAction;
 import com.bulletjournal.contents.ContentType;
 import com.bulletjournal.controller.models.*;
 import com.bulletjournal.controller.utils.EtagGenerator;
+import com.bulletjournal.es.ESUtil;
 import com.bulletjournal.exceptions.BadRequestException;
 import com.bulletjournal.exceptions.ResourceNotFoundException;
 import com.bulletjournal.exceptions.UnAuthorizedException;
@@ -14,6 +16,7 @@ import com.bulletjournal.notifications.*;
 import com.bulletjournal.redis.RedisCachedContentRepository;
 import com.bulletjournal.redis.models.CachedContent;
 import com.bulletjournal.repository.models.ContentModel;
+import com.bulletjournal.repository.models.ContentRevisionModel;
 import com.bulletjournal.repository.models.Group;
 import com.bulletjournal.repository.models.ProjectItemModel;
 import com.bulletjournal.repository.models.UserGroup;
@@ -21,9 +24,12 @@ import com.bulletjournal.util.ContentDiffTool;
 import com.bulletjournal.util.DeltaContent;
 import com.bulletjournal.util.DeltaConverter;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Striped;
 import com.google.gson.Gson;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,11 +37,13 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import java.math.BigInteger;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
 public abstract class ProjectItemDaoJpa<K extends ContentModel> {
@@ -43,7 +51,11 @@ public abstract class ProjectItemDaoJpa<K extends ContentModel> {
     private static final Logger LOGGER = LoggerFactory.getLogger(ProjectItemDaoJpa.class);
     private static final Gson GSON = new Gson();
 
-    private static final int CONTENT_BATCH_SIZE = 18;
+    private static final int CONTENT_LOCK_STRIPES = 1024;
+
+    // revision patches of the same content run one at a time
+    private final Striped<Lock> contentLocks = Striped.lazyWeakLock(CONTENT_LOCK_STRIPES);
+    private RateLimiter contentImportRateLimiter;
 
     @Autowired
     protected LabelDaoJpa labelDaoJpa;
@@ -58,6 +70,8 @@ public abstract class ProjectItemDaoJpa<K extends ContentModel> {
     @Autowired
     private ContentRevisionConfig revisionConfig;
     @Autowired
+    private ContentImportConfig contentImportConfig;
+    @Autowired
     private ContentDiffTool contentDiffTool;
     @Autowired
     private ProjectRepository projectRepository;
@@ -76,8 +90,17 @@ public abstract class ProjectItemDaoJpa<K extends ContentModel> {
 
     abstract K newContent(String text);
 
+    abstract <R extends ContentRevisionModel> ContentRevisionRepository<R> getContentRevisionRepository();
+
+    abstract ContentRevisionModel newContentRevision();
+
     abstract List<Long> findItemLabelsByProject(com.bulletjournal.repository.models.Project project);
 
+    @PostConstruct
+    public void postConstruct() {
+        this.contentImportRateLimiter = RateLimiter.create(this.contentImportConfig.getRowsPerSecond());
+    }
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public <T extends ProjectItemModel> SharableLink generatePublicItemLink(Long projectItemId, String requester,
                                                                             Long ttl) {
@@ -162,41 +185,49 @@ public abstract class ProjectItemDaoJpa<K extends ContentModel> {
         this.sharedProjectItemDaoJpa.deleteSharedProjectItemWithUser(projectItem, requester);
     }
 
+    /**
+     * Wait for the rate budget of content.import to import rows, call it before opening the importing transaction
+     *
+     * @param rows the number of contents to import
+     */
+    public void acquireContentImportPermits(int rows) {
+        if (rows > 0) {
+            this.contentImportRateLimiter.acquire(rows);
+        }
+    }
+
+    /**
+     * Import contents of project items in one JDBC batch insert
+     * <p>
+     * Callers split imports into chunks of content.import.batch-size, and acquire the permits of a chunk with
+     * acquireContentImportPermits before its transaction starts.
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public <T extends ProjectItemModel> void addContent(List<T> projectItems, List<String> owners, List<K> contents) {
         LOGGER.info("Adding {} contents", contents.size());
-        try {
-            Thread.sleep(1500);
-        } catch (InterruptedException e) {
-            LOGGER.error("addContent Interrupted", e);
-        }
         List<K> batch = new ArrayList<>();
-        int maxSize = Math.min(contents.size(), CONTENT_BATCH_SIZE);
-        for (int i = 0; i < maxSize; i++) {
+        for (int i = 0; i < contents.size(); i++) {
             K content = contents.get(i);
             if (StringUtils.isBlank(content.getText())) {
                 continue;
             }
-            String owner = owners.get(i);
-            T projectItem = projectItems.get(i);
-            content.setProjectItem(projectItem);
-            content.setOwner(owner);
+            content.setProjectItem(projectItems.get(i));
+            content.setOwner(owners.get(i));
             content.setText(DeltaConverter.supplementContentText(content.getText(), false));
             batch.add(content);
         }
-        if (!batch.isEmpty()) {
-            this.getContentJpaRepository().saveAll(batch);
-        }
-
-        if (contents.size() <= CONTENT_BATCH_SIZE) {
+        if (batch.isEmpty()) {
             return;
         }
-
-        ContentBatch<K, T> left = new ContentBatch<>(
-                contents.subList(CONTENT_BATCH_SIZE, contents.size()),
-                projectItems.subList(CONTENT_BATCH_SIZE, projectItems.size()),
-                owners.subList(CONTENT_BATCH_SIZE, owners.size()));
-        LOGGER.info("Next ContentBatch: {} contents", left.getContents().size());
-        this.notificationService.addContentBatch(left);
+        Session session = this.entityManager.unwrap(Session.class);
+        Integer jdbcBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batch.size());
+        try {
+            this.getContentJpaRepository().saveAll(batch);
+            this.entityManager.flush();
+        } finally {
+            session.setJdbcBatchSize(jdbcBatchSize);
+        }
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -204,6 +235,7 @@ public abstract class ProjectItemDaoJpa<K extends ContentModel> {
         T projectItem = getProjectItem(projectItemId, owner);
         populateContent(owner, content, projectItem);
         this.getContentJpaRepository().save(content);
+        updateRevision(content, owner, content.getText(), content.getText());
         return Pair.of(content, projectItem);
     }
 
@@ -211,7 +243,6 @@ public abstract class ProjectItemDaoJpa<K extends ContentModel> {
         content.setProjectItem(projectItem);
         content.setOwner(owner);
         content.setText(DeltaConverter.supplementContentText(content.getText()));
-        updateRevision(content, owner, content.getText(), content.getText());
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -219,8 +250,8 @@ public abstract class ProjectItemDaoJpa<K extends ContentModel> {
         T projectItem = getProjectItem(projectItemId, owner);
         content.setProjectItem(projectItem);
         content.setOwner(owner);
-        updateRevision(content, owner, content.getText(), content.getText());
         this.getContentJpaRepository().save(content);
+        updateRevision(content, owner, content.getText(), content.getText());
         return Pair.of(content, projectItem);
     }
 
@@ -242,7 +273,9 @@ public abstract class ProjectItemDaoJpa<K extends ContentModel> {
         int n = revisionContents.size();
         String lastRevisionContent = revisionContents.get(n - 1);
         K content;
-        synchronized (this) {
+        Lock lock = this.contentLocks.get(contentId);
+        lock.lock();
+        try {
             content = getContent(contentId, requester);
             if (redisCachedContentRepository.existsById(contentId)) {
                 return content;
@@ -257,6 +290,8 @@ public abstract class ProjectItemDaoJpa<K extends ContentModel> {
             content.setText(DeltaConverter.mergeContentText(lastRevisionContent, content.getText()) );
             content = this.getContentJpaRepository().saveAndFlush(content);
             redisCachedContentRepository.save(new CachedContent(contentId));
+        } finally {
+            lock.unlock();
         }
 
         // iterate pairs
@@ -372,6 +407,54 @@ public abstract class ProjectItemDaoJpa<K extends ContentModel> {
         return (T) projectItem;
     }
 
+    /**
+     * Validate a batch of search hits of this type with one query for contents, one for project items and one
+     * for their projects, checking access against the projects requester can access.
+     *
+     * @param projectItemIds ids of project item hits
+     * @param contentIds     ids of content hits
+     * @param parentIds      ids of the project items of content hits
+     * @param requester      the requester
+     * @return Map<String, String> - search index id to project item name, of hits that exist and requester can access
+     */
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public Map<String, String> getSearchHitNames(Collection<Long> projectItemIds, Collection<Long> contentIds,
+                                                 Collection<Long> parentIds, String requester) {
+        List<K> contents = contentIds.isEmpty()
+                ? Collections.emptyList() : this.getContentJpaRepository().findAllById(contentIds);
+        Set<Long> itemIds = new HashSet<>(projectItemIds);
+        itemIds.addAll(parentIds);
+        List<ProjectItemModel> items = itemIds.isEmpty()
+                ? Collections.emptyList() : this.<ProjectItemModel>getJpaRepository().findAllById(itemIds);
+        Set<Long> projectIds = items.stream().map(item -> item.getProject().getId()).collect(Collectors.toSet());
+        Set<Long> accessibleProjectIds = projectIds.isEmpty() ? Collections.emptySet()
+                : this.authorizationService.getAccessibleProjectIds(requester,
+                this.projectRepository.findAllById(projectIds));
+
+        Map<Long, ProjectItemModel> accessibleItems = new HashMap<>();
+        for (ProjectItemModel item : items) {
+            if (accessibleProjectIds.contains(item.getProject().getId())
+                    || this.authorizationService.isSharedWith(requester, item)) {
+                accessibleItems.put(item.getId(), item);
+            }
+        }
+
+        Map<String, String> names = new HashMap<>();
+        for (Long projectItemId : projectItemIds) {
+            ProjectItemModel item = accessibleItems.get(projectItemId);
+            if (item != null) {
+                names.put(ESUtil.getProjectItemSearchIndexId(item), item.getName());
+            }
+        }
+        for (K content : contents) {
+            ProjectItemModel item = accessibleItems.get(content.getProjectItem().getId());
+            if (item != null) {
+                names.put(ESUtil.getContentSearchIndexId(content), item.getName());
+            }
+        }
+        return names;
+    }
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     protected <T extends ProjectItemModel> List<com.bulletjournal.controller.models.Label> getLabelsToProjectItem(
             T projectItem) {
@@ -402,56 +485,138 @@ public abstract class ProjectItemDaoJpa<K extends ContentModel> {
         K content = getContent(contentId, requester);
         Preconditions.checkState(Objects.equals(projectItem.getId(), content.getProjectItem().getId()),
                 "ProjectItem ID mismatch");
-        Revision[] revisions = GSON.fromJson(content.getRevisions(), Revision[].class);
-        Preconditions.checkNotNull(revisions, "Revisions for Content: {} is null", contentId);
-        if (!Arrays.stream(revisions).anyMatch(revision -> Objects.equals(revision.getId(), revisionId))) {
-            throw new BadRequestException("Invalid revisionId: " + revisionId + " for content: " + contentId);
-        }
-
-        if (revisionId.equals(revisions[revisions.length - 1].getId())) {
-            revisions[revisions.length - 1].setContent(content.getText());
-            return revisions[revisions.length - 1];
-        }
+        migrateRevisions(content);
+        ContentRevisionModel contentRevision = this.getContentRevisionRepository()
+                .findByContentIdAndRevisionId(contentId, revisionId)
+                .orElseThrow(() -> new BadRequestException(
+                        "Invalid revisionId: " + revisionId + " for content: " + contentId));
+        Revision revision = new Revision(contentRevision.getRevisionId(), contentRevision.getDiff(),
+                contentRevision.getCreatedAt().getTime(), new User(contentRevision.getUsername()));
+        revision.setContent(contentRevision.getCheckpoint() != null
+                ? contentRevision.getCheckpoint() : getRevisionText(contentId, revisionId));
+        return revision;
+    }
 
-        String ret = content.getBaseText();
-        for (Revision revision : revisions) {
-            ret = contentDiffTool.applyDiff(ret, revision.getDiff());
-            if (revision.getId().equals(revisionId)) {
-                revision.setContent(ret);
-                return revision;
-            }
+    /**
+     * Rebuild the text of a revision from the closest checkpoint at or before it
+     */
+    private String getRevisionText(Long contentId, Long revisionId) {
+        ContentRevisionRepository<ContentRevisionModel> repository = this.getContentRevisionRepository();
+        ContentRevisionModel checkpoint = repository
+                .findFirstByContentIdAndRevisionIdLessThanEqualAndCheckpointIsNotNullOrderByRevisionIdDesc(
+                        contentId, revisionId)
+                .orElseThrow(() -> new IllegalStateException("No checkpoint before revision " + revisionId
+                        + " of content " + contentId));
+        String text = checkpoint.getCheckpoint();
+        for (ContentRevisionModel revision : repository.findByContentIdAndRevisionIdBetweenOrderByRevisionId(
+                contentId, checkpoint.getRevisionId() + 1, revisionId)) {
+            text = contentDiffTool.applyDiff(text, revision.getDiff());
         }
-        throw new IllegalStateException("Cannot reach here");
+        return text;
     }
 
+    /**
+     * Append a revision of a saved content
+     * <p>
+     * - The first kept revision and every checkpointInterval-th revision store the full text
+     * - Once there are more than maxRevisionNumber revisions, the oldest ones are dropped
+     */
     private void updateRevision(K content, String requester, String newText, String oldText) {
         if (!newText.contains(DeltaContent.HTML_TAG)) {
             LOGGER.info("{} does not contain {}", newText, DeltaContent.HTML_TAG);
             return;
         }
-        String revisionsJson = content.getRevisions();
-        if (revisionsJson == null) {
-            revisionsJson = "[]";
+        migrateRevisions(content);
+        ContentRevisionRepository<ContentRevisionModel> repository = this.getContentRevisionRepository();
+        Optional<ContentRevisionModel> last = repository.findFirstByContentIdOrderByRevisionIdDesc(content.getId());
+        long nextRevisionId = last.map(r -> r.getRevisionId() + 1).orElse(1L);
+        long firstKeptRevisionId = nextRevisionId - revisionConfig.getMaxRevisionNumber() + 1;
+
+        ContentRevisionModel revision = newContentRevision(content.getId(), nextRevisionId, requester,
+                contentDiffTool.computeDiff(oldText, newText));
+        if (!last.isPresent() || nextRevisionId % revisionConfig.getCheckpointInterval() == 0
+                || nextRevisionId <= firstKeptRevisionId) {
+            revision.setCheckpoint(newText);
         }
-        LinkedList<Revision> revisionList = new LinkedList<>(
-                Arrays.asList(GSON.fromJson(revisionsJson, Revision[].class)));
-        int maxRevisionNumber = revisionConfig.getMaxRevisionNumber();
-        long nextRevisionId;
-        if (revisionList.isEmpty()) {
-            content.setBaseText(oldText);
-            nextRevisionId = 1;
-        } else {
-            nextRevisionId = revisionList.getLast().getId() + 1;
-            if (revisionList.size() == maxRevisionNumber) {
-                String oldBaseText = content.getBaseText();
-                String diffToMerge = revisionList.pollFirst().getDiff();
-                content.setBaseText(contentDiffTool.applyDiff(oldBaseText, diffToMerge));
+        repository.save(revision);
+
+        if (firstKeptRevisionId <= 1) {
+            return;
+        }
+        if (firstKeptRevisionId < nextRevisionId) {
+            // the oldest kept revision becomes a checkpoint before the ones before it are dropped
+            repository.findByContentIdAndRevisionId(content.getId(), firstKeptRevisionId)
+                    .filter(r -> r.getCheckpoint() == null)
+                    .ifPresent(r -> {
+                        r.setCheckpoint(getRevisionText(content.getId(), firstKeptRevisionId));
+                        repository.save(r);
+                    });
+        }
+        repository.deleteRevisionsBefore(content.getId(), firstKeptRevisionId);
+    }
+
+    private ContentRevisionModel newContentRevision(Long contentId, Long revisionId, String username, String diff) {
+        ContentRevisionModel revision = this.newContentRevision();
+        revision.setContentId(contentId);
+        revision.setRevisionId(revisionId);
+        revision.setUsername(username);
+        revision.setDiff(diff);
+        return revision;
+    }
+
+    /**
+     * Move revisions kept in the json column of a content into its revision table
+     */
+    private void migrateRevisions(K content) {
+        if (StringUtils.isBlank(content.getRevisions())) {
+            return;
+        }
+        Revision[] revisions = GSON.fromJson(content.getRevisions(), Revision[].class);
+        List<ContentRevisionModel> contentRevisions = new ArrayList<>();
+        String text = content.getBaseText();
+        for (int i = 0; i < revisions.length; i++) {
+            Revision revision = revisions[i];
+            text = contentDiffTool.applyDiff(text, revision.getDiff());
+            ContentRevisionModel contentRevision = newContentRevision(content.getId(), revision.getId(),
+                    revision.getUser().getName(), revision.getDiff());
+            contentRevision.setCreatedAt(new Timestamp(revision.getCreatedAt()));
+            if (i == 0 || revision.getId() % revisionConfig.getCheckpointInterval() == 0) {
+                contentRevision.setCheckpoint(text);
             }
+            contentRevisions.add(contentRevision);
         }
-        String diff = contentDiffTool.computeDiff(oldText, newText);
-        Revision newRevision = new Revision(nextRevisionId, diff, Instant.now().toEpochMilli(), new User(requester));
-        revisionList.offerLast(newRevision);
-        content.setRevisions(GSON.toJson(revisionList));
+        this.getContentRevisionRepository().saveAll(contentRevisions);
+        content.setBaseText(null);
+        content.setRevisions(null);
+        this.getContentJpaRepository().save(content);
+    }
+
+    public Content toPresentationModel(K content) {
+        return toPresentationModels(Collections.singletonList(content)).get(0);
+    }
+
+    /**
+     * Convert contents to presentation models, loading the revisions of all of them in one query
+     */
+    public List<Content> toPresentationModels(List<K> contents) {
+        List<Long> contentIds = contents.stream()
+                .filter(c -> c.getId() != null && StringUtils.isBlank(c.getRevisions()))
+                .map(ContentModel::getId).collect(Collectors.toList());
+        Map<Long, List<Revision>> revisions = new HashMap<>();
+        if (!contentIds.isEmpty()) {
+            for (Object[] row : this.getContentRevisionRepository().findRevisionMetadata(contentIds)) {
+                revisions.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add(new Revision(
+                        (Long) row[1], null, ((Timestamp) row[2]).getTime(), new User((String) row[3])));
+            }
+        }
+        return contents.stream().map(c -> {
+            Content content = c.toPresentationModel();
+            List<Revision> contentRevisions = revisions.get(c.getId());
+            if (contentRevisions != null) {
+                content.setRevisions(contentRevisions.toArray(new Revision[0]));
+            }
+            return content;
+        }).collect(Collectors.toList());
     }
 
     /**
@@ -4,6 +4,8 @@ import com.bulletjournal.repository.models.Note;
 import com.bulletjournal.repository.models.SharedProjectItem;
 import com.bulletjournal.repository.models.Task;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,6 +15,11 @@ public interface SharedProjectItemRepository extends JpaRepository<SharedProject
         SharedProjectItemRepositoryCustom {
     List<SharedProjectItem> findByUsername(String username);
 
+    // [taskId, noteId, transactionId] of each shared item, without loading the items
+    @Query("SELECT t.id, n.id, tr.id FROM SharedProjectItem s LEFT JOIN s.task t LEFT JOIN s.note n "
+            + "LEFT JOIN s.transaction tr WHERE s.username = :username")
+    List<Object[]> findSharedItemIdsByUsername(@Param("username") String username);
+
     List<SharedProjectItem> findByTask(Task task);
 
     List<SharedProjectItem> findByNote(Note note);
@@ -80,6 +80,9 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
     @Autowired
     private TaskContentRepository taskContentRepository;
 
+    @Autowired
+    private TaskContentRevisionRepository taskContentRevisionRepository;
+
     @Autowired
     private SharedProjectItemDaoJpa sharedProjectItemDaoJpa;
 
@@ -126,16 +129,15 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
             final Map<Long, Task> taskMap = tasks.stream().filter(t -> processedIds.contains(t.getId()))
                     .collect(Collectors.toMap(n -> n.getId(), n -> n));
 
-            ret.addAll(TaskRelationsProcessor.processRelations(taskMap, keptHierarchy).stream()
-                    .map(task -> addLabels(task, taskMap)).collect(Collectors.toList()));
+            ret.addAll(TaskRelationsProcessor.processRelations(taskMap, keptHierarchy));
 
             tasks = tasks.stream().filter(t -> !processedIds.contains(t.getId())).collect(Collectors.toList());
         }
 
-        ret.addAll(this.labelDaoJpa.getLabelsForProjectItemList(
-                tasks.stream().sorted(Comparator.comparingLong(Task::getId))
-                        .map(Task::toPresentationModel).collect(Collectors.toList())));
-        return ret;
+        ret.addAll(tasks.stream().sorted(Comparator.comparingLong(Task::getId))
+                .map(Task::toPresentationModel).collect(Collectors.toList()));
+        // labels of the whole tree in one batch
+        return this.labelDaoJpa.getLabelsForProjectItemList(ret);
     }
 
     /**
@@ -159,56 +161,39 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
 
         List<Task> tasks = this.taskRepository.findTasksByAssigneeAndProject(assignee, projectId);
         tasks.sort(ProjectItemsGrouper.TASK_COMPARATOR);
-        return tasks.stream().map(t -> {
-            List<com.bulletjournal.controller.models.Label> labels = getLabelsToProjectItem(t);
-            return t.toPresentationModel(labels);
-        }).collect(Collectors.toList());
+        return this.labelDaoJpa.getLabelsForProjectItemList(tasks.stream()
+                .map(Task::toPresentationModel).collect(Collectors.toList()));
     }
 
+    /**
+     * Get occurrences of project's tasks sorted by due date time, converted to presentation models by caller
+     *
+     * @return List<TaskOccurrence> - one-time tasks and occurrences of recurring tasks in the range
+     */
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public List<com.bulletjournal.controller.models.Task> getTasksByOrder(Long projectId, String requester,
-                                                                          String startDate, String endDate, String timezone) {
+    public List<TaskOccurrence> getTasksByOrder(Long projectId, String requester,
+                                                String startDate, String endDate, String timezone) {
         Project project = this.projectDaoJpa.getProject(projectId, requester);
-        List<Task> tasks;
+        List<TaskOccurrence> occurrences = new ArrayList<>();
         if (project.isShared()) {
-            tasks = this.sharedProjectItemDaoJpa.
-                    getSharedProjectItems(requester, ContentType.TASK).stream()
+            this.sharedProjectItemDaoJpa.getSharedProjectItems(requester, ContentType.TASK).stream()
                     .filter(obj -> obj instanceof Task)
-                    .map(projectItemModel -> (Task) projectItemModel).collect(Collectors.toList());
+                    .forEach(projectItemModel -> occurrences.add(TaskOccurrence.of((Task) projectItemModel)));
         } else {
             if (StringUtils.isBlank(startDate) && StringUtils.isBlank(endDate)) {
-                tasks = this.taskRepository.findTaskByProject(project);
+                this.taskRepository.findTaskByProject(project).forEach(t -> occurrences.add(TaskOccurrence.of(t)));
             } else {
                 // Set start time and end time
                 ZonedDateTime startTime = ZonedDateTimeHelper.getStartTime(startDate, null, timezone);
                 ZonedDateTime endTime = ZonedDateTimeHelper.getEndTime(endDate, null, timezone);
-                tasks = this.taskRepository.findTasksBetween(project, Timestamp.from(startTime.toInstant()),
-                        Timestamp.from(endTime.toInstant()));
-                tasks.addAll(getAllRemindingRecurringTasksByProjectBetween(project, startTime, endTime));
+                this.taskRepository.findTasksBetween(project, Timestamp.from(startTime.toInstant()),
+                        Timestamp.from(endTime.toInstant())).forEach(t -> occurrences.add(TaskOccurrence.of(t)));
+                occurrences.addAll(getAllRemindingRecurringTasksByProjectBetween(project, startTime, endTime));
             }
         }
 
-        tasks.sort(ProjectItemsGrouper.TASK_COMPARATOR);
-        return this.labelDaoJpa.getLabelsForProjectItemList(tasks.stream()
-                .map(Task::toPresentationModel).collect(Collectors.toList()));
-    }
-
-    /**
-     * Apply labels to tasks
-     *
-     * @param task     the task object
-     * @param tasksMap the Map object mapping relationship between TaskId and Task
-     *                 Instance
-     * @return com.bulletjournal.controller.models.Task - task instance with labels
-     */
-    private com.bulletjournal.controller.models.Task addLabels(com.bulletjournal.controller.models.Task task,
-                                                               Map<Long, Task> tasksMap) {
-        List<com.bulletjournal.controller.models.Label> labels = getLabelsToProjectItem(tasksMap.get(task.getId()));
-        task.setLabels(labels);
-        for (com.bulletjournal.controller.models.Task subTask : task.getSubTasks()) {
-            addLabels(subTask, tasksMap);
-        }
-        return task;
+        occurrences.sort(ProjectItemsGrouper.TASK_OCCURRENCE_COMPARATOR);
+        return occurrences;
     }
 
     public Pair<Task, List<Event>> setTaskStatus(TaskStatus taskStatus, Long taskId, String requester) {
@@ -273,9 +258,9 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
             return false;
         }).collect(Collectors.toList());
 
-        List<Task> recurrentTasks = this.getRecurringTaskOfAssignee(assignee, startTime, endTime);
-
-        tasks.addAll(recurrentTasks);
+        for (TaskOccurrence o : this.getRecurringTaskOfAssignee(assignee, startTime, endTime)) {
+            tasks.add(o.toTask());
+        }
         return tasks;
     }
 
@@ -294,11 +279,12 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
     public List<com.bulletjournal.controller.models.Task> getRecurringTaskNeedReminding(final String assignee,
                                                                                         final ZonedDateTime now) {
         ZonedDateTime maxRemindingTime = now.plusHours(ZonedDateTimeHelper.MAX_HOURS_BEFORE);
+        long nowMillis = now.toInstant().toEpochMilli();
         return this.getRecurringTaskOfAssignee(assignee, now, maxRemindingTime).stream()
-                .filter(t -> t.hasReminderDateTime() &&
-                        t.getReminderDateTime().before(ZonedDateTimeHelper.getTimestamp(now)) &&
-                        t.getStartTime().after(ZonedDateTimeHelper.getTimestamp(now)))
-                .map(t -> t.toPresentationModel()).collect(Collectors.toList());
+                .filter(o -> o.hasReminderDateTime() &&
+                        o.getReminderDateTime() < nowMillis &&
+                        o.getStartTime() > nowMillis)
+                .map(TaskOccurrence::toPresentationModel).collect(Collectors.toList());
     }
 
     /**
@@ -306,20 +292,20 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
      * <p>
      * Procedure:
      * 1. Iterate through input recurrent tasks
-     * 2. Obtain new DateTime instance by using RecurrenceRule iterator
-     * 3. Clone the original recurring task and set its start/end time and reminding setting
+     * 2. Look up occurrence instants of each task's recurrence rule
+     * 3. Create a TaskOccurrence referencing the original recurring task for each instant
      *
      * @param recurrentTasks a list of tasks with recurrence rule
      * @param startTime      the ZonedDateTime object of start time
      * @param endTime        the ZonedDateTime object of end time
-     * @return List<Task> - a list of recurrent tasks within the time range
+     * @return List<TaskOccurrence> - a list of occurrences within the time range
      */
-    public List<Task> getRecurringTasks(List<Task> recurrentTasks, ZonedDateTime startTime, ZonedDateTime endTime) {
-        List<Task> recurringTasksBetween = new ArrayList<>();
+    public List<TaskOccurrence> getRecurringTasks(List<Task> recurrentTasks, ZonedDateTime startTime,
+                                                  ZonedDateTime endTime) {
+        List<TaskOccurrence> recurringTasksBetween = new ArrayList<>();
 
         for (Task t : recurrentTasks) {
-            List<Task> recurringTasks = DaoHelper.getRecurringTask(t, startTime, endTime);
-            recurringTasksBetween.addAll(recurringTasks);
+            recurringTasksBetween.addAll(DaoHelper.getTaskOccurrences(t, startTime, endTime));
         }
 
         return recurringTasksBetween;
@@ -331,10 +317,10 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
      * @param assignee  the assignee of recurrent task
      * @param startTime the requested range start time
      * @param endTime   the requested range end time
-     * @return List<Task> - a list of recurrent tasks within the time range
+     * @return List<TaskOccurrence> - a list of occurrences within the time range
      */
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public List<Task> getRecurringTaskOfAssignee(String assignee, ZonedDateTime startTime, ZonedDateTime endTime) {
+    public List<TaskOccurrence> getRecurringTaskOfAssignee(String assignee, ZonedDateTime startTime, ZonedDateTime endTime) {
         List<Task> recurringTasks = this.taskRepository.findTasksByAssigneeAndRecurrenceRuleNotNull(assignee);
         return getRecurringTasks(recurringTasks, startTime, endTime);
     }
@@ -344,16 +330,16 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
      *
      * @param startTime the requested range start time
      * @param endTime   the requested range end time
-     * @return List<Task> - a list of recurring tasks within the time range
+     * @return List<TaskOccurrence> - a list of occurrences within the time range
      */
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public List<Task> getAllRemindingRecurringTasksBetween(ZonedDateTime startTime, ZonedDateTime endTime) {
+    public List<TaskOccurrence> getAllRemindingRecurringTasksBetween(ZonedDateTime startTime, ZonedDateTime endTime) {
         List<Task> recurringTasks = this.taskRepository.findTasksByRecurrenceRuleNotNull();
         return getRecurringTasks(recurringTasks, startTime, endTime);
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public List<Task> getAllRemindingRecurringTasksByProjectBetween(Project project, ZonedDateTime startTime, ZonedDateTime endTime) {
+    public List<TaskOccurrence> getAllRemindingRecurringTasksByProjectBetween(Project project, ZonedDateTime startTime, ZonedDateTime endTime) {
         List<Task> recurringTasks = this.taskRepository.findTaskByProjectAndRecurrenceRuleNotNull(project);
         return getRecurringTasks(recurringTasks, startTime, endTime);
     }
@@ -379,14 +365,9 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
      * @param tasks                 a list of tasks to be added into reminderRecordTaskMap
      */
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public void fillReminderRecordTaskMap(Map<ReminderRecord, Task> reminderRecordTaskMap,
+    public void fillReminderRecordTaskMap(Map<ReminderRecord, TaskOccurrence> reminderRecordTaskMap,
                                           List<Task> tasks, ZonedDateTime start, ZonedDateTime end) {
-        tasks.forEach(t -> {
-            Map<ReminderRecord, Task> records = DaoHelper.getReminderRecordMap(t, start, end);
-            for (Map.Entry<ReminderRecord, Task> entry : records.entrySet()) {
-                reminderRecordTaskMap.put(entry.getKey(), entry.getValue());
-            }
-        });
+        tasks.forEach(t -> reminderRecordTaskMap.putAll(DaoHelper.getReminderRecordMap(t, start, end)));
     }
 
     /**
@@ -395,14 +376,14 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
      *
      * @param startTime the requested range start time
      * @param endTime   the requested range end time
-     * @return Map<ReminderRecord, Task> - a map with
+     * @return Map<ReminderRecord, TaskOccurrence> - a map with reminder record as key and occurrence as value
      */
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public Map<ReminderRecord, Task> getRemindingTasks(ZonedDateTime startTime, ZonedDateTime endTime) {
+    public Map<ReminderRecord, TaskOccurrence> getRemindingTasks(ZonedDateTime startTime, ZonedDateTime endTime) {
         List<Task> nonRecurringTasks = getAllRemindingTasksBetween(startTime, endTime);
-        List<Task> recurringTasks = getAllRemindingRecurringTasksBetween(startTime, endTime);
+        List<Task> recurringTasks = this.taskRepository.findTasksByRecurrenceRuleNotNull();
 
-        Map<ReminderRecord, Task> reminderRecordTaskMap = new HashMap<>(); // TODO: Need to confirm map type
+        Map<ReminderRecord, TaskOccurrence> reminderRecordTaskMap = new HashMap<>();
         fillReminderRecordTaskMap(reminderRecordTaskMap, nonRecurringTasks, startTime, endTime);
         fillReminderRecordTaskMap(reminderRecordTaskMap, recurringTasks, startTime, endTime);
 
@@ -726,6 +707,7 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
         }
 
         this.taskRepository.delete(task);
+        DaoHelper.invalidateRecurringTask(task.getId());
         CompletedTask completedTask = new CompletedTask(task, contents);
         this.completedTaskRepository.save(completedTask);
         return completedTask;
@@ -792,6 +774,7 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
     public Pair<List<Event>, Task> deleteTask(String requester, Long taskId) {
         Task task = this.getProjectItem(taskId, requester);
         this.taskRepository.delete(task);
+        DaoHelper.invalidateRecurringTask(task.getId());
         return Pair.of(generateEvents(task, requester, task.getProject()), task);
     }
 
@@ -966,6 +949,16 @@ public class TaskDaoJpa extends ProjectItemDaoJpa<TaskContent> {
         return new TaskContent(text);
     }
 
+    @Override
+    public ContentRevisionRepository getContentRevisionRepository() {
+        return this.taskContentRevisionRepository;
+    }
+
+    @Override
+    TaskContentRevision newContentRevision() {
+        return new TaskContentRevision();
+    }
+
 
     @Override
     public <T extends ProjectItemModel> List<TaskContent> getContents(Long projectItemId, String requester) {
@@ -9,4 +9,6 @@ public interface TaskRepositoryCustom {
     List<Task> findTasksByLabelId(Long labelId);
 
     List<Task> findTasksByLabelIds(List<Long> labelIds);
+
+    List<Long> findProjectIdsByLabelId(Long labelId);
 }
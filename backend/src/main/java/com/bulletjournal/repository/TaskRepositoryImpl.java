@@ -9,6 +9,7 @@ import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 import javax.transaction.Transactional;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Repository
 @Transactional
@@ -34,4 +35,13 @@ public class TaskRepositoryImpl implements TaskRepositoryCustom {
         }
         return query.getResultList();
     }
+
+    @Override
+    public List<Long> findProjectIdsByLabelId(Long labelId) {
+        Query query = entityManager.createNativeQuery(
+                "SELECT DISTINCT tasks.project_id FROM tasks WHERE ? = ANY(tasks.labels)");
+        query.setParameter(1, labelId);
+        List<?> projectIds = query.getResultList();
+        return projectIds.stream().map(id -> ((Number) id).longValue()).collect(Collectors.toList());
+    }
 }
@@ -47,6 +47,8 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
     @Autowired
     private TransactionContentRepository transactionContentRepository;
     @Autowired
+    private TransactionContentRevisionRepository transactionContentRevisionRepository;
+    @Autowired
     private SearchIndexDaoJpa searchIndexDaoJpa;
 
     @Override
@@ -73,7 +75,7 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
             String requester) {
         Project project = this.projectDaoJpa.getProject(projectId, requester);
 
-        return this.transactionRepository
+        return this.labelDaoJpa.getLabelsForProjectItemList(this.transactionRepository
                 .findTransactionsByProjectBetween(project, Timestamp.from(startTime.toInstant()),
                         Timestamp.from(endTime.toInstant()))
                 .stream().sorted((a, b) -> {
@@ -82,7 +84,7 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
                     }
 
                     return a.getStartTime().compareTo(b.getStartTime());
-                }).map(transaction -> addLabels(transaction)).collect(Collectors.toList());
+                }).map(Transaction::toPresentationModel).collect(Collectors.toList()));
     }
 
     /**
@@ -162,10 +164,8 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
         List<Transaction> transactions = this.transactionRepository.findTransactionsInProjectByPayerBetween(payer,
                 project, Timestamp.from(startTime.toInstant()), Timestamp.from(endTime.toInstant()));
         transactions.sort(ProjectItemsGrouper.TRANSACTION_COMPARATOR);
-        return transactions.stream().map(t -> {
-            List<com.bulletjournal.controller.models.Label> labels = getLabelsToProjectItem(t);
-            return t.toPresentationModel(labels);
-        }).collect(Collectors.toList());
+        return this.labelDaoJpa.getLabelsForProjectItemList(transactions.stream()
+                .map(Transaction::toPresentationModel).collect(Collectors.toList()));
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -296,6 +296,16 @@ public class TransactionDaoJpa extends ProjectItemDaoJpa<TransactionContent> {
         return new TransactionContent(text);
     }
 
+    @Override
+    public ContentRevisionRepository getContentRevisionRepository() {
+        return this.transactionContentRevisionRepository;
+    }
+
+    @Override
+    TransactionContentRevision newContentRevision() {
+        return new TransactionContentRevision();
+    }
+
     @Override
     List<Long> findItemLabelsByProject(Project project) {
         return transactionRepository.findUniqueLabelsByProject(project.getId());
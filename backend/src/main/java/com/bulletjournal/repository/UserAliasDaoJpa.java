@@ -2,6 +2,7 @@ package com.bulletjournal.repository;
 
 import com.bulletjournal.clients.UserClient;
 import com.bulletjournal.controller.models.User;
+import com.bulletjournal.redis.IdentityNearCache;
 import com.bulletjournal.redis.RedisUserAliasesRepository;
 import com.bulletjournal.redis.models.UserAliases;
 import com.bulletjournal.repository.models.UserAlias;
@@ -14,6 +15,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
@@ -30,6 +32,9 @@ public class UserAliasDaoJpa {
     @Autowired
     private RedisUserAliasesRepository redisUserAliasesRepository;
 
+    @Autowired
+    private IdentityNearCache identityNearCache;
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public void changeAlias(String requester, String targetUser, String alias) {
         UserAlias userAlias = userAliasRepository.findById(requester).orElse(new UserAlias(requester));
@@ -42,10 +47,15 @@ public class UserAliasDaoJpa {
         userAlias.setAliases(GSON.toJson(aliases));
         this.userAliasRepository.save(userAlias);
         this.redisUserAliasesRepository.save(new UserAliases(requester, aliases));
+        this.identityNearCache.invalidateAliases(requester);
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public Map<String, String> getAliases(String requester) {
+        return this.identityNearCache.getAliases(requester, () -> loadAliases(requester));
+    }
+
+    private Map<String, String> loadAliases(String requester) {
         Map<String, String> aliases = Collections.emptyMap();
         Optional<UserAliases> userAliases = this.redisUserAliasesRepository.findById(requester);
         if (userAliases.isPresent()) {
@@ -75,4 +85,15 @@ public class UserAliasDaoJpa {
         user.setAlias(aliases.getOrDefault(user.getName(), user.getName()));
         return user;
     }
+
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public <T extends Collection<User>> T updateUserAliases(T users) {
+        String requester = MDC.get(UserClient.USER_NAME_KEY);
+        if (requester == null || users.isEmpty()) {
+            return users;
+        }
+        Map<String, String> aliases = this.getAliases(requester);
+        users.forEach(user -> user.setAlias(aliases.getOrDefault(user.getName(), user.getName())));
+        return users;
+    }
 }
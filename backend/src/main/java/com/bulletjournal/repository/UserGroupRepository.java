@@ -3,6 +3,8 @@ package com.bulletjournal.repository;
 import com.bulletjournal.repository.models.UserGroup;
 import com.bulletjournal.repository.models.UserGroupKey;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,4 +14,7 @@ public interface UserGroupRepository extends JpaRepository<UserGroup, UserGroupK
     List<UserGroup> findAllByGroupIdAndAccepted(Long groupId, Boolean accepted);
 
     List<UserGroup> findAllByUserId(Long userId);
+
+    @Query("SELECT ug.group.id FROM UserGroup ug WHERE ug.user.name = :username AND ug.accepted = true")
+    List<Long> findAcceptedGroupIdsByUsername(@Param("username") String username);
 }
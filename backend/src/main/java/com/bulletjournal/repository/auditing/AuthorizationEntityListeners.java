@@ -0,0 +1,27 @@
+package com.bulletjournal.repository.auditing;
+
+import com.bulletjournal.authz.AuthorizationIndex;
+import com.bulletjournal.repository.models.SharedProjectItem;
+import com.bulletjournal.repository.models.UserGroup;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+public class AuthorizationEntityListeners {
+    @Autowired
+    AuthorizationIndex authorizationIndex;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void postChange(Object entity) {
+        if (entity instanceof UserGroup) {
+            // joined, accepted invitation or removed from group
+            this.authorizationIndex.invalidate(((UserGroup) entity).getUser().getName());
+        } else if (entity instanceof SharedProjectItem) {
+            this.authorizationIndex.invalidate(((SharedProjectItem) entity).getUsername());
+        }
+    }
+}
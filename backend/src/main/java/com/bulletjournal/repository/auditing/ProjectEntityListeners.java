@@ -0,0 +1,54 @@
+package com.bulletjournal.repository.auditing;
+
+import com.bulletjournal.notifications.EtagEvent;
+import com.bulletjournal.notifications.NotificationService;
+import com.bulletjournal.redis.models.EtagType;
+import com.bulletjournal.repository.models.Project;
+import com.bulletjournal.repository.models.UserProjects;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+public class ProjectEntityListeners {
+    @Autowired
+    NotificationService notificationService;
+
+    @PostPersist
+    @PostUpdate
+    public void postSave(Object entity) {
+        if (entity instanceof Project) {
+            cacheEtag(new EtagEvent(String.valueOf(((Project) entity).getId()), EtagType.PROJECT));
+        } else if (entity instanceof UserProjects) {
+            cacheEtag(new EtagEvent(((UserProjects) entity).getOwner(), EtagType.USER_PROJECTS));
+        }
+    }
+
+    @PostRemove
+    public void postDelete(Object entity) {
+        if (entity instanceof Project) {
+            // project is gone when event is consumed, send members directly
+            ((Project) entity).getGroup().getUsers().forEach(u ->
+                    cacheEtag(new EtagEvent(u.getUser().getName(), EtagType.USER_PROJECTS)));
+        } else if (entity instanceof UserProjects) {
+            cacheEtag(new EtagEvent(((UserProjects) entity).getOwner(), EtagType.USER_PROJECTS));
+        }
+    }
+
+    private void cacheEtag(EtagEvent etagEvent) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.notificationService.cacheEtag(etagEvent);
+            return;
+        }
+        // callbacks run at flush, a poll before commit would cache the new version with old projects
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                notificationService.cacheEtag(etagEvent);
+            }
+        });
+    }
+}
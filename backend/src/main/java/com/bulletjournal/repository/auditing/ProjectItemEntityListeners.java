@@ -0,0 +1,51 @@
+package com.bulletjournal.repository.auditing;
+
+import com.bulletjournal.notifications.EtagEvent;
+import com.bulletjournal.notifications.NotificationService;
+import com.bulletjournal.redis.models.EtagType;
+import com.bulletjournal.repository.models.Note;
+import com.bulletjournal.repository.models.ProjectNotes;
+import com.bulletjournal.repository.models.ProjectTasks;
+import com.bulletjournal.repository.models.Task;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+public class ProjectItemEntityListeners {
+    @Autowired
+    NotificationService notificationService;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void postChange(Object entity) {
+        if (entity instanceof Task) {
+            cacheEtag(((Task) entity).getProject().getId(), EtagType.PROJECT_TASKS);
+        } else if (entity instanceof ProjectTasks) {
+            cacheEtag(((ProjectTasks) entity).getProjectId(), EtagType.PROJECT_TASKS);
+        } else if (entity instanceof Note) {
+            cacheEtag(((Note) entity).getProject().getId(), EtagType.PROJECT_NOTES);
+        } else if (entity instanceof ProjectNotes) {
+            cacheEtag(((ProjectNotes) entity).getProjectId(), EtagType.PROJECT_NOTES);
+        }
+    }
+
+    private void cacheEtag(Long projectId, EtagType type) {
+        EtagEvent etagEvent = new EtagEvent(String.valueOf(projectId), type);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.notificationService.cacheEtag(etagEvent);
+            return;
+        }
+        // callbacks run at flush, a poll before commit would cache the new version with old items
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                notificationService.cacheEtag(etagEvent);
+            }
+        });
+    }
+}
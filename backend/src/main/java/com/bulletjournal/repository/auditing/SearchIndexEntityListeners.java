@@ -0,0 +1,38 @@
+package com.bulletjournal.repository.auditing;
+
+import com.bulletjournal.es.ESUtil;
+import com.bulletjournal.es.SearchIndexPipeline;
+import com.bulletjournal.repository.models.ContentModel;
+import com.bulletjournal.repository.models.ProjectItemModel;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.Collections;
+
+public class SearchIndexEntityListeners {
+    @Autowired
+    SearchIndexPipeline searchIndexPipeline;
+
+    @PostPersist
+    @PostUpdate
+    public void postSave(Object entity) {
+        if (entity instanceof ProjectItemModel) {
+            this.searchIndexPipeline.upsert(ESUtil.toSearchIndex((ProjectItemModel) entity));
+        } else if (entity instanceof ContentModel) {
+            this.searchIndexPipeline.upsert(ESUtil.toSearchIndex((ContentModel) entity));
+        }
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        if (entity instanceof ProjectItemModel) {
+            this.searchIndexPipeline.delete(Collections.singletonList(
+                    ESUtil.getProjectItemSearchIndexId((ProjectItemModel) entity)));
+        } else if (entity instanceof ContentModel) {
+            this.searchIndexPipeline.delete(Collections.singletonList(
+                    ESUtil.getContentSearchIndexId((ContentModel) entity)));
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.persistence.PostPersist;
 import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
 
 public class UserGroupEntityListeners {
     @Autowired
@@ -23,6 +24,12 @@ public class UserGroupEntityListeners {
         cacheEtag((UserGroup) entity);
     }
 
+    @PostUpdate
+    public void postUpdate(Object entity) {
+        // invitation accepted changes user's groups and shared projects
+        cacheEtag((UserGroup) entity);
+    }
+
     private void cacheEtag(UserGroup userGroup) {
         EtagEvent etagEvent = new EtagEvent(String.valueOf(userGroup.getId().getGroupId()),
                 EtagType.USER_GROUP);
@@ -0,0 +1,82 @@
+package com.bulletjournal.repository.models;
+
+import javax.persistence.Column;
+import javax.persistence.MappedSuperclass;
+import java.sql.Timestamp;
+
+/**
+ * One revision of a content, stored as the diff from the previous revision
+ * <p>
+ * Some revisions also keep the full text after the diff as a checkpoint, so a revision is rebuilt from the
+ * closest checkpoint before it instead of from the first revision.
+ */
+@MappedSuperclass
+public abstract class ContentRevisionModel extends AuditModel {
+
+    @Column(name = "content_id", nullable = false, updatable = false)
+    private Long contentId;
+
+    @Column(name = "revision_id", nullable = false, updatable = false)
+    private Long revisionId;
+
+    @Column(length = 100, nullable = false, updatable = false)
+    private String username;
+
+    @Column(nullable = false, updatable = false, columnDefinition = "TEXT")
+    private String diff;
+
+    @Column(columnDefinition = "TEXT")
+    private String checkpoint;
+
+    public abstract Long getId();
+
+    @Override
+    protected void onCreate() {
+        Timestamp createdAt = this.getCreatedAt();
+        super.onCreate();
+        if (createdAt != null) {
+            // revisions moved over from the legacy json column keep their time
+            this.setCreatedAt(createdAt);
+        }
+    }
+
+    public Long getContentId() {
+        return contentId;
+    }
+
+    public void setContentId(Long contentId) {
+        this.contentId = contentId;
+    }
+
+    public Long getRevisionId() {
+        return revisionId;
+    }
+
+    public void setRevisionId(Long revisionId) {
+        this.revisionId = revisionId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getDiff() {
+        return diff;
+    }
+
+    public void setDiff(String diff) {
+        this.diff = diff;
+    }
+
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+}
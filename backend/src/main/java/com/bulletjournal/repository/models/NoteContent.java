@@ -1,11 +1,13 @@
 package com.bulletjournal.repository.models;
 
+import com.bulletjournal.repository.auditing.SearchIndexEntityListeners;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
 import javax.persistence.*;
 
 @Entity
+@EntityListeners(value = {SearchIndexEntityListeners.class})
 @Table(name = "note_contents")
 public class NoteContent extends ContentModel<Note> {
     @Id
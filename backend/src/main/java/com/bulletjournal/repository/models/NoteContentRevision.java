@@ -0,0 +1,22 @@
+package com.bulletjournal.repository.models;
+
+import javax.persistence.*;
+
+@Entity
+@Table(name = "note_content_revisions")
+public class NoteContentRevision extends ContentRevisionModel {
+    @Id
+    @GeneratedValue(generator = "content_revision_generator")
+    @SequenceGenerator(name = "content_revision_generator", sequenceName = "content_revision_sequence",
+            initialValue = 100)
+    private Long id;
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+}
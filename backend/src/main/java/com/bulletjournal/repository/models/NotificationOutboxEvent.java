@@ -0,0 +1,101 @@
+package com.bulletjournal.repository.models;
+
+import javax.persistence.*;
+import java.sql.Timestamp;
+
+/**
+ * Serialized NotificationService event waiting to be consumed
+ */
+@Entity
+@Table(name = "notification_outbox")
+public class NotificationOutboxEvent extends AuditModel {
+    @Id
+    @GeneratedValue(generator = "notification_outbox_generator")
+    @SequenceGenerator(name = "notification_outbox_generator", sequenceName = "notification_outbox_sequence",
+            initialValue = 100)
+    private Long id;
+
+    @Column(name = "partition_id", nullable = false, updatable = false)
+    private Integer partitionId;
+
+    @Column(name = "event_type", length = 100, nullable = false, updatable = false)
+    private String eventType;
+
+    @Column(name = "payload", nullable = false, updatable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "claimed_until")
+    private Timestamp claimedUntil;
+
+    // contents of a ContentBatch imported so far
+    @Column(name = "progress", nullable = false)
+    private Integer progress = 0;
+
+    public NotificationOutboxEvent() {
+    }
+
+    public NotificationOutboxEvent(Integer partitionId, String eventType, String payload) {
+        this.partitionId = partitionId;
+        this.eventType = eventType;
+        this.payload = payload;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Integer getPartitionId() {
+        return partitionId;
+    }
+
+    public void setPartitionId(Integer partitionId) {
+        this.partitionId = partitionId;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public Timestamp getClaimedUntil() {
+        return claimedUntil;
+    }
+
+    public void setClaimedUntil(Timestamp claimedUntil) {
+        this.claimedUntil = claimedUntil;
+    }
+
+    public Integer getProgress() {
+        return progress;
+    }
+
+    public void setProgress(Integer progress) {
+        this.progress = progress;
+    }
+}
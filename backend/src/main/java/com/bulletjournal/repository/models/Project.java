@@ -2,6 +2,7 @@ package com.bulletjournal.repository.models;
 
 import com.bulletjournal.controller.models.ProjectType;
 import com.bulletjournal.controller.models.User;
+import com.bulletjournal.repository.auditing.ProjectEntityListeners;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
@@ -10,6 +11,7 @@ import javax.validation.constraints.NotNull;
 import java.util.Objects;
 
 @Entity
+@EntityListeners(value = {ProjectEntityListeners.class})
 @Table(name = "projects",
         uniqueConstraints = {
                 @UniqueConstraint(columnNames = {"owner", "name"})
@@ -1,11 +1,15 @@
 package com.bulletjournal.repository.models;
 
+import com.bulletjournal.repository.auditing.ProjectItemEntityListeners;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
 @Entity
+@EntityListeners(value = {ProjectItemEntityListeners.class})
 @Table(name = "user_project_tasks")
 public class ProjectTasks extends AuditModel {
 
@@ -1,5 +1,6 @@
 package com.bulletjournal.repository.models;
 
+import com.bulletjournal.repository.auditing.AuthorizationEntityListeners;
 import com.bulletjournal.repository.utils.LongArrayType;
 import org.hibernate.annotations.*;
 
@@ -18,6 +19,7 @@ import java.util.List;
 })
 @Entity
 @Table(name = "shared_project_items")
+@EntityListeners(value = {AuthorizationEntityListeners.class})
 public class SharedProjectItem extends AuditModel {
 
     @Id
@@ -15,13 +15,12 @@ import org.slf4j.LoggerFactory;
 import javax.persistence.Column;
 import javax.persistence.MappedSuperclass;
 import java.sql.Timestamp;
-import java.time.Instant;
 import java.time.ZonedDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @MappedSuperclass
@@ -257,32 +256,38 @@ public abstract class TaskModel extends ProjectItemModel<com.bulletjournal.contr
     }
 
     private Timestamp getReminderDateTime(Timestamp startTime, Integer before) {
-        Instant reminderInstant;
+        long offset = getReminderOffsetMillis(before);
+        if (offset < 0) {
+            return null;
+        }
+        return Timestamp.from(startTime.toInstant().minusMillis(offset));
+    }
+
+    /**
+     * Get how long the reminder goes off before task starts
+     *
+     * @param before the value of {@link com.bulletjournal.controller.models.Before}
+     * @return long - offset in millis, or -1 if there is no reminder
+     */
+    static long getReminderOffsetMillis(int before) {
         switch (before) {
             case 0:
-                reminderInstant = startTime.toInstant();
-                break;
+                return 0;
             case 1:
-                reminderInstant = startTime.toInstant().minus(5, ChronoUnit.MINUTES);
-                break;
+                return TimeUnit.MINUTES.toMillis(5);
             case 2:
-                reminderInstant = startTime.toInstant().minus(10, ChronoUnit.MINUTES);
-                break;
+                return TimeUnit.MINUTES.toMillis(10);
             case 3:
-                reminderInstant = startTime.toInstant().minus(30, ChronoUnit.MINUTES);
-                break;
+                return TimeUnit.MINUTES.toMillis(30);
             case 4:
-                reminderInstant = startTime.toInstant().minus(1, ChronoUnit.HOURS);
-                break;
+                return TimeUnit.HOURS.toMillis(1);
             case 5:
-                reminderInstant = startTime.toInstant().minus(2, ChronoUnit.HOURS);
-                break;
+                return TimeUnit.HOURS.toMillis(2);
             case 6:
-                return null;
+                return -1;
             default:
                 throw new IllegalArgumentException();
         }
-        return Timestamp.from(reminderInstant);
     }
 
     @Override
@@ -0,0 +1,171 @@
+package com.bulletjournal.repository.models;
+
+import com.bulletjournal.controller.models.Label;
+import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Immutable view of a single occurrence of a task
+ * <p>
+ * - For recurring task, it references the parent task plus the epoch millis of one occurrence
+ * - For one-time task, it wraps the task itself
+ * <p>
+ * Occurrences are cheap to create, use {@link #toPresentationModel()} to convert at controller edge.
+ */
+public final class TaskOccurrence {
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private final Task task;
+    private final boolean recurring;
+    private final long startTime;
+    private final long endTime;
+    private final long reminderDateTime;
+
+    private TaskOccurrence(Task task, boolean recurring, long startTime, long endTime, long reminderDateTime) {
+        this.task = task;
+        this.recurring = recurring;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.reminderDateTime = reminderDateTime;
+    }
+
+    /**
+     * Create occurrence of a one-time task
+     */
+    public static TaskOccurrence of(Task task) {
+        return new TaskOccurrence(task, false,
+                task.getStartTime() == null ? NO_TIME : task.getStartTime().getTime(),
+                task.getEndTime() == null ? NO_TIME : task.getEndTime().getTime(),
+                task.hasReminderDateTime() ? task.getReminderDateTime().getTime() : NO_TIME);
+    }
+
+    /**
+     * Create occurrence of a recurring task
+     *
+     * @param task      the recurring task
+     * @param startTime the epoch millis of the occurrence in task's timezone
+     */
+    public static TaskOccurrence of(Task task, long startTime) {
+        long reminderDateTime = NO_TIME;
+        if (task.hasReminderBeforeTask()) {
+            long offset = TaskModel.getReminderOffsetMillis(task.getReminderBeforeTask());
+            if (offset >= 0) {
+                reminderDateTime = startTime - offset;
+            }
+        } else if (task.hasReminderDate() && task.hasReminderDateTime()) {
+            reminderDateTime = task.getReminderDateTime().getTime();
+        }
+        return new TaskOccurrence(task, true, startTime, startTime, reminderDateTime);
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public Long getId() {
+        return task.getId();
+    }
+
+    public boolean isRecurring() {
+        return recurring;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public boolean hasReminderDateTime() {
+        return this.reminderDateTime != NO_TIME;
+    }
+
+    public long getReminderDateTime() {
+        return reminderDateTime;
+    }
+
+    public boolean hasDueDate() {
+        return this.recurring || this.task.hasDueDate();
+    }
+
+    public String getTimezone() {
+        return this.task.getTimezone();
+    }
+
+    public String getDueDate() {
+        if (!this.recurring) {
+            return this.task.getDueDate();
+        }
+        return ZonedDateTimeHelper.getDate(getZonedStartTime());
+    }
+
+    public String getDueTime() {
+        if (!this.recurring) {
+            return this.task.getDueTime();
+        }
+        return ZonedDateTimeHelper.getTime(getZonedStartTime());
+    }
+
+    private ZonedDateTime getZonedStartTime() {
+        return Instant.ofEpochMilli(this.startTime).atZone(ZoneId.of(this.task.getTimezone()));
+    }
+
+    public com.bulletjournal.controller.models.Task toPresentationModel() {
+        return fillOccurrence(this.task.toPresentationModel());
+    }
+
+    public com.bulletjournal.controller.models.Task toPresentationModel(List<Label> labels) {
+        return fillOccurrence(this.task.toPresentationModel(labels));
+    }
+
+    private com.bulletjournal.controller.models.Task fillOccurrence(com.bulletjournal.controller.models.Task task) {
+        if (this.recurring) {
+            ZonedDateTime zonedStartTime = getZonedStartTime();
+            task.setDueDate(ZonedDateTimeHelper.getDate(zonedStartTime));
+            task.setDueTime(ZonedDateTimeHelper.getTime(zonedStartTime));
+            task.setReminderDateTime(hasReminderDateTime() ? this.reminderDateTime : null);
+        }
+        return task;
+    }
+
+    /**
+     * Materialize the occurrence as a task entity, only for callers that require an entity
+     *
+     * @return Task - the task itself for one-time task, or a clone with occurrence's due date time
+     */
+    public Task toTask() {
+        if (!this.recurring) {
+            return this.task;
+        }
+        Task cloned;
+        try {
+            cloned = (Task) this.task.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Clone new Task failed");
+        }
+        ZonedDateTime zonedStartTime = getZonedStartTime();
+        cloned.setDueDate(ZonedDateTimeHelper.getDate(zonedStartTime));
+        cloned.setDueTime(ZonedDateTimeHelper.getTime(zonedStartTime));
+        cloned.setStartTime(new Timestamp(this.startTime));
+        cloned.setEndTime(new Timestamp(this.endTime));
+        cloned.setReminderSetting(this.task.getReminderSetting());
+        return cloned;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskOccurrence{" +
+                "taskId=" + task.getId() +
+                ", recurring=" + recurring +
+                ", startTime=" + startTime +
+                ", reminderDateTime=" + reminderDateTime +
+                '}';
+    }
+}
@@ -4,6 +4,7 @@ import com.bulletjournal.contents.ContentType;
 import com.bulletjournal.controller.models.Label;
 import com.bulletjournal.controller.models.User;
 import com.bulletjournal.ledger.TransactionType;
+import com.bulletjournal.repository.auditing.SearchIndexEntityListeners;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
@@ -17,6 +18,7 @@ import java.util.stream.Collectors;
  * This class is for ProjectType.LEDGER
  */
 @Entity
+@EntityListeners(value = {SearchIndexEntityListeners.class})
 @Table(name = "transactions")
 public class Transaction extends ProjectItemModel<com.bulletjournal.controller.models.Transaction> {
     @Id
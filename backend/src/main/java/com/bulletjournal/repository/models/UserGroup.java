@@ -1,5 +1,6 @@
 package com.bulletjournal.repository.models;
 
+import com.bulletjournal.repository.auditing.AuthorizationEntityListeners;
 import com.bulletjournal.repository.auditing.UserGroupEntityListeners;
 
 import javax.persistence.*;
@@ -7,7 +8,7 @@ import java.util.Objects;
 
 @Entity
 @Table(name = "user_groups")
-@EntityListeners(value = {UserGroupEntityListeners.class})
+@EntityListeners(value = {UserGroupEntityListeners.class, AuthorizationEntityListeners.class})
 public class UserGroup {
 
     @EmbeddedId
@@ -1,11 +1,15 @@
 package com.bulletjournal.repository.models;
 
+import com.bulletjournal.repository.auditing.ProjectEntityListeners;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
 @Entity
+@EntityListeners(value = {ProjectEntityListeners.class})
 @Table(name = "user_projects")
 public class UserProjects extends AuditModel {
 
@@ -3,22 +3,26 @@ package com.bulletjournal.repository.utils;
 import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
 import com.bulletjournal.daemon.models.ReminderRecord;
 import com.bulletjournal.repository.models.Task;
-import com.bulletjournal.util.BuJoRecurrenceRule;
+import com.bulletjournal.repository.models.TaskOccurrence;
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang3.StringUtils;
 import org.dmfs.rfc5545.DateTime;
 import org.dmfs.rfc5545.recur.InvalidRecurrenceRuleException;
-import org.dmfs.rfc5545.recur.RecurrenceRuleIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class DaoHelper {
     private static final Logger LOGGER = LoggerFactory.getLogger(DaoHelper.class);
+    private static final RecurrenceOccurrenceIndex OCCURRENCE_INDEX = new RecurrenceOccurrenceIndex();
 
     public static <T> void updateIfPresent(Boolean isPresent, T value, Consumer<T> getter) {
         if (isPresent) {
@@ -40,25 +44,34 @@ public class DaoHelper {
         return new ArrayList<>(getReminderRecordMap(task, startTime, endTime).keySet());
     }
 
-    public static Map<ReminderRecord, Task> getReminderRecordMap(Task task, ZonedDateTime startTime, ZonedDateTime endTime) {
-        Map<ReminderRecord, Task> map = new HashMap<>();
+    public static Map<ReminderRecord, TaskOccurrence> getReminderRecordMap(
+            Task task, ZonedDateTime startTime, ZonedDateTime endTime) {
+        Map<ReminderRecord, TaskOccurrence> map = new HashMap<>();
         if (Objects.isNull(task.getRecurrenceRule())) {
             if (task.getReminderDateTime() != null) {
-                map.put(new ReminderRecord(task.getId(), task.getReminderDateTime().getTime()), task);
+                map.put(new ReminderRecord(task.getId(), task.getReminderDateTime().getTime()), TaskOccurrence.of(task));
             }
         } else {
-            List<Task> recurringTasks = getRecurringTask(task, startTime, endTime);
-            recurringTasks.forEach(t -> {
-                if (t == null || !t.hasReminderDateTime()) {
-                    LOGGER.error("getReminderRecordMap error on {}", t);
+            List<TaskOccurrence> occurrences = getTaskOccurrences(task, startTime, endTime);
+            occurrences.forEach(o -> {
+                if (!o.hasReminderDateTime()) {
+                    LOGGER.error("getReminderRecordMap error on {}", o);
                 } else {
-                    map.put(new ReminderRecord(t.getId(), t.getReminderDateTime().getTime()), t);
+                    map.put(new ReminderRecord(o.getId(), o.getReminderDateTime()), o);
                 }
             });
         }
         return map;
     }
 
+    /**
+     * Drop the materialized occurrences of a recurring task
+     *
+     * @param taskId the id of task deleted or completed
+     */
+    public static void invalidateRecurringTask(Long taskId) {
+        OCCURRENCE_INDEX.invalidate(taskId);
+    }
 
     /**
      * Fetch all recurring within [startTime, endTime] based on task's recurrence rule
@@ -69,34 +82,42 @@ public class DaoHelper {
      * @return List<Task> - a list of task based on recurrence rule
      */
     public static List<Task> getRecurringTask(Task task, ZonedDateTime startTime, ZonedDateTime endTime) {
-        try {
-            DateTime startDateTime = ZonedDateTimeHelper.getDateTime(startTime);
-            DateTime endDateTime = ZonedDateTimeHelper.getDateTime(endTime);
-
-            List<Task> recurringTasksBetween = new ArrayList<>();
-            String recurrenceRule = task.getRecurrenceRule();
-            String timezone = task.getTimezone();
-            Set<String> completedSlots = ZonedDateTimeHelper.parseDateTimeSet(task.getCompletedSlots());
-
-            BuJoRecurrenceRule rule = new BuJoRecurrenceRule(recurrenceRule, timezone);
-            RecurrenceRuleIterator it = rule.getIterator();
+        return getTaskOccurrences(task, startTime, endTime).stream()
+                .map(TaskOccurrence::toTask).collect(Collectors.toList());
+    }
 
-            while (it.hasNext()) {
-                DateTime currDateTime = it.nextDateTime();
-                if (currDateTime.after(endDateTime)) {
-                    break;
-                }
-                if (currDateTime.before(startDateTime) || completedSlots.contains(currDateTime.toString())) {
-                    continue;
-                }
-                Task cloned = cloneTaskWithDateTime(task, timezone, currDateTime);
-                recurringTasksBetween.add(cloned);
+    /**
+     * Fetch all occurrences within [startTime, endTime] based on task's recurrence rule
+     * Occurrences are looked up from {@link RecurrenceOccurrenceIndex}
+     * <p>
+     * The local date time of each occurrence is shifted to task's timezone
+     *
+     * @param task      the target task contains recurrence rule
+     * @param startTime the requested time range starting time
+     * @param endTime   the requested time range ending time
+     * @return List<TaskOccurrence> - a list of occurrences referencing the task
+     */
+    public static List<TaskOccurrence> getTaskOccurrences(Task task, ZonedDateTime startTime, ZonedDateTime endTime) {
+        if (StringUtils.isBlank(task.getRecurrenceRule())) {
+            LOGGER.error("Task {} does not have RecurrenceRule", task);
+            throw new IllegalArgumentException("Task " + task.getId() + " does not have RecurrenceRule");
+        }
+        try {
+            RecurrenceOccurrenceIndex.Occurrences occurrences = OCCURRENCE_INDEX.getOccurrences(task,
+                    startTime.toEpochSecond() * 1000, endTime.toEpochSecond() * 1000);
+
+            ZoneId ruleZone = occurrences.getTimeZone().toZoneId();
+            ZoneId taskZone = ZoneId.of(task.getTimezone());
+            List<TaskOccurrence> taskOccurrences = new ArrayList<>(occurrences.size());
+            for (int i = 0; i < occurrences.size(); i++) {
+                long occurrenceStart = Instant.ofEpochMilli(occurrences.getMillis(i)).atZone(ruleZone)
+                        .toLocalDateTime().truncatedTo(ChronoUnit.MINUTES)
+                        .atZone(taskZone).toInstant().toEpochMilli();
+                taskOccurrences.add(TaskOccurrence.of(task, occurrenceStart));
             }
-            return recurringTasksBetween;
+            return taskOccurrences;
         } catch (InvalidRecurrenceRuleException | NumberFormatException e) {
             throw new IllegalArgumentException("Recurrence rule format invalid");
-        } catch (CloneNotSupportedException e) {
-            throw new IllegalStateException("Clone new Task failed");
         }
     }
 
@@ -0,0 +1,260 @@
+package com.bulletjournal.repository.utils;
+
+import com.bulletjournal.controller.utils.ZonedDateTimeHelper;
+import com.bulletjournal.repository.models.Task;
+import com.bulletjournal.util.BuJoRecurrenceRule;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.InvalidRecurrenceRuleException;
+import org.dmfs.rfc5545.recur.RecurrenceRuleIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Materialized occurrence instants of recurring tasks over a rolling horizon
+ * <p>
+ * - Each task keeps a sorted long[] of epoch millis in [now - HORIZON_PAST, now + HORIZON_FUTURE]
+ * - Completed slots are removed when the entry is built
+ * - An entry is rebuilt when recurrenceRule, timezone or completedSlots of the task change
+ * - When the horizon rolls forward, only the missing tail is materialized
+ * - Range queries inside the horizon are served by binary search, others by fast-forwarded rule iteration
+ */
+public class RecurrenceOccurrenceIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecurrenceOccurrenceIndex.class);
+
+    static final long HORIZON_PAST_MILLIS = TimeUnit.DAYS.toMillis(35);
+    static final long HORIZON_FUTURE_MILLIS = TimeUnit.DAYS.toMillis(100);
+    static final long ROLL_STEP_MILLIS = TimeUnit.DAYS.toMillis(1);
+    static final int MAX_OCCURRENCES_PER_TASK = 2048;
+    static final int MAX_INDEXED_TASKS = 100000;
+
+    private final Map<Long, Entry> index = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    public RecurrenceOccurrenceIndex() {
+        this(System::currentTimeMillis);
+    }
+
+    public RecurrenceOccurrenceIndex(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Get occurrences of a recurring task within [startMillis, endMillis]
+     *
+     * @param task        the task contains recurrence rule
+     * @param startMillis the requested range starting time in epoch millis
+     * @param endMillis   the requested range ending time in epoch millis
+     * @return Occurrences - a view of sorted occurrence instants
+     * @throws InvalidRecurrenceRuleException
+     */
+    public Occurrences getOccurrences(Task task, long startMillis, long endMillis)
+            throws InvalidRecurrenceRuleException {
+        Entry entry = lookup(task);
+        if (entry.instants != null && entry.from <= startMillis && endMillis <= entry.to) {
+            int from = lowerBound(entry.instants, entry.size, startMillis);
+            int to = lowerBound(entry.instants, entry.size, endMillis + 1);
+            return new Occurrences(entry.timeZone, entry.instants, from, Math.max(from, to));
+        }
+
+        // out of horizon or too many occurrences to materialize
+        BuJoRecurrenceRule rule = new BuJoRecurrenceRule(task.getRecurrenceRule(), task.getTimezone());
+        long[] instants = iterate(rule, ZonedDateTimeHelper.parseDateTimeSet(task.getCompletedSlots()),
+                startMillis, endMillis, Integer.MAX_VALUE);
+        return new Occurrences(rule.getStart().getTimeZone(), instants, 0, instants.length);
+    }
+
+    /**
+     * Drop materialized occurrences of a task, e.g. when it is deleted or completed
+     *
+     * @param taskId the task id
+     */
+    public void invalidate(Long taskId) {
+        if (taskId != null) {
+            this.index.remove(taskId);
+        }
+    }
+
+    public void clear() {
+        this.index.clear();
+    }
+
+    public int size() {
+        return this.index.size();
+    }
+
+    private Entry lookup(Task task) throws InvalidRecurrenceRuleException {
+        long now = this.clock.getAsLong();
+        Long taskId = task.getId();
+        Entry entry = taskId == null ? null : this.index.get(taskId);
+
+        if (entry != null && entry.matches(task)) {
+            if (entry.instants == null || entry.to + ROLL_STEP_MILLIS >= now + HORIZON_FUTURE_MILLIS) {
+                return entry;
+            }
+            entry = roll(entry, task, now);
+        } else {
+            entry = build(task, now);
+        }
+
+        if (taskId != null) {
+            if (this.index.size() >= MAX_INDEXED_TASKS) {
+                LOGGER.info("RecurrenceOccurrenceIndex reached {} tasks, clearing", MAX_INDEXED_TASKS);
+                this.index.clear();
+            }
+            this.index.put(taskId, entry);
+        }
+        return entry;
+    }
+
+    private Entry build(Task task, long now) throws InvalidRecurrenceRuleException {
+        BuJoRecurrenceRule rule = new BuJoRecurrenceRule(task.getRecurrenceRule(), task.getTimezone());
+        long from = now - HORIZON_PAST_MILLIS;
+        long to = now + HORIZON_FUTURE_MILLIS;
+        long[] instants = iterate(rule, ZonedDateTimeHelper.parseDateTimeSet(task.getCompletedSlots()),
+                from, to, MAX_OCCURRENCES_PER_TASK);
+        return new Entry(task, rule.getStart().getTimeZone(), from, to, instants);
+    }
+
+    /**
+     * Move the horizon of an entry forward, keeping the instants already materialized
+     */
+    private Entry roll(Entry entry, Task task, long now) throws InvalidRecurrenceRuleException {
+        long from = now - HORIZON_PAST_MILLIS;
+        long to = now + HORIZON_FUTURE_MILLIS;
+        BuJoRecurrenceRule rule = new BuJoRecurrenceRule(task.getRecurrenceRule(), task.getTimezone());
+        long[] tail = iterate(rule, ZonedDateTimeHelper.parseDateTimeSet(task.getCompletedSlots()),
+                entry.to + 1, to, MAX_OCCURRENCES_PER_TASK);
+        if (tail == null) {
+            return new Entry(task, entry.timeZone, from, to, null);
+        }
+
+        int keepFrom = lowerBound(entry.instants, entry.size, from);
+        int kept = entry.size - keepFrom;
+        if (kept + tail.length > MAX_OCCURRENCES_PER_TASK) {
+            return new Entry(task, entry.timeZone, from, to, null);
+        }
+        long[] instants = new long[kept + tail.length];
+        System.arraycopy(entry.instants, keepFrom, instants, 0, kept);
+        System.arraycopy(tail, 0, instants, kept, tail.length);
+        return new Entry(task, entry.timeZone, from, to, instants);
+    }
+
+    /**
+     * Iterate recurrence rule within [startMillis, endMillis] skipping completed slots
+     *
+     * @return long[] - occurrence instants, or null if there are more than limit occurrences
+     */
+    private static long[] iterate(BuJoRecurrenceRule rule, Set<String> completedSlots,
+                                  long startMillis, long endMillis, int limit) {
+        RecurrenceRuleIterator it = rule.getIterator();
+        it.fastForward(startMillis);
+
+        long[] instants = new long[16];
+        int size = 0;
+        while (it.hasNext()) {
+            DateTime currDateTime = it.nextDateTime();
+            long timestamp = currDateTime.getTimestamp();
+            if (timestamp > endMillis) {
+                break;
+            }
+            if (timestamp < startMillis || completedSlots.contains(currDateTime.toString())) {
+                continue;
+            }
+            if (size == limit) {
+                return null;
+            }
+            if (size == instants.length) {
+                instants = Arrays.copyOf(instants, size * 2);
+            }
+            instants[size++] = timestamp;
+        }
+        return Arrays.copyOf(instants, size);
+    }
+
+    private static int lowerBound(long[] instants, int size, long target) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (instants[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static final class Entry {
+        private final String recurrenceRule;
+        private final String timezone;
+        private final String completedSlots;
+        private final TimeZone timeZone;
+        private final long from;
+        private final long to;
+        private final long[] instants;
+        private final int size;
+
+        private Entry(Task task, TimeZone timeZone, long from, long to, long[] instants) {
+            this.recurrenceRule = task.getRecurrenceRule();
+            this.timezone = task.getTimezone();
+            this.completedSlots = task.getCompletedSlots();
+            this.timeZone = timeZone;
+            this.from = from;
+            this.to = to;
+            this.instants = instants;
+            this.size = instants == null ? 0 : instants.length;
+        }
+
+        private boolean matches(Task task) {
+            return Objects.equals(this.recurrenceRule, task.getRecurrenceRule())
+                    && Objects.equals(this.timezone, task.getTimezone())
+                    && Objects.equals(this.completedSlots, task.getCompletedSlots());
+        }
+    }
+
+    /**
+     * Read-only view of sorted occurrence instants of one recurring task
+     */
+    public static final class Occurrences {
+        private final TimeZone timeZone;
+        private final long[] instants;
+        private final int from;
+        private final int to;
+
+        private Occurrences(TimeZone timeZone, long[] instants, int from, int to) {
+            this.timeZone = timeZone;
+            this.instants = instants;
+            this.from = from;
+            this.to = to;
+        }
+
+        public int size() {
+            return this.to - this.from;
+        }
+
+        public long getMillis(int i) {
+            return this.instants[this.from + i];
+        }
+
+        /**
+         * @return DateTime - the RFC 5545 DateTime in the timezone of the rule's DTSTART
+         */
+        public DateTime getDateTime(int i) {
+            return new DateTime(this.timeZone, getMillis(i));
+        }
+
+        public TimeZone getTimeZone() {
+            return timeZone;
+        }
+    }
+}
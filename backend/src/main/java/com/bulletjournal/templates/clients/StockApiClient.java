@@ -3,6 +3,7 @@ package com.bulletjournal.templates.clients;
 import com.bulletjournal.templates.config.StockApiConfig;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -10,21 +11,24 @@ import org.springframework.web.util.UriComponentsBuilder;
 import java.util.LinkedHashMap;
 
 @Component
-public class StockApiClient {
+public class StockApiClient implements StockCompanyClient {
     private final RestTemplate restClient;
-
-    private static final String POLYGON_COMPANY_ROOT_URL = "https://api.polygon.io/v1/meta/symbols/{symbol}/company";
+    private final StockApiConfig stockApiConfig;
 
     @Autowired
-    private StockApiConfig stockApiConfig;
-
-    public StockApiClient() {
-        this.restClient = new RestTemplate();
+    public StockApiClient(StockApiConfig stockApiConfig) {
+        this.stockApiConfig = stockApiConfig;
+        // bounds a lookup, callers continuing on its completion are not left waiting
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout((int) stockApiConfig.getTimeoutMillis());
+        requestFactory.setReadTimeout((int) stockApiConfig.getTimeoutMillis());
+        this.restClient = new RestTemplate(requestFactory);
     }
 
+    @Override
     public LinkedHashMap getCompany(String symbol) {
         String url = UriComponentsBuilder.fromHttpUrl(
-                POLYGON_COMPANY_ROOT_URL)
+                this.stockApiConfig.getCompanyUrl())
                 .queryParam("apiKey", this.stockApiConfig.getApiKey())
                 .buildAndExpand(symbol).toUriString();
         LinkedHashMap resp = this.restClient
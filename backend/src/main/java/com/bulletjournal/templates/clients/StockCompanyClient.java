@@ -0,0 +1,15 @@
+package com.bulletjournal.templates.clients;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Source of company details of a stock symbol, such as its sector
+ */
+public interface StockCompanyClient {
+
+    /**
+     * @param symbol the stock symbol
+     * @return LinkedHashMap - company details, null or HttpClientErrorException.NotFound if the symbol is unknown
+     */
+    LinkedHashMap getCompany(String symbol);
+}
@@ -0,0 +1,137 @@
+package com.bulletjournal.templates.clients;
+
+import com.bulletjournal.templates.config.StockApiConfig;
+import com.bulletjournal.util.CustomThreadFactory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Company details of stock symbols, looked up through {@link StockCompanyClient}
+ * <p>
+ * - Lookups run on a bounded worker pool, concurrent lookups of one symbol share a single call
+ * - Details are reused for companyTtlMinutes, until the caller has stored them
+ * - Symbols the api does not know are not asked for again within unknownSymbolTtlMinutes
+ */
+@Service
+public class StockCompanyService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockCompanyService.class);
+    private static final int MAX_SIZE = 10000;
+
+    private final StockCompanyClient stockCompanyClient;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executorService;
+    private final ConcurrentHashMap<String, CompletableFuture<LinkedHashMap>> inFlight = new ConcurrentHashMap<>();
+    private final Cache<String, LinkedHashMap> companies;
+    private final Cache<String, Boolean> unknownSymbols;
+
+    @Autowired
+    public StockCompanyService(StockCompanyClient stockCompanyClient, StockApiConfig stockApiConfig) {
+        this.stockCompanyClient = stockCompanyClient;
+        this.timeoutMillis = stockApiConfig.getTimeoutMillis();
+        this.executorService = new ThreadPoolExecutor(stockApiConfig.getWorkers(), stockApiConfig.getWorkers(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(stockApiConfig.getQueueCapacity()),
+                new CustomThreadFactory("stock-company"));
+        this.companies = CacheBuilder.newBuilder().maximumSize(MAX_SIZE)
+                .expireAfterWrite(stockApiConfig.getCompanyTtlMinutes(), TimeUnit.MINUTES).recordStats().build();
+        this.unknownSymbols = CacheBuilder.newBuilder().maximumSize(MAX_SIZE)
+                .expireAfterWrite(stockApiConfig.getUnknownSymbolTtlMinutes(), TimeUnit.MINUTES).recordStats().build();
+    }
+
+    /**
+     * @param symbol the stock symbol
+     * @return LinkedHashMap - company details, null if the symbol is unknown or the lookup failed or timed out
+     */
+    public LinkedHashMap getCompany(String symbol) {
+        try {
+            return getCompanyAsync(symbol).get(this.timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException ex) {
+            LOGGER.info("Unable to get company of {}: {}", symbol, ex.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @param symbol the stock symbol
+     * @return CompletableFuture<LinkedHashMap> - company details, null if the symbol is unknown,
+     * completed exceptionally if the lookup failed or was rejected
+     */
+    public CompletableFuture<LinkedHashMap> getCompanyAsync(String symbol) {
+        LinkedHashMap company = this.companies.getIfPresent(symbol);
+        if (company != null) {
+            return CompletableFuture.completedFuture(company);
+        }
+        if (this.unknownSymbols.getIfPresent(symbol) != null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<LinkedHashMap> created = new CompletableFuture<>();
+        CompletableFuture<LinkedHashMap> existing = this.inFlight.putIfAbsent(symbol, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            this.executorService.execute(() -> lookup(symbol, created));
+        } catch (Exception ex) {
+            // rejected when all workers are busy and the queue is full
+            this.inFlight.remove(symbol, created);
+            created.completeExceptionally(ex);
+        }
+        return created;
+    }
+
+    private void lookup(String symbol, CompletableFuture<LinkedHashMap> future) {
+        LinkedHashMap company = null;
+        Exception failure = null;
+        try {
+            company = this.stockCompanyClient.getCompany(symbol);
+            if (company == null || company.isEmpty()) {
+                this.unknownSymbols.put(symbol, Boolean.TRUE);
+                company = null;
+            } else {
+                this.companies.put(symbol, company);
+            }
+        } catch (HttpClientErrorException.NotFound ex) {
+            this.unknownSymbols.put(symbol, Boolean.TRUE);
+        } catch (Exception ex) {
+            failure = ex;
+        }
+        // removed before completing, so a caller never joins a failed lookup
+        this.inFlight.remove(symbol, future);
+        if (failure == null) {
+            future.complete(company);
+        } else {
+            future.completeExceptionally(failure);
+        }
+    }
+
+    public String getStats() {
+        return "StockCompanyService{" +
+                "inFlight=" + this.inFlight.size() +
+                ", queued=" + this.executorService.getQueue().size() +
+                ", companies=" + this.companies.stats() +
+                ", unknownSymbols=" + this.unknownSymbols.stats() +
+                '}';
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        this.executorService.shutdownNow();
+    }
+}
@@ -1,11 +1,89 @@
 package com.bulletjournal.templates.config;
 
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@ConfigurationProperties(prefix = "stock.api")
 public class StockApiConfig {
+    // company details of {symbol}, point it at a local stub for load tests
+    private String companyUrl = "https://api.polygon.io/v1/meta/symbols/{symbol}/company";
+
+    // threads calling the company api
+    private int workers = 4;
+
+    // company lookups waiting for a worker, more are rejected
+    private int queueCapacity = 1000;
+
+    // how long a caller waits for company details
+    private long timeoutMillis = 10000;
+
+    // how long a symbol the api does not know is not asked for again
+    private long unknownSymbolTtlMinutes = 24 * 60;
+
+    // how long company details are reused before they are stored
+    private long companyTtlMinutes = 10;
+
+    // stock ticker details written per batch
+    private int upsertBatchSize = 100;
 
     public String getApiKey() {
         return System.getenv("POLYGON_API_KEY");
     }
+
+    public String getCompanyUrl() {
+        return companyUrl;
+    }
+
+    public void setCompanyUrl(String companyUrl) {
+        this.companyUrl = companyUrl;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getUnknownSymbolTtlMinutes() {
+        return unknownSymbolTtlMinutes;
+    }
+
+    public void setUnknownSymbolTtlMinutes(long unknownSymbolTtlMinutes) {
+        this.unknownSymbolTtlMinutes = unknownSymbolTtlMinutes;
+    }
+
+    public long getCompanyTtlMinutes() {
+        return companyTtlMinutes;
+    }
+
+    public void setCompanyTtlMinutes(long companyTtlMinutes) {
+        this.companyTtlMinutes = companyTtlMinutes;
+    }
+
+    public int getUpsertBatchSize() {
+        return upsertBatchSize;
+    }
+
+    public void setUpsertBatchSize(int upsertBatchSize) {
+        this.upsertBatchSize = upsertBatchSize;
+    }
 }
@@ -9,18 +9,17 @@ import com.bulletjournal.repository.UserDaoJpa;
 import com.bulletjournal.templates.controller.model.SampleTask;
 import com.bulletjournal.templates.controller.model.SampleTaskRule;
 import com.bulletjournal.templates.controller.model.*;
-import com.bulletjournal.templates.redis.RedisSampleTasksRepository;
 import com.bulletjournal.templates.repository.*;
 import com.bulletjournal.templates.repository.model.Category;
 import com.bulletjournal.templates.repository.model.Choice;
 import com.bulletjournal.templates.repository.model.Step;
 import com.bulletjournal.templates.repository.model.*;
 import com.bulletjournal.templates.workflow.engine.RuleEngine;
-import com.bulletjournal.templates.workflow.models.RuleExpression;
+import com.bulletjournal.templates.workflow.engine.RuleGraphCache;
+import com.bulletjournal.templates.workflow.engine.SampleTaskPager;
 import com.bulletjournal.util.DeltaContent;
 import com.bulletjournal.util.DeltaConverter;
 import com.google.common.collect.ImmutableList;
-import com.google.gson.Gson;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,6 +50,7 @@ public class WorkflowController {
     public static final String REMOVE_USER_SAMPLE_TASKS_ROUTE = "/api/userSampleTasks/remove";
     public static final String REMOVE_USER_SAMPLE_TASK_ROUTE = "/api/userSampleTasks/{sampleTaskId}";
     public static final String SAMPLE_TASK_ROUTE = "/api/sampleTasks/{sampleTaskId}";
+    private static final int FIRST_PAGE_SIZE = 10;
 
     @Autowired
     private SampleTaskDaoJpa sampleTaskDaoJpa;
@@ -68,11 +68,14 @@ public class WorkflowController {
     private StepDaoJpa stepDaoJpa;
 
     @Autowired
-    private RedisSampleTasksRepository sampleTasksRedisCache;
+    private SampleTaskPager sampleTaskPager;
 
     @Autowired
     private RuleEngine ruleEngine;
 
+    @Autowired
+    private RuleGraphCache ruleGraphCache;
+
     @Autowired
     private UserCategoryDaoJpa userCategoryDaoJpa;
 
@@ -82,9 +85,6 @@ public class WorkflowController {
     @Autowired
     private UserSampleTaskDaoJpa userSampleTaskDaoJpa;
 
-
-    private static final Gson GSON = new Gson();
-
     @GetMapping(SUBSCRIBED_CATEGORIES_ROUTE)
     public List<SubscribedCategory> getUserSubscribedCategories() {
         String requester = MDC.get(UserClient.USER_NAME_KEY);
@@ -111,28 +111,17 @@ public class WorkflowController {
     ) {
         NextStep nextStep;
         if (first) {
-            nextStep = checkIfSelectionsMatchCategoryRules(stepId, selections);
+            nextStep = this.ruleGraphCache.get().getNextStepOfCategory(stepId, selections);
         } else {
-            nextStep = checkIfSelectionsMatchStepRules(stepId, selections);
+            nextStep = this.ruleGraphCache.get().getNextStepOfStep(stepId, selections);
         }
 
         if (nextStep.getStep() != null && nextStep.getStep().getChoices().isEmpty()) {
             // assume final step, try to get sample tasks using prevSelections
-            List<SampleTask> sampleTasks = sampleTaskDaoJpa.findAllById(
-                    this.ruleEngine.getSampleTasksForFinalStep(
-                            nextStep.getStep().getId(), selections, prevSelections))
-                    .stream().map(e -> e.toSimplePresentationModel()).collect(Collectors.toList());
-            // store in redis and generate scrollId
-            // setSampleTasks with the first 10 tasks
-            if (sampleTasks.size() <= 10) {
-                nextStep.setScrollId("");
-                nextStep.setSampleTasks(sampleTasks);
-                return nextStep;
-            }
-            String scrollId = UUID.randomUUID().toString();
-            nextStep.setScrollId(scrollId);
-            nextStep.setSampleTasks(sampleTasks.subList(0, 10));
-            sampleTasksRedisCache.save(new SampleTasks(scrollId, sampleTasks.subList(10, sampleTasks.size())));
+            SampleTasks sampleTasks = this.sampleTaskPager.getFirstPage(
+                    nextStep.getStep().getId(), selections, prevSelections, FIRST_PAGE_SIZE);
+            nextStep.setScrollId(sampleTasks.getScrollId());
+            nextStep.setSampleTasks(sampleTasks.getSampleTasks());
         }
 
         return nextStep;
@@ -140,118 +129,7 @@ public class WorkflowController {
 
     @GetMapping(PUBLIC_SAMPLE_TASKS_ROUTE)
     public SampleTasks getSampleTasks(@RequestParam String scrollId, @NotNull @RequestParam Integer pageSize) {
-        List<SampleTask> tasks = null;
-        Optional<SampleTasks> cachedSampleTasks = sampleTasksRedisCache.findById(scrollId);
-        if (cachedSampleTasks.isPresent()) {
-            tasks = cachedSampleTasks.get().getSampleTasks();
-        }
-        SampleTasks sampleTasks = new SampleTasks();
-        sampleTasks.setScrollId("");
-        if (tasks == null) {
-            return sampleTasks;
-        }
-        if (tasks.size() <= pageSize) {
-            sampleTasks.setSampleTasks(tasks);
-            sampleTasksRedisCache.deleteById(scrollId);
-            return sampleTasks;
-        }
-        String newScrollId = UUID.randomUUID().toString();
-        sampleTasks.setScrollId(newScrollId);
-        sampleTasks.setSampleTasks(tasks.subList(0, pageSize));
-        sampleTasksRedisCache.save(new SampleTasks(newScrollId, tasks.subList(pageSize, tasks.size())));
-        return sampleTasks;
-    }
-
-    private NextStep checkIfSelectionsMatchCategoryRules(Long stepId, List<Long> selections) {
-        Category category = categoryDaoJpa.getById(stepId);
-        List<CategoryRule> categoryRules = category.getCategoryRules();
-        categoryRules.sort((rule1, rule2) -> rule2.getPriority() - rule1.getPriority());
-        NextStep nextStep = new NextStep();
-        for (CategoryRule categoryRule : categoryRules) {
-            RuleExpression ruleExpression = GSON.fromJson(categoryRule.getRuleExpression(), RuleExpression.class);
-            if (ruleMatch(ruleExpression, selections)) {
-                if (categoryRule.getConnectedStep() != null) {
-                    nextStep.setStep(categoryRule.getConnectedStep().toPresentationModel());
-                }
-                return nextStep;
-            }
-        }
-        if (category.getNextStep() != null) {
-            nextStep.setStep(category.getNextStep().toPresentationModel());
-        }
-        return nextStep;
-    }
-
-    private NextStep checkIfSelectionsMatchStepRules(Long stepId, List<Long> selections) {
-        Step step = stepDaoJpa.getById(stepId);
-        List<StepRule> stepRules = step.getStepRules();
-        stepRules.sort((rule1, rule2) -> rule2.getPriority() - rule1.getPriority());
-        NextStep nextStep = new NextStep();
-        for (StepRule stepRule : stepRules) {
-            RuleExpression ruleExpression = GSON.fromJson(stepRule.getRuleExpression(), RuleExpression.class);
-            if (ruleMatch(ruleExpression, selections)) {
-                if (stepRule.getConnectedStep() != null) {
-                    nextStep.setStep(stepRule.getConnectedStep().toPresentationModel());
-                }
-                return nextStep;
-            }
-        }
-        if (step.getNextStep() != null) {
-            nextStep.setStep(step.getNextStep().toPresentationModel());
-        }
-        return nextStep;
-    }
-
-    private boolean ruleMatch(RuleExpression ruleExpression, List<Long> selections) {
-        switch (ruleExpression.getLogicOperator()) {
-            case OR:
-                for (RuleExpression.Criteria criteria : ruleExpression.getCriteriaList()) {
-                    switch (criteria.getCondition()) {
-                        case EXACT:
-                            if (criteria.getSelectionIds().containsAll(selections) && selections.containsAll(criteria.getSelectionIds())) {
-                                return true;
-                            }
-                            break;
-                        case CONTAINS:
-                            if (selections.containsAll(criteria.getSelectionIds())) {
-                                return true;
-                            }
-                            break;
-                        case NOT_CONTAIN:
-                            if (Collections.disjoint(criteria.getSelectionIds(), selections)) {
-                                return true;
-                            }
-                            break;
-                        case IGNORE:
-                            return true;
-                    }
-                }
-                return false;
-            case AND:
-                for (RuleExpression.Criteria criteria : ruleExpression.getCriteriaList()) {
-                    switch (criteria.getCondition()) {
-                        case EXACT:
-                            if (!(criteria.getSelectionIds().containsAll(selections) && selections.containsAll(criteria.getSelectionIds()))) {
-                                return false;
-                            }
-                            break;
-                        case CONTAINS:
-                            if (!selections.containsAll(criteria.getSelectionIds())) {
-                                return false;
-                            }
-                            break;
-                        case NOT_CONTAIN:
-                            if (!Collections.disjoint(criteria.getSelectionIds(), selections)) {
-                                return false;
-                            }
-                            break;
-                        case IGNORE:
-                            break;
-                    }
-                }
-                return true;
-        }
-        return false;
+        return this.sampleTaskPager.getPage(scrollId, pageSize);
     }
 
     @PostMapping(SAMPLE_TASKS_IMPORT_ROUTE)
@@ -259,12 +137,7 @@ public class WorkflowController {
         String username = MDC.get(UserClient.USER_NAME_KEY);
         String scrollId = importTasksParams.getScrollId();
         if (StringUtils.isNotBlank(scrollId)) {
-            Optional<SampleTasks> cachedSampleTasks = sampleTasksRedisCache.findById(scrollId);
-            cachedSampleTasks.ifPresent(sampleTasks -> {
-                importTasksParams.getSampleTasks().addAll(
-                        sampleTasks.getSampleTasks().stream().map(SampleTask::getId).collect(Collectors.toList()));
-                sampleTasksRedisCache.deleteById(scrollId);
-            });
+            importTasksParams.getSampleTasks().addAll(this.sampleTaskPager.getRemainingSampleTaskIds(scrollId));
         }
         int frequency = this.ruleEngine.getTimesOneDay(importTasksParams.getSelections());
         List<SampleTask> sampleTasks = this.ruleEngine.importTasks(username, importTasksParams, frequency);
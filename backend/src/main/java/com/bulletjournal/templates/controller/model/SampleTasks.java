@@ -1,17 +1,12 @@
 package com.bulletjournal.templates.controller.model;
 
-import org.springframework.data.annotation.Id;
-import org.springframework.data.redis.core.RedisHash;
-
 import java.util.List;
 import java.util.Objects;
 
-@RedisHash(value = "SampleTasks", timeToLive = 60000)
 public class SampleTasks {
 
     private List<SampleTask> sampleTasks;
 
-    @Id
     private String scrollId;
 
     public SampleTasks() {
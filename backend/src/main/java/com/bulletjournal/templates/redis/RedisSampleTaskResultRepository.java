@@ -1,9 +1,9 @@
 package com.bulletjournal.templates.redis;
 
-import com.bulletjournal.templates.controller.model.SampleTasks;
+import com.bulletjournal.templates.redis.models.SampleTaskResult;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface RedisSampleTasksRepository extends CrudRepository<SampleTasks, String> {
+public interface RedisSampleTaskResultRepository extends CrudRepository<SampleTaskResult, String> {
 }
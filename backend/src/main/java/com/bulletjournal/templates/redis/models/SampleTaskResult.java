@@ -0,0 +1,58 @@
+package com.bulletjournal.templates.redis.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.redis.core.RedisHash;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Sample task ids resolved for selections of a final step, shared by everyone paging through the same query
+ */
+@RedisHash(value = "SampleTaskResult", timeToLive = 3600)
+public class SampleTaskResult implements Serializable {
+    // stepId:selectionHash
+    @Id
+    private String key;
+
+    // comma separated sample task ids, in page order
+    private String sampleTaskIds;
+
+    public SampleTaskResult() {
+    }
+
+    public SampleTaskResult(String key, String sampleTaskIds) {
+        this.key = key;
+        this.sampleTaskIds = sampleTaskIds;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getSampleTaskIds() {
+        return sampleTaskIds;
+    }
+
+    public void setSampleTaskIds(String sampleTaskIds) {
+        this.sampleTaskIds = sampleTaskIds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SampleTaskResult that = (SampleTaskResult) o;
+        return Objects.equals(key, that.key) &&
+                Objects.equals(sampleTaskIds, that.sampleTaskIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, sampleTaskIds);
+    }
+}
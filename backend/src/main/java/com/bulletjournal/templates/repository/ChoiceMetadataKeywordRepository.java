@@ -3,11 +3,18 @@ package com.bulletjournal.templates.repository;
 import com.bulletjournal.templates.repository.model.Choice;
 import com.bulletjournal.templates.repository.model.ChoiceMetadataKeyword;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface ChoiceMetadataKeywordRepository extends JpaRepository<ChoiceMetadataKeyword, String> {
     ChoiceMetadataKeyword findByChoice(Choice choice);
+
+    @Query("SELECT choiceMetadataKeyword.keyword, choiceMetadataKeyword.choice.id "
+            + "FROM ChoiceMetadataKeyword choiceMetadataKeyword")
+    List<Object[]> findAllChoiceIds();
 }
 
 
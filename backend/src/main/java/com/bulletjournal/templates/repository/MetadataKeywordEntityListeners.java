@@ -0,0 +1,34 @@
+package com.bulletjournal.templates.repository;
+
+import com.bulletjournal.templates.repository.model.ChoiceMetadataKeyword;
+import com.bulletjournal.templates.repository.model.SampleTask;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+public class MetadataKeywordEntityListeners {
+    @Autowired
+    MetadataKeywordIndex metadataKeywordIndex;
+
+    @PostPersist
+    @PostUpdate
+    public void postSave(Object entity) {
+        if (entity instanceof SampleTask) {
+            SampleTask sampleTask = (SampleTask) entity;
+            this.metadataKeywordIndex.onSampleTaskChange(sampleTask.getId(), sampleTask.getMetadata());
+        } else if (entity instanceof ChoiceMetadataKeyword) {
+            this.metadataKeywordIndex.onChoiceKeywordChange();
+        }
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        if (entity instanceof SampleTask) {
+            this.metadataKeywordIndex.onSampleTaskChange(((SampleTask) entity).getId(), null);
+        } else if (entity instanceof ChoiceMetadataKeyword) {
+            this.metadataKeywordIndex.onChoiceKeywordChange();
+        }
+    }
+}
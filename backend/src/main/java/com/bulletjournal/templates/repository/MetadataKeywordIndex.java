@@ -0,0 +1,234 @@
+package com.bulletjournal.templates.repository;
+
+import com.bulletjournal.util.KeywordTrie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory index of template metadata keywords
+ * <p>
+ * - {@link MetadataPostings} of sample tasks, so metadata filters scan distinct keywords instead of sample tasks
+ * - A {@link KeywordTrie} of choice metadata keywords, for the longest choice keyword in sample task metadata
+ * <p>
+ * Both are loaded on first use. A committed sample task write marks the sample task stale here and on other
+ * instances via {@link #INVALIDATION_CHANNEL}, the next lookup reloads it. Choice keywords are reloaded once any of
+ * them changes.
+ * <p>
+ * Lookups read an immutable postings snapshot without locking. Loads and reloads query the database without
+ * locking too, and only publish a new snapshot under postingsLock, where a reload older than the last applied
+ * change of a sample task is skipped.
+ */
+@Component
+public class MetadataKeywordIndex implements MessageListener {
+    public static final String INVALIDATION_CHANNEL = "metadata-keyword-invalidation";
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataKeywordIndex.class);
+    private static final String CHOICE_KEYWORDS = "choices";
+
+    // guards publishing postings and appliedChanges
+    private final Object postingsLock = new Object();
+    private volatile MetadataPostings postings;
+    private final AtomicLong changes = new AtomicLong();
+    // written sample task -> sequence of its last change, reloaded before the next lookup
+    private final Map<Long, Long> staleSampleTasks = new ConcurrentHashMap<>();
+    // sample task -> sequence of the last change applied to postings
+    private final Map<Long, Long> appliedChanges = new HashMap<>();
+    // changes up to loadedChanges are in the loaded postings
+    private long loadedChanges;
+    private final Object choiceKeywordsLock = new Object();
+    // bumped by every choice keyword change, a trie loaded across one is not kept
+    private long choiceKeywordsGeneration = 0;
+    private volatile KeywordTrie<Long> choiceKeywords;
+
+    @Autowired
+    @Lazy
+    private SampleTaskRepository sampleTaskRepository;
+
+    @Autowired
+    @Lazy
+    private ChoiceMetadataKeywordRepository choiceMetadataKeywordRepository;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @PostConstruct
+    public void postConstruct() {
+        if (this.redisMessageListenerContainer != null) {
+            this.redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        }
+    }
+
+    /**
+     * @param metadataFilter the metadata filter
+     * @return List<Long> - ascending ids of sample tasks whose metadata contains filter, null if the filter
+     * cannot be answered by the index
+     */
+    public List<Long> findSampleTasks(String metadataFilter) {
+        return getPostings().find(metadataFilter);
+    }
+
+    /**
+     * @param metadata the sample task metadata
+     * @return Long - choice id of the longest choice keyword in metadata, null if there is none
+     */
+    public Long getChoiceId(String metadata) {
+        KeywordTrie<Long> trie = this.choiceKeywords;
+        if (trie == null) {
+            long generation;
+            synchronized (this.choiceKeywordsLock) {
+                generation = this.choiceKeywordsGeneration;
+            }
+            trie = new KeywordTrie<>();
+            for (Object[] row : this.choiceMetadataKeywordRepository.findAllChoiceIds()) {
+                trie.put((String) row[0], (Long) row[1]);
+            }
+            synchronized (this.choiceKeywordsLock) {
+                if (generation == this.choiceKeywordsGeneration) {
+                    this.choiceKeywords = trie;
+                }
+            }
+        }
+        return trie.findLongestIn(metadata);
+    }
+
+    /**
+     * Apply a sample task write once the current transaction commits
+     *
+     * @param sampleTaskId the sample task saved or deleted
+     * @param metadata     metadata of the sample task, null if it is deleted
+     */
+    public void onSampleTaskChange(Long sampleTaskId, String metadata) {
+        afterCommit(() -> {
+            markStale(sampleTaskId);
+            publish(Long.toString(sampleTaskId));
+        });
+    }
+
+    /**
+     * Reload choice keywords once the current transaction commits
+     */
+    public void onChoiceKeywordChange() {
+        afterCommit(() -> {
+            evictChoiceKeywords();
+            publish(CHOICE_KEYWORDS);
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (CHOICE_KEYWORDS.equals(body)) {
+            evictChoiceKeywords();
+            return;
+        }
+        try {
+            markStale(Long.valueOf(body));
+        } catch (NumberFormatException ex) {
+            LOGGER.warn("Invalid metadata keyword invalidation {}", body);
+        }
+    }
+
+    private void evictChoiceKeywords() {
+        synchronized (this.choiceKeywordsLock) {
+            this.choiceKeywordsGeneration++;
+            this.choiceKeywords = null;
+        }
+    }
+
+    private void markStale(Long sampleTaskId) {
+        this.staleSampleTasks.put(sampleTaskId, this.changes.incrementAndGet());
+    }
+
+    private MetadataPostings getPostings() {
+        MetadataPostings current = this.postings;
+        if (current == null) {
+            current = load();
+        }
+        if (!this.staleSampleTasks.isEmpty()) {
+            current = reload();
+        }
+        return current;
+    }
+
+    private MetadataPostings load() {
+        // changes marked so far are committed, so the query below sees them
+        long loadChanges = this.changes.get();
+        Map<Long, String> metadata = new HashMap<>();
+        for (Object[] row : this.sampleTaskRepository.findAllMetadata()) {
+            metadata.put((Long) row[0], (String) row[1]);
+        }
+        MetadataPostings loaded = new MetadataPostings().update(metadata);
+        synchronized (this.postingsLock) {
+            if (this.postings != null) {
+                return this.postings;
+            }
+            this.loadedChanges = loadChanges;
+            this.staleSampleTasks.entrySet().removeIf(stale -> stale.getValue() <= loadChanges);
+            this.postings = loaded;
+        }
+        LOGGER.info("Loaded metadata of {} sample tasks", loaded.size());
+        return loaded;
+    }
+
+    private MetadataPostings reload() {
+        Map<Long, Long> stale = new HashMap<>(this.staleSampleTasks);
+        stale.forEach(this.staleSampleTasks::remove);
+        Map<Long, String> metadata = new HashMap<>();
+        stale.keySet().forEach(sampleTaskId -> metadata.put(sampleTaskId, null));
+        for (Object[] row : this.sampleTaskRepository.findMetadataByIdIn(new ArrayList<>(stale.keySet()))) {
+            metadata.put((Long) row[0], (String) row[1]);
+        }
+        synchronized (this.postingsLock) {
+            // a concurrent reload of a later change may have published already
+            metadata.keySet().removeIf(sampleTaskId -> stale.get(sampleTaskId)
+                    <= this.appliedChanges.getOrDefault(sampleTaskId, this.loadedChanges));
+            stale.forEach((sampleTaskId, change) -> this.appliedChanges.merge(sampleTaskId, change, Math::max));
+            if (!metadata.isEmpty()) {
+                this.postings = this.postings.update(metadata);
+            }
+            return this.postings;
+        }
+    }
+
+    private void afterCommit(Runnable runnable) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            runnable.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                runnable.run();
+            }
+        });
+    }
+
+    private void publish(String body) {
+        try {
+            this.redisTemplate.convertAndSend(INVALIDATION_CHANNEL, body);
+        } catch (Exception ex) {
+            LOGGER.error("Unable to publish metadata keyword invalidation of " + body, ex);
+        }
+    }
+}
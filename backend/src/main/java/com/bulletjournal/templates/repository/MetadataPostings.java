@@ -0,0 +1,173 @@
+package com.bulletjournal.templates.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Posting lists of sample task metadata, the comma separated keywords of each sample task
+ * <p>
+ * - A token is a keyword as written in metadata, it maps to the ids of sample tasks having it
+ * - A filter without comma lies within one token, so matching it looks up tokens instead of scanning sample tasks
+ * - Substrings of up to GRAM_LENGTH chars of every token are indexed, a filter is only compared with the tokens
+ * having its rarest gram
+ * - Immutable, {@link #update(Map)} returns a copy sharing the postings it does not change, so readers never lock
+ */
+public final class MetadataPostings {
+    private static final String SPLITTER = ",";
+    private static final int GRAM_LENGTH = 3;
+
+    private final Map<Long, String> metadata;
+    private final Map<String, Set<Long>> postings;
+    // substring of at most GRAM_LENGTH chars -> tokens containing it
+    private final Map<String, Set<String>> grams;
+
+    public MetadataPostings() {
+        this(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    private MetadataPostings(Map<Long, String> metadata, Map<String, Set<Long>> postings,
+                             Map<String, Set<String>> grams) {
+        this.metadata = metadata;
+        this.postings = postings;
+        this.grams = grams;
+    }
+
+    /**
+     * @param changes sample task id -> its metadata, null if the sample task is deleted
+     * @return MetadataPostings - a copy with changes applied
+     */
+    public MetadataPostings update(Map<Long, String> changes) {
+        Builder builder = new Builder(this);
+        changes.forEach(builder::update);
+        return builder.build();
+    }
+
+    /**
+     * Same as metadata LIKE %filter%
+     *
+     * @param filter the metadata filter
+     * @return List<Long> - ascending ids of sample tasks whose metadata contains filter, null if filter spans
+     * tokens or has a % or _ wildcard and cannot be answered by tokens
+     */
+    public List<Long> find(String filter) {
+        if (filter.contains(SPLITTER) || filter.contains("%") || filter.contains("_")) {
+            return null;
+        }
+        Set<String> candidates;
+        if (filter.isEmpty()) {
+            candidates = this.postings.keySet();
+        } else if (filter.length() <= GRAM_LENGTH) {
+            candidates = this.grams.getOrDefault(filter, Collections.emptySet());
+        } else {
+            candidates = null;
+            for (int i = 0; i + GRAM_LENGTH <= filter.length(); i++) {
+                Set<String> tokens = this.grams.get(filter.substring(i, i + GRAM_LENGTH));
+                if (tokens == null) {
+                    return Collections.emptyList();
+                }
+                if (candidates == null || tokens.size() < candidates.size()) {
+                    candidates = tokens;
+                }
+            }
+        }
+        Set<Long> result = new TreeSet<>();
+        for (String token : candidates) {
+            if (token.contains(filter)) {
+                result.addAll(this.postings.get(token));
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    public int size() {
+        return this.metadata.size();
+    }
+
+    private static Set<String> tokens(String metadata) {
+        return new LinkedHashSet<>(Arrays.asList(metadata.split(SPLITTER, -1)));
+    }
+
+    private static Set<String> grams(String token) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i < token.length(); i++) {
+            for (int j = i + 1; j <= Math.min(token.length(), i + GRAM_LENGTH); j++) {
+                grams.add(token.substring(i, j));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * Copies the maps of postings, and a set of them only once it changes
+     */
+    private static final class Builder {
+        private final Map<Long, String> metadata;
+        private final Map<String, Set<Long>> postings;
+        private final Map<String, Set<String>> grams;
+        private final Set<String> copiedPostings = new HashSet<>();
+        private final Set<String> copiedGrams = new HashSet<>();
+
+        private Builder(MetadataPostings postings) {
+            this.metadata = new HashMap<>(postings.metadata);
+            this.postings = new HashMap<>(postings.postings);
+            this.grams = new HashMap<>(postings.grams);
+        }
+
+        private void update(long sampleTaskId, String metadata) {
+            String previous = metadata == null ? this.metadata.remove(sampleTaskId)
+                    : this.metadata.put(sampleTaskId, metadata);
+            if (previous != null) {
+                for (String token : tokens(previous)) {
+                    Set<Long> ids = copyOnWrite(this.postings, this.copiedPostings, token);
+                    ids.remove(sampleTaskId);
+                    if (ids.isEmpty()) {
+                        this.postings.remove(token);
+                        grams(token).forEach(gram -> removeGram(gram, token));
+                    }
+                }
+            }
+            if (metadata == null) {
+                return;
+            }
+            for (String token : tokens(metadata)) {
+                if (!this.postings.containsKey(token)) {
+                    grams(token).forEach(gram -> copyOnWrite(this.grams, this.copiedGrams, gram).add(token));
+                }
+                copyOnWrite(this.postings, this.copiedPostings, token).add(sampleTaskId);
+            }
+        }
+
+        private void removeGram(String gram, String token) {
+            Set<String> tokens = copyOnWrite(this.grams, this.copiedGrams, gram);
+            tokens.remove(token);
+            if (tokens.isEmpty()) {
+                this.grams.remove(gram);
+            }
+        }
+
+        private static <T> Set<T> copyOnWrite(Map<String, Set<T>> map, Set<String> copied, String key) {
+            Set<T> values = map.get(key);
+            if (values == null) {
+                values = new TreeSet<>();
+                map.put(key, values);
+                copied.add(key);
+            } else if (copied.add(key)) {
+                values = new TreeSet<>(values);
+                map.put(key, values);
+            }
+            return values;
+        }
+
+        private MetadataPostings build() {
+            return new MetadataPostings(this.metadata, this.postings, this.grams);
+        }
+    }
+}
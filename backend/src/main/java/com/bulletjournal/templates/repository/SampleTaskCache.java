@@ -0,0 +1,136 @@
+package com.bulletjournal.templates.repository;
+
+import com.bulletjournal.templates.controller.model.SampleTask;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Simple presentation models of sample tasks by id, shared by all pages of sample task results
+ * <p>
+ * A sample task is dropped whenever it is saved or deleted by {@link SampleTaskDaoJpa}, on this instance right
+ * away and on all instances via {@link #INVALIDATION_CHANNEL} once the change is committed.
+ */
+@Component
+public class SampleTaskCache implements MessageListener {
+    public static final String INVALIDATION_CHANNEL = "sample-task-invalidation";
+    private static final Logger LOGGER = LoggerFactory.getLogger(SampleTaskCache.class);
+    private static final int MAX_SIZE = 10000;
+
+    private final Cache<Long, SampleTask> sampleTasks = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE * 10).expireAfterWrite(10, TimeUnit.MINUTES).recordStats().build();
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @PostConstruct
+    public void postConstruct() {
+        if (this.redisMessageListenerContainer != null) {
+            this.redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        }
+    }
+
+    /**
+     * @param sampleTaskIds the sample task ids
+     * @param loader        loads the sample tasks not cached, in one query
+     * @return List<SampleTask> - copies of the sample tasks found, in the order of sampleTaskIds
+     */
+    public List<SampleTask> getSampleTasks(List<Long> sampleTaskIds, Function<List<Long>, List<SampleTask>> loader) {
+        Map<Long, SampleTask> found = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long sampleTaskId : sampleTaskIds) {
+            SampleTask sampleTask = this.sampleTasks.getIfPresent(sampleTaskId);
+            if (sampleTask == null) {
+                misses.add(sampleTaskId);
+            } else {
+                found.put(sampleTaskId, sampleTask);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (SampleTask sampleTask : loader.apply(misses)) {
+                this.sampleTasks.put(sampleTask.getId(), sampleTask);
+                found.put(sampleTask.getId(), sampleTask);
+            }
+        }
+        List<SampleTask> result = new ArrayList<>(found.size());
+        for (Long sampleTaskId : sampleTaskIds) {
+            SampleTask sampleTask = found.get(sampleTaskId);
+            if (sampleTask != null) {
+                result.add(copy(sampleTask));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drop sample task now and again after the current transaction commits
+     *
+     * @param sampleTaskId the sample task saved or deleted
+     */
+    public void invalidate(Long sampleTaskId) {
+        this.sampleTasks.invalidate(sampleTaskId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(sampleTaskId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // a read racing with the transaction may have cached the old sample task
+                sampleTasks.invalidate(sampleTaskId);
+                publish(sampleTaskId);
+            }
+        });
+    }
+
+    public CacheStats getStats() {
+        return this.sampleTasks.stats();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            this.sampleTasks.invalidate(Long.valueOf(body));
+        } catch (NumberFormatException ex) {
+            LOGGER.warn("Invalid sample task invalidation {}", body);
+        }
+    }
+
+    private void publish(Long sampleTaskId) {
+        try {
+            this.redisTemplate.convertAndSend(INVALIDATION_CHANNEL, Long.toString(sampleTaskId));
+        } catch (Exception ex) {
+            LOGGER.error("Unable to publish sample task invalidation of " + sampleTaskId, ex);
+        }
+    }
+
+    private static SampleTask copy(SampleTask sampleTask) {
+        return new SampleTask(sampleTask.getId(), sampleTask.getName(), sampleTask.getContent(),
+                sampleTask.getMetadata(), sampleTask.getUid(), sampleTask.getDueDate(), sampleTask.getDueTime(),
+                sampleTask.getTimeZone(), sampleTask.isPending(), sampleTask.isRefreshable(), sampleTask.getRaw());
+    }
+}
@@ -7,17 +7,20 @@ import com.bulletjournal.notifications.Event;
 import com.bulletjournal.notifications.NewAdminSampleTaskEvent;
 import com.bulletjournal.notifications.NewSampleTaskEvent;
 import com.bulletjournal.notifications.NotificationService;
+import com.bulletjournal.notifications.SampleTaskChange;
 import com.bulletjournal.repository.NotificationRepository;
 import com.bulletjournal.repository.TaskDaoJpa;
 import com.bulletjournal.repository.UserDaoJpa;
 import com.bulletjournal.repository.models.Notification;
 import com.bulletjournal.repository.models.Task;
 import com.bulletjournal.repository.models.User;
+import com.bulletjournal.templates.clients.StockCompanyService;
 import com.bulletjournal.templates.controller.model.AuditSampleTaskParams;
 import com.bulletjournal.templates.controller.model.CreateSampleTaskParams;
 import com.bulletjournal.templates.controller.model.UpdateSampleTaskParams;
 import com.bulletjournal.templates.repository.model.*;
 import com.bulletjournal.templates.repository.utils.InvestmentUtil;
+import com.bulletjournal.util.CustomThreadFactory;
 import com.bulletjournal.util.DeltaConverter;
 import com.bulletjournal.util.StringUtil;
 import com.google.common.collect.ImmutableList;
@@ -29,8 +32,13 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PreDestroy;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 @Repository
@@ -45,7 +53,10 @@ public class SampleTaskDaoJpa {
     private SampleTaskRuleDaoJpa sampleTaskRuleDaoJpa;
 
     @Autowired
-    private ChoiceMetadataKeywordRepository choiceMetadataKeywordRepository;
+    private ChoiceRepository choiceRepository;
+
+    @Autowired
+    private MetadataKeywordIndex metadataKeywordIndex;
 
     @Autowired
     private SelectionMetadataKeywordDaoJpa selectionMetadataKeywordDaoJpa;
@@ -80,6 +91,21 @@ public class SampleTaskDaoJpa {
     @Autowired
     private SelectionRepository selectionRepository;
 
+    @Autowired
+    private StockCompanyService stockCompanyService;
+
+    // offers changes back once their company is looked up, never a sample task partition thread
+    private final ExecutorService companyLookupExecutor = Executors.newSingleThreadExecutor(
+            new CustomThreadFactory("sample-task-company"));
+
+    @PreDestroy
+    public void preDestroy() {
+        this.companyLookupExecutor.shutdownNow();
+    }
+
+    @Autowired
+    private SampleTaskCache sampleTaskCache;
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public SampleTask createSampleTask(CreateSampleTaskParams createSampleTaskParams) {
         SampleTask sampleTask = new SampleTask();
@@ -105,19 +131,11 @@ public class SampleTaskDaoJpa {
         if (!sampleTask.isPending()) {
             return null;
         }
-        List<ChoiceMetadataKeyword> keywords = this.choiceMetadataKeywordRepository.findAll();
-        int maxLen = 0;
-        ChoiceMetadataKeyword keyword = null;
-        for (ChoiceMetadataKeyword candidate : keywords) {
-            if (candidate.getKeyword().length() > maxLen && sampleTask.getMetadata().contains(candidate.getKeyword())) {
-                maxLen = candidate.getKeyword().length();
-                keyword = candidate;
-            }
-        }
-        if (keyword == null) {
+        Long choiceId = this.metadataKeywordIndex.getChoiceId(sampleTask.getMetadata());
+        if (choiceId == null) {
             return null;
         }
-        return keyword.getChoice();
+        return this.choiceRepository.findById(choiceId).orElse(null);
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -128,12 +146,26 @@ public class SampleTaskDaoJpa {
         return this.sampleTaskRepository.findAllById(ids).stream().filter(Objects::nonNull).collect(Collectors.toList());
     }
 
+    /**
+     * @param ids the sample task ids
+     * @return List<com.bulletjournal.templates.controller.model.SampleTask> - simple presentation models of the
+     * sample tasks found, in the order of ids
+     */
+    public List<com.bulletjournal.templates.controller.model.SampleTask> getSimpleSampleTasks(List<Long> ids) {
+        return this.sampleTaskCache.getSampleTasks(ids, misses -> this.findAllById(misses).stream()
+                .map(SampleTask::toSimplePresentationModel).collect(Collectors.toList()));
+    }
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public List<SampleTask> findSampleTasksByMetadataFilter(String metadataFilter) {
         if (TextUtils.isBlank(metadataFilter)) {
             return sampleTaskRepository.findAll();
         }
-        return sampleTaskRepository.getByMetadataFilter(metadataFilter);
+        List<Long> sampleTaskIds = this.metadataKeywordIndex.findSampleTasks(metadataFilter);
+        if (sampleTaskIds == null) {
+            return sampleTaskRepository.getByMetadataFilter(metadataFilter);
+        }
+        return this.findAllById(sampleTaskIds);
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -161,7 +193,9 @@ public class SampleTaskDaoJpa {
         if (!sampleTaskRepository.existsById(sampleTaskId)) {
             throw new ResourceNotFoundException("sampleTask id " + sampleTaskId + " not exit");
         }
+        this.sampleTaskRuleDaoJpa.removeSampleTask(sampleTaskId);
         sampleTaskRepository.deleteById(sampleTaskId);
+        this.sampleTaskCache.invalidate(sampleTaskId);
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -170,7 +204,9 @@ public class SampleTaskDaoJpa {
             sampleTask.setContent(
                     DeltaConverter.supplementContentText(sampleTask.getContent(), false));
         }
-        return this.sampleTaskRepository.save(sampleTask);
+        sampleTask = this.sampleTaskRepository.save(sampleTask);
+        this.sampleTaskCache.invalidate(sampleTask.getId());
+        return sampleTask;
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
@@ -284,20 +320,49 @@ public class SampleTaskDaoJpa {
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
-    public void handleSampleTaskChange(long id) {
-        SampleTask sampleTask = findSampleTaskById(id);
+    public void handleSampleTaskChange(SampleTaskChange sampleTaskChange) {
+        SampleTask sampleTask = findSampleTaskById(sampleTaskChange.getId());
         if (InvestmentUtil.isInvestmentSampleTask(sampleTask)) {
-            handleSampleTaskRecord(sampleTask, InvestmentUtil.getInstance(sampleTask.getMetadata(), sampleTask.getRaw()));
+            handleSampleTaskRecord(sampleTask, InvestmentUtil.getInstance(sampleTask.getMetadata(), sampleTask.getRaw()),
+                    sampleTaskChange);
         }
     }
 
-    private void handleSampleTaskRecord(SampleTask sampleTask, InvestmentUtil investmentUtil) {
+    private void handleSampleTaskRecord(
+            SampleTask sampleTask, InvestmentUtil investmentUtil, SampleTaskChange sampleTaskChange) {
         if ("OTC".equals(investmentUtil.getExchange())) {
             LOGGER.info("Skip OTC exchange {}", sampleTask.getRaw());
             return;
         }
-        com.bulletjournal.templates.controller.model.StockTickerDetails stockTickerDetails =
-                this.stockTickerDetailsDaoJpa.get(investmentUtil.getTicker());
+        String ticker = investmentUtil.getTicker();
+        com.bulletjournal.templates.controller.model.StockTickerDetails stockTickerDetails;
+        if (sampleTaskChange.isCompanyResolved()) {
+            stockTickerDetails = this.stockTickerDetailsDaoJpa.get(ticker, sampleTaskChange.getCompany());
+        } else {
+            stockTickerDetails = this.stockTickerDetailsDaoJpa.getStored(ticker);
+            if (stockTickerDetails == null) {
+                CompletableFuture<LinkedHashMap> company = this.stockCompanyService.getCompanyAsync(ticker);
+                if (!company.isDone()) {
+                    // the partition moves on, the change comes back to it once the company is looked up
+                    long id = sampleTask.getId();
+                    company.whenCompleteAsync((c, ex) -> {
+                        if (ex == null) {
+                            this.notificationService.addSampleTaskChange(new SampleTaskChange(id, c));
+                        } else {
+                            LOGGER.info("Unable to get company of {}: {}", ticker, ex.toString());
+                        }
+                    }, this.companyLookupExecutor);
+                    return;
+                }
+                try {
+                    stockTickerDetails = this.stockTickerDetailsDaoJpa.get(ticker, company.join());
+                } catch (CompletionException ex) {
+                    // a failed lookup is not an unknown symbol, leave the sample task for its next change
+                    LOGGER.info("Unable to get company of {}: {}", ticker, ex.getCause().toString());
+                    return;
+                }
+            }
+        }
 
         if (stockTickerDetails == null) {
             String sampleTaskName = sampleTask.getName().toLowerCase();
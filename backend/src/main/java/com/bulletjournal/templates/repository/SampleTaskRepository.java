@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,4 +15,10 @@ public interface SampleTaskRepository extends JpaRepository<SampleTask, Long> {
 
     @Query("SELECT sampleTask FROM SampleTask sampleTask WHERE sampleTask.metadata LIKE %:metadataFilter%")
     List<SampleTask> getByMetadataFilter(@Param("metadataFilter") String filter);
+
+    @Query("SELECT sampleTask.id, sampleTask.metadata FROM SampleTask sampleTask")
+    List<Object[]> findAllMetadata();
+
+    @Query("SELECT sampleTask.id, sampleTask.metadata FROM SampleTask sampleTask WHERE sampleTask.id IN :ids")
+    List<Object[]> findMetadataByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -2,6 +2,7 @@ package com.bulletjournal.templates.repository;
 
 import com.bulletjournal.exceptions.ResourceNotFoundException;
 import com.bulletjournal.templates.repository.model.*;
+import com.bulletjournal.templates.workflow.engine.SampleTaskIndexCache;
 import com.bulletjournal.util.StringUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -13,6 +14,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -22,28 +24,55 @@ public class SampleTaskRuleDaoJpa {
     private SampleTaskRuleRepository sampleTaskRuleRepository;
     private StepRepository stepRepository;
     private StepMetadataKeywordRepository stepMetadataKeywordRepository;
+    private SampleTaskRepository sampleTaskRepository;
+    private SampleTaskIndexCache sampleTaskIndexCache;
 
     @Autowired
     SampleTaskRuleDaoJpa(SampleTaskRuleRepository sampleTaskRuleRepository,
                          StepRepository stepRepository,
-                         StepMetadataKeywordRepository stepMetadataKeywordRepository) {
+                         StepMetadataKeywordRepository stepMetadataKeywordRepository,
+                         SampleTaskRepository sampleTaskRepository,
+                         SampleTaskIndexCache sampleTaskIndexCache) {
         this.sampleTaskRuleRepository = sampleTaskRuleRepository;
         this.stepRepository = stepRepository;
         this.stepMetadataKeywordRepository = stepMetadataKeywordRepository;
+        this.sampleTaskRepository = sampleTaskRepository;
+        this.sampleTaskIndexCache = sampleTaskIndexCache;
     }
 
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public void saveAll(Iterable<SampleTaskRule> sampleTaskRules) {
         this.sampleTaskRuleRepository.saveAll(sampleTaskRules);
+        sampleTaskRules.forEach(rule -> this.sampleTaskIndexCache.invalidate(rule.getStep().getId()));
     }
 
+    /**
+     * Sample task ids are validated here instead of when reading the rule, ids of deleted tasks are dropped
+     */
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public SampleTaskRule upsert(Long stepId, String selectionCombo, String taskIds) {
         selectionCombo = StringUtils.join(StringUtil.convertNumArray(selectionCombo), ",");
-        taskIds = StringUtils.join(StringUtil.convertNumArray(taskIds), ",");
+        List<Long> sampleTaskIds = StringUtil.convertNumArray(taskIds);
+        if (!sampleTaskIds.isEmpty()) {
+            sampleTaskIds = this.sampleTaskRepository.findAllById(sampleTaskIds).stream()
+                    .filter(Objects::nonNull).map(SampleTask::getId).sorted().collect(Collectors.toList());
+        }
+        taskIds = StringUtils.join(sampleTaskIds, ",");
+        this.sampleTaskIndexCache.invalidate(stepId);
         return this.sampleTaskRuleRepository.upsert(stepId, selectionCombo, taskIds);
     }
 
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void removeSampleTask(Long sampleTaskId) {
+        for (SampleTaskRule rule : this.sampleTaskRuleRepository.findAllBySampleTaskId(sampleTaskId)) {
+            List<Long> sampleTaskIds = rule.getSampleTaskIds();
+            sampleTaskIds.remove(sampleTaskId);
+            this.sampleTaskRuleRepository.upsert(
+                    rule.getStep().getId(), rule.getSelectionCombo(), StringUtils.join(sampleTaskIds, ","));
+            this.sampleTaskIndexCache.invalidate(rule.getStep().getId());
+        }
+    }
+
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
     public void deleteById(Long stepId, String selectionCombo) {
         SampleTaskRuleId ruleId = new SampleTaskRuleId(fetchStepWithId(stepId), selectionCombo);
@@ -52,6 +81,7 @@ public class SampleTaskRuleDaoJpa {
                     "with selectionCombo " + selectionCombo + " doesn't exist, cannot delete.");
         }
         sampleTaskRuleRepository.deleteById(stepId, selectionCombo);
+        this.sampleTaskIndexCache.invalidate(stepId);
     }
 
     private Step fetchStepWithId(Long stepId) {
@@ -29,4 +29,9 @@ public interface SampleTaskRuleRepository extends JpaRepository<SampleTaskRule,
     String deleteById(Long stepId, String selectionCombo);
 
     List<SampleTaskRule> findAllBySelectionCombo(String selectionCombo);
+
+    @Query(value = "select * from template.sample_task_rules sample_task_rules "
+            + "where ',' || sample_task_rules.task_ids || ',' like '%,' || cast(:sampleTaskId as text) || ',%'",
+            nativeQuery = true)
+    List<SampleTaskRule> findAllBySampleTaskId(Long sampleTaskId);
 }
@@ -1,6 +1,8 @@
 package com.bulletjournal.templates.repository;
 
-import com.bulletjournal.templates.clients.StockApiClient;
+import com.bulletjournal.notifications.EventPipeline;
+import com.bulletjournal.templates.clients.StockCompanyService;
+import com.bulletjournal.templates.config.StockApiConfig;
 import com.bulletjournal.templates.controller.model.StockTickerDetails;
 import com.bulletjournal.templates.repository.model.Selection;
 import com.google.common.collect.ImmutableList;
@@ -8,8 +10,11 @@ import com.google.gson.Gson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.sql.Timestamp;
 import java.util.*;
 
@@ -32,35 +37,84 @@ public class StockTickerDetailsDaoJpa {
     }
 
     public static final long MILLS_IN_YEAR = 1000L * 60 * 60 * 24 * 365;
+    private static final int UPSERT_QUEUE_CAPACITY = 10000;
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+    private static final String UPSERT_SQL = "INSERT INTO template.stock_ticker_details " +
+            "(ticker, selection_id, details, expiration_time) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (ticker) DO UPDATE SET selection_id = EXCLUDED.selection_id, " +
+            "details = EXCLUDED.details, expiration_time = EXCLUDED.expiration_time";
 
     @Autowired
     private StockTickerDetailsRepository stockTickerDetailsRepository;
 
     @Autowired
-    private StockApiClient stockApiClient;
+    private StockCompanyService stockCompanyService;
 
     @Autowired
     private SelectionDaoJpa selectionDaoJpa;
 
+    @Autowired
+    private StockApiConfig stockApiConfig;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // enriched details are upserted in JDBC batches, StockCompanyService serves them until then
+    private EventPipeline<com.bulletjournal.templates.repository.model.StockTickerDetails> upsertPipeline;
+
+    @PostConstruct
+    public void postConstruct() {
+        this.upsertPipeline = new EventPipeline<>("stock-ticker-upsert", 1, UPSERT_QUEUE_CAPACITY,
+                this.stockApiConfig.getUpsertBatchSize(),
+                com.bulletjournal.templates.repository.model.StockTickerDetails::getTicker, this::upsert);
+        this.upsertPipeline.start();
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        this.upsertPipeline.shutdown();
+        this.upsertPipeline.awaitTermination(STOP_TIMEOUT_MILLIS);
+    }
+
     public StockTickerDetails get(String symbol) {
+        StockTickerDetails stockTickerDetails = getStored(symbol);
+        if (stockTickerDetails != null) {
+            return stockTickerDetails;
+        }
+        return get(symbol, this.stockCompanyService.getCompany(symbol));
+    }
+
+    /**
+     * @param symbol the stock symbol
+     * @return StockTickerDetails - stored details, null if there are none or they expired
+     */
+    public StockTickerDetails getStored(String symbol) {
         Optional<com.bulletjournal.templates.repository.model.StockTickerDetails> stockTickerDetailsOptional =
                 this.stockTickerDetailsRepository.findById(symbol);
         if (stockTickerDetailsOptional.isPresent() && stockTickerDetailsOptional.get().
                 getExpirationTime().after(new Timestamp(System.currentTimeMillis()))) {
             return stockTickerDetailsOptional.get().toPresentationModelWithChoice();
         }
+        return null;
+    }
 
-        LinkedHashMap resp;
-        try {
-            resp = this.stockApiClient.getCompany(symbol);
-        } catch (Exception ex) {
+    /**
+     * @param symbol the stock symbol
+     * @param resp   company details of the symbol from {@link StockCompanyService}, null if there are none
+     * @return StockTickerDetails - details to be stored, null if the sector of the company is unknown
+     */
+    public StockTickerDetails get(String symbol, LinkedHashMap resp) {
+        if (resp == null) {
             LOGGER.info("Unable to find StockTickerDetails for {}", symbol);
-            // LOGGER.error("stockApiClient#getCompany failed", ex);
             return null;
         }
 
         LOGGER.info(resp.toString());
         String sector = (String) resp.get("sector");
+        if (sector == null) {
+            LOGGER.error("Sector not found. Unable to find StockTickerDetails for {}", symbol);
+            return null;
+        }
         Long selectionId;
         switch (sector.toLowerCase()) {
             case "technology": //GOOG
@@ -104,14 +158,25 @@ public class StockTickerDetailsDaoJpa {
         Selection selection = this.selectionDaoJpa.getById(selectionId);
 
         com.bulletjournal.templates.repository.model.StockTickerDetails stockTickerDetails =
-                stockTickerDetailsOptional.isPresent() ? stockTickerDetailsOptional.get() :
-                        new com.bulletjournal.templates.repository.model.StockTickerDetails();
+                new com.bulletjournal.templates.repository.model.StockTickerDetails();
         stockTickerDetails.setSelection(selection);
         stockTickerDetails.setExpirationTime(new Timestamp(System.currentTimeMillis() + MILLS_IN_YEAR));
         stockTickerDetails.setDetails(GSON.toJson(resp));
         stockTickerDetails.setTicker(symbol);
-        stockTickerDetails = stockTickerDetailsRepository.save(stockTickerDetails);
+        this.upsertPipeline.offer(stockTickerDetails);
         return stockTickerDetails.toPresentationModelWithChoice();
     }
 
+    private void upsert(List<com.bulletjournal.templates.repository.model.StockTickerDetails> batch) {
+        // the latest details of each ticker in one JDBC batch
+        Map<String, com.bulletjournal.templates.repository.model.StockTickerDetails> latest = new LinkedHashMap<>();
+        batch.forEach(stockTickerDetails -> latest.put(stockTickerDetails.getTicker(), stockTickerDetails));
+        List<Object[]> rows = new ArrayList<>(latest.size());
+        for (com.bulletjournal.templates.repository.model.StockTickerDetails stockTickerDetails : latest.values()) {
+            rows.add(new Object[]{stockTickerDetails.getTicker(), stockTickerDetails.getSelection().getId(),
+                    stockTickerDetails.getDetails(), stockTickerDetails.getExpirationTime()});
+        }
+        this.jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        LOGGER.info("Stored {} StockTickerDetails", latest.size());
+    }
 }
@@ -1,12 +1,14 @@
 package com.bulletjournal.templates.repository.model;
 
 import com.bulletjournal.repository.models.NamedModel;
+import com.bulletjournal.templates.workflow.engine.RuleGraphEntityListeners;
 
 import javax.persistence.*;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Entity
+@EntityListeners(value = {RuleGraphEntityListeners.class})
 @Table(name = "categories", schema = "template")
 public class Category extends NamedModel {
 
@@ -1,11 +1,13 @@
 package com.bulletjournal.templates.repository.model;
 
+import com.bulletjournal.templates.workflow.engine.RuleGraphEntityListeners;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
 import javax.persistence.*;
 
 @Entity
+@EntityListeners(value = {RuleGraphEntityListeners.class})
 @Table(name = "category_rules", schema = "template")
 public class CategoryRule extends Rule {
 
@@ -1,6 +1,7 @@
 package com.bulletjournal.templates.repository.model;
 
 import com.bulletjournal.repository.models.NamedModel;
+import com.bulletjournal.templates.workflow.engine.RuleGraphEntityListeners;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -10,6 +11,7 @@ import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Entity
+@EntityListeners(value = {RuleGraphEntityListeners.class})
 @Table(name = "choices", schema = "template")
 public class Choice extends NamedModel {
     @Id
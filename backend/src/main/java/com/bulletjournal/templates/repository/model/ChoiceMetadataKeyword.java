@@ -1,12 +1,14 @@
 package com.bulletjournal.templates.repository.model;
 
 import com.bulletjournal.repository.models.AuditModel;
+import com.bulletjournal.templates.repository.MetadataKeywordEntityListeners;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
 import javax.persistence.*;
 
 @Entity
+@EntityListeners(value = {MetadataKeywordEntityListeners.class})
 @Table(name = "choice_metadata_keywords", schema = "template")
 public class ChoiceMetadataKeyword extends AuditModel {
 
@@ -1,6 +1,7 @@
 package com.bulletjournal.templates.repository.model;
 
 import com.bulletjournal.repository.models.AuditModel;
+import com.bulletjournal.templates.repository.MetadataKeywordEntityListeners;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.persistence.*;
@@ -9,6 +10,7 @@ import javax.validation.constraints.Size;
 import java.sql.Timestamp;
 
 @Entity
+@EntityListeners(value = {MetadataKeywordEntityListeners.class})
 @Table(name = "sample_tasks", schema = "template")
 public class SampleTask extends AuditModel {
     @Id
@@ -1,6 +1,7 @@
 package com.bulletjournal.templates.repository.model;
 
 import com.bulletjournal.repository.models.AuditModel;
+import com.bulletjournal.templates.workflow.engine.RuleGraphEntityListeners;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
@@ -12,6 +13,7 @@ import javax.persistence.*;
  * One selection can only belong to one choice
  */
 @Entity
+@EntityListeners(value = {RuleGraphEntityListeners.class})
 @Table(name = "selections", schema = "template")
 public class Selection extends AuditModel {
 
@@ -1,11 +1,13 @@
 package com.bulletjournal.templates.repository.model;
 
 import com.bulletjournal.repository.models.NamedModel;
+import com.bulletjournal.templates.workflow.engine.RuleGraphEntityListeners;
 import org.hibernate.annotations.Type;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
@@ -23,6 +25,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 @Entity
+@EntityListeners(value = {RuleGraphEntityListeners.class})
 @Table(name = "steps", schema = "template")
 public class Step extends NamedModel {
 
@@ -0,0 +1,222 @@
+package com.bulletjournal.templates.workflow.engine;
+
+import com.bulletjournal.exceptions.ResourceNotFoundException;
+import com.bulletjournal.templates.controller.model.NextStep;
+import com.bulletjournal.templates.repository.model.Category;
+import com.bulletjournal.templates.repository.model.Rule;
+import com.bulletjournal.templates.repository.model.Step;
+import com.bulletjournal.templates.workflow.models.RuleExpression;
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Category and step rules of the workflow, compiled to pick the next step without database access
+ * <p>
+ * - Rule expressions are parsed once, selection ids become bits of a dense index over all rule selections
+ * - Rules of a category or step are ordered by priority, the first match decides the next step
+ * - The graph is immutable, {@link RuleGraphCache} swaps in a new one once templates change
+ */
+public final class RuleGraph {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RuleGraph.class);
+    private static final Gson GSON = new Gson();
+
+    private final Map<Long, Integer> selectionBits = new HashMap<>();
+    private final Map<Long, Node> categories = new HashMap<>();
+    private final Map<Long, Node> steps = new HashMap<>();
+    // presentation models of next steps, shared by all nodes connecting to the same step
+    private final Map<Long, com.bulletjournal.templates.controller.model.Step> nextSteps = new HashMap<>();
+
+    private RuleGraph() {
+    }
+
+    /**
+     * @param categories categories with their rules and next steps loaded
+     * @param steps      steps with their rules and next steps loaded
+     * @return RuleGraph - the compiled graph
+     */
+    public static RuleGraph compile(List<Category> categories, List<Step> steps) {
+        RuleGraph graph = new RuleGraph();
+        for (Category category : categories) {
+            graph.categories.put(category.getId(),
+                    graph.compileNode(category.getCategoryRules(), category.getNextStep()));
+        }
+        for (Step step : steps) {
+            graph.steps.put(step.getId(), graph.compileNode(step.getStepRules(), step.getNextStep()));
+        }
+        return graph;
+    }
+
+    public NextStep getNextStepOfCategory(Long categoryId, List<Long> selections) {
+        Node node = this.categories.get(categoryId);
+        if (node == null) {
+            throw new ResourceNotFoundException("Category with id " + categoryId + " doesn't exist");
+        }
+        return node.getNextStep(toSelected(selections));
+    }
+
+    public NextStep getNextStepOfStep(Long stepId, List<Long> selections) {
+        Node node = this.steps.get(stepId);
+        if (node == null) {
+            throw new ResourceNotFoundException("Step with id " + stepId + " doesn't exist");
+        }
+        return node.getNextStep(toSelected(selections));
+    }
+
+    private Node compileNode(List<? extends Rule> rules, Step nextStep) {
+        List<Rule> sorted = new ArrayList<>(rules);
+        sorted.sort((rule1, rule2) -> rule2.getPriority() - rule1.getPriority());
+        List<CompiledRule> compiledRules = new ArrayList<>(sorted.size());
+        for (Rule rule : sorted) {
+            RuleExpression ruleExpression;
+            try {
+                ruleExpression = GSON.fromJson(rule.getRuleExpression(), RuleExpression.class);
+            } catch (Exception ex) {
+                LOGGER.error("Skipping rule {} with invalid expression {}", rule.getName(), rule.getRuleExpression());
+                continue;
+            }
+            if (ruleExpression == null || ruleExpression.getLogicOperator() == null) {
+                LOGGER.error("Skipping rule {} without logic operator", rule.getName());
+                continue;
+            }
+            compiledRules.add(new CompiledRule(ruleExpression.getLogicOperator(),
+                    compileCriteria(ruleExpression.getCriteriaList()), toPresentationModel(rule.getConnectedStep())));
+        }
+        return new Node(compiledRules, toPresentationModel(nextStep));
+    }
+
+    private List<Criterion> compileCriteria(List<RuleExpression.Criteria> criteriaList) {
+        if (criteriaList == null) {
+            return Collections.emptyList();
+        }
+        List<Criterion> criteria = new ArrayList<>(criteriaList.size());
+        for (RuleExpression.Criteria c : criteriaList) {
+            BitSet selectionIds = new BitSet();
+            if (c.getSelectionIds() != null) {
+                for (Long selectionId : c.getSelectionIds()) {
+                    selectionIds.set(this.selectionBits.computeIfAbsent(selectionId, k -> this.selectionBits.size()));
+                }
+            }
+            criteria.add(new Criterion(c.getCondition(), selectionIds));
+        }
+        return criteria;
+    }
+
+    private com.bulletjournal.templates.controller.model.Step toPresentationModel(Step step) {
+        if (step == null) {
+            return null;
+        }
+        return this.nextSteps.computeIfAbsent(step.getId(), k -> step.toPresentationModel());
+    }
+
+    private Selected toSelected(List<Long> selections) {
+        BitSet bits = new BitSet(this.selectionBits.size());
+        boolean unknown = false;
+        for (Long selection : selections) {
+            Integer bit = this.selectionBits.get(selection);
+            if (bit == null) {
+                unknown = true;
+            } else {
+                bits.set(bit);
+            }
+        }
+        return new Selected(bits, unknown);
+    }
+
+    private static final class Selected {
+        private final BitSet bits;
+        // a selection that no rule refers to, which no EXACT criterion can match
+        private final boolean unknown;
+
+        private Selected(BitSet bits, boolean unknown) {
+            this.bits = bits;
+            this.unknown = unknown;
+        }
+
+        private boolean containsAll(BitSet selectionIds) {
+            for (int i = selectionIds.nextSetBit(0); i >= 0; i = selectionIds.nextSetBit(i + 1)) {
+                if (!this.bits.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Criterion {
+        private final RuleExpression.Condition condition;
+        private final BitSet selectionIds;
+
+        private Criterion(RuleExpression.Condition condition, BitSet selectionIds) {
+            this.condition = condition;
+            this.selectionIds = selectionIds;
+        }
+
+        private boolean matches(Selected selected) {
+            if (this.condition == null) {
+                return false;
+            }
+            switch (this.condition) {
+                case EXACT:
+                    return !selected.unknown && selected.bits.equals(this.selectionIds);
+                case CONTAINS:
+                    return selected.containsAll(this.selectionIds);
+                case NOT_CONTAIN:
+                    return !this.selectionIds.intersects(selected.bits);
+                case IGNORE:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private static final class CompiledRule {
+        private final RuleExpression.LogicOperator logicOperator;
+        private final List<Criterion> criteria;
+        private final com.bulletjournal.templates.controller.model.Step connectedStep;
+
+        private CompiledRule(RuleExpression.LogicOperator logicOperator, List<Criterion> criteria,
+                             com.bulletjournal.templates.controller.model.Step connectedStep) {
+            this.logicOperator = logicOperator;
+            this.criteria = criteria;
+            this.connectedStep = connectedStep;
+        }
+
+        private boolean matches(Selected selected) {
+            if (this.logicOperator == RuleExpression.LogicOperator.OR) {
+                return this.criteria.stream().anyMatch(c -> c.matches(selected));
+            }
+            return this.criteria.stream().allMatch(c -> c.matches(selected));
+        }
+    }
+
+    private static final class Node {
+        private final List<CompiledRule> rules;
+        private final com.bulletjournal.templates.controller.model.Step nextStep;
+
+        private Node(List<CompiledRule> rules, com.bulletjournal.templates.controller.model.Step nextStep) {
+            this.rules = rules;
+            this.nextStep = nextStep;
+        }
+
+        private NextStep getNextStep(Selected selected) {
+            NextStep nextStep = new NextStep();
+            for (CompiledRule rule : this.rules) {
+                if (rule.matches(selected)) {
+                    nextStep.setStep(rule.connectedStep);
+                    return nextStep;
+                }
+            }
+            nextStep.setStep(this.nextStep);
+            return nextStep;
+        }
+    }
+}
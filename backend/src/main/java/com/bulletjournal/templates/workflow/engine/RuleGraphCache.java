@@ -0,0 +1,128 @@
+package com.bulletjournal.templates.workflow.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The current {@link RuleGraph}
+ * <p>
+ * - The graph is compiled on first use and dropped once a category, step, rule, choice or selection change
+ * commits, on this instance and on all instances via {@link #INVALIDATION_CHANNEL}
+ * - A graph also expires after MAX_AGE_MINUTES, so a missed invalidation heals by itself
+ */
+@Component
+public class RuleGraphCache implements MessageListener {
+    public static final String INVALIDATION_CHANNEL = "rule-graph-invalidation";
+    private static final Logger LOGGER = LoggerFactory.getLogger(RuleGraphCache.class);
+    private static final long MAX_AGE_MINUTES = 10;
+
+    private final Object snapshotLock = new Object();
+    // bumped by every invalidation, a graph compiled across one is not kept
+    private long generation = 0;
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    @Lazy
+    private RuleGraphCompiler ruleGraphCompiler;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @PostConstruct
+    public void postConstruct() {
+        if (this.redisMessageListenerContainer != null) {
+            this.redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        }
+    }
+
+    public RuleGraph get() {
+        Snapshot current = this.snapshot;
+        if (current != null && !current.isExpired()) {
+            return current.graph;
+        }
+        synchronized (this) {
+            current = this.snapshot;
+            if (current != null && !current.isExpired()) {
+                return current.graph;
+            }
+            long compiledGeneration;
+            synchronized (this.snapshotLock) {
+                compiledGeneration = this.generation;
+            }
+            RuleGraph graph = this.ruleGraphCompiler.compile();
+            synchronized (this.snapshotLock) {
+                if (compiledGeneration == this.generation) {
+                    this.snapshot = new Snapshot(graph);
+                }
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * Drop the graph after the current transaction commits
+     */
+    public void invalidate() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict();
+            publish();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict();
+                publish();
+            }
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        evict();
+    }
+
+    private void evict() {
+        synchronized (this.snapshotLock) {
+            this.generation++;
+            this.snapshot = null;
+        }
+    }
+
+    private void publish() {
+        try {
+            this.redisTemplate.convertAndSend(INVALIDATION_CHANNEL, "");
+        } catch (Exception ex) {
+            LOGGER.error("Unable to publish rule graph invalidation", ex);
+        }
+    }
+
+    private static final class Snapshot {
+        private final RuleGraph graph;
+        private final long compiledAt = System.currentTimeMillis();
+
+        private Snapshot(RuleGraph graph) {
+            this.graph = graph;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - this.compiledAt > TimeUnit.MINUTES.toMillis(MAX_AGE_MINUTES);
+        }
+    }
+}
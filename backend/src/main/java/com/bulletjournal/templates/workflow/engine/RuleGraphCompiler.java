@@ -0,0 +1,23 @@
+package com.bulletjournal.templates.workflow.engine;
+
+import com.bulletjournal.templates.repository.CategoryDaoJpa;
+import com.bulletjournal.templates.repository.StepDaoJpa;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class RuleGraphCompiler {
+
+    @Autowired
+    private CategoryDaoJpa categoryDaoJpa;
+
+    @Autowired
+    private StepDaoJpa stepDaoJpa;
+
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public RuleGraph compile() {
+        return RuleGraph.compile(this.categoryDaoJpa.getAllCategories(), this.stepDaoJpa.findAll());
+    }
+}
@@ -0,0 +1,19 @@
+package com.bulletjournal.templates.workflow.engine;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+public class RuleGraphEntityListeners {
+    @Autowired
+    RuleGraphCache ruleGraphCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void postChange(Object entity) {
+        this.ruleGraphCache.invalidate();
+    }
+}
@@ -0,0 +1,71 @@
+package com.bulletjournal.templates.workflow.engine;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque scroll id of sample task pagination
+ * <p>
+ * It points at an offset into the sample task ids resolved for a step and a set of selections, which
+ * {@link SampleTaskPager} keeps once per distinct query, so paging copies nothing.
+ */
+public final class SampleTaskCursor {
+    private static final Gson GSON = new Gson();
+    private static final String PREFIX = "s1.";
+
+    private final long stepId;
+
+    private final String selectionHash;
+
+    private final int offset;
+
+    public SampleTaskCursor(long stepId, String selectionHash, int offset) {
+        this.stepId = stepId;
+        this.selectionHash = selectionHash;
+        this.offset = offset;
+    }
+
+    public long getStepId() {
+        return stepId;
+    }
+
+    public String getSelectionHash() {
+        return selectionHash;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public String getResultKey() {
+        return this.stepId + ":" + this.selectionHash;
+    }
+
+    public String encode() {
+        return PREFIX + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(GSON.toJson(this).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token the scroll id
+     * @return SampleTaskCursor - the cursor, null if the scroll id is blank, malformed or from before cursors
+     */
+    public static SampleTaskCursor decode(String token) {
+        if (token == null || !token.startsWith(PREFIX)) {
+            return null;
+        }
+        SampleTaskCursor cursor;
+        try {
+            cursor = GSON.fromJson(new String(Base64.getUrlDecoder().decode(token.substring(PREFIX.length())),
+                    StandardCharsets.UTF_8), SampleTaskCursor.class);
+        } catch (Exception ex) {
+            return null;
+        }
+        if (cursor == null || cursor.selectionHash == null || cursor.offset < 0) {
+            return null;
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,123 @@
+package com.bulletjournal.templates.workflow.engine;
+
+import com.bulletjournal.templates.repository.model.SampleTaskRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sample task rules of a final step, compiled to resolve sample tasks of selections without database access
+ * <p>
+ * - Sample task ids become bits of a dense index over all tasks of the step's rules, a rule keeps a bitmap
+ * - Selections of one choice union their tasks, choices intersect, a rule combining choices unions on its own
+ * - The index is immutable, {@link SampleTaskIndexCache} drops it once a rule of the step is written
+ */
+public final class SampleTaskIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SampleTaskIndex.class);
+
+    // bit -> sample task id, ascending
+    private final long[] sampleTaskIds;
+    private final List<CompiledRule> rules;
+
+    private SampleTaskIndex(long[] sampleTaskIds, List<CompiledRule> rules) {
+        this.sampleTaskIds = sampleTaskIds;
+        this.rules = rules;
+    }
+
+    /**
+     * @param rules            sample task rules of the step
+     * @param selectionChoices selection id -> choice id, for the selections of the rules
+     * @return SampleTaskIndex - the compiled index
+     */
+    public static SampleTaskIndex compile(List<SampleTaskRule> rules, Map<Long, Long> selectionChoices) {
+        long[] sampleTaskIds = rules.stream().flatMap(rule -> rule.getSampleTaskIds().stream())
+                .mapToLong(Long::longValue).sorted().distinct().toArray();
+        List<CompiledRule> compiledRules = new ArrayList<>(rules.size());
+        for (SampleTaskRule rule : rules) {
+            List<Long> selectionIds = rule.getSelectionIds();
+            Set<Long> choiceIds = new LinkedHashSet<>();
+            for (Long selectionId : selectionIds) {
+                choiceIds.add(selectionChoices.get(selectionId));
+            }
+            if (selectionIds.isEmpty() || choiceIds.contains(null)) {
+                LOGGER.error("Skipping sample task rule {} with unknown selections", rule.getSelectionCombo());
+                continue;
+            }
+            BitSet sampleTasks = new BitSet(sampleTaskIds.length);
+            for (Long sampleTaskId : rule.getSampleTaskIds()) {
+                sampleTasks.set(Arrays.binarySearch(sampleTaskIds, sampleTaskId));
+            }
+            compiledRules.add(new CompiledRule(selectionIds, new ArrayList<>(choiceIds), sampleTasks));
+        }
+        return new SampleTaskIndex(sampleTaskIds, compiledRules);
+    }
+
+    /**
+     * @param selections selections of the final step and of the previous steps
+     * @return Set<Long> - sample task ids in ascending order
+     */
+    public Set<Long> getSampleTasks(Collection<Long> selections) {
+        Set<Long> selected = new HashSet<>(selections);
+        BitSet result = new BitSet(this.sampleTaskIds.length);
+        boolean firstTime = true;
+        // some choices are not applicable such as Intensity or 'Computer Science Category'
+        Map<Long, BitSet> applicableChoices = new HashMap<>();
+        Set<Long> comboChoices = new HashSet<>();
+        for (CompiledRule rule : this.rules) {
+            if (!selected.containsAll(rule.selectionIds)) {
+                continue;
+            }
+            rule.choiceIds.forEach(choiceId -> applicableChoices.computeIfAbsent(choiceId, k -> new BitSet()));
+            if (rule.choiceIds.size() > 1) {
+                // union for choice combo
+                result.or(rule.sampleTasks);
+                firstTime = false;
+                comboChoices.addAll(rule.choiceIds);
+            } else if (rule.selectionIds.size() == 1) {
+                // selections in one choice => union of sample tasks
+                applicableChoices.get(rule.choiceIds.get(0)).or(rule.sampleTasks);
+            }
+        }
+
+        for (Map.Entry<Long, BitSet> choice : applicableChoices.entrySet()) {
+            if (comboChoices.contains(choice.getKey())) {
+                continue;
+            }
+            // selections between choices => intersection of sample tasks
+            if (firstTime) {
+                result.or(choice.getValue());
+                firstTime = false;
+            } else {
+                result.and(choice.getValue());
+            }
+        }
+
+        Set<Long> sampleTasks = new LinkedHashSet<>();
+        for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+            sampleTasks.add(this.sampleTaskIds[i]);
+        }
+        return sampleTasks;
+    }
+
+    private static final class CompiledRule {
+        private final List<Long> selectionIds;
+        private final List<Long> choiceIds;
+        private final BitSet sampleTasks;
+
+        private CompiledRule(List<Long> selectionIds, List<Long> choiceIds, BitSet sampleTasks) {
+            this.selectionIds = selectionIds;
+            this.choiceIds = choiceIds;
+            this.sampleTasks = sampleTasks;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.bulletjournal.templates.workflow.engine;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per step {@link SampleTaskIndex}
+ * <p>
+ * - The index of a step is compiled on first use and dropped once a sample task rule of the step is written,
+ * on this instance and on all instances via {@link #INVALIDATION_CHANNEL}
+ * - An index also expires after MAX_AGE_MINUTES, so a missed invalidation or a moved selection heals by itself
+ */
+@Component
+public class SampleTaskIndexCache implements MessageListener {
+    public static final String INVALIDATION_CHANNEL = "sample-task-index-invalidation";
+    private static final Logger LOGGER = LoggerFactory.getLogger(SampleTaskIndexCache.class);
+    private static final int MAX_SIZE = 10000;
+    private static final long MAX_AGE_MINUTES = 10;
+
+    private final Cache<Long, SampleTaskIndex> indexes = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE).expireAfterWrite(MAX_AGE_MINUTES, TimeUnit.MINUTES).recordStats().build();
+
+    @Autowired
+    @Lazy
+    private SampleTaskIndexCompiler sampleTaskIndexCompiler;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @PostConstruct
+    public void postConstruct() {
+        if (this.redisMessageListenerContainer != null) {
+            this.redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        }
+    }
+
+    public SampleTaskIndex get(Long stepId) {
+        try {
+            return this.indexes.get(stepId, () -> this.sampleTaskIndexCompiler.compile(stepId));
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Drop index of step now and again after the current transaction commits
+     *
+     * @param stepId the step whose sample task rules changed
+     */
+    public void invalidate(Long stepId) {
+        this.indexes.invalidate(stepId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(stepId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // a read racing with the transaction may have cached the old rules
+                indexes.invalidate(stepId);
+                publish(stepId);
+            }
+        });
+    }
+
+    public CacheStats getStats() {
+        return this.indexes.stats();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            this.indexes.invalidate(Long.valueOf(body));
+        } catch (NumberFormatException ex) {
+            LOGGER.warn("Invalid sample task index invalidation {}", body);
+        }
+    }
+
+    private void publish(Long stepId) {
+        try {
+            this.redisTemplate.convertAndSend(INVALIDATION_CHANNEL, Long.toString(stepId));
+        } catch (Exception ex) {
+            LOGGER.error("Unable to publish sample task index invalidation of step " + stepId, ex);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.bulletjournal.templates.workflow.engine;
+
+import com.bulletjournal.templates.repository.SampleTaskRuleRepository;
+import com.bulletjournal.templates.repository.SelectionDaoJpa;
+import com.bulletjournal.templates.repository.StepDaoJpa;
+import com.bulletjournal.templates.repository.model.SampleTaskRule;
+import com.bulletjournal.templates.repository.model.Selection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class SampleTaskIndexCompiler {
+
+    @Autowired
+    private StepDaoJpa stepDaoJpa;
+
+    @Autowired
+    private SelectionDaoJpa selectionDaoJpa;
+
+    @Autowired
+    private SampleTaskRuleRepository sampleTaskRuleRepository;
+
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public SampleTaskIndex compile(Long stepId) {
+        List<SampleTaskRule> rules = this.sampleTaskRuleRepository.findAllByStep(this.stepDaoJpa.getById(stepId));
+        Set<Long> selectionIds = rules.stream().flatMap(rule -> rule.getSelectionIds().stream())
+                .collect(Collectors.toSet());
+        Map<Long, Long> selectionChoices = this.selectionDaoJpa.getSelectionsById(selectionIds).stream()
+                .collect(Collectors.toMap(Selection::getId, s -> s.getChoice().getId()));
+        return SampleTaskIndex.compile(rules, selectionChoices);
+    }
+}
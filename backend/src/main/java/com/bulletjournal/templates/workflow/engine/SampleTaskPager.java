@@ -0,0 +1,113 @@
+package com.bulletjournal.templates.workflow.engine;
+
+import com.bulletjournal.templates.controller.model.SampleTask;
+import com.bulletjournal.templates.controller.model.SampleTasks;
+import com.bulletjournal.templates.redis.RedisSampleTaskResultRepository;
+import com.bulletjournal.templates.redis.models.SampleTaskResult;
+import com.bulletjournal.templates.repository.SampleTaskDaoJpa;
+import com.bulletjournal.util.StringUtil;
+import com.google.common.hash.Hashing;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Pages of sample tasks for selections of a final step
+ * <p>
+ * - Sample task ids of a query are kept in Redis once, keyed by step and a hash of its selections
+ * - A scroll id is a {@link SampleTaskCursor} into those ids, pages are hydrated by id from the sample task cache
+ */
+@Service
+public class SampleTaskPager {
+
+    @Autowired
+    private RuleEngine ruleEngine;
+
+    @Autowired
+    private SampleTaskDaoJpa sampleTaskDaoJpa;
+
+    @Autowired
+    private RedisSampleTaskResultRepository redisSampleTaskResultRepository;
+
+    /**
+     * @param stepId         the final step
+     * @param selections     selections of the final step
+     * @param prevSelections selections of the previous steps
+     * @param pageSize       number of sample tasks in the first page
+     * @return SampleTasks - the first page and the scroll id of the next one, empty if there is none
+     */
+    public SampleTasks getFirstPage(long stepId, List<Long> selections, List<Long> prevSelections, int pageSize) {
+        List<Long> sampleTaskIds = new ArrayList<>(
+                this.ruleEngine.getSampleTasksForFinalStep(stepId, selections, prevSelections));
+        SampleTaskCursor cursor = new SampleTaskCursor(stepId, hash(selections, prevSelections), 0);
+        if (sampleTaskIds.size() > pageSize) {
+            this.redisSampleTaskResultRepository.save(
+                    new SampleTaskResult(cursor.getResultKey(), StringUtils.join(sampleTaskIds, ",")));
+        }
+        return getPage(cursor, sampleTaskIds, pageSize);
+    }
+
+    /**
+     * @param scrollId the scroll id of the page
+     * @param pageSize number of sample tasks in the page
+     * @return SampleTasks - the page and the scroll id of the next one, empty if the scroll id is unknown or
+     * the result expired or is done
+     */
+    public SampleTasks getPage(String scrollId, int pageSize) {
+        SampleTaskCursor cursor = SampleTaskCursor.decode(scrollId);
+        if (cursor == null) {
+            SampleTasks sampleTasks = new SampleTasks();
+            sampleTasks.setSampleTasks(Collections.emptyList());
+            sampleTasks.setScrollId("");
+            return sampleTasks;
+        }
+        return getPage(cursor, getSampleTaskIds(cursor), pageSize);
+    }
+
+    /**
+     * @param scrollId the scroll id of a page
+     * @return List<Long> - ids of the sample tasks from the page on, empty if the scroll id is unknown
+     */
+    public List<Long> getRemainingSampleTaskIds(String scrollId) {
+        SampleTaskCursor cursor = SampleTaskCursor.decode(scrollId);
+        if (cursor == null) {
+            return Collections.emptyList();
+        }
+        List<Long> sampleTaskIds = getSampleTaskIds(cursor);
+        return sampleTaskIds.subList(Math.min(cursor.getOffset(), sampleTaskIds.size()), sampleTaskIds.size());
+    }
+
+    private List<Long> getSampleTaskIds(SampleTaskCursor cursor) {
+        Optional<SampleTaskResult> result = this.redisSampleTaskResultRepository.findById(cursor.getResultKey());
+        return result.map(r -> StringUtil.convertNumArray(r.getSampleTaskIds())).orElse(Collections.emptyList());
+    }
+
+    private SampleTasks getPage(SampleTaskCursor cursor, List<Long> sampleTaskIds, int pageSize) {
+        int from = Math.min(cursor.getOffset(), sampleTaskIds.size());
+        int to = Math.min(from + Math.max(pageSize, 1), sampleTaskIds.size());
+        SampleTasks sampleTasks = new SampleTasks();
+        List<SampleTask> page = this.sampleTaskDaoJpa.getSimpleSampleTasks(sampleTaskIds.subList(from, to));
+        sampleTasks.setSampleTasks(page);
+        sampleTasks.setScrollId(to < sampleTaskIds.size()
+                ? new SampleTaskCursor(cursor.getStepId(), cursor.getSelectionHash(), to).encode() : "");
+        return sampleTasks;
+    }
+
+    private static String hash(List<Long> selections, List<Long> prevSelections) {
+        TreeSet<Long> sorted = new TreeSet<>();
+        if (selections != null) {
+            sorted.addAll(selections);
+        }
+        if (prevSelections != null) {
+            sorted.addAll(prevSelections);
+        }
+        return Hashing.murmur3_128().hashString(StringUtils.join(sorted, ","), StandardCharsets.UTF_8).toString();
+    }
+}
@@ -0,0 +1,75 @@
+package com.bulletjournal.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Character trie of keywords with a value per keyword
+ * <p>
+ * - Finds the longest keyword contained in a text in O(text length * longest keyword) without scanning keywords
+ * - Not thread safe, build it in one thread and share it read-only afterwards
+ */
+public class KeywordTrie<V> {
+    private final Node<V> root = new Node<>();
+    private int size;
+
+    public void put(String keyword, V value) {
+        if (keyword == null || keyword.isEmpty() || value == null) {
+            return;
+        }
+        Node<V> node = this.root;
+        for (int i = 0; i < keyword.length(); i++) {
+            node = node.children.computeIfAbsent(keyword.charAt(i), k -> new Node<>());
+        }
+        if (node.value == null) {
+            this.size++;
+        }
+        node.value = value;
+    }
+
+    public V get(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        Node<V> node = this.root;
+        for (int i = 0; i < keyword.length() && node != null; i++) {
+            node = node.children.get(keyword.charAt(i));
+        }
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * @param text the text to look for keywords in
+     * @return V - value of the longest keyword occurring in text, null if there is none
+     */
+    public V findLongestIn(String text) {
+        if (text == null) {
+            return null;
+        }
+        V longest = null;
+        int longestLength = 0;
+        for (int start = 0; start + longestLength < text.length(); start++) {
+            Node<V> node = this.root;
+            for (int i = start; i < text.length(); i++) {
+                node = node.children.get(text.charAt(i));
+                if (node == null) {
+                    break;
+                }
+                if (node.value != null && i - start + 1 > longestLength) {
+                    longestLength = i - start + 1;
+                    longest = node.value;
+                }
+            }
+        }
+        return longest;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    private static final class Node<V> {
+        private final Map<Character, Node<V>> children = new HashMap<>(4);
+        private V value;
+    }
+}
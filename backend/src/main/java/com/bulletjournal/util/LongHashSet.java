@@ -0,0 +1,117 @@
+package com.bulletjournal.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive longs with open addressing and linear probing
+ * <p>
+ * - No boxing, one long[] holds all entries at load factor up to 1/2
+ * - Not thread safe, build it in one thread and share it read-only afterwards
+ */
+public class LongHashSet {
+    private static final long EMPTY = 0L;
+
+    private long[] table;
+    private int size;
+    private boolean containsEmpty;
+
+    public LongHashSet() {
+        this(8);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        this.table = new long[capacity];
+    }
+
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (this.containsEmpty) {
+                return false;
+            }
+            this.containsEmpty = true;
+            this.size++;
+            return true;
+        }
+        int i = indexOf(this.table, value);
+        if (this.table[i] == value) {
+            return false;
+        }
+        this.table[i] = value;
+        this.size++;
+        if (this.size * 2 > this.table.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return this.containsEmpty;
+        }
+        return this.table[indexOf(this.table, value)] == value;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    private void rehash() {
+        long[] rehashed = new long[this.table.length * 2];
+        for (long value : this.table) {
+            if (value != EMPTY) {
+                rehashed[indexOf(rehashed, value)] = value;
+            }
+        }
+        this.table = rehashed;
+    }
+
+    /**
+     * @return int - the slot holding value, or the empty slot where it belongs
+     */
+    private static int indexOf(long[] table, long value) {
+        int mask = table.length - 1;
+        int i = mix(value) & mask;
+        while (table[i] != EMPTY && table[i] != value) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "LongHashSet{" +
+                "size=" + size +
+                ", capacity=" + table.length +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LongHashSet that = (LongHashSet) o;
+        if (this.size != that.size || this.containsEmpty != that.containsEmpty) {
+            return false;
+        }
+        return Arrays.stream(this.table).allMatch(value -> value == EMPTY || that.contains(value));
+    }
+
+    @Override
+    public int hashCode() {
+        long sum = 0;
+        for (long value : this.table) {
+            sum += value;
+        }
+        return Long.hashCode(sum) * 31 + this.size;
+    }
+}
@@ -0,0 +1,23 @@
+CREATE SEQUENCE if not exists public.notification_outbox_sequence
+    START WITH 100
+    INCREMENT BY 50
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+ALTER TABLE public.notification_outbox_sequence OWNER TO postgres;
+
+CREATE TABLE if not exists public.notification_outbox (
+    id bigint PRIMARY KEY,
+    created_at timestamp without time zone NOT NULL,
+    updated_at timestamp without time zone NOT NULL,
+    partition_id integer NOT NULL,
+    event_type character varying(100) NOT NULL,
+    payload text NOT NULL,
+    attempts integer NOT NULL DEFAULT 0
+);
+
+CREATE INDEX if not exists notification_outbox_partition_index ON public.notification_outbox USING btree (partition_id, id);
+
+ALTER TABLE public.notification_outbox OWNER TO postgres;
+GRANT ALL ON TABLE public.notification_outbox TO postgres;
@@ -0,0 +1,59 @@
+CREATE SEQUENCE if not exists public.content_revision_sequence
+    START WITH 100
+    INCREMENT BY 50
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+ALTER TABLE public.content_revision_sequence OWNER TO postgres;
+
+CREATE TABLE if not exists public.task_content_revisions (
+    id bigint PRIMARY KEY,
+    created_at timestamp without time zone NOT NULL,
+    updated_at timestamp without time zone NOT NULL,
+    content_id bigint NOT NULL REFERENCES public.task_contents(id) ON DELETE CASCADE,
+    revision_id bigint NOT NULL,
+    username character varying(100) NOT NULL,
+    diff text NOT NULL,
+    checkpoint text
+);
+
+CREATE UNIQUE INDEX if not exists task_content_revisions_content_revision_index
+    ON public.task_content_revisions USING btree (content_id, revision_id);
+
+ALTER TABLE public.task_content_revisions OWNER TO postgres;
+GRANT ALL ON TABLE public.task_content_revisions TO postgres;
+
+CREATE TABLE if not exists public.note_content_revisions (
+    id bigint PRIMARY KEY,
+    created_at timestamp without time zone NOT NULL,
+    updated_at timestamp without time zone NOT NULL,
+    content_id bigint NOT NULL REFERENCES public.note_contents(id) ON DELETE CASCADE,
+    revision_id bigint NOT NULL,
+    username character varying(100) NOT NULL,
+    diff text NOT NULL,
+    checkpoint text
+);
+
+CREATE UNIQUE INDEX if not exists note_content_revisions_content_revision_index
+    ON public.note_content_revisions USING btree (content_id, revision_id);
+
+ALTER TABLE public.note_content_revisions OWNER TO postgres;
+GRANT ALL ON TABLE public.note_content_revisions TO postgres;
+
+CREATE TABLE if not exists public.transaction_content_revisions (
+    id bigint PRIMARY KEY,
+    created_at timestamp without time zone NOT NULL,
+    updated_at timestamp without time zone NOT NULL,
+    content_id bigint NOT NULL REFERENCES public.transaction_contents(id) ON DELETE CASCADE,
+    revision_id bigint NOT NULL,
+    username character varying(100) NOT NULL,
+    diff text NOT NULL,
+    checkpoint text
+);
+
+CREATE UNIQUE INDEX if not exists transaction_content_revisions_content_revision_index
+    ON public.transaction_content_revisions USING btree (content_id, revision_id);
+
+ALTER TABLE public.transaction_content_revisions OWNER TO postgres;
+GRANT ALL ON TABLE public.transaction_content_revisions TO postgres;
@@ -0,0 +1,2 @@
+ALTER TABLE public.notification_outbox
+    ADD COLUMN claimed_until timestamp without time zone;
@@ -0,0 +1,2 @@
+ALTER TABLE public.notification_outbox
+    ADD COLUMN progress integer NOT NULL DEFAULT 0;
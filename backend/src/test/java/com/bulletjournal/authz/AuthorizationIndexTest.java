@@ -0,0 +1,64 @@
+package com.bulletjournal.authz;
+
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.repository.SharedProjectItemRepository;
+import com.bulletjournal.repository.UserGroupRepository;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link AuthorizationIndex}
+ */
+public class AuthorizationIndexTest {
+    private static final String USERNAME = "BulletJournal";
+
+    private final UserGroupRepository userGroupRepository = mock(UserGroupRepository.class);
+    private final SharedProjectItemRepository sharedProjectItemRepository = mock(SharedProjectItemRepository.class);
+    private final RedisTemplate redisTemplate = mock(RedisTemplate.class);
+    private final AuthorizationIndex authorizationIndex = new AuthorizationIndex();
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(this.authorizationIndex, "userGroupRepository", this.userGroupRepository);
+        ReflectionTestUtils.setField(this.authorizationIndex, "sharedProjectItemRepository",
+                this.sharedProjectItemRepository);
+        ReflectionTestUtils.setField(this.authorizationIndex, "redisTemplate", this.redisTemplate);
+        when(this.userGroupRepository.findAcceptedGroupIdsByUsername(USERNAME))
+                .thenReturn(ImmutableList.of(1L, 2L));
+        when(this.sharedProjectItemRepository.findSharedItemIdsByUsername(USERNAME)).thenReturn(ImmutableList.of(
+                new Object[]{10L, null, null}, new Object[]{null, 11L, null}, new Object[]{null, null, 12L}));
+    }
+
+    @Test
+    public void testLookup() {
+        assertTrue(this.authorizationIndex.isGroupMember(USERNAME, 1L));
+        assertFalse(this.authorizationIndex.isGroupMember(USERNAME, 3L));
+        assertTrue(this.authorizationIndex.isSharedWith(USERNAME, ContentType.TASK, 10L));
+        assertTrue(this.authorizationIndex.isSharedWith(USERNAME, ContentType.NOTE, 11L));
+        assertTrue(this.authorizationIndex.isSharedWith(USERNAME, ContentType.TRANSACTION, 12L));
+        assertFalse(this.authorizationIndex.isSharedWith(USERNAME, ContentType.NOTE, 10L));
+        verify(this.userGroupRepository, times(1)).findAcceptedGroupIdsByUsername(USERNAME);
+    }
+
+    @Test
+    public void testInvalidate() {
+        assertFalse(this.authorizationIndex.isGroupMember(USERNAME, 3L));
+        when(this.userGroupRepository.findAcceptedGroupIdsByUsername(USERNAME))
+                .thenReturn(ImmutableList.of(1L, 2L, 3L));
+        assertFalse(this.authorizationIndex.isGroupMember(USERNAME, 3L));
+
+        this.authorizationIndex.invalidate(USERNAME);
+        verify(this.redisTemplate).convertAndSend(AuthorizationIndex.INVALIDATION_CHANNEL, USERNAME);
+        assertTrue(this.authorizationIndex.isGroupMember(USERNAME, 3L));
+    }
+}
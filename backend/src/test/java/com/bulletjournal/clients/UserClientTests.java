@@ -2,10 +2,14 @@ package com.bulletjournal.clients;
 
 import com.bulletjournal.config.SSOConfig;
 import com.bulletjournal.controller.models.User;
+import com.bulletjournal.redis.IdentityNearCache;
+import com.bulletjournal.redis.RedisLockedUserRepository;
 import com.bulletjournal.redis.RedisUserRepository;
 import com.bulletjournal.repository.UserDaoJpa;
 import org.junit.Assert;
 import org.junit.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.convert.RedisConverter;
 
 import java.util.Optional;
 
@@ -33,8 +37,12 @@ public class UserClientTests {
         when(userDaoJpa.create(username, "America/Los_Angeles")).thenReturn(u);
         MockUserAliasDaoJpa userAliasDaoJpa = new MockUserAliasDaoJpa();
 
+        IdentityNearCache identityNearCache = new IdentityNearCache(
+                redisUserRepository, mock(RedisLockedUserRepository.class), mock(RedisTemplate.class),
+                mock(RedisConverter.class));
+
         UserClient userClient = new UserClient(new SSOConfig(
-                "https://1o24bbs.com"), redisUserRepository, userDaoJpa, userAliasDaoJpa);
+                "https://1o24bbs.com"), identityNearCache, userDaoJpa, userAliasDaoJpa);
 
         User user = userClient.getUser(username);
         Assert.assertEquals(username, user.getName());
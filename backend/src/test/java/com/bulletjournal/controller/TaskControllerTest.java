@@ -126,6 +126,11 @@ public class TaskControllerTest {
         }
         assertEquals(1, contents1.size());
         assertEquals(maxRevisionNumber, contents1.get(0).getRevisions().length);
+        Revision[] revisions = contents1.get(0).getRevisions();
+        Long lastRevisionId = revisions[maxRevisionNumber - 1].getId();
+        assertEquals(lastRevisionId - maxRevisionNumber + 1, (long) revisions[0].getId());
+        assertEquals(contents1.get(0).getText(), getContentRevision(task1.getId(), content1.getId(), lastRevisionId));
+        assertNotNull(getContentRevision(task1.getId(), content1.getId(), revisions[0].getId()));
 
 
         // borrowing test for testing task pagination
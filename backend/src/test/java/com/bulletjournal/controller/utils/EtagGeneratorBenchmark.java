@@ -0,0 +1,59 @@
+package com.bulletjournal.controller.utils;
+
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Compares {@link EtagGenerator} with the former concatenating implementation on 10k element lists.
+ * <p>
+ * Not a unit test, run main() from the IDE: reports time and bytes allocated per etag.
+ */
+public class EtagGeneratorBenchmark {
+    private static final int ITERATIONS = 2000;
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        List<String> list = EtagGeneratorTest.randomList(10000);
+        for (int round = 0; round < 3; round++) {
+            run("concatenated md5", () -> concatenatedMd5(list));
+            run("streaming md5", () -> EtagGenerator.generateEtag(
+                    EtagGenerator.HashAlgorithm.MD5, EtagGenerator.HashType.TO_HASHCODE, list));
+            run("streaming adler32", () -> EtagGenerator.generateEtag(
+                    EtagGenerator.HashAlgorithm.ADLER32, EtagGenerator.HashType.TO_HASHCODE, list));
+            run("streaming xxhash64", () -> EtagGenerator.generateEtag(
+                    EtagGenerator.HashAlgorithm.XXHASH64, EtagGenerator.HashType.TO_HASHCODE, list));
+        }
+    }
+
+    private static String concatenatedMd5(List<String> list) {
+        StringBuilder outputBuilder = new StringBuilder("\"0");
+        try {
+            DigestUtils.appendMd5DigestAsHex(new ByteArrayInputStream(
+                    EtagGeneratorTest.concatenate(EtagGenerator.HashType.TO_HASHCODE, list).getBytes()), outputBuilder);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return outputBuilder.append('"').toString();
+    }
+
+    private static void run(String name, Runnable etag) {
+        // warm up
+        for (int i = 0; i < ITERATIONS; i++) {
+            etag.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long allocated = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            etag.run();
+        }
+        long nanos = (System.nanoTime() - start) / ITERATIONS;
+        allocated = (THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - allocated) / ITERATIONS;
+        System.out.printf("%-20s %10d ns/op %10d B/op%n", name, nanos, allocated);
+    }
+}
@@ -0,0 +1,106 @@
+package com.bulletjournal.controller.utils;
+
+import org.junit.Test;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Tests {@link EtagGenerator}
+ */
+public class EtagGeneratorTest {
+
+    static List<String> randomList(int size) {
+        Random random = new Random(7);
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add("Task " + random.nextLong() + " 任务 😀");
+        }
+        return list;
+    }
+
+    // etag built the way EtagGenerator did before streaming
+    static String concatenate(EtagGenerator.HashType hashType, Object... args) {
+        StringBuilder inputBuilder = new StringBuilder();
+        EtagGenerator.inputStreamBuilder(hashType, inputBuilder, args);
+        return inputBuilder.toString();
+    }
+
+    @Test
+    public void testSameEtagAsConcatenatedInput() {
+        List<String> list = randomList(10000);
+        String text = String.join("", list);
+
+        for (EtagGenerator.HashType hashType : EtagGenerator.HashType.values()) {
+            byte[] input = concatenate(hashType, list, 42L, text).getBytes(StandardCharsets.UTF_8);
+            assertEquals("\"0" + DigestUtils.md5DigestAsHex(input) + "\"", EtagGenerator.generateEtag(
+                    EtagGenerator.HashAlgorithm.MD5, hashType, list, 42L, text));
+
+            Adler32 checksum = new Adler32();
+            checksum.update(input, 0, input.length);
+            assertEquals("\"0" + checksum.getValue() + "\"", EtagGenerator.generateEtag(
+                    EtagGenerator.HashAlgorithm.ADLER32, hashType, list, 42L, text));
+        }
+    }
+
+    @Test
+    public void testXxHash64() {
+        assertEquals("\"0ef46db3751d8e999\"", EtagHasher.of(EtagGenerator.HashAlgorithm.XXHASH64).etag());
+        assertEquals("\"0d24ec4f1a98c6e5b\"",
+                EtagHasher.of(EtagGenerator.HashAlgorithm.XXHASH64).putString("a").etag());
+        assertEquals("\"044bc2cf5ad770999\"",
+                EtagHasher.of(EtagGenerator.HashAlgorithm.XXHASH64).putString("abc").etag());
+
+        // streaming in pieces of any size equals hashing at once
+        String text = String.join("", randomList(100));
+        EtagHasher.XxHash64Hasher hasher = new EtagHasher.XxHash64Hasher();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        hasher.update(bytes, 0, bytes.length);
+        long expected = hasher.digest();
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            hasher.reset();
+            for (int offset = 0; offset < bytes.length; ) {
+                int length = Math.min(bytes.length - offset, random.nextInt(70));
+                hasher.update(bytes, offset, length);
+                offset += length;
+            }
+            assertEquals(expected, hasher.digest());
+        }
+    }
+
+    @Test
+    public void testCollectionsAndNesting() {
+        List<Integer> list = Arrays.asList(1, -2, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        String etag = EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.XXHASH64,
+                EtagGenerator.HashType.TO_HASHCODE, list);
+        assertEquals(etag, EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.XXHASH64,
+                EtagGenerator.HashType.TO_HASHCODE, new LinkedHashSet<>(list)));
+        assertEquals(etag, EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.XXHASH64,
+                EtagGenerator.HashType.TO_STRING, "1-2" + Integer.MIN_VALUE + Integer.MAX_VALUE));
+
+        // element generating its own etag in toString does not corrupt the outer one
+        Object nested = new Object() {
+            @Override
+            public String toString() {
+                return EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.XXHASH64,
+                        EtagGenerator.HashType.TO_STRING, "inner");
+            }
+        };
+        String inner = nested.toString();
+        assertEquals(EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.XXHASH64,
+                EtagGenerator.HashType.TO_STRING, "outer" + inner), EtagGenerator.generateEtag(
+                EtagGenerator.HashAlgorithm.XXHASH64, EtagGenerator.HashType.TO_STRING, Arrays.asList("outer", nested)));
+        assertNotEquals(etag, EtagGenerator.generateEtag(EtagGenerator.HashAlgorithm.MD5,
+                EtagGenerator.HashType.TO_HASHCODE, list));
+    }
+}
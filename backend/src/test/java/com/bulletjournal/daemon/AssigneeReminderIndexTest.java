@@ -0,0 +1,58 @@
+package com.bulletjournal.daemon;
+
+import com.bulletjournal.daemon.models.ReminderRecord;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link AssigneeReminderIndex}
+ */
+public class AssigneeReminderIndexTest {
+    private static final long NOW = 1598918400L;
+
+    @Test
+    public void testRangeLookup() {
+        AssigneeReminderIndex index = new AssigneeReminderIndex();
+        index.add(ImmutableList.of("Xavier", "Michael"), new ReminderRecord(1L, (NOW + 60) * 1000));
+        index.add(ImmutableList.of("Xavier"), new ReminderRecord(2L, (NOW + 30) * 1000));
+        index.add(ImmutableList.of("Xavier"), new ReminderRecord(3L, (NOW + 120) * 1000));
+        // duplicated record is ignored
+        index.add(ImmutableList.of("Xavier"), new ReminderRecord(2L, (NOW + 30) * 1000));
+
+        List<ReminderRecord> records = index.get("Xavier", NOW + 30, NOW + 60);
+        assertEquals(ImmutableList.of(new ReminderRecord(2L, (NOW + 30) * 1000),
+                new ReminderRecord(1L, (NOW + 60) * 1000)), records);
+        assertEquals(3, index.get("Xavier", NOW, NOW + 120).size());
+        assertEquals(1, index.get("Michael", NOW, NOW + 120).size());
+        assertEquals(0, index.get("Mike", NOW, NOW + 120).size());
+    }
+
+    @Test
+    public void testRemove() {
+        AssigneeReminderIndex index = new AssigneeReminderIndex();
+        ReminderRecord record = new ReminderRecord(1L, (NOW + 60) * 1000);
+        index.add(ImmutableList.of("Xavier", "Michael"), record);
+        index.add(ImmutableList.of("Xavier"), new ReminderRecord(2L, (NOW + 10) * 1000));
+        index.add(ImmutableList.of("Xavier"), new ReminderRecord(3L, (NOW + 100) * 1000));
+
+        index.remove(record);
+        assertEquals(2, index.size("Xavier"));
+        assertEquals(0, index.size("Michael"));
+
+        // re-adding a record moves it to its new assignees
+        ReminderRecord reassigned = new ReminderRecord(2L, (NOW + 10) * 1000);
+        index.add(ImmutableList.of("Michael"), reassigned);
+        assertEquals(1, index.size("Xavier"));
+        assertEquals(1, index.size("Michael"));
+        index.add(ImmutableList.of("Xavier"), reassigned);
+        assertEquals(0, index.size("Michael"));
+
+        index.removeBefore((NOW + 50) * 1000);
+        assertEquals(ImmutableList.of(new ReminderRecord(3L, (NOW + 100) * 1000)),
+                index.get("Xavier", NOW, NOW + 200));
+    }
+}
@@ -0,0 +1,111 @@
+package com.bulletjournal.daemon;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link TimingWheel}
+ */
+public class TimingWheelTest {
+    private static final long NOW = 1598918400L;
+
+    @Test
+    public void testFireInOrder() {
+        TimingWheel wheel = new TimingWheel(NOW);
+        wheel.add(1L, (NOW + 1) * 1000);
+        wheel.add(2L, (NOW + 100) * 1000);
+        wheel.add(3L, (NOW + 5000) * 1000);
+        wheel.add(4L, (NOW + 86400) * 1000 + 500);
+        assertEquals(4, wheel.size());
+
+        TimingWheel.Bucket due = new TimingWheel.Bucket();
+        wheel.advance(NOW + 99, due);
+        assertEquals(1, due.size());
+        assertEquals(1L, due.getId(0));
+
+        due.clear();
+        wheel.advance(NOW + 100, due);
+        assertEquals(1, due.size());
+        assertEquals(2L, due.getId(0));
+
+        due.clear();
+        wheel.advance(NOW + 86399, due);
+        assertEquals(1, due.size());
+        assertEquals(3L, due.getId(0));
+
+        due.clear();
+        wheel.advance(NOW + 86400, due);
+        assertEquals(1, due.size());
+        assertEquals((NOW + 86400) * 1000 + 500, due.getTimestamp(0));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCancel() {
+        TimingWheel wheel = new TimingWheel(NOW);
+        wheel.add(1L, (NOW + 10) * 1000);
+        wheel.add(2L, (NOW + 10) * 1000);
+        wheel.add(1L, (NOW + 20000) * 1000);
+
+        assertTrue(wheel.cancel(1L, (NOW + 10) * 1000));
+        assertFalse(wheel.cancel(1L, (NOW + 10) * 1000));
+        assertTrue(wheel.cancel(1L, (NOW + 20000) * 1000));
+        assertEquals(1, wheel.size());
+
+        TimingWheel.Bucket due = new TimingWheel.Bucket();
+        wheel.advance(NOW + 30000, due);
+        assertEquals(1, due.size());
+        assertEquals(2L, due.getId(0));
+    }
+
+    @Test
+    public void testPastAndOverflow() {
+        TimingWheel wheel = new TimingWheel(NOW);
+        wheel.add(1L, (NOW - 10) * 1000);
+        wheel.add(2L, (NOW + (1L << 25)) * 1000);
+
+        TimingWheel.Bucket due = new TimingWheel.Bucket();
+        wheel.advance(NOW, due);
+        assertEquals(1, due.size());
+        assertEquals(1L, due.getId(0));
+
+        due.clear();
+        wheel.advance(NOW + (1L << 25) - 1, due);
+        assertEquals(0, due.size());
+        wheel.advance(NOW + (1L << 25), due);
+        assertEquals(1, due.size());
+        assertEquals(2L, due.getId(0));
+    }
+
+    @Test
+    public void testRandomSchedule() {
+        Random random = new Random(7);
+        TimingWheel wheel = new TimingWheel(NOW);
+        List<Long> seconds = new ArrayList<>();
+        for (long i = 0; i < 2000; i++) {
+            long second = NOW + 1 + random.nextInt(300000);
+            seconds.add(second);
+            wheel.add(i, second * 1000);
+        }
+
+        TimingWheel.Bucket due = new TimingWheel.Bucket();
+        for (long second = NOW + 1; second <= NOW + 300000; second += 1 + random.nextInt(3)) {
+            due.clear();
+            wheel.advance(second, due);
+            for (int i = 0; i < due.size(); i++) {
+                long expected = seconds.get((int) due.getId(i));
+                assertTrue(expected <= second && expected > second - 3);
+            }
+        }
+        due.clear();
+        wheel.advance(NOW + 300000, due);
+        assertEquals(0, wheel.size());
+    }
+}
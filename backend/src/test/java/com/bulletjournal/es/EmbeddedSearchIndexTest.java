@@ -0,0 +1,110 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.es.repository.models.SearchIndex;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests {@link EmbeddedSearchIndex}
+ */
+public class EmbeddedSearchIndexTest {
+
+    private EmbeddedSearchIndex index;
+
+    @Before
+    public void setup() throws IOException {
+        this.index = new EmbeddedSearchIndex(new ByteBuffersDirectory());
+        SearchIndexPipeline pipeline = new SearchIndexPipeline(this.index::bulk, 10);
+        pipeline.upsert(searchIndex("task@1", 1L, null, "Buy groceries"));
+        pipeline.upsert(searchIndex("task_content@1", 1L, "task@1",
+                "<p>Remember the <strong>bananas</strong> and apples</p>"));
+        pipeline.upsert(searchIndex("note@2", 2L, null, "Groceries list"));
+        pipeline.upsert(searchIndex("note@3", 3L, null, "Shared groceries"));
+        pipeline.delete(Collections.singletonList("task@9"));
+        pipeline.close();
+    }
+
+    @After
+    public void tearDown() {
+        this.index.close();
+    }
+
+    private static SearchIndex searchIndex(String id, Long projectId, String parentId, String value) {
+        SearchIndex searchIndex = new SearchIndex();
+        searchIndex.setId(id);
+        searchIndex.setType(id.substring(0, id.indexOf('@')));
+        searchIndex.setProjectId(projectId);
+        searchIndex.setParentId(parentId);
+        searchIndex.setValue(value);
+        return searchIndex;
+    }
+
+    private static List<String> ids(SearchHits<SearchIndex> hits) {
+        return hits.getSearchHits().stream().map(SearchHit::getId).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    public void testFuzzySearchInProjectsAndSharedItems() {
+        SearchHits<SearchIndex> hits = this.index.search(
+                Arrays.asList(1L, 2L), Collections.singletonList("note@3"), "grocerie", null, 0, 10);
+        Assert.assertEquals(Arrays.asList("note@2", "note@3", "task@1"), ids(hits));
+        Assert.assertEquals(3, hits.getTotalHits());
+
+        hits = this.index.search(Collections.singletonList(2L), Collections.emptyList(), "groceries", null, 0, 10);
+        Assert.assertEquals(Collections.singletonList("note@2"), ids(hits));
+        Assert.assertEquals("<em class='highlight'>Groceries</em> list",
+                hits.getSearchHit(0).getHighlightField("value").get(0));
+    }
+
+    @Test
+    public void testContentHtmlStripped() {
+        SearchHits<SearchIndex> hits = this.index.search(
+                Collections.singletonList(1L), Collections.emptyList(), "banana", null, 0, 10);
+        Assert.assertEquals(Collections.singletonList("task_content@1"), ids(hits));
+        SearchIndex content = hits.getSearchHit(0).getContent();
+        Assert.assertEquals("task@1", content.getParentId());
+        Assert.assertEquals("Remember the bananas and apples", content.getValue().replaceAll("\\s+", " "));
+        Assert.assertTrue(hits.getSearchHit(0).getHighlightField("value").get(0)
+                .contains("<em class='highlight'>bananas</em>"));
+
+        Assert.assertTrue(this.index.search(
+                Collections.singletonList(1L), Collections.emptyList(), "strong", null, 0, 10).getSearchHits().isEmpty());
+    }
+
+    @Test
+    public void testSearchAfterAndDelete() throws IOException {
+        List<Long> projectIds = Arrays.asList(1L, 2L, 3L);
+        SearchHits<SearchIndex> first = this.index.search(
+                projectIds, Collections.emptyList(), "groceries", null, 0, 2);
+        Assert.assertEquals(2, first.getSearchHits().size());
+        Assert.assertEquals(3, first.getTotalHits());
+        // sort values go through the cursor token between pages
+        String token = new SearchCursor(first.getSearchHit(1).getSortValues(), "version").encode();
+        SearchHits<SearchIndex> second = this.index.search(
+                projectIds, Collections.emptyList(), "groceries", SearchCursor.decode(token).getSortValues(), 0, 2);
+        Assert.assertEquals(1, second.getSearchHits().size());
+        Assert.assertFalse(ids(first).contains(second.getSearchHit(0).getId()));
+        Assert.assertEquals(ids(second), ids(this.index.search(
+                projectIds, Collections.emptyList(), "groceries", null, 1, 2)));
+        Assert.assertTrue(this.index.search(projectIds, Collections.emptyList(), "groceries",
+                second.getSearchHit(0).getSortValues(), 0, 2).getSearchHits().isEmpty());
+
+        this.index.deleteProject(2L);
+        SearchIndexPipeline pipeline = new SearchIndexPipeline(this.index::bulk, 10);
+        pipeline.delete(Collections.singletonList("task@1"));
+        pipeline.close();
+        Assert.assertEquals(Collections.singletonList("note@3"), ids(this.index.search(
+                projectIds, Collections.emptyList(), "groceries", null, 0, 10)));
+    }
+}
@@ -0,0 +1,32 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.exceptions.BadRequestException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Tests {@link SearchCursor}
+ */
+public class SearchCursorTest {
+
+    @Test
+    public void testEncodeDecode() {
+        String token = new SearchCursor(Arrays.asList(1.5f, "task@1"), "abc").encode();
+        SearchCursor cursor = SearchCursor.decode(token);
+        Assert.assertEquals("abc", cursor.getShareVersion());
+        Assert.assertEquals(1.5, ((Number) cursor.getSortValues().get(0)).doubleValue(), 0);
+        Assert.assertEquals("task@1", cursor.getSortValues().get(1));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testDecodeLegacyScrollId() {
+        SearchCursor.decode("DXF1ZXJ5QW5kRmV0Y2gBAAAAAAAAAD4WYm9laVYtZndUQlNsdDcwakFMNjU1QQ==");
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testDecodeMalformed() {
+        SearchCursor.decode("c1.not-json");
+    }
+}
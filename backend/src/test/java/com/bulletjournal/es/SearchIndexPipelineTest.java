@@ -0,0 +1,208 @@
+package com.bulletjournal.es;
+
+import com.bulletjournal.es.repository.SearchIndexDaoJpa;
+import com.bulletjournal.es.repository.models.SearchIndex;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tests {@link SearchIndexPipeline}
+ */
+public class SearchIndexPipelineTest {
+    private static final ShardId SHARD_ID = new ShardId(SearchIndexDaoJpa.SEARCH_INDEX_NAME, "_na_", 0);
+    // long enough that only close() flushes
+    private static final long LINGER_MILLIS = 60000;
+
+    private final List<BulkRequest> requests = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> rejectOnce = Collections.synchronizedSet(new HashSet<>());
+
+    private BulkResponse send(BulkRequest request) {
+        this.requests.add(request);
+        BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+        for (int i = 0; i < items.length; i++) {
+            DocWriteRequest<?> action = request.requests().get(i);
+            if (this.rejectOnce.remove(action.id())) {
+                items[i] = new BulkItemResponse(i, action.opType(), new BulkItemResponse.Failure(
+                        action.index(), "_doc", action.id(), new IllegalStateException("queue full"),
+                        RestStatus.TOO_MANY_REQUESTS));
+            } else if (action instanceof DeleteRequest) {
+                items[i] = new BulkItemResponse(i, action.opType(),
+                        new DeleteResponse(SHARD_ID, "_doc", action.id(), 1, 1, 1, true));
+            } else {
+                items[i] = new BulkItemResponse(i, action.opType(),
+                        new IndexResponse(SHARD_ID, "_doc", action.id(), 1, 1, 1, true));
+            }
+        }
+        return new BulkResponse(items, 1);
+    }
+
+    private static SearchIndex searchIndex(String id, String value) {
+        SearchIndex searchIndex = new SearchIndex();
+        searchIndex.setId(id);
+        searchIndex.setType(id.substring(0, id.indexOf('@')));
+        searchIndex.setProjectId(1L);
+        searchIndex.setValue(value);
+        return searchIndex;
+    }
+
+    private List<DocWriteRequest<?>> sentActions() {
+        return this.requests.stream().flatMap(r -> r.requests().stream()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testCoalescing() {
+        SearchIndexPipeline pipeline = new SearchIndexPipeline(this::send, LINGER_MILLIS);
+        pipeline.upsert(searchIndex("task@1", "first"));
+        pipeline.upsert(searchIndex("task@1", "second"));
+        pipeline.upsert(searchIndex("note@2", "note"));
+        pipeline.delete(Arrays.asList("note@2", "task_content@3"));
+        pipeline.close();
+
+        Assert.assertEquals(1, this.requests.size());
+        List<DocWriteRequest<?>> actions = sentActions();
+        Assert.assertEquals(3, actions.size());
+        Assert.assertTrue(this.requests.get(0).requests().get(0).toString().contains("second"));
+        Assert.assertTrue(actions.get(1) instanceof DeleteRequest);
+        Assert.assertEquals("task_content@3", actions.get(2).id());
+        Assert.assertEquals(1, (long) pipeline.getStats().get("indexed"));
+        Assert.assertEquals(2, (long) pipeline.getStats().get("deleted"));
+        Assert.assertEquals(2, (long) pipeline.getStats().get("coalesced"));
+    }
+
+    @Test
+    public void testBatchSizedByCountAndBytes() {
+        SearchIndexPipeline pipeline = new SearchIndexPipeline(this::send, LINGER_MILLIS);
+        for (int i = 0; i < 2500; i++) {
+            pipeline.upsert(searchIndex("task@" + i, "task" + i));
+        }
+        char[] large = new char[1024 * 1024];
+        Arrays.fill(large, 'a');
+        for (int i = 0; i < 12; i++) {
+            pipeline.upsert(searchIndex("note@" + i, new String(large)));
+        }
+        pipeline.close();
+
+        Assert.assertEquals(2512, sentActions().size());
+        Assert.assertEquals(2512, sentActions().stream().map(DocWriteRequest::id).distinct().count());
+        for (BulkRequest request : this.requests) {
+            Assert.assertTrue(request.numberOfActions() <= SearchIndexPipeline.MAX_BATCH_ACTIONS);
+            Assert.assertTrue(request.estimatedSizeInBytes() < SearchIndexPipeline.MAX_BATCH_BYTES + large.length * 2);
+        }
+        Assert.assertTrue(this.requests.size() >= 5);
+    }
+
+    @Test
+    public void testChangesQueuedOnCommit() {
+        SearchIndexPipeline pipeline = new SearchIndexPipeline(this::send, LINGER_MILLIS);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            pipeline.upsert(searchIndex("task@1", "committed"));
+            pipeline.delete(Collections.singletonList("task@2"));
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            pipeline.upsert(searchIndex("task@3", "rolled back"));
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        pipeline.close();
+
+        Assert.assertEquals(Arrays.asList("task@1", "task@2"),
+                sentActions().stream().map(DocWriteRequest::id).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testRejectedItemsRetried() {
+        SearchIndexPipeline pipeline = new SearchIndexPipeline(this::send, LINGER_MILLIS);
+        this.rejectOnce.add("task@2");
+        pipeline.upsert(searchIndex("task@1", "task1"));
+        pipeline.upsert(searchIndex("task@2", "task2"));
+        pipeline.close();
+
+        Assert.assertEquals(2, this.requests.size());
+        Assert.assertEquals(Collections.singletonList("task@2"),
+                this.requests.get(1).requests().stream().map(DocWriteRequest::id).collect(Collectors.toList()));
+        Assert.assertEquals(2, (long) pipeline.getStats().get("indexed"));
+        Assert.assertEquals(0, (long) pipeline.getStats().get("failed"));
+    }
+
+    @Test
+    public void testLoadKeepsPendingChanges() throws InterruptedException {
+        SearchIndexPipeline pipeline = new SearchIndexPipeline(this::send, LINGER_MILLIS);
+        pipeline.upsert(searchIndex("task@1", "changed"));
+        pipeline.delete(Collections.singletonList("note@2"));
+        pipeline.load(Arrays.asList(searchIndex("task@1", "loaded"), searchIndex("note@2", "loaded"),
+                searchIndex("task@3", "loaded")));
+        pipeline.close();
+
+        List<DocWriteRequest<?>> actions = sentActions();
+        Assert.assertEquals(Arrays.asList("task@1", "note@2", "task@3"),
+                actions.stream().map(DocWriteRequest::id).collect(Collectors.toList()));
+        Assert.assertTrue(actions.get(0).toString().contains("changed"));
+        Assert.assertTrue(actions.get(1) instanceof DeleteRequest);
+        Assert.assertTrue(actions.get(2).toString().contains("loaded"));
+    }
+
+    @Test
+    public void testLoadSkipsDocumentsDeletedWhileLoading() throws InterruptedException {
+        SearchIndexPipeline pipeline = new SearchIndexPipeline(this::send, 0);
+        pipeline.beginLoad();
+        // deleted and sent after the load read it
+        pipeline.delete(Collections.singletonList("note@2"));
+        for (int i = 0; i < 100 && this.requests.isEmpty(); i++) {
+            Thread.sleep(50);
+        }
+        pipeline.load(Arrays.asList(searchIndex("note@2", "loaded"), searchIndex("task@3", "loaded")));
+        pipeline.endLoad();
+        pipeline.close();
+
+        List<DocWriteRequest<?>> actions = sentActions();
+        Assert.assertEquals(Arrays.asList("note@2", "task@3"),
+                actions.stream().map(DocWriteRequest::id).collect(Collectors.toList()));
+        Assert.assertTrue(actions.get(0) instanceof DeleteRequest);
+    }
+
+    @Test
+    public void testLoadWaitsForPendingChanges() throws InterruptedException {
+        SearchIndexPipeline pipeline = new SearchIndexPipeline(this::send, 0);
+        for (int i = 0; i < 5; i++) {
+            List<SearchIndex> page = new ArrayList<>();
+            for (int j = 0; j < SearchIndexPipeline.MAX_PENDING / 4; j++) {
+                page.add(searchIndex("task@" + (i * SearchIndexPipeline.MAX_PENDING + j), "loaded"));
+            }
+            pipeline.load(page);
+        }
+        pipeline.close();
+
+        Assert.assertEquals(5 * (SearchIndexPipeline.MAX_PENDING / 4), sentActions().size());
+        Assert.assertEquals(0, (long) pipeline.getStats().get("failed"));
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
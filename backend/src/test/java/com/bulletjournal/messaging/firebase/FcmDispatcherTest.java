@@ -0,0 +1,142 @@
+package com.bulletjournal.messaging.firebase;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tests {@link FcmDispatcher}
+ */
+public class FcmDispatcherTest {
+
+    private final FakeTransport transport = new FakeTransport();
+    private final Set<String> removedTokens = ConcurrentHashMap.newKeySet();
+    private final FcmDispatcher dispatcher = new FcmDispatcher(this.transport, this.removedTokens::addAll, 10, 10);
+
+    @After
+    public void tearDown() {
+        this.dispatcher.close();
+        this.transport.executor.shutdownNow();
+    }
+
+    @Test
+    public void testChunkingAndCoalescing() throws InterruptedException {
+        List<FcmMessageParams> params = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            params.add(new FcmMessageParams("token" + i, "type", "Notification"));
+        }
+        for (int i = 0; i < 4000; i++) {
+            params.add(new FcmMessageParams("token" + i, "type", "Notification"));
+        }
+        this.dispatcher.submit(params);
+
+        waitFor(() -> this.dispatcher.getStats().get("sent") == 4000);
+        Assert.assertEquals(4000, (long) this.dispatcher.getStats().get("coalesced"));
+        Assert.assertEquals(4000, this.transport.sentTokens.size());
+        Assert.assertTrue(this.transport.batchSizes.stream().allMatch(size -> size <= FakeTransport.MAX_BATCH_SIZE));
+        Assert.assertTrue(this.transport.maxInFlight.get() <= FcmDispatcher.MAX_IN_FLIGHT);
+    }
+
+    @Test
+    public void testRetryAndInvalidTokens() throws InterruptedException {
+        this.transport.failNextBatch = true;
+        List<FcmMessageParams> params = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            params.add(new FcmMessageParams((i % 10 == 0 ? "invalid" : "token") + i, "type", "Notification"));
+        }
+        params.add(new FcmMessageParams("flaky", "type", "Notification"));
+        this.dispatcher.submit(params);
+
+        waitFor(() -> this.removedTokens.size() == 100);
+        waitFor(() -> this.dispatcher.getStats().get("sent") == 901);
+        Assert.assertTrue(this.transport.sentTokens.contains("flaky"));
+        Assert.assertTrue(this.removedTokens.stream().allMatch(token -> token.startsWith("invalid")));
+        Assert.assertEquals(100, (long) this.dispatcher.getStats().get("failed"));
+        Assert.assertTrue(this.dispatcher.getStats().get("retried") > 0);
+    }
+
+    @Test
+    public void testCloseSendsPendingMessages() {
+        this.dispatcher.submit(Collections.singletonList(new FcmMessageParams("token", "type", "Notification")));
+        this.dispatcher.close();
+        Assert.assertEquals(Collections.singleton("token"), this.transport.sentTokens);
+
+        this.dispatcher.submit(Collections.singletonList(new FcmMessageParams("token", "type", "Notification")));
+        Assert.assertEquals(1, (long) this.dispatcher.getStats().get("dropped"));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Completes batches asynchronously, "invalid" tokens are unregistered and "flaky" fails once
+     */
+    private static class FakeTransport implements FcmTransport {
+        private static final int MAX_BATCH_SIZE = 500;
+
+        private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(8);
+        private final Set<String> sentTokens = ConcurrentHashMap.newKeySet();
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final Set<String> failedOnce = Collections.synchronizedSet(new HashSet<>());
+        private volatile boolean failNextBatch;
+
+        @Override
+        public int getMaxBatchSize() {
+            return MAX_BATCH_SIZE;
+        }
+
+        @Override
+        public CompletableFuture<List<String>> sendAll(List<FcmMessageParams> batch) {
+            this.batchSizes.add(batch.size());
+            this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+            CompletableFuture<List<String>> result = new CompletableFuture<>();
+            this.executor.schedule(() -> {
+                this.inFlight.decrementAndGet();
+                if (this.failNextBatch) {
+                    this.failNextBatch = false;
+                    result.completeExceptionally(new IllegalStateException("unavailable"));
+                    return;
+                }
+                result.complete(respond(batch));
+            }, 5, TimeUnit.MILLISECONDS);
+            return result;
+        }
+
+        private List<String> respond(Collection<FcmMessageParams> batch) {
+            List<String> errorCodes = new ArrayList<>();
+            for (FcmMessageParams params : batch) {
+                String token = params.getToken();
+                if (token.startsWith("invalid")) {
+                    errorCodes.add(FcmDispatcher.TOKEN_REGISTRATION_ERROR);
+                } else if (token.equals("flaky") && this.failedOnce.add(token)) {
+                    errorCodes.add("server-unavailable");
+                } else {
+                    this.sentTokens.add(token);
+                    errorCodes.add(null);
+                }
+            }
+            return errorCodes;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.bulletjournal.notifications;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link EventPipeline}
+ */
+public class EventPipelineTest {
+
+    @Test
+    public void testOrderPerKey() throws Exception {
+        Map<Integer, List<Integer>> handled = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch(1000);
+        EventPipeline<int[]> pipeline = new EventPipeline<>("test-pipeline", 4, 16, 8,
+                e -> e[0], events -> events.forEach(e -> {
+            handled.computeIfAbsent(e[0], k -> Collections.synchronizedList(new ArrayList<>())).add(e[1]);
+            latch.countDown();
+        }));
+        pipeline.start();
+        for (int i = 0; i < 1000; i++) {
+            pipeline.offer(new int[]{i % 10, i});
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        for (List<Integer> values : handled.values()) {
+            for (int i = 1; i < values.size(); i++) {
+                assertTrue(values.get(i - 1) < values.get(i));
+            }
+        }
+        assertEquals(1000, pipeline.getOffered());
+        pipeline.shutdown();
+        pipeline.awaitTermination(5000);
+        assertEquals(1000, pipeline.getHandled());
+    }
+
+    @Test
+    public void testFailedBatch() throws Exception {
+        CountDownLatch latch = new CountDownLatch(2);
+        EventPipeline<Integer> pipeline = new EventPipeline<>("test-pipeline", 1, 16, 1, e -> null, events -> {
+            latch.countDown();
+            throw new IllegalStateException();
+        });
+        pipeline.start();
+        pipeline.offer(1);
+        pipeline.offer(2);
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        pipeline.shutdown();
+        pipeline.awaitTermination(5000);
+        assertEquals(2, pipeline.getFailed());
+    }
+}
@@ -0,0 +1,69 @@
+package com.bulletjournal.notifications;
+
+import com.bulletjournal.repository.NotificationOutboxDaoJpa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+public class MockNotificationOutboxDaoJpa extends NotificationOutboxDaoJpa {
+
+    private final List<Map<Long, Object>> partitions = new ArrayList<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    public MockNotificationOutboxDaoJpa() {
+        for (int i = 0; i < PARTITIONS; i++) {
+            this.partitions.add(new LinkedHashMap<>());
+        }
+    }
+
+    @Override
+    public void create(Object event, Object partitionKey) {
+        Map<Long, Object> partition = this.partitions.get(getPartition(partitionKey));
+        synchronized (partition) {
+            partition.put(this.ids.incrementAndGet(), event);
+        }
+    }
+
+    @Override
+    public OutboxClaim claim(int partition, int batchSize) {
+        Map<Long, Object> events = this.partitions.get(partition);
+        Map<Long, Object> batch = new LinkedHashMap<>();
+        synchronized (events) {
+            for (Map.Entry<Long, Object> event : events.entrySet()) {
+                if (batch.size() >= batchSize) {
+                    break;
+                }
+                batch.put(event.getKey(), event.getValue());
+            }
+        }
+        if (batch.isEmpty()) {
+            return null;
+        }
+        return new OutboxClaim(partition, batch.keySet().iterator().next(), null, batch);
+    }
+
+    @Override
+    public void acknowledge(OutboxClaim claim, Collection<Long> ids, Consumer<List<Object>> handler) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Object> events = new ArrayList<>();
+        ids.forEach(id -> events.add(claim.getEvent(id)));
+        handler.accept(events);
+        for (Map<Long, Object> partition : this.partitions) {
+            synchronized (partition) {
+                partition.keySet().removeAll(ids);
+            }
+        }
+        claim.acknowledged(ids);
+    }
+
+    @Override
+    public void release(OutboxClaim claim) {
+    }
+}
@@ -1,5 +1,6 @@
 package com.bulletjournal.notifications;
 
+import com.bulletjournal.config.NotificationConfig;
 import com.bulletjournal.controller.models.Notification;
 import org.junit.Assert;
 import org.junit.Test;
@@ -18,8 +19,10 @@ public class NotificationServiceTest {
         MockedAuditableDaoJpa mockedAuditableDaoJpa = new MockedAuditableDaoJpa();
         MockSearchIndexDaoJpa mockSearchIndexDaoJpa = new MockSearchIndexDaoJpa();
         MockRedisEtagDaoJpa mockRedisEtagDaoJpa = new MockRedisEtagDaoJpa();
-        NotificationService notificationService = new NotificationService(
-                mockedNotificationDaoJpa, mockedAuditableDaoJpa, mockSearchIndexDaoJpa, mockRedisEtagDaoJpa);
+        MockNotificationOutboxDaoJpa mockNotificationOutboxDaoJpa = new MockNotificationOutboxDaoJpa();
+        NotificationService notificationService = new NotificationService(mockedNotificationDaoJpa,
+                mockedAuditableDaoJpa, mockSearchIndexDaoJpa, mockRedisEtagDaoJpa, mockNotificationOutboxDaoJpa,
+                new NotificationConfig());
         notificationService.postConstruct();
         String originator = "BulletJournal";
         String targetUser = "u1";
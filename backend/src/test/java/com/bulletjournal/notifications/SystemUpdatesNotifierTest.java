@@ -0,0 +1,42 @@
+package com.bulletjournal.notifications;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link SystemUpdatesNotifier}
+ */
+public class SystemUpdatesNotifierTest {
+
+    @Test
+    public void testSignal() {
+        SystemUpdatesNotifier notifier = new SystemUpdatesNotifier();
+        DeferredResult<List<String>> xavier = notifier.await(ImmutableMap.of(
+                "Xavier@Notification", "notificationsEtag",
+                "Xavier@OwnedProjects", "projectsEtag",
+                "Xavier@SharedProjects", "projectsEtag",
+                "100@ProjectTasks", "tasksEtag"), 30000);
+        DeferredResult<List<String>> michael = notifier.await(ImmutableMap.of(
+                "Michael@Notification", "notificationsEtag",
+                "100@ProjectTasks", "tasksEtag"), 30000);
+        assertEquals(2, notifier.size());
+
+        notifier.signal(ImmutableList.of("Xavier@OwnedProjects", "Xavier@SharedProjects", "Xavier@Group"));
+        assertTrue(xavier.hasResult());
+        assertEquals(ImmutableList.of("projectsEtag"), xavier.getResult());
+        assertFalse(michael.hasResult());
+        assertEquals(1, notifier.size());
+
+        notifier.signal(ImmutableList.of("100@ProjectTasks", SystemUpdatesNotifier.getReminderKey("Michael")));
+        assertEquals(ImmutableList.of("tasksEtag"), michael.getResult());
+        assertEquals(0, notifier.size());
+    }
+}
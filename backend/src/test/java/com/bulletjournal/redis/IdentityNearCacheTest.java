@@ -0,0 +1,129 @@
+package com.bulletjournal.redis;
+
+import com.bulletjournal.controller.models.User;
+import com.bulletjournal.redis.models.LockedUser;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.convert.MappingRedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link IdentityNearCache}
+ */
+public class IdentityNearCacheTest {
+    private static final String USERNAME = "BulletJournal";
+
+    private final RedisUserRepository redisUserRepository = mock(RedisUserRepository.class);
+    private final RedisLockedUserRepository redisLockedUserRepository = mock(RedisLockedUserRepository.class);
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final MappingRedisConverter redisConverter = new MappingRedisConverter(
+            new RedisMappingContext(), null, null);
+    private final IdentityNearCache identityNearCache = new IdentityNearCache(
+            this.redisUserRepository, this.redisLockedUserRepository, this.redisTemplate, this.redisConverter);
+
+    {
+        this.redisConverter.afterPropertiesSet();
+    }
+
+    private Map<byte[], byte[]> hash(User user) {
+        RedisData redisData = new RedisData();
+        this.redisConverter.write(user, redisData);
+        return redisData.getBucket().rawMap();
+    }
+
+    @Test
+    public void testGetUser() {
+        when(this.redisUserRepository.findById(USERNAME))
+                .thenReturn(Optional.of(new User(1, USERNAME, "thumbnail", "avatar")));
+
+        User user = this.identityNearCache.getUser(USERNAME).get();
+        user.setAlias("Mike");
+        User cached = this.identityNearCache.getUser(USERNAME).get();
+        Assert.assertEquals(USERNAME, cached.getAlias());
+        Assert.assertEquals("avatar", cached.getAvatar());
+        verify(this.redisUserRepository, times(1)).findById(USERNAME);
+
+        this.identityNearCache.deleteUser(USERNAME);
+        verify(this.redisTemplate).convertAndSend(IdentityNearCache.INVALIDATION_CHANNEL, "User:" + USERNAME);
+        this.identityNearCache.getUser(USERNAME);
+        verify(this.redisUserRepository, times(2)).findById(USERNAME);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetUsers() {
+        when(this.redisUserRepository.findById(USERNAME))
+                .thenReturn(Optional.of(new User(1, USERNAME, "thumbnail", "avatar")));
+        this.identityNearCache.getUser(USERNAME);
+        // one pipeline of HGETALL Michael and Nobody
+        when(this.redisTemplate.execute(any(RedisCallback.class)))
+                .thenReturn(Arrays.asList(hash(new User(2, "Michael", "thumbnail", "avatar")), Collections.emptyMap()));
+
+        Map<String, User> users = this.identityNearCache.getUsers(Arrays.asList(USERNAME, "Michael", "Nobody"));
+        Assert.assertEquals(2, users.size());
+        Assert.assertEquals(1, (int) users.get(USERNAME).getId());
+        Assert.assertEquals(2, (int) users.get("Michael").getId());
+        Assert.assertEquals("avatar", users.get("Michael").getAvatar());
+        verify(this.redisTemplate, times(1)).execute(any(RedisCallback.class));
+
+        // all cached now
+        users = this.identityNearCache.getUsers(Arrays.asList(USERNAME, "Michael"));
+        Assert.assertEquals(2, users.size());
+        verify(this.redisTemplate, times(1)).execute(any(RedisCallback.class));
+    }
+
+    @Test
+    public void testLockedUserInvalidation() {
+        when(this.redisLockedUserRepository.findById(USERNAME)).thenReturn(Optional.empty());
+        Assert.assertFalse(this.identityNearCache.getLockedUser(USERNAME).isPresent());
+        Assert.assertFalse(this.identityNearCache.getLockedUser(USERNAME).isPresent());
+        verify(this.redisLockedUserRepository, times(1)).findById(USERNAME);
+
+        // locked by another instance
+        when(this.redisLockedUserRepository.findById(USERNAME))
+                .thenReturn(Optional.of(new LockedUser(USERNAME, "API requests exceeded limit")));
+        this.identityNearCache.onMessage(new DefaultMessage(
+                IdentityNearCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                ("LockedUser:" + USERNAME).getBytes(StandardCharsets.UTF_8)), null);
+        Assert.assertTrue(this.identityNearCache.getLockedUser(USERNAME).isPresent());
+        verify(this.redisLockedUserRepository, times(2)).findById(USERNAME);
+    }
+
+    @Test
+    public void testGetAliases() {
+        AtomicInteger loads = new AtomicInteger();
+        Map<String, String> aliases = this.identityNearCache.getAliases(USERNAME, () -> {
+            loads.incrementAndGet();
+            return ImmutableMap.of("Michael", "Mike");
+        });
+        Assert.assertEquals("Mike", aliases.get("Michael"));
+        this.identityNearCache.getAliases(USERNAME, () -> {
+            loads.incrementAndGet();
+            return ImmutableMap.of();
+        });
+        Assert.assertEquals(1, loads.get());
+
+        this.identityNearCache.invalidateAliases(USERNAME);
+        Assert.assertTrue(this.identityNearCache.getAliases(USERNAME, ImmutableMap::of).isEmpty());
+        Assert.assertTrue(this.identityNearCache.getStats().get("UserAliases").contains("hitCount=1"));
+    }
+}
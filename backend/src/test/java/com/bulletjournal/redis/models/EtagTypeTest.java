@@ -10,5 +10,7 @@ public class EtagTypeTest {
         assertEquals(EtagType.NOTIFICATION, EtagType.of("Notification"));
         assertEquals(EtagType.GROUP, EtagType.of("Group"));
         assertEquals(EtagType.USER_GROUP, EtagType.of("UserGroups"));
+        assertEquals(EtagType.PROJECT_TASKS, EtagType.of("ProjectTasks"));
+        assertEquals(EtagType.OWNED_PROJECTS, EtagType.of("OwnedProjects"));
     }
 }
\ No newline at end of file
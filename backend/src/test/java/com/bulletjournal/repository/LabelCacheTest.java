@@ -0,0 +1,83 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.controller.models.Label;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests {@link LabelCache}
+ */
+public class LabelCacheTest {
+    private static final String OWNER = "BulletJournal";
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final LabelCache labelCache = new LabelCache();
+    private final List<List<Long>> loads = new ArrayList<>();
+
+    {
+        ReflectionTestUtils.setField(this.labelCache, "redisTemplate", this.redisTemplate);
+    }
+
+    private List<Label> load(List<Long> labelIds) {
+        this.loads.add(labelIds);
+        return labelIds.stream().filter(id -> id < 100)
+                .map(id -> new Label(id, "label" + id, "TagOutlined")).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testGetLabels() {
+        Map<Long, Label> labels = this.labelCache.getLabels(Arrays.asList(1L, 2L, 100L), this::load);
+        Assert.assertEquals(2, labels.size());
+        Assert.assertEquals("label2", labels.get(2L).getValue());
+        labels.get(2L).setValue("changed");
+
+        labels = this.labelCache.getLabels(Arrays.asList(1L, 2L, 3L), this::load);
+        Assert.assertEquals(3, labels.size());
+        Assert.assertEquals("label2", labels.get(2L).getValue());
+        Assert.assertEquals(Arrays.asList(Arrays.asList(1L, 2L, 100L), Collections.singletonList(3L)), this.loads);
+
+        this.labelCache.invalidate(OWNER, 2L);
+        verify(this.redisTemplate).convertAndSend(LabelCache.INVALIDATION_CHANNEL, OWNER + ":2");
+        this.labelCache.getLabels(Arrays.asList(1L, 2L), this::load);
+        Assert.assertEquals(Collections.singletonList(2L), this.loads.get(2));
+    }
+
+    @Test
+    public void testOwnerLabelsInvalidation() {
+        AtomicInteger ownerLoads = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            List<Label> labels = this.labelCache.getOwnerLabels(OWNER, () -> {
+                ownerLoads.incrementAndGet();
+                return Collections.singletonList(new Label(1L, "Star", "StarOutlined"));
+            });
+            Assert.assertEquals("Star", labels.get(0).getValue());
+        }
+        Assert.assertEquals(1, ownerLoads.get());
+
+        // label created by another instance
+        this.labelCache.onMessage(new DefaultMessage(
+                LabelCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                (OWNER + ":").getBytes(StandardCharsets.UTF_8)), null);
+        this.labelCache.getOwnerLabels(OWNER, () -> {
+            ownerLoads.incrementAndGet();
+            return Collections.emptyList();
+        });
+        Assert.assertEquals(2, ownerLoads.get());
+    }
+}
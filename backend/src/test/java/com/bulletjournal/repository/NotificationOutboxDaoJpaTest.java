@@ -0,0 +1,116 @@
+package com.bulletjournal.repository;
+
+import com.bulletjournal.contents.ContentAction;
+import com.bulletjournal.contents.ContentType;
+import com.bulletjournal.notifications.*;
+import com.bulletjournal.repository.models.Notification;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link NotificationOutboxDaoJpa}
+ */
+public class NotificationOutboxDaoJpaTest {
+    private static final String ORIGINATOR = "BulletJournal";
+
+    private final UserAliasDaoJpa userAliasDaoJpa = mock(UserAliasDaoJpa.class);
+
+    {
+        when(this.userAliasDaoJpa.getAliases(anyString())).thenReturn(Collections.emptyMap());
+    }
+
+    private static List<Event> events() {
+        return new ArrayList<>(Arrays.asList(
+                new Event("Thinker", 10L, "Bullet"), new Event("mqm", 11L, "Journal")));
+    }
+
+    private static Event event() {
+        return new Event("Thinker", 12L, "Bullet Journal");
+    }
+
+    @Test
+    public void testInformedRoundTrip() throws Exception {
+        List<Informed> informeds = Arrays.asList(
+                new CreateProjectEvent(events(), ORIGINATOR),
+                new DeleteGroupEvent(events(), ORIGINATOR),
+                new InviteToJoinGroupEvent(event(), ORIGINATOR, "mqm"),
+                new JoinGroupEvent(events(), ORIGINATOR),
+                new JoinGroupResponseEvent(events(), ORIGINATOR, Action.ACCEPT),
+                new JoinProjectEvent(events(), ORIGINATOR),
+                new NewAdminSampleTaskEvent(events(), ORIGINATOR),
+                new NewSampleTaskEvent(event(), ORIGINATOR, "/public/sampleTasks/12"),
+                new RemoveFromProjectEvent(events(), ORIGINATOR),
+                new RemoveNoteEvent(events(), ORIGINATOR),
+                new RemoveProjectEvent(events(), ORIGINATOR),
+                new RemoveTaskEvent(events(), ORIGINATOR),
+                new RemoveTransactionEvent(events(), ORIGINATOR),
+                new RemoveUserFromGroupEvent(events(), ORIGINATOR),
+                new RevokeSharableEvent(event(), ORIGINATOR, ContentType.NOTE),
+                new SetLabelEvent(events(), ORIGINATOR, ContentType.TASK),
+                new SetTaskStatusEvent(events(), ORIGINATOR),
+                new ShareProjectItemEvent(events(), ORIGINATOR, ContentType.TRANSACTION),
+                new UpdateTaskAssigneeEvent(event(), ORIGINATOR, "mqm"),
+                new UpdateTransactionPayerEvent(events(), ORIGINATOR, "mqm"));
+
+        for (Informed informed : informeds) {
+            Object read = NotificationOutboxDaoJpa.deserialize(
+                    informed.getClass().getName(), NotificationOutboxDaoJpa.serialize(informed));
+            Assert.assertEquals(informed.getClass(), read.getClass());
+            Informed roundTripped = (Informed) read;
+            Assert.assertEquals(informed.getOriginator(), roundTripped.getOriginator());
+            Assert.assertEquals(informed.getContentType(), roundTripped.getContentType());
+
+            List<Notification> expected = informed.toNotifications(this.userAliasDaoJpa);
+            List<Notification> actual = roundTripped.toNotifications(this.userAliasDaoJpa);
+            Assert.assertEquals(informed.getClass().getSimpleName(), expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                String message = informed.getClass().getSimpleName();
+                Assert.assertEquals(message, expected.get(i).getTitle(), actual.get(i).getTitle());
+                Assert.assertEquals(message, expected.get(i).getContent(), actual.get(i).getContent());
+                Assert.assertEquals(message, expected.get(i).getTargetUser(), actual.get(i).getTargetUser());
+                Assert.assertEquals(message, expected.get(i).getType(), actual.get(i).getType());
+                Assert.assertEquals(message, expected.get(i).getContentId(), actual.get(i).getContentId());
+                Assert.assertEquals(message, expected.get(i).getLink(), actual.get(i).getLink());
+                Assert.assertEquals(message, expected.get(i).getActions(), actual.get(i).getActions());
+            }
+        }
+    }
+
+    @Test
+    public void testAuditableRoundTrip() throws Exception {
+        Timestamp activityTime = new Timestamp(1600000000123L);
+        Auditable auditable = new Auditable(1L, "created Task ##Bullet##", ORIGINATOR, 2L, activityTime,
+                ContentAction.ADD_TASK);
+        Auditable read = (Auditable) NotificationOutboxDaoJpa.deserialize(
+                Auditable.class.getName(), NotificationOutboxDaoJpa.serialize(auditable));
+        Assert.assertEquals(Long.valueOf(1L), read.getProjectId());
+        Assert.assertEquals(Long.valueOf(2L), read.getProjectItemId());
+        Assert.assertEquals(auditable.getActivity(), read.getActivity());
+        Assert.assertEquals(ORIGINATOR, read.getOriginator());
+        Assert.assertEquals(activityTime, read.getActivityTime());
+        Assert.assertEquals(ContentAction.ADD_TASK, read.getAction());
+    }
+
+    @Test
+    public void testRemoveElasticsearchDocumentRoundTrip() throws Exception {
+        RemoveElasticsearchDocumentEvent event = new RemoveElasticsearchDocumentEvent(Arrays.asList("task1", "note2"));
+        RemoveElasticsearchDocumentEvent read = (RemoveElasticsearchDocumentEvent) NotificationOutboxDaoJpa.deserialize(
+                RemoveElasticsearchDocumentEvent.class.getName(), NotificationOutboxDaoJpa.serialize(event));
+        Assert.assertEquals(event.getDocumentIds(), read.getDocumentIds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedEvent() throws Exception {
+        NotificationOutboxDaoJpa.deserialize(String.class.getName(), "\"Bullet\"");
+    }
+}
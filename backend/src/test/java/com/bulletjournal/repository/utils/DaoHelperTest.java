@@ -4,9 +4,14 @@ import com.bulletjournal.controller.models.ReminderSetting;
 import com.bulletjournal.controller.utils.TestHelpers;
 import com.bulletjournal.repository.models.Project;
 import com.bulletjournal.repository.models.Task;
+import com.bulletjournal.repository.models.TaskOccurrence;
 import org.junit.Test;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -30,6 +35,38 @@ public class DaoHelperTest {
         assertEquals("09:28", clonedTask.getDueTime());
     }
 
+    @Test
+    public void getTaskOccurrences() {
+        ProjectStub projectStub = new ProjectStub();
+        ReminderSetting reminderSetting = new ReminderSetting(null, null, 1);
+
+        Task task = TestHelpers.getTaskRepoModel(2L, "Michael_Zhou", null, null, "America/Los_Angeles", "t2", 0, projectStub, null, reminderSetting);
+        task.setRecurrenceRule("DTSTART:20200825T070000ZRRULE:FREQ=WEEKLY;BYDAY=TU;INTERVAL=1");
+        ZonedDateTime startTime = ZonedDateTime.parse("2020-09-01T00:00:00-07:00[America/Los_Angeles]");
+        List<TaskOccurrence> occurrences = DaoHelper.getTaskOccurrences(task, startTime, startTime.plusDays(14));
+
+        assertEquals(2, occurrences.size());
+        TaskOccurrence occurrence = occurrences.get(0);
+        assertEquals(task, occurrence.getTask());
+        assertEquals("2020-09-01", occurrence.getDueDate());
+        assertEquals("07:00", occurrence.getDueTime());
+        assertEquals(occurrence.getStartTime() - 5 * 60 * 1000, occurrence.getReminderDateTime());
+
+        com.bulletjournal.controller.models.Task presentation = occurrence.toPresentationModel(
+                Collections.emptyList());
+        assertEquals(task.getId(), presentation.getId());
+        assertEquals("2020-09-01", presentation.getDueDate());
+        assertEquals("07:00", presentation.getDueTime());
+        assertEquals(Long.valueOf(occurrence.getReminderDateTime()), presentation.getReminderDateTime());
+
+        Task materialized = occurrence.toTask();
+        assertEquals("2020-09-01", materialized.getDueDate());
+        assertEquals("07:00", materialized.getDueTime());
+        assertEquals(occurrence.getReminderDateTime(), materialized.getReminderDateTime().getTime());
+        assertEquals(DaoHelper.getRecurringTask(task, startTime, startTime.plusDays(14)).get(1).getStartTime(),
+                occurrences.get(1).toTask().getStartTime());
+    }
+
     /*
      * Stub class for Project
      */
@@ -0,0 +1,81 @@
+package com.bulletjournal.repository.utils;
+
+import com.bulletjournal.repository.models.Task;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link RecurrenceOccurrenceIndex}
+ */
+public class RecurrenceOccurrenceIndexTest {
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long NOW = ZonedDateTime.parse("2020-09-01T00:00:00Z").toInstant().toEpochMilli();
+
+    @Test
+    public void testOccurrencesWithinHorizon() throws Exception {
+        RecurrenceOccurrenceIndex index = new RecurrenceOccurrenceIndex(() -> NOW);
+        Task task = getTask(1L, "DTSTART:20200101T090000ZRRULE:FREQ=DAILY;INTERVAL=1");
+
+        RecurrenceOccurrenceIndex.Occurrences occurrences = index.getOccurrences(task, NOW, NOW + 7 * DAY - 1);
+        assertEquals(7, occurrences.size());
+        // DTSTART is interpreted in task's timezone
+        assertEquals(NOW + TimeUnit.HOURS.toMillis(16), occurrences.getMillis(0));
+        assertEquals("20200901T090000", occurrences.getDateTime(0).toString());
+        assertEquals(1, index.size());
+
+        // range before the horizon falls back to rule iteration
+        occurrences = index.getOccurrences(task, NOW - 200 * DAY, NOW - 193 * DAY - 1);
+        assertEquals(7, occurrences.size());
+    }
+
+    @Test
+    public void testRebuildOnCompletedSlots() throws Exception {
+        RecurrenceOccurrenceIndex index = new RecurrenceOccurrenceIndex(() -> NOW);
+        Task task = getTask(2L, "DTSTART:20200101T090000ZRRULE:FREQ=DAILY;INTERVAL=1");
+        RecurrenceOccurrenceIndex.Occurrences occurrences = index.getOccurrences(task, NOW, NOW + 3 * DAY - 1);
+        assertEquals(3, occurrences.size());
+        long last = occurrences.getMillis(2);
+
+        task.setCompletedSlots(occurrences.getDateTime(1).toString());
+        occurrences = index.getOccurrences(task, NOW, NOW + 3 * DAY - 1);
+        assertEquals(2, occurrences.size());
+        assertEquals(last, occurrences.getMillis(1));
+    }
+
+    @Test
+    public void testRollingHorizon() throws Exception {
+        AtomicLong clock = new AtomicLong(NOW);
+        RecurrenceOccurrenceIndex index = new RecurrenceOccurrenceIndex(clock::get);
+        Task task = getTask(3L, "DTSTART:20200101T090000ZRRULE:FREQ=WEEKLY;BYDAY=TU;INTERVAL=1");
+        index.getOccurrences(task, NOW, NOW + 7 * DAY);
+
+        clock.addAndGet(30 * DAY);
+        long horizonEnd = clock.get() + RecurrenceOccurrenceIndex.HORIZON_FUTURE_MILLIS;
+        RecurrenceOccurrenceIndex.Occurrences occurrences = index.getOccurrences(task, horizonEnd - 14 * DAY,
+                horizonEnd);
+        assertEquals(2, occurrences.size());
+    }
+
+    @Test
+    public void testCountIsRespected() throws Exception {
+        RecurrenceOccurrenceIndex index = new RecurrenceOccurrenceIndex(() -> NOW);
+        Task task = getTask(4L, "DTSTART:20200828T090000ZRRULE:FREQ=DAILY;COUNT=10");
+        assertEquals(6, index.getOccurrences(task, NOW, NOW + 30 * DAY).size());
+
+        index.invalidate(4L);
+        assertEquals(0, index.size());
+    }
+
+    private static Task getTask(Long id, String recurrenceRule) {
+        Task task = new Task();
+        task.setId(id);
+        task.setTimezone("America/Los_Angeles");
+        task.setRecurrenceRule(recurrenceRule);
+        return task;
+    }
+}
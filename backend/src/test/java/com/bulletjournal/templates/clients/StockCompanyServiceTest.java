@@ -0,0 +1,112 @@
+package com.bulletjournal.templates.clients;
+
+import com.bulletjournal.templates.config.StockApiConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link StockCompanyService}
+ */
+public class StockCompanyServiceTest {
+
+    private final ConcurrentHashMap<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private StockCompanyService stockCompanyService;
+
+    // a local stub of the company api
+    private LinkedHashMap getCompany(String symbol) {
+        this.calls.computeIfAbsent(symbol, k -> new AtomicInteger()).incrementAndGet();
+        try {
+            this.release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        switch (symbol) {
+            case "GOOG":
+                LinkedHashMap company = new LinkedHashMap();
+                company.put("sector", "Technology");
+                return company;
+            case "NONE":
+                throw HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null);
+            default:
+                throw new IllegalStateException("api is down");
+        }
+    }
+
+    @Before
+    public void setUp() {
+        StockApiConfig stockApiConfig = new StockApiConfig();
+        stockApiConfig.setWorkers(2);
+        stockApiConfig.setQueueCapacity(10);
+        this.stockCompanyService = new StockCompanyService(this::getCompany, stockApiConfig);
+    }
+
+    @After
+    public void tearDown() {
+        this.stockCompanyService.preDestroy();
+    }
+
+    private int calls(String symbol) {
+        return this.calls.getOrDefault(symbol, new AtomicInteger()).get();
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        List<CompletableFuture<LinkedHashMap>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(this.stockCompanyService.getCompanyAsync("GOOG"));
+        }
+        this.release.countDown();
+        LinkedHashMap company = futures.get(0).get(5, TimeUnit.SECONDS);
+        assertEquals("Technology", company.get("sector"));
+        for (CompletableFuture<LinkedHashMap> future : futures) {
+            assertSame(company, future.get(5, TimeUnit.SECONDS));
+        }
+        assertSame(company, this.stockCompanyService.getCompany("GOOG"));
+        assertEquals(1, calls("GOOG"));
+    }
+
+    @Test
+    public void testUnknownSymbolCached() {
+        this.release.countDown();
+        assertNull(this.stockCompanyService.getCompany("NONE"));
+        assertNull(this.stockCompanyService.getCompany("NONE"));
+        assertEquals(1, calls("NONE"));
+    }
+
+    @Test
+    public void testFailureNotCached() {
+        this.release.countDown();
+        assertNull(this.stockCompanyService.getCompany("DOWN"));
+        assertNull(this.stockCompanyService.getCompany("DOWN"));
+        assertEquals(2, calls("DOWN"));
+    }
+
+    @Test
+    public void testBoundedQueue() {
+        // 2 workers busy and 10 queued, the rest is rejected
+        List<CompletableFuture<LinkedHashMap>> futures = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            futures.add(this.stockCompanyService.getCompanyAsync("S" + i));
+        }
+        assertTrue(futures.get(14).isCompletedExceptionally());
+        this.release.countDown();
+    }
+}
@@ -0,0 +1,91 @@
+package com.bulletjournal.templates.repository;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link MetadataKeywordIndex}
+ */
+public class MetadataKeywordIndexTest {
+
+    private final SampleTaskRepository sampleTaskRepository = mock(SampleTaskRepository.class);
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final MetadataKeywordIndex metadataKeywordIndex = new MetadataKeywordIndex();
+    private final Map<Long, String> metadata = new TreeMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicInteger reloads = new AtomicInteger();
+
+    {
+        ReflectionTestUtils.setField(this.metadataKeywordIndex, "sampleTaskRepository", this.sampleTaskRepository);
+        ReflectionTestUtils.setField(this.metadataKeywordIndex, "redisTemplate", this.redisTemplate);
+        this.metadata.put(1L, "INVESTMENT_EARNINGS_RECORD");
+        this.metadata.put(2L, "LEETCODE,TECH");
+        when(this.sampleTaskRepository.findAllMetadata()).thenAnswer(invocation -> {
+            this.loads.incrementAndGet();
+            return rows(this.metadata.keySet());
+        });
+        when(this.sampleTaskRepository.findMetadataByIdIn(anyCollection())).thenAnswer(invocation -> {
+            this.reloads.incrementAndGet();
+            return rows(invocation.getArgument(0));
+        });
+    }
+
+    private List<Object[]> rows(Collection<Long> ids) {
+        return ids.stream().filter(this.metadata::containsKey)
+                .map(id -> new Object[]{id, this.metadata.get(id)}).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testLoadOnce() {
+        Assert.assertEquals(Collections.singletonList(2L), this.metadataKeywordIndex.findSampleTasks("TECH"));
+        Assert.assertEquals(Collections.singletonList(1L), this.metadataKeywordIndex.findSampleTasks("EARN"));
+        Assert.assertNull(this.metadataKeywordIndex.findSampleTasks("_RECORD"));
+        Assert.assertEquals(1, this.loads.get());
+        Assert.assertEquals(0, this.reloads.get());
+    }
+
+    @Test
+    public void testReloadChangedSampleTasks() {
+        Assert.assertEquals(Collections.singletonList(2L), this.metadataKeywordIndex.findSampleTasks("TECH"));
+
+        this.metadata.put(3L, "TECH");
+        this.metadata.remove(2L);
+        this.metadataKeywordIndex.onSampleTaskChange(3L, "TECH");
+        this.metadataKeywordIndex.onMessage(
+                new DefaultMessage(new byte[0], "2".getBytes(StandardCharsets.UTF_8)), null);
+
+        Assert.assertEquals(Collections.singletonList(3L), this.metadataKeywordIndex.findSampleTasks("TECH"));
+        Assert.assertEquals(Collections.singletonList(1L), this.metadataKeywordIndex.findSampleTasks("EARN"));
+        Assert.assertEquals(Collections.emptyList(), this.metadataKeywordIndex.findSampleTasks("CODE"));
+        Assert.assertEquals(1, this.loads.get());
+        Assert.assertEquals(1, this.reloads.get());
+    }
+
+    @Test
+    public void testChangeBeforeLoad() {
+        this.metadata.put(3L, "TECH");
+        this.metadataKeywordIndex.onSampleTaskChange(3L, "TECH");
+
+        Assert.assertEquals(Arrays.asList(2L, 3L), this.metadataKeywordIndex.findSampleTasks("TECH"));
+        Assert.assertEquals(1, this.loads.get());
+        Assert.assertEquals(0, this.reloads.get());
+    }
+}
@@ -0,0 +1,84 @@
+package com.bulletjournal.templates.repository;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests {@link MetadataPostings}
+ */
+public class MetadataPostingsTest {
+
+    private MetadataPostings postings;
+
+    @Before
+    public void setup() {
+        Map<Long, String> metadata = new HashMap<>();
+        metadata.put(3L, "INVESTMENT_IPO_RECORD,TECH");
+        metadata.put(1L, "INVESTMENT_EARNINGS_RECORD");
+        metadata.put(2L, "LEETCODE,TECH");
+        metadata.put(4L, null);
+        this.postings = new MetadataPostings().update(metadata);
+    }
+
+    @Test
+    public void testFind() {
+        Assert.assertEquals(Arrays.asList(1L, 3L), this.postings.find("INVESTMENT"));
+        Assert.assertEquals(Arrays.asList(2L, 3L), this.postings.find("TECH"));
+        Assert.assertEquals(Arrays.asList(1L, 3L), this.postings.find("RECORD"));
+        Assert.assertEquals(Collections.singletonList(2L), this.postings.find("ETCO"));
+        Assert.assertEquals(Collections.emptyList(), this.postings.find("tech"));
+        Assert.assertEquals(3, this.postings.size());
+    }
+
+    @Test
+    public void testFindShortFilter() {
+        Assert.assertEquals(Arrays.asList(2L, 3L), this.postings.find("CH"));
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L), this.postings.find("E"));
+        Assert.assertEquals(Collections.singletonList(3L), this.postings.find("IPO"));
+        Assert.assertEquals(Collections.emptyList(), this.postings.find("XY"));
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L), this.postings.find(""));
+    }
+
+    @Test
+    public void testFilterAcrossTokens() {
+        Assert.assertNull(this.postings.find("LEETCODE,TECH"));
+        Assert.assertNull(this.postings.find("INVESTMENT%RECORD"));
+        // _ is a LIKE wildcard
+        Assert.assertNull(this.postings.find("_RECORD"));
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        MetadataPostings updated = this.postings.update(ImmutableMap.of(2L, "LEETCODE"));
+        Assert.assertEquals(Collections.singletonList(3L), updated.find("TECH"));
+        Map<Long, String> removed = new HashMap<>();
+        removed.put(3L, null);
+        removed.put(9L, null);
+        updated = updated.update(removed);
+        Assert.assertEquals(Collections.emptyList(), updated.find("TECH"));
+        Assert.assertEquals(Collections.emptyList(), updated.find("ECH"));
+        Assert.assertEquals(Collections.singletonList(1L), updated.find("INVESTMENT"));
+        Assert.assertEquals(2, updated.size());
+
+        // snapshots are immutable
+        Assert.assertEquals(Arrays.asList(2L, 3L), this.postings.find("TECH"));
+        Assert.assertEquals(3, this.postings.size());
+    }
+
+    @Test
+    public void testTokenReplacedWithinUpdate() {
+        Map<Long, String> changes = new HashMap<>();
+        changes.put(2L, "LEETCODE");
+        changes.put(3L, "INVESTMENT_IPO_RECORD,LEETCODE_TECH");
+        MetadataPostings updated = this.postings.update(changes);
+        Assert.assertEquals(Collections.singletonList(3L), updated.find("TECH"));
+        Assert.assertEquals(Arrays.asList(2L, 3L), updated.find("LEETCODE"));
+    }
+}
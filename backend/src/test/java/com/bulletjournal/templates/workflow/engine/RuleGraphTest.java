@@ -0,0 +1,109 @@
+package com.bulletjournal.templates.workflow.engine;
+
+import com.bulletjournal.exceptions.ResourceNotFoundException;
+import com.bulletjournal.templates.repository.model.Category;
+import com.bulletjournal.templates.repository.model.CategoryRule;
+import com.bulletjournal.templates.repository.model.Step;
+import com.bulletjournal.templates.repository.model.StepRule;
+import com.bulletjournal.templates.workflow.models.RuleExpression;
+import com.google.gson.Gson;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests {@link RuleGraph}
+ */
+public class RuleGraphTest {
+
+    private RuleGraph graph;
+
+    private static Step step(long id) {
+        Step step = new Step("step" + id);
+        step.setId(id);
+        return step;
+    }
+
+    private static String expression(RuleExpression.LogicOperator logicOperator,
+                                     RuleExpression.Criteria... criteria) {
+        return new Gson().toJson(new RuleExpression(Arrays.asList(criteria), logicOperator));
+    }
+
+    private static RuleExpression.Criteria criteria(RuleExpression.Condition condition, Long... selectionIds) {
+        return new RuleExpression.Criteria(condition, Arrays.asList(selectionIds));
+    }
+
+    private static StepRule stepRule(Step step, int priority, String ruleExpression, Step connectedStep) {
+        StepRule rule = new StepRule();
+        rule.setName("rule" + priority);
+        rule.setStep(step);
+        rule.setPriority(priority);
+        rule.setRuleExpression(ruleExpression);
+        rule.setConnectedStep(connectedStep);
+        return rule;
+    }
+
+    @Before
+    public void setup() {
+        Step step = step(1);
+        step.setNextStep(step(9));
+        step.setStepRules(Arrays.asList(
+                stepRule(step, 1, expression(RuleExpression.LogicOperator.OR,
+                        criteria(RuleExpression.Condition.CONTAINS, 10L)), step(2)),
+                stepRule(step, 5, expression(RuleExpression.LogicOperator.AND,
+                        criteria(RuleExpression.Condition.EXACT, 10L, 11L)), step(3)),
+                stepRule(step, 3, expression(RuleExpression.LogicOperator.AND,
+                        criteria(RuleExpression.Condition.CONTAINS, 12L),
+                        criteria(RuleExpression.Condition.NOT_CONTAIN, 13L)), step(4)),
+                stepRule(step, 4, "not json", step(5))));
+
+        Category category = new Category();
+        category.setId(100L);
+        CategoryRule categoryRule = new CategoryRule();
+        categoryRule.setName("categoryRule");
+        categoryRule.setCategory(category);
+        categoryRule.setPriority(1);
+        categoryRule.setRuleExpression(expression(RuleExpression.LogicOperator.OR,
+                criteria(RuleExpression.Condition.IGNORE)));
+        categoryRule.setConnectedStep(step);
+        category.setCategoryRules(Collections.singletonList(categoryRule));
+
+        this.graph = RuleGraph.compile(Collections.singletonList(category), Collections.singletonList(step));
+    }
+
+    private Long next(List<Long> selections) {
+        com.bulletjournal.templates.controller.model.Step step =
+                this.graph.getNextStepOfStep(1L, selections).getStep();
+        return step == null ? null : step.getId();
+    }
+
+    @Test
+    public void testRulesByPriority() {
+        Assert.assertEquals(Long.valueOf(3), next(Arrays.asList(11L, 10L)));
+        Assert.assertEquals(Long.valueOf(3), next(Arrays.asList(10L, 11L, 10L)));
+        // an unknown selection fails EXACT but not CONTAINS
+        Assert.assertEquals(Long.valueOf(2), next(Arrays.asList(10L, 11L, 99L)));
+        Assert.assertEquals(Long.valueOf(4), next(Arrays.asList(10L, 12L)));
+        Assert.assertEquals(Long.valueOf(2), next(Arrays.asList(10L, 12L, 13L)));
+        Assert.assertEquals(Long.valueOf(9), next(Arrays.asList(12L, 13L)));
+        Assert.assertEquals(Long.valueOf(9), next(Collections.emptyList()));
+    }
+
+    @Test
+    public void testCategoryRules() {
+        Assert.assertEquals(Long.valueOf(1),
+                this.graph.getNextStepOfCategory(100L, Collections.singletonList(42L)).getStep().getId());
+        // next steps are compiled once and shared
+        Assert.assertSame(this.graph.getNextStepOfCategory(100L, Collections.emptyList()).getStep(),
+                this.graph.getNextStepOfCategory(100L, Collections.emptyList()).getStep());
+    }
+
+    @Test(expected = ResourceNotFoundException.class)
+    public void testMissingStep() {
+        this.graph.getNextStepOfStep(2L, Collections.emptyList());
+    }
+}
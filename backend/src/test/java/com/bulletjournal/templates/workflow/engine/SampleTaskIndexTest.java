@@ -0,0 +1,64 @@
+package com.bulletjournal.templates.workflow.engine;
+
+import com.bulletjournal.templates.repository.model.SampleTaskRule;
+import com.bulletjournal.templates.repository.model.Step;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests {@link SampleTaskIndex}
+ */
+public class SampleTaskIndexTest {
+
+    private SampleTaskIndex index;
+
+    @Before
+    public void setup() {
+        Step step = new Step("final");
+        step.setId(1L);
+        // choice 1: selections 10, 11; choice 2: selections 20, 21; choice 3: selection 30
+        this.index = SampleTaskIndex.compile(Arrays.asList(
+                new SampleTaskRule(step, "10", "101,100"),
+                new SampleTaskRule(step, "11", "102"),
+                new SampleTaskRule(step, "20", "100,102,103"),
+                new SampleTaskRule(step, "21", "106"),
+                new SampleTaskRule(step, "30", "104"),
+                new SampleTaskRule(step, "10,30", "105"),
+                new SampleTaskRule(step, "10,11", "107"),
+                new SampleTaskRule(step, "77", "108")),
+                ImmutableMap.<Long, Long>builder()
+                        .put(10L, 1L).put(11L, 1L).put(20L, 2L).put(21L, 2L).put(30L, 3L).build());
+    }
+
+    @Test
+    public void testUnionInChoiceIntersectionBetweenChoices() {
+        Assert.assertEquals(Arrays.asList(100L, 102L),
+                new ArrayList<>(this.index.getSampleTasks(Arrays.asList(10L, 11L, 20L))));
+        Assert.assertEquals(Arrays.asList(100L, 101L, 102L),
+                new ArrayList<>(this.index.getSampleTasks(Arrays.asList(11L, 10L, 99L))));
+        Assert.assertTrue(this.index.getSampleTasks(Arrays.asList(11L, 21L)).isEmpty());
+    }
+
+    @Test
+    public void testChoiceCombo() {
+        Assert.assertEquals(Collections.singletonList(105L),
+                new ArrayList<>(this.index.getSampleTasks(Arrays.asList(10L, 30L))));
+        // choices of the combo are consumed, a combo within one choice adds nothing
+        Assert.assertEquals(Collections.singletonList(105L),
+                new ArrayList<>(this.index.getSampleTasks(Arrays.asList(10L, 11L, 30L))));
+        // the remaining choice intersects with the combo
+        Assert.assertTrue(this.index.getSampleTasks(Arrays.asList(10L, 20L, 30L)).isEmpty());
+    }
+
+    @Test
+    public void testUnknownSelections() {
+        Assert.assertTrue(this.index.getSampleTasks(Collections.emptyList()).isEmpty());
+        Assert.assertTrue(this.index.getSampleTasks(Collections.singletonList(77L)).isEmpty());
+    }
+}
@@ -0,0 +1,131 @@
+package com.bulletjournal.templates.workflow.engine;
+
+import com.bulletjournal.templates.controller.model.SampleTask;
+import com.bulletjournal.templates.controller.model.SampleTasks;
+import com.bulletjournal.templates.redis.RedisSampleTaskResultRepository;
+import com.bulletjournal.templates.redis.models.SampleTaskResult;
+import com.bulletjournal.templates.repository.SampleTaskDaoJpa;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link SampleTaskPager}
+ */
+public class SampleTaskPagerTest {
+
+    private final RuleEngine ruleEngine = mock(RuleEngine.class);
+    private final SampleTaskDaoJpa sampleTaskDaoJpa = mock(SampleTaskDaoJpa.class);
+    private final RedisSampleTaskResultRepository redisSampleTaskResultRepository =
+            mock(RedisSampleTaskResultRepository.class);
+    private final SampleTaskPager sampleTaskPager = new SampleTaskPager();
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(this.sampleTaskPager, "ruleEngine", this.ruleEngine);
+        ReflectionTestUtils.setField(this.sampleTaskPager, "sampleTaskDaoJpa", this.sampleTaskDaoJpa);
+        ReflectionTestUtils.setField(this.sampleTaskPager, "redisSampleTaskResultRepository",
+                this.redisSampleTaskResultRepository);
+        when(this.sampleTaskDaoJpa.getSimpleSampleTasks(anyList())).thenAnswer(invocation ->
+                ((List<Long>) invocation.getArguments()[0]).stream()
+                        .map(id -> new SampleTask(id, "task" + id)).collect(Collectors.toList()));
+    }
+
+    private static Set<Long> sampleTaskIds(long count) {
+        return LongStream.rangeClosed(1, count).boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static List<Long> ids(SampleTasks sampleTasks) {
+        return sampleTasks.getSampleTasks().stream().map(SampleTask::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSinglePage() {
+        when(this.ruleEngine.getSampleTasksForFinalStep(1L, ImmutableList.of(10L), null))
+                .thenReturn(sampleTaskIds(3));
+        SampleTasks page = this.sampleTaskPager.getFirstPage(1L, ImmutableList.of(10L), null, 10);
+        assertEquals(ImmutableList.of(1L, 2L, 3L), ids(page));
+        assertEquals("", page.getScrollId());
+        verify(this.redisSampleTaskResultRepository, never()).save(any(SampleTaskResult.class));
+    }
+
+    @Test
+    public void testPaging() {
+        when(this.ruleEngine.getSampleTasksForFinalStep(1L, ImmutableList.of(11L), ImmutableList.of(10L)))
+                .thenReturn(sampleTaskIds(25));
+        SampleTasks page = this.sampleTaskPager.getFirstPage(1L, ImmutableList.of(11L), ImmutableList.of(10L), 10);
+        assertEquals(10, page.getSampleTasks().size());
+
+        ArgumentCaptor<SampleTaskResult> result = ArgumentCaptor.forClass(SampleTaskResult.class);
+        verify(this.redisSampleTaskResultRepository, times(1)).save(result.capture());
+        when(this.redisSampleTaskResultRepository.findById(result.getValue().getKey()))
+                .thenReturn(Optional.of(result.getValue()));
+
+        List<Long> seen = new ArrayList<>(ids(page));
+        String scrollId = page.getScrollId();
+        assertEquals(LongStream.rangeClosed(11, 25).boxed().collect(Collectors.toList()),
+                this.sampleTaskPager.getRemainingSampleTaskIds(scrollId));
+        while (!scrollId.isEmpty()) {
+            page = this.sampleTaskPager.getPage(scrollId, 7);
+            seen.addAll(ids(page));
+            scrollId = page.getScrollId();
+        }
+        assertEquals(new ArrayList<>(sampleTaskIds(25)), seen);
+        // the result is written once, pages only read it
+        verify(this.redisSampleTaskResultRepository, times(1)).save(any(SampleTaskResult.class));
+    }
+
+    @Test
+    public void testSameSelectionsShareResult() {
+        when(this.ruleEngine.getSampleTasksForFinalStep(any(Long.class), anyList(), anyList()))
+                .thenReturn(sampleTaskIds(25));
+        String scrollId1 = this.sampleTaskPager.getFirstPage(
+                1L, ImmutableList.of(11L, 12L), ImmutableList.of(10L), 10).getScrollId();
+        String scrollId2 = this.sampleTaskPager.getFirstPage(
+                1L, ImmutableList.of(12L), ImmutableList.of(10L, 11L), 10).getScrollId();
+        assertEquals(scrollId1, scrollId2);
+        assertEquals("1:" + SampleTaskCursor.decode(scrollId1).getSelectionHash(),
+                SampleTaskCursor.decode(scrollId1).getResultKey());
+    }
+
+    @Test
+    public void testExpiredResult() {
+        String scrollId = new SampleTaskCursor(1L, "abc", 10).encode();
+        when(this.redisSampleTaskResultRepository.findById("1:abc")).thenReturn(Optional.empty());
+        SampleTasks page = this.sampleTaskPager.getPage(scrollId, 10);
+        assertTrue(page.getSampleTasks().isEmpty());
+        assertEquals("", page.getScrollId());
+        assertTrue(this.sampleTaskPager.getRemainingSampleTaskIds(scrollId).isEmpty());
+    }
+
+    @Test
+    public void testUnknownScrollId() {
+        for (String scrollId : ImmutableList.of("", "5f0c2b9e-4b8e-4a57-9d4f-0d5e1c3b7a21", "s1.!!")) {
+            SampleTasks page = this.sampleTaskPager.getPage(scrollId, 10);
+            assertTrue(page.getSampleTasks().isEmpty());
+            assertEquals("", page.getScrollId());
+            assertTrue(this.sampleTaskPager.getRemainingSampleTaskIds(scrollId).isEmpty());
+        }
+        verify(this.redisSampleTaskResultRepository, never()).findById(any());
+    }
+}
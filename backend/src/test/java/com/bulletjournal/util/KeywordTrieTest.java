@@ -0,0 +1,38 @@
+package com.bulletjournal.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link KeywordTrie}
+ */
+public class KeywordTrieTest {
+
+    @Test
+    public void testFindLongestIn() {
+        KeywordTrie<Long> trie = new KeywordTrie<>();
+        trie.put("INVESTMENT", 1L);
+        trie.put("INVESTMENT_IPO", 2L);
+        trie.put("IPO", 3L);
+        trie.put("", 4L);
+        Assert.assertEquals(3, trie.size());
+
+        Assert.assertEquals(Long.valueOf(2L), trie.findLongestIn("TASK,INVESTMENT_IPO_RECORD"));
+        Assert.assertEquals(Long.valueOf(1L), trie.findLongestIn("INVESTMENT_EARNINGS_RECORD"));
+        Assert.assertEquals(Long.valueOf(3L), trie.findLongestIn("US_IPO"));
+        Assert.assertNull(trie.findLongestIn("INVEST"));
+        Assert.assertNull(trie.findLongestIn(""));
+        Assert.assertNull(trie.findLongestIn(null));
+    }
+
+    @Test
+    public void testGet() {
+        KeywordTrie<String> trie = new KeywordTrie<>();
+        trie.put("STEP", "a");
+        trie.put("STEP", "b");
+        Assert.assertEquals(1, trie.size());
+        Assert.assertEquals("b", trie.get("STEP"));
+        Assert.assertNull(trie.get("STE"));
+        Assert.assertNull(trie.get("STEPS"));
+    }
+}